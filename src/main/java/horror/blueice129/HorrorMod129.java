@@ -4,17 +4,36 @@ import horror.blueice129.command.DebugCommands;
 import horror.blueice129.config.ConfigManager;
 import horror.blueice129.entity.Blueice129Entity;
 import horror.blueice129.network.ModNetworking;
+import horror.blueice129.data.AsyncStateSaver;
+import horror.blueice129.data.PlayerStates;
+import horror.blueice129.data.SessionCheckpoints;
+import horror.blueice129.data.SiteIndex;
+import horror.blueice129.data.StateRetention;
+import horror.blueice129.data.StateTelemetry;
 import horror.blueice129.scheduler.AgroMeterScheduler;
 import horror.blueice129.scheduler.Blueice129SpawnScheduler;
 import horror.blueice129.scheduler.CaveMinerScheduler;
+import horror.blueice129.scheduler.EventTimers;
 import horror.blueice129.scheduler.FakeFootstepScheduler;
 import horror.blueice129.scheduler.HomeEventScheduler;
+import horror.blueice129.scheduler.IdleExecutor;
+import horror.blueice129.scheduler.JobExecutor;
 import horror.blueice129.scheduler.StalkingFootstepScheduler;
 import horror.blueice129.scheduler.PlayerDeathItemsScheduler;
 import horror.blueice129.scheduler.SmallStructureScheduler;
 import horror.blueice129.scheduler.LedgePusherScheduler;
 import horror.blueice129.scheduler.SettingsScheduler;
 import horror.blueice129.scheduler.OnWorldCreation;
+import horror.blueice129.scheduler.TickDispatcher;
+import horror.blueice129.scheduler.TriggerPlanner;
+import horror.blueice129.utils.AsyncLineOfSight;
+import horror.blueice129.utils.BlockTypes;
+import horror.blueice129.utils.ObserverIndex;
+import horror.blueice129.utils.OccupancyPyramid;
+import horror.blueice129.utils.SurfaceCandidates;
+import horror.blueice129.utils.ViewFrame;
+import horror.blueice129.utils.VisibilityCache;
+import horror.blueice129.utils.VisibilityField;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.object.builder.v1.entity.FabricDefaultAttributeRegistry;
@@ -61,6 +80,17 @@ public class HorrorMod129 implements ModInitializer {
 		FabricDefaultAttributeRegistry.register(BLUEICE129_ENTITY, Blueice129Entity.createBlueice129Attributes());
 		
 		// Register schedulers
+		TickDispatcher.register(); // before anything that adds tick tasks
+		AsyncStateSaver.register();
+		PlayerStates.register();
+		SessionCheckpoints.register();
+		SiteIndex.register();
+		StateRetention.register();
+		StateTelemetry.register();
+		EventTimers.register();
+		TriggerPlanner.register();
+		JobExecutor.register();
+		IdleExecutor.register();
 		OnWorldCreation.register();
 		AgroMeterScheduler.register();
 		Blueice129SpawnScheduler.register();
@@ -73,6 +103,16 @@ public class HorrorMod129 implements ModInitializer {
 		PlayerDeathItemsScheduler.register();
 		SettingsScheduler.register(); // Now server-side
 		
+		// Register block type table and line of sight caches
+		BlockTypes.register();
+		ViewFrame.register();
+		VisibilityCache.register();
+		VisibilityField.register();
+		SurfaceCandidates.register();
+		OccupancyPyramid.register();
+		AsyncLineOfSight.register();
+		ObserverIndex.register();
+		
 		// Register fleeing entity tick handler
 		ServerTickEvents.START_SERVER_TICK.register(horror.blueice129.feature.LedgePusher::onServerTick);
 		
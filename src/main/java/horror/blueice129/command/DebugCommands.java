@@ -7,6 +7,9 @@ import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import horror.blueice129.HorrorMod129;
 import horror.blueice129.data.HorrorModPersistentState;
+import horror.blueice129.data.StateRetention;
+import horror.blueice129.data.StateTelemetry;
+import horror.blueice129.scheduler.AgroMeterScheduler;
 import horror.blueice129.feature.HomeVisitorEvent;
 import horror.blueice129.feature.PlayerDeathItems;
 import horror.blueice129.feature.SmallStructureEvent;
@@ -18,11 +21,17 @@ import horror.blueice129.feature.BrightnessChanger;
 import horror.blueice129.feature.FpsLimiter;
 import horror.blueice129.feature.MouseSensitivityChanger;
 import horror.blueice129.feature.SmoothLightingChanger;
+import horror.blueice129.debug.LineOfSightBenchmark;
 import horror.blueice129.debug.LineOfSightChecker;
+import horror.blueice129.debug.StateEncodingBenchmark;
 import horror.blueice129.entity.Blueice129Entity;
 import horror.blueice129.sounds.FakeFootsteps;
 import horror.blueice129.sounds.StalkingFootsteps;
 import horror.blueice129.scheduler.Blueice129SpawnScheduler;
+import horror.blueice129.scheduler.IdleExecutor;
+import horror.blueice129.scheduler.JobExecutor;
+import horror.blueice129.scheduler.TickDispatcher;
+import horror.blueice129.scheduler.TriggerPlanner;
 import net.minecraft.entity.Entity;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
 import net.minecraft.command.CommandRegistryAccess;
@@ -43,8 +52,16 @@ import net.minecraft.block.Blocks;
 // import net.minecraft.block.BlockState;
 import com.mojang.brigadier.Command;
 import horror.blueice129.utils.SurfaceFinder;
+import horror.blueice129.utils.AsyncLineOfSight;
+import horror.blueice129.utils.ObserverIndex;
+import horror.blueice129.utils.OccupancyPyramid;
+import horror.blueice129.utils.VisibilityCache;
+import horror.blueice129.utils.VisibilityField;
 import net.minecraft.server.MinecraftServer;
 
+import java.io.File;
+import java.io.IOException;
+
 public class DebugCommands {
 
     /**
@@ -120,7 +137,7 @@ public class DebugCommands {
                                     StringArgumentType.getString(context, "timerId")))))
                         .then(literal("set")
                             .then(argument("timerId", StringArgumentType.word())
-                                .then(argument("ticks", IntegerArgumentType.integer(0))
+                                .then(argument("ticks", IntegerArgumentType.integer(1))
                                     .executes(context -> setTimer(
                                         context.getSource(),
                                         StringArgumentType.getString(context, "timerId"),
@@ -231,12 +248,70 @@ public class DebugCommands {
                             .then(literal("notvisible")
                                 .executes(context -> fillNotVisibleBlocksWithConcrete(context.getSource())))
                             .then(literal("trees")
-                                .executes(context -> placeDiamondPillars(context.getSource())))))
+                                .executes(context -> placeDiamondPillars(context.getSource()))))
+                        .then(literal("visibility")
+                            .then(literal("stats")
+                                .executes(context -> getVisibilityCacheStats(context.getSource())))
+                            .then(literal("reset")
+                                .executes(context -> resetVisibilityCacheStats(context.getSource())))
+                            .then(literal("benchmark")
+                                .executes(context -> benchmarkLineOfSight(context.getSource(), 2000, 64))
+                                .then(argument("samples", IntegerArgumentType.integer(100, 100000))
+                                    .executes(context -> benchmarkLineOfSight(
+                                        context.getSource(),
+                                        IntegerArgumentType.getInteger(context, "samples"), 64))
+                                    .then(argument("distance", IntegerArgumentType.integer(8, 256))
+                                        .executes(context -> benchmarkLineOfSight(
+                                            context.getSource(),
+                                            IntegerArgumentType.getInteger(context, "samples"),
+                                            IntegerArgumentType.getInteger(context, "distance"))))))))
                     
                     // === PERSISTENT STATE ===
                     .then(literal("state")
                         .then(literal("list")
-                            .executes(context -> listPersistentStateKeys(context.getSource()))))
+                            .executes(context -> listPersistentStateKeys(context.getSource())))
+                        .then(literal("gc")
+                            .executes(context -> sweepPersistentState(context.getSource())))
+                        .then(literal("stats")
+                            .executes(context -> showStateStats(context.getSource()))
+                            .then(literal("dump")
+                                .executes(context -> dumpStateStats(context.getSource())))
+                            .then(literal("reset")
+                                .executes(context -> {
+                                    StateTelemetry.reset();
+                                    context.getSource().sendFeedback(() -> Text.literal("§6State stats reset"), false);
+                                    return 1;
+                                })))
+                        .then(literal("encoding")
+                            .executes(context -> benchmarkStateEncoding(context.getSource(), 100))
+                            .then(argument("rounds", IntegerArgumentType.integer(1, 10000))
+                                .executes(context -> benchmarkStateEncoding(
+                                    context.getSource(),
+                                    IntegerArgumentType.getInteger(context, "rounds"))))))
+
+                    // === TICK TASKS ===
+                    .then(literal("ticks")
+                        .executes(context -> showTickStats(context.getSource()))
+                        .then(literal("reset")
+                            .executes(context -> {
+                                TickDispatcher.resetStats();
+                                context.getSource().sendFeedback(() -> Text.literal("§6Tick task timings reset"), false);
+                                return 1;
+                            })))
+
+                    // === EVENT PLANNER ===
+                    .then(literal("planner")
+                        .executes(context -> showPlanner(context.getSource())))
+
+                    // === WORLD EDIT JOBS ===
+                    .then(literal("jobs")
+                        .executes(context -> showJobs(context.getSource()))
+                        .then(literal("cancel")
+                            .executes(context -> {
+                                int cancelled = JobExecutor.cancelAll(context.getSource().getServer(), "cancelled by command");
+                                context.getSource().sendFeedback(() -> Text.literal("§6Cancelled " + cancelled + " jobs"), false);
+                                return 1;
+                            })))
             );
             
             // Register entity state commands
@@ -562,7 +637,7 @@ public class DebugCommands {
         MinecraftServer server = source.getServer();
         try {
             HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
-            int agroMeter = state.getIntValue("agroMeter", 0);
+            int agroMeter = state.getIntValue(AgroMeterScheduler.AGRO_METER, 0);
             source.sendFeedback(() -> Text.literal("Current agro meter level: " + agroMeter + "/10"), false);
             return 1;
         } catch (Exception e) {
@@ -584,7 +659,7 @@ public class DebugCommands {
             final int finalLevel = Math.max(0, Math.min(10, level));
             
             HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
-            state.setIntValue("agroMeter", finalLevel);
+            state.setIntValue(AgroMeterScheduler.AGRO_METER, finalLevel);
             source.sendFeedback(() -> Text.literal("Agro meter level set to: " + finalLevel + "/10"), true);
             return 1;
         } catch (Exception e) {
@@ -955,47 +1030,34 @@ public class DebugCommands {
         
         if (attempts == 1) {
             source.sendFeedback(() -> Text.literal("Attempting to pre-mine a cave..."), false);
-            boolean success = CavePreMiner.preMineCave(
-                player.getWorld(),
-                player.getBlockPos(),
-                player
-            );
-            
-            if (success) {
-                source.sendFeedback(() -> Text.literal("Successfully pre-mined a cave!"), false);
-                return Command.SINGLE_SUCCESS;
-            } else {
-                source.sendError(Text.literal("Failed to find a suitable cave. Try a different location."));
-                return 0;
-            }
         } else {
             source.sendFeedback(() -> Text.literal("Attempting to pre-mine a cave with " + attempts + " attempts..."), false);
-            
-            // Use a mutable wrapper class
-            class MutableResult {
-                public boolean success = false;
-                public int attempts = 0;
-            }
-            final MutableResult result = new MutableResult();
-            
-            for (int i = 0; i < attempts && !result.success; i++) {
-                result.attempts++;
-                result.success = CavePreMiner.preMineCave(
-                    player.getWorld(),
-                    player.getBlockPos(),
-                    player
-                );
-            }
-            
-            if (result.success) {
-                final int finalAttempts = result.attempts;
-                source.sendFeedback(() -> Text.literal("Successfully pre-mined a cave after " + finalAttempts + " attempt(s)!"), false);
-                return Command.SINGLE_SUCCESS;
+        }
+        premineCaveAttempt(source, player, 1, attempts);
+        return Command.SINGLE_SUCCESS;
+    }
+
+    /**
+     * Runs one pre-mining attempt, and the next one if it fails. Each attempt is spread over several ticks.
+     */
+    private static void premineCaveAttempt(ServerCommandSource source, ServerPlayerEntity player, int attempt, int attempts) {
+        CavePreMiner.preMineCave(player.getWorld(), player.getBlockPos(), player).whenComplete((success, error) -> {
+            if (Boolean.TRUE.equals(success)) {
+                if (attempts == 1) {
+                    source.sendFeedback(() -> Text.literal("Successfully pre-mined a cave!"), false);
+                } else {
+                    source.sendFeedback(() -> Text.literal("Successfully pre-mined a cave after " + attempt + " attempt(s)!"), false);
+                }
+            } else if (error != null) {
+                source.sendError(Text.literal("Cave pre-mining stopped before it was done (see the log)"));
+            } else if (attempt < attempts) {
+                premineCaveAttempt(source, player, attempt + 1, attempts);
+            } else if (attempts == 1) {
+                source.sendError(Text.literal("Failed to find a suitable cave. Try a different location."));
             } else {
                 source.sendError(Text.literal("Failed to find a suitable cave after " + attempts + " attempts"));
-                return 0;
             }
-        }
+        });
     }
     
     /**
@@ -1278,6 +1340,150 @@ public class DebugCommands {
         }
     }
 
+    /**
+     * Shows the line of sight counters (cache, field, pyramid, async checks, observer queries)
+     * @param source Command source
+     * @return Command success value
+     */
+    private static int getVisibilityCacheStats(ServerCommandSource source) {
+        String stats = VisibilityCache.getStatsString();
+        String fieldStats = VisibilityField.getStatsString();
+        String pyramidStats = OccupancyPyramid.getStatsString();
+        String asyncStats = AsyncLineOfSight.getStatsString();
+        String observerStats = ObserverIndex.getStatsString();
+        source.sendFeedback(() -> Text.literal(stats), false);
+        source.sendFeedback(() -> Text.literal(fieldStats), false);
+        source.sendFeedback(() -> Text.literal(pyramidStats), false);
+        source.sendFeedback(() -> Text.literal(asyncStats), false);
+        source.sendFeedback(() -> Text.literal(observerStats), false);
+        return 1;
+    }
+
+    /**
+     * Resets the line of sight counters (cache, field, pyramid, async checks, observer queries)
+     * @param source Command source
+     * @return Command success value
+     */
+    private static int resetVisibilityCacheStats(ServerCommandSource source) {
+        VisibilityCache.resetStats();
+        VisibilityField.resetStats();
+        OccupancyPyramid.resetStats();
+        AsyncLineOfSight.resetStats();
+        ObserverIndex.resetStats();
+        source.sendFeedback(() -> Text.literal("Visibility cache counters reset"), false);
+        return 1;
+    }
+
+    /**
+     * Compares the line of sight precision tiers against EIGHT_CORNERS around the player
+     * @param source Command source
+     * @param samples Number of positions to test
+     * @param distance Maximum distance of the positions
+     * @return Command success value
+     */
+    private static int benchmarkLineOfSight(ServerCommandSource source, int samples, int distance) {
+        ServerPlayerEntity player = source.getPlayer();
+        if (player == null) {
+            source.sendError(Text.literal("This command must be run by a player"));
+            return 0;
+        }
+
+        try {
+            for (String line : LineOfSightBenchmark.run(player, samples, distance)) {
+                source.sendFeedback(() -> Text.literal(line), false);
+                HorrorMod129.LOGGER.info("[LOS benchmark] " + line);
+            }
+            return 1;
+        } catch (Exception e) {
+            source.sendError(Text.literal("Error while running the line of sight benchmark: " + e.getMessage()));
+            HorrorMod129.LOGGER.error("Error while running the line of sight benchmark", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Removes expired and orphaned persistent state values now, instead of waiting for the next sweep
+     * @param source Command source
+     * @return Command success value
+     */
+    private static int sweepPersistentState(ServerCommandSource source) {
+        StateRetention.Report report = StateRetention.sweepNow(source.getServer());
+        StateRetention.Report total = StateRetention.getTotal();
+        source.sendFeedback(() -> Text.literal("§6Removed " + report), false);
+        source.sendFeedback(() -> Text.literal("§7Since server start: " + total), false);
+        return 1;
+    }
+
+    private static int showStateStats(ServerCommandSource source) {
+        HorrorModPersistentState state = HorrorModPersistentState.getServerState(source.getServer());
+        source.sendFeedback(() -> Text.literal("§6=== Persistent state stats ==="), false);
+        for (String line : StateTelemetry.getReport(state)) {
+            source.sendFeedback(() -> Text.literal("§7" + line), false);
+        }
+        return 1;
+    }
+
+    private static int dumpStateStats(ServerCommandSource source) {
+        try {
+            HorrorModPersistentState state = HorrorModPersistentState.getServerState(source.getServer());
+            File file = StateTelemetry.writeDump(source.getServer(), state);
+            source.sendFeedback(() -> Text.literal("§6Wrote state stats to " + file.getPath()), false);
+            return 1;
+        } catch (IOException e) {
+            source.sendError(Text.literal("Could not write the state stats: " + e.getMessage()));
+            HorrorMod129.LOGGER.error("Could not write the state stats", e);
+            return 0;
+        }
+    }
+
+    private static int showTickStats(ServerCommandSource source) {
+        source.sendFeedback(() -> Text.literal("§6=== Tick task timings ==="), false);
+        for (String line : TickDispatcher.getReport()) {
+            source.sendFeedback(() -> Text.literal("§7" + line), false);
+        }
+        return 1;
+    }
+
+    private static int showPlanner(ServerCommandSource source) {
+        source.sendFeedback(() -> Text.literal("§6=== Event planner ==="), false);
+        for (String line : TriggerPlanner.getReport(source.getServer())) {
+            source.sendFeedback(() -> Text.literal("§7" + line), false);
+        }
+        return 1;
+    }
+
+    private static int showJobs(ServerCommandSource source) {
+        source.sendFeedback(() -> Text.literal("§6=== World edit jobs ==="), false);
+        for (String line : JobExecutor.getReport()) {
+            source.sendFeedback(() -> Text.literal("§7" + line), false);
+        }
+        for (String line : IdleExecutor.getReport()) {
+            source.sendFeedback(() -> Text.literal("§7" + line), false);
+        }
+        return 1;
+    }
+
+    /**
+     * Measures the save size and serialize/load time of the persistent state
+     * @param source Command source
+     * @param rounds Number of serializations to average
+     * @return Command success value
+     */
+    private static int benchmarkStateEncoding(ServerCommandSource source, int rounds) {
+        try {
+            HorrorModPersistentState state = HorrorModPersistentState.getServerState(source.getServer());
+            for (String line : StateEncodingBenchmark.run(state, rounds)) {
+                source.sendFeedback(() -> Text.literal(line), false);
+                HorrorMod129.LOGGER.info("[State encoding] " + line);
+            }
+            return 1;
+        } catch (Exception e) {
+            source.sendError(Text.literal("Error while measuring the state encoding: " + e.getMessage()));
+            HorrorMod129.LOGGER.error("Error while measuring the state encoding", e);
+            return 0;
+        }
+    }
+
     /**
      * Lists all keys currently stored in the persistent state
      * @param source Command source
@@ -62,6 +62,32 @@ public class ConfigScreen {
                 .setSaveConsumer(newValue -> config.enableMusicVolumeLocking = newValue)
                 .build());
         
+        ConfigCategory worldDataCategory = builder.getOrCreateCategory(Text.literal("World Data"));
+        
+        worldDataCategory.addEntry(entryBuilder.startIntSlider(Text.literal("Checkpoint Interval (seconds)"), config.sessionCheckpointSeconds, 5, 300)
+                .setDefaultValue(30)
+                .setTooltip(Text.literal("How often footstep event progress is copied into the world data, to resume after a crash"))
+                .setSaveConsumer(newValue -> config.sessionCheckpointSeconds = newValue)
+                .build());
+        
+        worldDataCategory.addEntry(entryBuilder.startIntSlider(Text.literal("World Edit Budget (ms per tick)"), config.jobBudgetMillis, 1, 20)
+                .setDefaultValue(2)
+                .setTooltip(Text.literal("How much of each tick cave pre-mining and other large world edits may use; the rest continues next tick"))
+                .setSaveConsumer(newValue -> config.jobBudgetMillis = newValue)
+                .build());
+        
+        worldDataCategory.addEntry(entryBuilder.startIntSlider(Text.literal("Heavy Event Spacing (seconds)"), config.heavyEventSpacingSeconds, 0, 120)
+                .setDefaultValue(20)
+                .setTooltip(Text.literal("Least time between the starts of two expensive events, like spawns and structures; the later one waits"))
+                .setSaveConsumer(newValue -> config.heavyEventSpacingSeconds = newValue)
+                .build());
+        
+        worldDataCategory.addEntry(entryBuilder.startIntSlider(Text.literal("Busy Server Limit (ms per tick)"), config.lowPriorityMsptLimit, 10, 50)
+                .setDefaultValue(40)
+                .setTooltip(Text.literal("While the average tick takes longer than this, structures and cave pre-mining wait"))
+                .setSaveConsumer(newValue -> config.lowPriorityMsptLimit = newValue)
+                .build());
+        
         builder.setSavingRunnable(() -> ConfigManager.saveConfig(config));
         
         return builder.build();
@@ -10,6 +10,18 @@ public class ModConfig {
     
     public boolean enableMusicVolumeLocking = true;
 
+    // How often fast-changing event progress is copied into the world data
+    public int sessionCheckpointSeconds = 30;
+
+    // Server time per tick for long world edits (cave pre-mining, chunk deletion, ...), the rest waits for the next tick
+    public int jobBudgetMillis = 2;
+
+    // Least time between the starts of two heavy events (spawn, structure, death items, cave pre-mine)
+    public int heavyEventSpacingSeconds = 20;
+
+    // Low priority events (structures, cave pre-mining) wait while the average tick takes longer than this
+    public int lowPriorityMsptLimit = 40;
+
     public ModConfig() {}
 
     public static ModConfig createDefault() {
@@ -0,0 +1,149 @@
+package horror.blueice129.data;
+
+import horror.blueice129.HorrorMod129;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtHelper;
+import net.minecraft.nbt.NbtIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Writes snapshots of the world state on a background thread, so autosaves only cost the server thread
+ * the copy (see HorrorModPersistentState.save). NBT encoding, compression and the file write happen here,
+ * into a temporary file that then replaces the real one, so a crash mid-write leaves the last full save.
+ *
+ * At most one write is in flight. A save requested meanwhile waits as the pending snapshot, and a newer one
+ * replaces it, so a slow disk never builds up a queue. Async saving is only on while the server runs:
+ * on SERVER_STOPPING the in-flight write is waited for and the final save is written on the server thread.
+ */
+public class AsyncStateSaver {
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Horror Mod state saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Object LOCK = new Object();
+    // Guarded by LOCK
+    private static boolean writing;
+    private static File pendingFile;
+    private static HorrorModPersistentState pendingSnapshot;
+
+    private static volatile boolean enabled;
+    private static volatile boolean failed;
+
+    /**
+     * Registers the server events that turn async saving on and off. Call during mod initialization.
+     */
+    public static void register() {
+        ServerLifecycleEvents.SERVER_STARTED.register(server -> enabled = true);
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
+            enabled = false;
+            flush();
+        });
+
+        HorrorMod129.LOGGER.info("Registered AsyncStateSaver");
+    }
+
+    /**
+     * Checks if saves should go through the background thread.
+     */
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Checks if the last background write failed, and clears the flag.
+     * The state is saved again on the next world save even if it didn't change.
+     */
+    static boolean takeFailed() {
+        boolean result = failed;
+        failed = false;
+        return result;
+    }
+
+    /**
+     * Queues a snapshot to be written. Starts writing right away if nothing is in flight,
+     * otherwise replaces the pending snapshot.
+     *
+     * @param file The file to write to
+     * @param snapshot A copy of the state that nothing else touches anymore
+     */
+    static void submit(File file, HorrorModPersistentState snapshot) {
+        synchronized (LOCK) {
+            if (writing) {
+                pendingFile = file;
+                pendingSnapshot = snapshot;
+                return;
+            }
+            writing = true;
+        }
+        EXECUTOR.execute(() -> writeAll(file, snapshot));
+    }
+
+    /**
+     * Waits until the in-flight and pending snapshots are written.
+     */
+    public static void flush() {
+        boolean interrupted = false;
+        synchronized (LOCK) {
+            while (writing) {
+                try {
+                    LOCK.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void writeAll(File file, HorrorModPersistentState snapshot) {
+        while (true) {
+            write(file, snapshot);
+            synchronized (LOCK) {
+                if (pendingSnapshot == null) {
+                    writing = false;
+                    LOCK.notifyAll();
+                    return;
+                }
+                file = pendingFile;
+                snapshot = pendingSnapshot;
+                pendingFile = null;
+                pendingSnapshot = null;
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot the way PersistentState.save does, through a temporary file.
+     */
+    private static void write(File file, HorrorModPersistentState snapshot) {
+        NbtCompound nbt = new NbtCompound();
+        nbt.put("data", snapshot.writeNbt(new NbtCompound()));
+        NbtHelper.putDataVersion(nbt);
+
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            NbtIo.writeCompressed(nbt, temp);
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            StateTelemetry.recordSaved(file);
+        } catch (IOException e) {
+            failed = true;
+            HorrorMod129.LOGGER.error("Could not save data " + file, e);
+        }
+    }
+}
@@ -1,21 +1,26 @@
 package horror.blueice129.data;
 
 import horror.blueice129.HorrorMod129;
+import horror.blueice129.utils.TimingWheel;
 import net.minecraft.nbt.NbtCompound;
-import net.minecraft.nbt.NbtInt;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtIntArray;
 import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtLongArray;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.PersistentState;
 import net.minecraft.world.PersistentStateManager;
 import net.minecraft.world.World;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-
-// TODO: make a way to visualise how and when data is being saved and loaded and stored persistently
+import java.util.function.Consumer;
 
 /**
  * Persistent state handler for the Horror Mod.
@@ -24,6 +29,11 @@ import java.util.Set;
 public class HorrorModPersistentState extends PersistentState {
     // The unique identifier for this persistent state
     private static final String IDENTIFIER = HorrorMod129.MOD_ID + "_state";
+
+    // Version 1: position lists as lists of x/y/z compounds, 2D arrays as nested lists of ints.
+    // Version 2: position lists as long arrays of BlockPos.asLong, 2D arrays as flat int arrays
+    // (row count, each row's length, then the values row by row). Both still load.
+    private static final int FORMAT_VERSION = 2;
     
     // Map to store multiple timers with their respective IDs
     private Map<String, Integer> timers;
@@ -43,6 +53,30 @@ public class HorrorModPersistentState extends PersistentState {
     // Map to store 2D arrays of integers with string keys
     private Map<String, int[][]> int2DArrays;
 
+    // Position lists and 2D arrays as loaded, decoded into the maps above the first time they're used.
+    // The ones never used are written back as they were, so loading and saving don't grow with old data.
+    private NbtCompound rawPositionLists = new NbtCompound();
+    private NbtCompound rawInt2DArrays = new NbtCompound();
+
+    // Saved world edit jobs, as written by JobExecutor. Replaced as a whole, never changed in place.
+    private NbtList jobs = new NbtList();
+
+    // Values of registered StateKeys, indexed by slot. Names without a key stay in the maps above.
+    // Arrays grow when new keys are registered, taking over the loaded map values of those names.
+    private int[] intSlots = new int[0]; // int values (timers are in timerSlots)
+    private boolean[] intSlotsSet = new boolean[0]; // timers and int values
+    private long[] longSlots = new long[0];
+    private boolean[] longSlotsSet = new boolean[0];
+    private BlockPos[] posSlots = new BlockPos[0]; // null when not set
+
+    // Keyed timers are deadlines on a timing wheel rather than counters decremented every tick, so a tick
+    // where nothing fires costs nothing and doesn't mark the state dirty. The clock only advances through
+    // tickTimers and starts at 0 every session; NBT still holds the remaining ticks, as before.
+    private static final int TIMER_SAVE_INTERVAL = 20 * 60 * 5; // re-save remaining times every 5 minutes of timer time
+    private final TimingWheel<StateKey.TimerKey> timerWheel = new TimingWheel<>(0);
+    @SuppressWarnings("unchecked")
+    private TimingWheel.Entry<StateKey.TimerKey>[] timerSlots = new TimingWheel.Entry[0]; // indexed like intSlots
+
     // Constructor with default values
     public HorrorModPersistentState() {
         this.timers = new HashMap<>();
@@ -82,6 +116,10 @@ public class HorrorModPersistentState extends PersistentState {
      * @return Current timer value in ticks, or 0 if the timer doesn't exist
      */
     public int getTimer(String timerId) {
+        StateKey.TimerKey key = StateKey.findTimer(timerId);
+        if (key != null) {
+            return getTimer(key);
+        }
         return timers.getOrDefault(timerId, 0);
     }
     
@@ -91,23 +129,66 @@ public class HorrorModPersistentState extends PersistentState {
      * @param value The new timer value in ticks
      */
     public void setTimer(String timerId, int value) {
+        StateKey.TimerKey key = StateKey.findTimer(timerId);
+        if (key != null) {
+            setTimer(key, value);
+            return;
+        }
         timers.put(timerId, value);
         // Mark that the state has changed and needs to be saved
         this.markDirty();
     }
     
     /**
-     * Saves the state to NBT
+     * Saves the state to NBT. Timed for StateTelemetry, so only world saves should call it
      * @return NBT compound containing the state data
      */
     @Override
     public NbtCompound writeNbt(NbtCompound nbt) {
+        long start = System.nanoTime();
+        write(nbt);
+        StateTelemetry.recordWrite(System.nanoTime() - start);
+        return nbt;
+    }
+
+    /**
+     * Same as writeNbt, without recording the time, for debug commands that measure the state
+     * @param nbt NBT compound to write into
+     * @return NBT compound containing the state data
+     */
+    public NbtCompound writeNbtUntimed(NbtCompound nbt) {
+        write(nbt);
+        return nbt;
+    }
+
+    private void write(NbtCompound nbt) {
+        nbt.putInt("formatVersion", FORMAT_VERSION);
+
         // Save timers
         NbtCompound timersNbt = new NbtCompound();
         for (Map.Entry<String, Integer> entry : timers.entrySet()) {
             timersNbt.putInt(entry.getKey(), entry.getValue());
         }
         nbt.put("timers", timersNbt);
+
+        // Save int values
+        NbtCompound intValuesNbt = new NbtCompound();
+        for (Map.Entry<String, Integer> entry : intValues.entrySet()) {
+            intValuesNbt.putInt(entry.getKey(), entry.getValue());
+        }
+        nbt.put("intValues", intValuesNbt);
+
+        // Save keyed values into the same compounds, under their names
+        for (int slot = 0; slot < intSlots.length; slot++) {
+            if (intSlotsSet[slot]) {
+                StateKey key = StateKey.getIntKey(slot);
+                if (key instanceof StateKey.TimerKey timerKey) {
+                    timersNbt.putInt(key.name, getTimer(timerKey));
+                } else {
+                    intValuesNbt.putInt(key.name, intSlots[slot]);
+                }
+            }
+        }
         
         // Save positions
         NbtCompound positionsNbt = new NbtCompound();
@@ -119,67 +200,115 @@ public class HorrorModPersistentState extends PersistentState {
             posNbt.putInt("z", pos.getZ());
             positionsNbt.put(entry.getKey(), posNbt);
         }
-        nbt.put("positions", positionsNbt);
-        
-        // Save integer values
-        NbtCompound intValuesNbt = new NbtCompound();
-        for (Map.Entry<String, Integer> entry : intValues.entrySet()) {
-            intValuesNbt.putInt(entry.getKey(), entry.getValue());
+        for (int slot = 0; slot < posSlots.length; slot++) {
+            BlockPos pos = posSlots[slot];
+            if (pos != null) {
+                NbtCompound posNbt = new NbtCompound();
+                posNbt.putInt("x", pos.getX());
+                posNbt.putInt("y", pos.getY());
+                posNbt.putInt("z", pos.getZ());
+                positionsNbt.put(StateKey.getPosKey(slot).name, posNbt);
+            }
         }
-        nbt.put("intValues", intValuesNbt);
+        nbt.put("positions", positionsNbt);
         
         // Save long values
         NbtCompound longValuesNbt = new NbtCompound();
         for (Map.Entry<String, Long> entry : longValues.entrySet()) {
             longValuesNbt.putLong(entry.getKey(), entry.getValue());
         }
+        for (int slot = 0; slot < longSlots.length; slot++) {
+            if (longSlotsSet[slot]) {
+                longValuesNbt.putLong(StateKey.getLongKey(slot).name, longSlots[slot]);
+            }
+        }
         nbt.put("longValues", longValuesNbt);
         
-        // Save position lists
-        NbtCompound posListsNbt = new NbtCompound();
+        // Save position lists, starting with the ones never decoded (the reader takes either layout per entry)
+        NbtCompound posListsNbt = shallowCopy(rawPositionLists);
         for (Map.Entry<String, List<BlockPos>> entry : positionLists.entrySet()) {
-            NbtList posList = new NbtList();
-            for (BlockPos pos : entry.getValue()) {
-                NbtCompound posNbt = new NbtCompound();
-                posNbt.putInt("x", pos.getX());
-                posNbt.putInt("y", pos.getY());
-                posNbt.putInt("z", pos.getZ());
-                posList.add(posNbt);
+            List<BlockPos> list = entry.getValue();
+            long[] packed = new long[list.size()];
+            for (int i = 0; i < packed.length; i++) {
+                packed[i] = list.get(i).asLong();
             }
-            posListsNbt.put(entry.getKey(), posList);
+            posListsNbt.putLongArray(entry.getKey(), packed);
         }
         nbt.put("positionLists", posListsNbt);
 
         // Save 2D integer arrays
-        NbtCompound int2DArraysNbt = new NbtCompound();
+        NbtCompound int2DArraysNbt = shallowCopy(rawInt2DArrays);
         for (Map.Entry<String, int[][]> entry : int2DArrays.entrySet()) {
-            NbtList arrayList = new NbtList();
-            for (int[] row : entry.getValue()) {
-                NbtList rowList = new NbtList();
-                for (int value : row) {
-                    rowList.add(NbtInt.of(value));
-                }
-                arrayList.add(rowList);
-            }
-            int2DArraysNbt.put(entry.getKey(), arrayList);
+            int2DArraysNbt.putIntArray(entry.getKey(), flatten(entry.getValue()));
         }
         nbt.put("int2DArrays", int2DArraysNbt);
 
-        return nbt;
+        if (!jobs.isEmpty()) {
+            nbt.put("jobs", jobs);
+        }
     }
     
     /**
-     * Creates a persistent state instance from NBT data
+     * Packs a 2D array as: row count, the length of each row, then the values row by row.
+     */
+    private static int[] flatten(int[][] array) {
+        int total = 1 + array.length;
+        for (int[] row : array) {
+            total += row.length;
+        }
+        int[] flat = new int[total];
+        flat[0] = array.length;
+        int index = 1 + array.length;
+        for (int i = 0; i < array.length; i++) {
+            flat[1 + i] = array[i].length;
+            System.arraycopy(array[i], 0, flat, index, array[i].length);
+            index += array[i].length;
+        }
+        return flat;
+    }
+
+    /**
+     * Unpacks a 2D array written by flatten.
+     */
+    private static int[][] unflatten(int[] flat) {
+        if (flat.length == 0) {
+            return new int[0][];
+        }
+        int[][] array = new int[flat[0]][];
+        int index = 1 + array.length;
+        for (int i = 0; i < array.length; i++) {
+            array[i] = Arrays.copyOfRange(flat, index, index + flat[1 + i]);
+            index += flat[1 + i];
+        }
+        return array;
+    }
+
+    /**
+     * Creates a persistent state instance from NBT data. Timed for StateTelemetry, so only the world load should call it
      * @param nbt The NBT data to read from
      * @return A new persistent state instance
      */
     public static HorrorModPersistentState createFromNbt(NbtCompound nbt) {
+        long start = System.nanoTime();
+        HorrorModPersistentState state = read(nbt);
+        StateTelemetry.recordLoad(System.nanoTime() - start);
+        return state;
+    }
+
+    /**
+     * Same as createFromNbt, without recording the time, for debug commands that measure the state
+     * @param nbt The NBT data to read from
+     * @return A new persistent state instance
+     */
+    public static HorrorModPersistentState createFromNbtUntimed(NbtCompound nbt) {
+        return read(nbt);
+    }
+
+    private static HorrorModPersistentState read(NbtCompound nbt) {
         Map<String, Integer> loadedTimers = new HashMap<>();
         Map<String, BlockPos> loadedPositions = new HashMap<>();
         Map<String, Integer> loadedIntValues = new HashMap<>();
         Map<String, Long> loadedLongValues = new HashMap<>();
-        Map<String, List<BlockPos>> loadedPositionLists = new HashMap<>();
-        Map<String, int[][]> loadedInt2DArrays = new HashMap<>();
         
         // Read timers
         if (nbt.contains("timers")) {
@@ -217,46 +346,189 @@ public class HorrorModPersistentState extends PersistentState {
             }
         }
         
-        // Read position lists
-        if (nbt.contains("positionLists")) {
-            NbtCompound posListsNbt = nbt.getCompound("positionLists");
-            for (String key : posListsNbt.getKeys()) {
-                List<BlockPos> positions = new ArrayList<>();
-                NbtList posList = (NbtList) posListsNbt.get(key);
-                
-                for (int i = 0; i < posList.size(); i++) {
-                    NbtCompound posNbt = posList.getCompound(i);
-                    int x = posNbt.getInt("x");
-                    int y = posNbt.getInt("y");
-                    int z = posNbt.getInt("z");
-                    positions.add(new BlockPos(x, y, z));
-                }
-                
-                loadedPositionLists.put(key, positions);
+        HorrorModPersistentState state = new HorrorModPersistentState(loadedTimers, loadedPositions, loadedIntValues, loadedLongValues, new HashMap<>(), new HashMap<>());
+
+        // Position lists and 2D arrays are only decoded when used
+        state.rawPositionLists = nbt.getCompound("positionLists");
+        state.rawInt2DArrays = nbt.getCompound("int2DArrays");
+        state.jobs = nbt.getList("jobs", NbtElement.COMPOUND_TYPE);
+        return state;
+    }
+
+    /**
+     * Decodes a position list in either layout.
+     */
+    private static List<BlockPos> decodePositionList(NbtElement element) {
+        List<BlockPos> positions = new ArrayList<>();
+        if (element instanceof NbtLongArray longArray) {
+            for (long packed : longArray.getLongArray()) {
+                positions.add(BlockPos.fromLong(packed));
             }
+            return positions;
         }
+        NbtList posList = (NbtList) element;
+        for (int i = 0; i < posList.size(); i++) {
+            NbtCompound posNbt = posList.getCompound(i);
+            int x = posNbt.getInt("x");
+            int y = posNbt.getInt("y");
+            int z = posNbt.getInt("z");
+            positions.add(new BlockPos(x, y, z));
+        }
+        return positions;
+    }
+
+    /**
+     * Decodes a 2D integer array in either layout.
+     */
+    private static int[][] decodeInt2DArray(NbtElement element) {
+        if (element instanceof NbtIntArray intArray) {
+            return unflatten(intArray.getIntArray());
+        }
+        NbtList arrayList = (NbtList) element;
+        int[][] array = new int[arrayList.size()][];
+        for (int i = 0; i < arrayList.size(); i++) {
+            NbtList rowList = (NbtList) arrayList.get(i);
+            int[] row = new int[rowList.size()];
+            for (int j = 0; j < rowList.size(); j++) {
+                row[j] = rowList.getInt(j);
+            }
+            array[i] = row;
+        }
+        return array;
+    }
+
+    /**
+     * Moves a loaded position list into the map the first time it's used.
+     */
+    private void decodePositionList(String id) {
+        NbtElement element = rawPositionLists.get(id);
+        if (element != null) {
+            rawPositionLists.remove(id);
+            positionLists.put(id, decodePositionList(element));
+        }
+    }
+
+    /**
+     * Moves a loaded 2D array into the map the first time it's used.
+     */
+    private void decodeInt2DArray(String id) {
+        NbtElement element = rawInt2DArrays.get(id);
+        if (element != null) {
+            rawInt2DArrays.remove(id);
+            int2DArrays.put(id, decodeInt2DArray(element));
+        }
+    }
+
+    /**
+     * Copies a compound without copying its entries (NbtCompound.copy copies every array).
+     */
+    private static NbtCompound shallowCopy(NbtCompound nbt) {
+        NbtCompound copy = new NbtCompound();
+        for (String key : nbt.getKeys()) {
+            copy.put(key, nbt.get(key));
+        }
+        return copy;
+    }
+
+    /**
+     * Saves the state to its file if it changed, along with the changed player states and site regions.
+     * While the server runs, only a snapshot is taken here and AsyncStateSaver writes it in the background.
+     * @param file The file to save to
+     */
+    @Override
+    public void save(File file) {
+        // Called on every world save, whether or not this state is dirty
+        SessionCheckpoints.checkpointAll(this);
+        PlayerStates.saveAll();
+        SiteIndex.saveAll();
+        if (AsyncStateSaver.takeFailed()) {
+            this.markDirty();
+        }
+        if (!this.isDirty()) {
+            return;
+        }
+        if (AsyncStateSaver.isEnabled()) {
+            AsyncStateSaver.submit(file, snapshot());
+            this.setDirty(false);
+            return;
+        }
+        // Don't let an older snapshot land on top of this write
+        AsyncStateSaver.flush();
+        super.save(file);
+        StateTelemetry.recordSaved(file);
+    }
+
+    /**
+     * Marks the state as changed so it's saved with the world, counting the call for StateTelemetry.
+     */
+    @Override
+    public void markDirty() {
+        StateTelemetry.recordDirty();
+        super.markDirty();
+    }
 
-        // Read 2D integer arrays
-        if (nbt.contains("int2DArrays")) {
-            NbtCompound int2DArraysNbt = nbt.getCompound("int2DArrays");
-            for (String key : int2DArraysNbt.getKeys()) {
-                NbtList arrayList = (NbtList) int2DArraysNbt.get(key);
-                int[][] array = new int[arrayList.size()][];
-                for (int i = 0; i < arrayList.size(); i++) {
-                    NbtList rowList = (NbtList) arrayList.get(i);
-                    int[] row = new int[rowList.size()];
-                    for (int j = 0; j < rowList.size(); j++) {
-                        row[j] = rowList.getInt(j);
-                    }
-                    array[i] = row;
+    /**
+     * Gets how many position lists and 2D arrays are still waiting to be decoded.
+     */
+    int getUndecodedCount() {
+        return rawPositionLists.getSize() + rawInt2DArrays.getSize();
+    }
+
+    /**
+     * Copies the stored values into a detached state for saving off the server thread.
+     * Keyed values go into the maps under their names, with timers as their remaining ticks,
+     * so the copy writes the same NBT as this state. Lists and arrays are copied since callers change them in place.
+     */
+    private HorrorModPersistentState snapshot() {
+        Map<String, Integer> timersCopy = new HashMap<>(timers);
+        Map<String, Integer> intValuesCopy = new HashMap<>(intValues);
+        for (int slot = 0; slot < intSlots.length; slot++) {
+            if (intSlotsSet[slot]) {
+                StateKey key = StateKey.getIntKey(slot);
+                if (key instanceof StateKey.TimerKey timerKey) {
+                    timersCopy.put(key.name, getTimer(timerKey));
+                } else {
+                    intValuesCopy.put(key.name, intSlots[slot]);
                 }
-                loadedInt2DArrays.put(key, array);
             }
         }
-        
-        return new HorrorModPersistentState(loadedTimers, loadedPositions, loadedIntValues, loadedLongValues, loadedPositionLists, loadedInt2DArrays);
+
+        Map<String, BlockPos> positionsCopy = new HashMap<>(positions);
+        for (int slot = 0; slot < posSlots.length; slot++) {
+            if (posSlots[slot] != null) {
+                positionsCopy.put(StateKey.getPosKey(slot).name, posSlots[slot]);
+            }
+        }
+
+        Map<String, Long> longValuesCopy = new HashMap<>(longValues);
+        for (int slot = 0; slot < longSlots.length; slot++) {
+            if (longSlotsSet[slot]) {
+                longValuesCopy.put(StateKey.getLongKey(slot).name, longSlots[slot]);
+            }
+        }
+
+        Map<String, List<BlockPos>> positionListsCopy = new HashMap<>();
+        for (Map.Entry<String, List<BlockPos>> entry : positionLists.entrySet()) {
+            positionListsCopy.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+
+        Map<String, int[][]> int2DArraysCopy = new HashMap<>();
+        for (Map.Entry<String, int[][]> entry : int2DArrays.entrySet()) {
+            int[][] array = entry.getValue().clone();
+            for (int i = 0; i < array.length; i++) {
+                array[i] = array[i].clone();
+            }
+            int2DArraysCopy.put(entry.getKey(), array);
+        }
+
+        HorrorModPersistentState snapshot = new HorrorModPersistentState(timersCopy, positionsCopy, intValuesCopy, longValuesCopy, positionListsCopy, int2DArraysCopy);
+        // Raw entries are never changed, only removed, so sharing them is safe
+        snapshot.rawPositionLists = shallowCopy(rawPositionLists);
+        snapshot.rawInt2DArrays = shallowCopy(rawInt2DArrays);
+        snapshot.jobs = jobs;
+        return snapshot;
     }
-    
+
     /**
      * Gets the persistent state from the server, creating it if it doesn't exist
      * @param server The Minecraft server instance
@@ -306,6 +578,10 @@ public class HorrorModPersistentState extends PersistentState {
      * @return True if the timer exists, false otherwise
      */
     public boolean hasTimer(String timerId) {
+        StateKey.TimerKey key = StateKey.findTimer(timerId);
+        if (key != null) {
+            return hasTimer(key);
+        }
         return timers.containsKey(timerId);
     }
     
@@ -314,6 +590,11 @@ public class HorrorModPersistentState extends PersistentState {
      * @param timerId The ID of the timer to remove
      */
     public void removeTimer(String timerId) {
+        StateKey.TimerKey key = StateKey.findTimer(timerId);
+        if (key != null) {
+            removeTimer(key);
+            return;
+        }
         if (timers.containsKey(timerId)) {
             timers.remove(timerId);
             this.markDirty();
@@ -325,7 +606,9 @@ public class HorrorModPersistentState extends PersistentState {
      * @return Set of all timer IDs
      */
     public Set<String> getTimerIds() {
-        return timers.keySet();
+        Set<String> ids = new HashSet<>(timers.keySet());
+        addKeyedNames(ids, StateKey.TimerKey.class);
+        return ids;
     }
     
     // === BLOCK POSITION METHODS ===
@@ -336,6 +619,10 @@ public class HorrorModPersistentState extends PersistentState {
      * @return The block position, or null if not found
      */
     public BlockPos getPosition(String id) {
+        StateKey.PosKey key = StateKey.findPosition(id);
+        if (key != null) {
+            return getPosition(key);
+        }
         return positions.get(id);
     }
     
@@ -345,6 +632,11 @@ public class HorrorModPersistentState extends PersistentState {
      * @param pos The block position value
      */
     public void setPosition(String id, BlockPos pos) {
+        StateKey.PosKey key = StateKey.findPosition(id);
+        if (key != null) {
+            setPosition(key, pos);
+            return;
+        }
         positions.put(id, pos);
         this.markDirty();
     }
@@ -354,6 +646,11 @@ public class HorrorModPersistentState extends PersistentState {
      * @param id The ID of the position to remove
      */
     public void removePosition(String id) {
+        StateKey.PosKey key = StateKey.findPosition(id);
+        if (key != null) {
+            removePosition(key);
+            return;
+        }
         if (positions.containsKey(id)) {
             positions.remove(id);
             this.markDirty();
@@ -366,6 +663,10 @@ public class HorrorModPersistentState extends PersistentState {
      * @return True if the position exists
      */
     public boolean hasPosition(String id) {
+        StateKey.PosKey key = StateKey.findPosition(id);
+        if (key != null) {
+            return hasPosition(key);
+        }
         return positions.containsKey(id);
     }
     
@@ -374,7 +675,9 @@ public class HorrorModPersistentState extends PersistentState {
      * @return Set of all position IDs
      */
     public Set<String> getPositionIds() {
-        return positions.keySet();
+        Set<String> ids = new HashSet<>(positions.keySet());
+        addKeyedNames(ids, StateKey.PosKey.class);
+        return ids;
     }
     
     // === INTEGER VALUE METHODS ===
@@ -386,6 +689,10 @@ public class HorrorModPersistentState extends PersistentState {
      * @return The integer value, or the default value if not found
      */
     public int getIntValue(String id, int defaultValue) {
+        StateKey.IntKey key = StateKey.findIntValue(id);
+        if (key != null) {
+            return getIntValue(key, defaultValue);
+        }
         return intValues.getOrDefault(id, defaultValue);
     }
     
@@ -395,6 +702,11 @@ public class HorrorModPersistentState extends PersistentState {
      * @param value The integer value
      */
     public void setIntValue(String id, int value) {
+        StateKey.IntKey key = StateKey.findIntValue(id);
+        if (key != null) {
+            setIntValue(key, value);
+            return;
+        }
         intValues.put(id, value);
         this.markDirty();
     }
@@ -404,6 +716,11 @@ public class HorrorModPersistentState extends PersistentState {
      * @param id The ID of the value to remove
      */
     public void removeIntValue(String id) {
+        StateKey.IntKey key = StateKey.findIntValue(id);
+        if (key != null) {
+            removeIntValue(key);
+            return;
+        }
         if (intValues.containsKey(id)) {
             intValues.remove(id);
             this.markDirty();
@@ -416,6 +733,10 @@ public class HorrorModPersistentState extends PersistentState {
      * @return True if the integer value exists
      */
     public boolean hasIntValue(String id) {
+        StateKey.IntKey key = StateKey.findIntValue(id);
+        if (key != null) {
+            return hasIntValue(key);
+        }
         return intValues.containsKey(id);
     }
     
@@ -424,7 +745,9 @@ public class HorrorModPersistentState extends PersistentState {
      * @return Set of all integer value IDs
      */
     public Set<String> getIntValueIds() {
-        return intValues.keySet();
+        Set<String> ids = new HashSet<>(intValues.keySet());
+        addKeyedNames(ids, StateKey.IntKey.class);
+        return ids;
     }
     
     // === LONG VALUE METHODS ===
@@ -436,6 +759,10 @@ public class HorrorModPersistentState extends PersistentState {
      * @return The long value, or the default value if not found
      */
     public long getLongValue(String id, long defaultValue) {
+        StateKey.LongKey key = StateKey.findLongValue(id);
+        if (key != null) {
+            return getLongValue(key, defaultValue);
+        }
         return longValues.getOrDefault(id, defaultValue);
     }
     
@@ -445,6 +772,11 @@ public class HorrorModPersistentState extends PersistentState {
      * @param value The long value
      */
     public void setLongValue(String id, long value) {
+        StateKey.LongKey key = StateKey.findLongValue(id);
+        if (key != null) {
+            setLongValue(key, value);
+            return;
+        }
         longValues.put(id, value);
         this.markDirty();
     }
@@ -454,6 +786,11 @@ public class HorrorModPersistentState extends PersistentState {
      * @param id The ID of the value to remove
      */
     public void removeLongValue(String id) {
+        StateKey.LongKey key = StateKey.findLongValue(id);
+        if (key != null) {
+            removeLongValue(key);
+            return;
+        }
         if (longValues.containsKey(id)) {
             longValues.remove(id);
             this.markDirty();
@@ -466,6 +803,10 @@ public class HorrorModPersistentState extends PersistentState {
      * @return True if the long value exists
      */
     public boolean hasLongValue(String id) {
+        StateKey.LongKey key = StateKey.findLongValue(id);
+        if (key != null) {
+            return hasLongValue(key);
+        }
         return longValues.containsKey(id);
     }
     
@@ -474,9 +815,332 @@ public class HorrorModPersistentState extends PersistentState {
      * @return Set of all long value IDs
      */
     public Set<String> getLongValueIds() {
-        return longValues.keySet();
+        Set<String> ids = new HashSet<>(longValues.keySet());
+        addKeyedNames(ids, StateKey.LongKey.class);
+        return ids;
     }
     
+    // === TYPED KEY METHODS ===
+
+    /**
+     * Gets the ticks left on a timer
+     * @param key The timer
+     * @return Ticks until the timer runs out, or 0 if it ran out or isn't set
+     */
+    public int getTimer(StateKey.TimerKey key) {
+        ensureIntSlot(key.slot);
+        TimingWheel.Entry<StateKey.TimerKey> entry = timerSlots[key.slot];
+        if (entry == null || !entry.isScheduled()) {
+            return 0;
+        }
+        return (int) (entry.getDeadline() - timerWheel.getTime());
+    }
+
+    /**
+     * Sets a timer, to run out after the given number of timer ticks (see tickTimers)
+     * @param key The timer
+     * @param value Ticks until the timer runs out; 0 or less makes it run out on the next tick
+     */
+    public void setTimer(StateKey.TimerKey key, int value) {
+        ensureIntSlot(key.slot);
+        startTimer(key, value);
+        this.markDirty();
+    }
+
+    private void startTimer(StateKey.TimerKey key, int value) {
+        intSlotsSet[key.slot] = true;
+        // A set timer is always on the wheel: one at 0 (saved after it ran out without a handler, or set
+        // by command) would count as set, so nothing would start it again, yet never run out
+        long deadline = timerWheel.getTime() + Math.max(1, value);
+        TimingWheel.Entry<StateKey.TimerKey> entry = timerSlots[key.slot];
+        if (entry == null) {
+            timerSlots[key.slot] = timerWheel.schedule(key, deadline);
+        } else {
+            timerWheel.reschedule(entry, deadline);
+        }
+    }
+
+    /**
+     * Advances keyed timers by one tick, passing each timer that runs out this tick to the callback.
+     * Timers don't count down on their own: the caller decides which ticks count (e.g. not while the server is empty).
+     * @param onExpired Called with each timer that ran out; it may set timers again
+     */
+    public void tickTimers(Consumer<StateKey.TimerKey> onExpired) {
+        timerWheel.advance(onExpired);
+        // Remaining times are only saved when the state is dirty, so refresh them now and then
+        if (timerWheel.size() > 0 && timerWheel.getTime() % TIMER_SAVE_INTERVAL == 0) {
+            this.markDirty();
+        }
+    }
+
+    /**
+     * Increments a timer by the specified amount
+     * @param key The timer
+     * @param amount The amount to increment the timer by
+     * @return The new timer value
+     */
+    public int incrementTimer(StateKey.TimerKey key, int amount) {
+        int newValue = getTimer(key) + amount;
+        setTimer(key, newValue);
+        return newValue;
+    }
+
+    /**
+     * Decrements a timer by the specified amount (won't go below 0)
+     * @param key The timer
+     * @param amount The amount to decrement the timer by
+     * @return The new timer value
+     */
+    public int decrementTimer(StateKey.TimerKey key, int amount) {
+        int newValue = Math.max(0, getTimer(key) - amount);
+        setTimer(key, newValue);
+        return newValue;
+    }
+
+    /**
+     * Checks if a timer is set
+     * @param key The timer
+     * @return True if the timer is set
+     */
+    public boolean hasTimer(StateKey.TimerKey key) {
+        ensureIntSlot(key.slot);
+        return intSlotsSet[key.slot];
+    }
+
+    /**
+     * Removes a timer
+     * @param key The timer
+     */
+    public void removeTimer(StateKey.TimerKey key) {
+        ensureIntSlot(key.slot);
+        if (timerSlots[key.slot] != null) {
+            timerWheel.cancel(timerSlots[key.slot]);
+        }
+        removeIntSlot(key.slot);
+    }
+
+    /**
+     * Gets an integer value
+     * @param key The value
+     * @param defaultValue The default value to return if not set
+     * @return The integer value, or the default value if not set
+     */
+    public int getIntValue(StateKey.IntKey key, int defaultValue) {
+        ensureIntSlot(key.slot);
+        return intSlotsSet[key.slot] ? intSlots[key.slot] : defaultValue;
+    }
+
+    /**
+     * Sets an integer value
+     * @param key The value
+     * @param value The integer value
+     */
+    public void setIntValue(StateKey.IntKey key, int value) {
+        ensureIntSlot(key.slot);
+        intSlots[key.slot] = value;
+        intSlotsSet[key.slot] = true;
+        this.markDirty();
+    }
+
+    /**
+     * Checks if an integer value is set
+     * @param key The value
+     * @return True if the integer value is set
+     */
+    public boolean hasIntValue(StateKey.IntKey key) {
+        ensureIntSlot(key.slot);
+        return intSlotsSet[key.slot];
+    }
+
+    /**
+     * Removes an integer value
+     * @param key The value
+     */
+    public void removeIntValue(StateKey.IntKey key) {
+        removeIntSlot(key.slot);
+    }
+
+    /**
+     * Gets a long value
+     * @param key The value
+     * @param defaultValue The default value to return if not set
+     * @return The long value, or the default value if not set
+     */
+    public long getLongValue(StateKey.LongKey key, long defaultValue) {
+        ensureLongSlot(key.slot);
+        return longSlotsSet[key.slot] ? longSlots[key.slot] : defaultValue;
+    }
+
+    /**
+     * Sets a long value
+     * @param key The value
+     * @param value The long value
+     */
+    public void setLongValue(StateKey.LongKey key, long value) {
+        ensureLongSlot(key.slot);
+        longSlots[key.slot] = value;
+        longSlotsSet[key.slot] = true;
+        this.markDirty();
+    }
+
+    /**
+     * Checks if a long value is set
+     * @param key The value
+     * @return True if the long value is set
+     */
+    public boolean hasLongValue(StateKey.LongKey key) {
+        ensureLongSlot(key.slot);
+        return longSlotsSet[key.slot];
+    }
+
+    /**
+     * Removes a long value
+     * @param key The value
+     */
+    public void removeLongValue(StateKey.LongKey key) {
+        ensureLongSlot(key.slot);
+        if (longSlotsSet[key.slot]) {
+            longSlots[key.slot] = 0;
+            longSlotsSet[key.slot] = false;
+            this.markDirty();
+        }
+    }
+
+    /**
+     * Gets a block position
+     * @param key The position
+     * @return The block position, or null if not set
+     */
+    public BlockPos getPosition(StateKey.PosKey key) {
+        ensurePosSlot(key.slot);
+        return posSlots[key.slot];
+    }
+
+    /**
+     * Sets a block position
+     * @param key The position
+     * @param pos The block position value
+     */
+    public void setPosition(StateKey.PosKey key, BlockPos pos) {
+        ensurePosSlot(key.slot);
+        posSlots[key.slot] = pos.toImmutable();
+        this.markDirty();
+    }
+
+    /**
+     * Checks if a block position is set
+     * @param key The position
+     * @return True if the position is set
+     */
+    public boolean hasPosition(StateKey.PosKey key) {
+        return getPosition(key) != null;
+    }
+
+    /**
+     * Removes a block position
+     * @param key The position
+     */
+    public void removePosition(StateKey.PosKey key) {
+        ensurePosSlot(key.slot);
+        if (posSlots[key.slot] != null) {
+            posSlots[key.slot] = null;
+            this.markDirty();
+        }
+    }
+
+    private void removeIntSlot(int slot) {
+        ensureIntSlot(slot);
+        if (intSlotsSet[slot]) {
+            intSlots[slot] = 0;
+            intSlotsSet[slot] = false;
+            this.markDirty();
+        }
+    }
+
+    /**
+     * Grows the int slots to every registered key, moving values loaded under those names out of the maps.
+     */
+    private void ensureIntSlot(int slot) {
+        if (slot < intSlots.length) {
+            return;
+        }
+        int oldLength = intSlots.length;
+        int newLength = StateKey.getIntSlotCount();
+        intSlots = Arrays.copyOf(intSlots, newLength);
+        intSlotsSet = Arrays.copyOf(intSlotsSet, newLength);
+        timerSlots = Arrays.copyOf(timerSlots, newLength);
+        for (int i = oldLength; i < newLength; i++) {
+            StateKey key = StateKey.getIntKey(i);
+            if (key instanceof StateKey.TimerKey timerKey) {
+                Integer value = timers.remove(key.name);
+                if (value != null) {
+                    startTimer(timerKey, value);
+                }
+            } else {
+                Integer value = intValues.remove(key.name);
+                if (value != null) {
+                    intSlots[i] = value;
+                    intSlotsSet[i] = true;
+                }
+            }
+        }
+    }
+
+    private void ensureLongSlot(int slot) {
+        if (slot < longSlots.length) {
+            return;
+        }
+        int oldLength = longSlots.length;
+        int newLength = StateKey.getLongSlotCount();
+        longSlots = Arrays.copyOf(longSlots, newLength);
+        longSlotsSet = Arrays.copyOf(longSlotsSet, newLength);
+        for (int i = oldLength; i < newLength; i++) {
+            Long value = longValues.remove(StateKey.getLongKey(i).name);
+            if (value != null) {
+                longSlots[i] = value;
+                longSlotsSet[i] = true;
+            }
+        }
+    }
+
+    private void ensurePosSlot(int slot) {
+        if (slot < posSlots.length) {
+            return;
+        }
+        int oldLength = posSlots.length;
+        int newLength = StateKey.getPosSlotCount();
+        posSlots = Arrays.copyOf(posSlots, newLength);
+        for (int i = oldLength; i < newLength; i++) {
+            posSlots[i] = positions.remove(StateKey.getPosKey(i).name);
+        }
+    }
+
+    /**
+     * Adds the names of the set keyed values of one kind, for the get*Ids methods.
+     */
+    private void addKeyedNames(Set<String> ids, Class<? extends StateKey> kind) {
+        if (kind == StateKey.LongKey.class) {
+            for (int slot = 0; slot < longSlots.length; slot++) {
+                if (longSlotsSet[slot]) {
+                    ids.add(StateKey.getLongKey(slot).name);
+                }
+            }
+        } else if (kind == StateKey.PosKey.class) {
+            for (int slot = 0; slot < posSlots.length; slot++) {
+                if (posSlots[slot] != null) {
+                    ids.add(StateKey.getPosKey(slot).name);
+                }
+            }
+        } else {
+            for (int slot = 0; slot < intSlots.length; slot++) {
+                StateKey key = StateKey.getIntKey(slot);
+                if (intSlotsSet[slot] && kind.isInstance(key)) {
+                    ids.add(key.name);
+                }
+            }
+        }
+    }
+
     // === POSITION LIST METHODS ===
     
     /**
@@ -485,6 +1149,7 @@ public class HorrorModPersistentState extends PersistentState {
      * @return The list of positions, or an empty list if not found
      */
     public List<BlockPos> getPositionList(String id) {
+        decodePositionList(id);
         return positionLists.getOrDefault(id, new ArrayList<>());
     }
     
@@ -494,6 +1159,7 @@ public class HorrorModPersistentState extends PersistentState {
      * @param positions The list of positions
      */
     public void setPositionList(String id, List<BlockPos> positions) {
+        rawPositionLists.remove(id);
         positionLists.put(id, new ArrayList<>(positions));
         this.markDirty();
     }
@@ -517,6 +1183,7 @@ public class HorrorModPersistentState extends PersistentState {
      * @return True if the position was removed
      */
     public boolean removePositionFromList(String id, BlockPos pos) {
+        decodePositionList(id);
         if (!positionLists.containsKey(id)) {
             return false;
         }
@@ -536,6 +1203,10 @@ public class HorrorModPersistentState extends PersistentState {
      * @param id The ID of the position list to remove
      */
     public void removePositionList(String id) {
+        if (rawPositionLists.contains(id)) {
+            rawPositionLists.remove(id);
+            this.markDirty();
+        }
         if (positionLists.containsKey(id)) {
             positionLists.remove(id);
             this.markDirty();
@@ -547,7 +1218,9 @@ public class HorrorModPersistentState extends PersistentState {
      * @return Set of all position list IDs
      */
     public Set<String> getPositionListIds() {
-        return positionLists.keySet();
+        Set<String> ids = new HashSet<>(positionLists.keySet());
+        ids.addAll(rawPositionLists.getKeys());
+        return ids;
     }
 
     // === 2D INTEGER ARRAY METHODS === // TODO: make several arrays for the strip mine, with sub strip mine id's
@@ -559,6 +1232,7 @@ public class HorrorModPersistentState extends PersistentState {
      * @return The 2D array of integers, or an empty array if not found
      */
     public int[][] getInt2DArray(String id) {
+        decodeInt2DArray(id);
         return int2DArrays.getOrDefault(id, new int[0][0]);
     }
 
@@ -568,6 +1242,7 @@ public class HorrorModPersistentState extends PersistentState {
      * @param array The 2D array of integers
      */
     public void setInt2DArray(String id, int[][] array) {
+        rawInt2DArrays.remove(id);
         int2DArrays.put(id, array);
         this.markDirty();
     }
@@ -578,7 +1253,7 @@ public class HorrorModPersistentState extends PersistentState {
      * @return True if the 2D integer array exists
      */
     public boolean hasInt2DArray(String id) {
-        return int2DArrays.containsKey(id);
+        return int2DArrays.containsKey(id) || rawInt2DArrays.contains(id);
     }
 
     /**
@@ -586,6 +1261,10 @@ public class HorrorModPersistentState extends PersistentState {
      * @param id The ID of the array to remove
      */
     public void removeInt2DArray(String id) {
+        if (rawInt2DArrays.contains(id)) {
+            rawInt2DArrays.remove(id);
+            this.markDirty();
+        }
         if (int2DArrays.containsKey(id)) {
             int2DArrays.remove(id);
             this.markDirty();
@@ -597,6 +1276,25 @@ public class HorrorModPersistentState extends PersistentState {
      * @return Set of all 2D integer array IDs
      */
     public Set<String> getInt2DArrayIds() {
-        return int2DArrays.keySet();
+        Set<String> ids = new HashSet<>(int2DArrays.keySet());
+        ids.addAll(rawInt2DArrays.getKeys());
+        return ids;
+    }
+
+    /**
+     * Gets the saved world edit jobs
+     * @return The jobs as written by JobExecutor; don't change the list
+     */
+    public NbtList getJobs() {
+        return jobs;
+    }
+
+    /**
+     * Replaces the saved world edit jobs
+     * @param jobs The jobs to save
+     */
+    public void setJobs(NbtList jobs) {
+        this.jobs = jobs;
+        this.markDirty();
     }
 }
\ No newline at end of file
@@ -0,0 +1,227 @@
+package horror.blueice129.data;
+
+import net.minecraft.nbt.NbtCompound;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Per-player values of the Horror Mod, saved in one file per player (see PlayerStates)
+ * so the world state doesn't grow with every player who ever joined.
+ * Same string keyed methods as HorrorModPersistentState, without the player UUID in the key.
+ */
+public class PlayerState {
+    private final UUID uuid;
+    private final Map<String, Integer> timers;
+    private final Map<String, Integer> intValues;
+    private final Map<String, Long> longValues;
+    private boolean dirty;
+
+    PlayerState(UUID uuid) {
+        this(uuid, new HashMap<>(), new HashMap<>(), new HashMap<>());
+    }
+
+    private PlayerState(UUID uuid, Map<String, Integer> timers, Map<String, Integer> intValues, Map<String, Long> longValues) {
+        this.uuid = uuid;
+        this.timers = timers;
+        this.intValues = intValues;
+        this.longValues = longValues;
+    }
+
+    /**
+     * Gets the UUID of the player this state belongs to
+     */
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    // === TIMER METHODS ===
+
+    /**
+     * Gets a timer value by its ID
+     * @param id The ID of the timer
+     * @return Current timer value in ticks, or 0 if the timer doesn't exist
+     */
+    public int getTimer(String id) {
+        return timers.getOrDefault(id, 0);
+    }
+
+    /**
+     * Sets a timer value by its ID
+     * @param id The ID of the timer
+     * @param value The new timer value in ticks
+     */
+    public void setTimer(String id, int value) {
+        timers.put(id, value);
+        markDirty();
+    }
+
+    /**
+     * Decrements a timer by the specified amount (won't go below 0)
+     * @param id The ID of the timer
+     * @param amount The amount to decrement the timer by
+     * @return The new timer value
+     */
+    public int decrementTimer(String id, int amount) {
+        int newValue = Math.max(0, getTimer(id) - amount);
+        setTimer(id, newValue);
+        return newValue;
+    }
+
+    /**
+     * Checks if a timer exists
+     * @param id The ID of the timer
+     * @return True if the timer exists
+     */
+    public boolean hasTimer(String id) {
+        return timers.containsKey(id);
+    }
+
+    /**
+     * Removes a timer
+     * @param id The ID of the timer
+     */
+    public void removeTimer(String id) {
+        if (timers.remove(id) != null) {
+            markDirty();
+        }
+    }
+
+    // === INTEGER VALUE METHODS ===
+
+    /**
+     * Gets an integer value by its ID
+     * @param id The ID of the value
+     * @param defaultValue The value to return if not set
+     * @return The integer value, or the default value if not set
+     */
+    public int getIntValue(String id, int defaultValue) {
+        return intValues.getOrDefault(id, defaultValue);
+    }
+
+    /**
+     * Sets an integer value
+     * @param id The ID of the value
+     * @param value The integer value
+     */
+    public void setIntValue(String id, int value) {
+        intValues.put(id, value);
+        markDirty();
+    }
+
+    /**
+     * Removes an integer value
+     * @param id The ID of the value
+     */
+    public void removeIntValue(String id) {
+        if (intValues.remove(id) != null) {
+            markDirty();
+        }
+    }
+
+    // === LONG VALUE METHODS ===
+
+    /**
+     * Gets a long value by its ID
+     * @param id The ID of the value
+     * @param defaultValue The value to return if not set
+     * @return The long value, or the default value if not set
+     */
+    public long getLongValue(String id, long defaultValue) {
+        return longValues.getOrDefault(id, defaultValue);
+    }
+
+    /**
+     * Sets a long value
+     * @param id The ID of the value
+     * @param value The long value
+     */
+    public void setLongValue(String id, long value) {
+        longValues.put(id, value);
+        markDirty();
+    }
+
+    /**
+     * Removes a long value
+     * @param id The ID of the value
+     */
+    public void removeLongValue(String id) {
+        if (longValues.remove(id) != null) {
+            markDirty();
+        }
+    }
+
+    /**
+     * Removes a key from the timers, integer values and long values
+     * @param id The key
+     * @return True if anything was removed
+     */
+    public boolean removeKey(String id) {
+        boolean removed = timers.remove(id) != null;
+        removed |= intValues.remove(id) != null;
+        removed |= longValues.remove(id) != null;
+        if (removed) {
+            markDirty();
+        }
+        return removed;
+    }
+
+    // === SAVING ===
+
+    /**
+     * Marks the state as changed, so it is written on the next save
+     */
+    public void markDirty() {
+        dirty = true;
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    void markSaved() {
+        dirty = false;
+    }
+
+    boolean isEmpty() {
+        return timers.isEmpty() && intValues.isEmpty() && longValues.isEmpty();
+    }
+
+    NbtCompound writeNbt() {
+        NbtCompound nbt = new NbtCompound();
+        nbt.put("timers", writeInts(timers));
+        nbt.put("intValues", writeInts(intValues));
+        NbtCompound longValuesNbt = new NbtCompound();
+        for (Map.Entry<String, Long> entry : longValues.entrySet()) {
+            longValuesNbt.putLong(entry.getKey(), entry.getValue());
+        }
+        nbt.put("longValues", longValuesNbt);
+        return nbt;
+    }
+
+    static PlayerState fromNbt(UUID uuid, NbtCompound nbt) {
+        Map<String, Long> longValues = new HashMap<>();
+        NbtCompound longValuesNbt = nbt.getCompound("longValues");
+        for (String key : longValuesNbt.getKeys()) {
+            longValues.put(key, longValuesNbt.getLong(key));
+        }
+        return new PlayerState(uuid, readInts(nbt.getCompound("timers")), readInts(nbt.getCompound("intValues")), longValues);
+    }
+
+    private static NbtCompound writeInts(Map<String, Integer> values) {
+        NbtCompound nbt = new NbtCompound();
+        for (Map.Entry<String, Integer> entry : values.entrySet()) {
+            nbt.putInt(entry.getKey(), entry.getValue());
+        }
+        return nbt;
+    }
+
+    private static Map<String, Integer> readInts(NbtCompound nbt) {
+        Map<String, Integer> values = new HashMap<>();
+        for (String key : nbt.getKeys()) {
+            values.put(key, nbt.getInt(key));
+        }
+        return values;
+    }
+}
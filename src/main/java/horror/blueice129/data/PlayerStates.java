@@ -0,0 +1,242 @@
+package horror.blueice129.data;
+
+import horror.blueice129.HorrorMod129;
+import horror.blueice129.scheduler.TickDispatcher;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.WorldSavePath;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Loads and saves the per-player states, one file per player in data/horror-mod-129_players/<uuid>.dat.
+ * A player's state is loaded when they join (or when it's first asked for), saved with the world state,
+ * and written and dropped from memory at the end of the tick they disconnect in.
+ *
+ * Server thread only.
+ */
+public class PlayerStates {
+    private static final String DIRECTORY = HorrorMod129.MOD_ID + "_players";
+
+    private static final Map<UUID, PlayerState> LOADED = new HashMap<>();
+    // Loaded states of players that aren't online, written and dropped at the end of the tick
+    private static final Set<UUID> PENDING_EVICTION = new HashSet<>();
+    private static File directory;
+
+    /**
+     * Registers the join, disconnect and server events. Call during mod initialization, before the schedulers.
+     */
+    public static void register() {
+        ServerLifecycleEvents.SERVER_STARTING.register(server ->
+                directory = server.getSavePath(WorldSavePath.ROOT).resolve("data").resolve(DIRECTORY).toFile());
+        ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
+            PENDING_EVICTION.remove(handler.player.getUuid());
+            get(server, handler.player.getUuid());
+        });
+        // Other disconnect handlers may still write to the state, so it's only evicted at the end of the tick
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> PENDING_EVICTION.add(handler.player.getUuid()));
+        TickDispatcher.everyTick("player_state_eviction", false, context -> evictOffline(context.server));
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            saveAll();
+            LOADED.clear();
+            PENDING_EVICTION.clear();
+            directory = null;
+        });
+
+        HorrorMod129.LOGGER.info("Registered PlayerStates");
+    }
+
+    /**
+     * Gets a player's state, loading it if needed.
+     *
+     * @param player The player
+     * @return The player's state
+     */
+    public static PlayerState get(ServerPlayerEntity player) {
+        return get(player.getServer(), player.getUuid());
+    }
+
+    /**
+     * Gets a player's state, loading it if needed. States of offline players are dropped again at the end of the tick.
+     *
+     * @param server The Minecraft server instance
+     * @param uuid The player's UUID
+     * @return The player's state (empty if they have none saved)
+     */
+    public static PlayerState get(MinecraftServer server, UUID uuid) {
+        PlayerState state = LOADED.get(uuid);
+        if (state == null) {
+            state = load(uuid);
+            LOADED.put(uuid, state);
+        }
+        if (server.getPlayerManager().getPlayer(uuid) == null) {
+            PENDING_EVICTION.add(uuid);
+        }
+        return state;
+    }
+
+    /**
+     * Writes every changed player state. Called when the world state is saved.
+     */
+    public static void saveAll() {
+        for (PlayerState state : LOADED.values()) {
+            if (state.isDirty()) {
+                save(state);
+            }
+        }
+    }
+
+    /**
+     * Moves per-player values that older versions kept in the world state (under a prefix followed by the UUID)
+     * into the player states.
+     *
+     * @param server The Minecraft server instance
+     * @param prefix The prefix of the world state keys, e.g. "playerLogoutTime"
+     * @param key The key to store the value under in the player state
+     * @return The number of values moved
+     */
+    public static int migrateFromWorldState(MinecraftServer server, String prefix, String key) {
+        HorrorModPersistentState worldState = HorrorModPersistentState.getServerState(server);
+        int moved = 0;
+        for (String id : new ArrayList<>(worldState.getTimerIds())) {
+            PlayerState state = getForLegacyKey(server, id, prefix);
+            if (state != null) {
+                state.setTimer(key, worldState.getTimer(id));
+                worldState.removeTimer(id);
+                moved++;
+            }
+        }
+        for (String id : new ArrayList<>(worldState.getIntValueIds())) {
+            PlayerState state = getForLegacyKey(server, id, prefix);
+            if (state != null) {
+                state.setIntValue(key, worldState.getIntValue(id, 0));
+                worldState.removeIntValue(id);
+                moved++;
+            }
+        }
+        for (String id : new ArrayList<>(worldState.getLongValueIds())) {
+            PlayerState state = getForLegacyKey(server, id, prefix);
+            if (state != null) {
+                state.setLongValue(key, worldState.getLongValue(id, 0L));
+                worldState.removeLongValue(id);
+                moved++;
+            }
+        }
+        if (moved > 0) {
+            HorrorMod129.LOGGER.info("Moved {} '{}' values from the world state to player states", moved, prefix);
+        }
+        return moved;
+    }
+
+    /**
+     * Lists the players that have a saved state file.
+     */
+    static List<UUID> getSavedPlayers() {
+        List<UUID> players = new ArrayList<>();
+        File[] files = directory == null ? null : directory.listFiles((dir, name) -> name.endsWith(".dat"));
+        if (files == null) {
+            return players;
+        }
+        for (File file : files) {
+            try {
+                players.add(UUID.fromString(file.getName().substring(0, file.getName().length() - 4)));
+            } catch (IllegalArgumentException e) {
+                // Not a player state
+            }
+        }
+        return players;
+    }
+
+    /**
+     * Gets when a player's state file was last written, in milliseconds since the epoch (0 if there is none).
+     */
+    static long getLastSaved(UUID uuid) {
+        File file = getFile(uuid);
+        return file == null ? 0L : file.lastModified();
+    }
+
+    /**
+     * Checks if a player's state is in memory.
+     */
+    static boolean isLoaded(UUID uuid) {
+        return LOADED.containsKey(uuid);
+    }
+
+    private static PlayerState getForLegacyKey(MinecraftServer server, String id, String prefix) {
+        if (!id.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return get(server, UUID.fromString(id.substring(prefix.length())));
+        } catch (IllegalArgumentException e) {
+            return null; // Another key that shares the prefix
+        }
+    }
+
+    private static void evictOffline(MinecraftServer server) {
+        if (PENDING_EVICTION.isEmpty()) {
+            return;
+        }
+        for (UUID uuid : PENDING_EVICTION) {
+            if (server.getPlayerManager().getPlayer(uuid) != null) {
+                continue; // Rejoined within the tick
+            }
+            PlayerState state = LOADED.remove(uuid);
+            if (state != null && state.isDirty()) {
+                save(state);
+            }
+        }
+        PENDING_EVICTION.clear();
+    }
+
+    private static PlayerState load(UUID uuid) {
+        File file = getFile(uuid);
+        if (file == null || !file.exists()) {
+            return new PlayerState(uuid);
+        }
+        try {
+            return PlayerState.fromNbt(uuid, NbtIo.readCompressed(file));
+        } catch (IOException e) {
+            HorrorMod129.LOGGER.error("Could not load player state " + file, e);
+            return new PlayerState(uuid);
+        }
+    }
+
+    private static void save(PlayerState state) {
+        File file = getFile(state.getUuid());
+        if (file == null) {
+            return;
+        }
+        try {
+            if (state.isEmpty()) {
+                // Nothing left to keep, don't leave an empty file per player behind
+                if (file.exists() && !file.delete()) {
+                    HorrorMod129.LOGGER.warn("Could not delete empty player state " + file);
+                }
+            } else {
+                file.getParentFile().mkdirs();
+                NbtCompound nbt = state.writeNbt();
+                NbtIo.writeCompressed(nbt, file);
+            }
+            state.markSaved();
+        } catch (IOException e) {
+            HorrorMod129.LOGGER.error("Could not save player state " + file, e);
+        }
+    }
+
+    private static File getFile(UUID uuid) {
+        return directory == null ? null : new File(directory, uuid + ".dat");
+    }
+}
@@ -0,0 +1,77 @@
+package horror.blueice129.data;
+
+import horror.blueice129.HorrorMod129;
+import horror.blueice129.config.ConfigManager;
+import horror.blueice129.scheduler.TickDispatcher;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.minecraft.server.MinecraftServer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Checkpoints values that features keep in plain fields instead of the persistent state, because they change
+ * every few ticks and only need to survive a restart roughly (footstep playback progress and the like).
+ * Each feature registers how to load its fields from the persistent state and how to write them back.
+ * They are loaded when the server starts, and written every sessionCheckpointSeconds (see ModConfig),
+ * before each world save and on shutdown.
+ *
+ * Server thread only.
+ */
+public class SessionCheckpoints {
+    private static final List<Consumer<HorrorModPersistentState>> RESTORERS = new ArrayList<>();
+    private static final List<Consumer<HorrorModPersistentState>> CHECKPOINTERS = new ArrayList<>();
+    private static int ticksSinceCheckpoint;
+
+    /**
+     * Registers the server events that load and checkpoint the session values. Call during mod initialization.
+     */
+    public static void register() {
+        ServerLifecycleEvents.SERVER_STARTED.register(SessionCheckpoints::restoreAll);
+        TickDispatcher.everyTick("session_checkpoints", false, context -> {
+            if (++ticksSinceCheckpoint >= getInterval()) {
+                checkpointAll(context.state);
+            }
+        });
+        ServerLifecycleEvents.SERVER_STOPPING.register(server ->
+                checkpointAll(HorrorModPersistentState.getServerState(server)));
+
+        HorrorMod129.LOGGER.info("Registered SessionCheckpoints");
+    }
+
+    /**
+     * Adds a feature's session values.
+     *
+     * @param restore Loads the fields from the persistent state, resetting them when nothing is saved
+     * @param checkpoint Writes the fields into the persistent state (ideally only when they changed)
+     */
+    public static void add(Consumer<HorrorModPersistentState> restore, Consumer<HorrorModPersistentState> checkpoint) {
+        RESTORERS.add(restore);
+        CHECKPOINTERS.add(checkpoint);
+    }
+
+    /**
+     * Writes every feature's session values into the persistent state.
+     *
+     * @param state The persistent state
+     */
+    static void checkpointAll(HorrorModPersistentState state) {
+        ticksSinceCheckpoint = 0;
+        for (Consumer<HorrorModPersistentState> checkpoint : CHECKPOINTERS) {
+            checkpoint.accept(state);
+        }
+    }
+
+    private static void restoreAll(MinecraftServer server) {
+        HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
+        for (Consumer<HorrorModPersistentState> restore : RESTORERS) {
+            restore.accept(state);
+        }
+        ticksSinceCheckpoint = 0;
+    }
+
+    private static int getInterval() {
+        return Math.max(1, ConfigManager.getConfig().sessionCheckpointSeconds) * 20;
+    }
+}
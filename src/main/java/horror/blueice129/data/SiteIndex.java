@@ -0,0 +1,209 @@
+package horror.blueice129.data;
+
+import horror.blueice129.HorrorMod129;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.WorldSavePath;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Places the mod changed in the world (pre-mined caves, small structures), indexed on a grid of
+ * 256x256 block regions so spacing checks only look at the regions around a position
+ * instead of every site ever placed.
+ *
+ * Each region is saved in its own file in data/horror-mod-129_sites/r.<x>.<z>.dat, and only regions that
+ * got new sites are written on a world save. All regions are loaded when the server starts; a region holds
+ * one long array of packed positions per site type.
+ *
+ * Server thread only.
+ */
+public class SiteIndex {
+    private static final String DIRECTORY = HorrorMod129.MOD_ID + "_sites";
+    private static final int REGION_SHIFT = 8;
+
+    /**
+     * Kinds of sites. Spacing rules are up to the callers, so one type can keep its distance from another.
+     */
+    public enum SiteType {
+        PREMINED_CAVE("premined_caves"),
+        STRUCTURE("structures");
+
+        private final String nbtKey;
+
+        SiteType(String nbtKey) {
+            this.nbtKey = nbtKey;
+        }
+    }
+
+    private static class Region {
+        final LongArrayList[] sites = new LongArrayList[SiteType.values().length];
+        boolean dirty;
+
+        LongArrayList get(SiteType type) {
+            return sites[type.ordinal()];
+        }
+    }
+
+    private static final Long2ObjectMap<Region> REGIONS = new Long2ObjectOpenHashMap<>();
+    private static File directory;
+
+    /**
+     * Registers the server events that load and save the regions. Call during mod initialization.
+     */
+    public static void register() {
+        ServerLifecycleEvents.SERVER_STARTING.register(SiteIndex::loadAll);
+        ServerLifecycleEvents.SERVER_STARTED.register(SiteIndex::migrateCaveList);
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            saveAll();
+            REGIONS.clear();
+            directory = null;
+        });
+
+        HorrorMod129.LOGGER.info("Registered SiteIndex");
+    }
+
+    /**
+     * Records a site.
+     *
+     * @param type The kind of site
+     * @param pos The site's anchor position (e.g. a cave's entrance block)
+     */
+    public static void add(SiteType type, BlockPos pos) {
+        long key = ChunkPos.toLong(pos.getX() >> REGION_SHIFT, pos.getZ() >> REGION_SHIFT);
+        Region region = REGIONS.computeIfAbsent(key, k -> new Region());
+        LongArrayList sites = region.get(type);
+        if (sites == null) {
+            sites = new LongArrayList();
+            region.sites[type.ordinal()] = sites;
+        }
+        sites.add(pos.asLong());
+        region.dirty = true;
+    }
+
+    /**
+     * Checks if there is a site of a type within a distance, for minimum spacing rules.
+     *
+     * @param type The kind of site
+     * @param pos The position to check around
+     * @param radius The distance in blocks
+     * @return True if a site is closer than the radius
+     */
+    public static boolean anyWithin(SiteType type, BlockPos pos, int radius) {
+        double radiusSq = (double) radius * radius;
+        int minX = (pos.getX() - radius) >> REGION_SHIFT;
+        int maxX = (pos.getX() + radius) >> REGION_SHIFT;
+        int minZ = (pos.getZ() - radius) >> REGION_SHIFT;
+        int maxZ = (pos.getZ() + radius) >> REGION_SHIFT;
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                Region region = REGIONS.get(ChunkPos.toLong(x, z));
+                LongArrayList sites = region == null ? null : region.get(type);
+                if (sites == null) {
+                    continue;
+                }
+                for (int i = 0; i < sites.size(); i++) {
+                    if (getSquaredDistance(pos, sites.getLong(i)) < radiusSq) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes every region that got new sites. Called when the world state is saved.
+     */
+    public static void saveAll() {
+        if (directory == null) {
+            return;
+        }
+        for (Long2ObjectMap.Entry<Region> entry : REGIONS.long2ObjectEntrySet()) {
+            Region region = entry.getValue();
+            if (!region.dirty) {
+                continue;
+            }
+            File file = getFile(entry.getLongKey());
+            try {
+                file.getParentFile().mkdirs();
+                NbtCompound nbt = new NbtCompound();
+                for (SiteType type : SiteType.values()) {
+                    LongArrayList sites = region.get(type);
+                    if (sites != null) {
+                        nbt.putLongArray(type.nbtKey, sites.toLongArray());
+                    }
+                }
+                NbtIo.writeCompressed(nbt, file);
+                region.dirty = false;
+            } catch (IOException e) {
+                HorrorMod129.LOGGER.error("Could not save site region " + file, e);
+            }
+        }
+    }
+
+    private static double getSquaredDistance(BlockPos pos, long site) {
+        double dx = pos.getX() - BlockPos.unpackLongX(site);
+        double dy = pos.getY() - BlockPos.unpackLongY(site);
+        double dz = pos.getZ() - BlockPos.unpackLongZ(site);
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static void loadAll(MinecraftServer server) {
+        directory = server.getSavePath(WorldSavePath.ROOT).resolve("data").resolve(DIRECTORY).toFile();
+        File[] files = directory.listFiles((dir, name) -> name.startsWith("r.") && name.endsWith(".dat"));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String[] parts = file.getName().split("\\.");
+            try {
+                long key = ChunkPos.toLong(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+                NbtCompound nbt = NbtIo.readCompressed(file);
+                Region region = new Region();
+                for (SiteType type : SiteType.values()) {
+                    if (nbt.contains(type.nbtKey)) {
+                        long[] sites = nbt.getLongArray(type.nbtKey);
+                        region.sites[type.ordinal()] = new LongArrayList(sites);
+                    }
+                }
+                REGIONS.put(key, region);
+            } catch (IOException | RuntimeException e) {
+                HorrorMod129.LOGGER.error("Could not load site region " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Moves the cave list older versions kept in the world state into the index.
+     */
+    private static void migrateCaveList(MinecraftServer server) {
+        HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
+        List<BlockPos> caves = state.getPositionList("preminedCaveLocations");
+        if (caves.isEmpty()) {
+            return;
+        }
+        for (BlockPos cave : caves) {
+            // Skip caves already moved by a run that didn't get to save the world state
+            if (!anyWithin(SiteType.PREMINED_CAVE, cave, 1)) {
+                add(SiteType.PREMINED_CAVE, cave);
+            }
+        }
+        state.removePositionList("preminedCaveLocations");
+        saveAll();
+        HorrorMod129.LOGGER.info("Moved {} pre-mined cave locations from the world state to the site index", caves.size());
+    }
+
+    private static File getFile(long key) {
+        return new File(directory, "r." + ChunkPos.getPackedX(key) + "." + ChunkPos.getPackedZ(key) + ".dat");
+    }
+}
@@ -0,0 +1,167 @@
+package horror.blueice129.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typed handle to a fixed value in HorrorModPersistentState.
+ * Declare each key once as a static final field of the feature that owns it, e.g.
+ * {@code private static final StateKey.TimerKey TIMER = StateKey.timer("caveMinerTimer");}
+ * The state keeps registered values in arrays indexed by the key's slot, so reading and writing
+ * them in the tick loop doesn't hash strings or box numbers.
+ *
+ * The name is still what is saved to NBT, in the same place as the string based methods
+ * (a timer key named "x" is the timer "x"), so existing worlds load unchanged and the
+ * string based methods and debug commands see the same values.
+ * Keys built at runtime (per player UUID) should keep using the string based methods.
+ */
+public abstract class StateKey {
+    // Keys by slot; timers and int values share the int slots, so they're numbered together
+    private static final List<StateKey> INT_SLOTS = new ArrayList<>();
+    private static final List<StateKey> LONG_SLOTS = new ArrayList<>();
+    private static final List<StateKey> POS_SLOTS = new ArrayList<>();
+
+    private static final Map<String, TimerKey> TIMERS = new HashMap<>();
+    private static final Map<String, IntKey> INTS = new HashMap<>();
+    private static final Map<String, LongKey> LONGS = new HashMap<>();
+    private static final Map<String, PosKey> POSITIONS = new HashMap<>();
+
+    final String name;
+    final int slot;
+
+    private StateKey(String name, int slot) {
+        this.name = name;
+        this.slot = slot;
+    }
+
+    /**
+     * Gets the name the value is saved under.
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /** A countdown timer, saved with the other timers. */
+    public static final class TimerKey extends StateKey {
+        private TimerKey(String name, int slot) {
+            super(name, slot);
+        }
+    }
+
+    /** An int value, saved with the other int values. */
+    public static final class IntKey extends StateKey {
+        private IntKey(String name, int slot) {
+            super(name, slot);
+        }
+    }
+
+    /** A long value, saved with the other long values. */
+    public static final class LongKey extends StateKey {
+        private LongKey(String name, int slot) {
+            super(name, slot);
+        }
+    }
+
+    /** A block position, saved with the other positions. */
+    public static final class PosKey extends StateKey {
+        private PosKey(String name, int slot) {
+            super(name, slot);
+        }
+    }
+
+    /**
+     * Gets the timer key with a name, registering it on first use.
+     *
+     * @param name The timer ID
+     * @return The key (the same instance for the same name)
+     */
+    public static synchronized TimerKey timer(String name) {
+        return TIMERS.computeIfAbsent(name, n -> register(INT_SLOTS, new TimerKey(n, INT_SLOTS.size())));
+    }
+
+    /**
+     * Gets the int value key with a name, registering it on first use.
+     *
+     * @param name The value ID
+     * @return The key (the same instance for the same name)
+     */
+    public static synchronized IntKey intValue(String name) {
+        return INTS.computeIfAbsent(name, n -> register(INT_SLOTS, new IntKey(n, INT_SLOTS.size())));
+    }
+
+    /**
+     * Gets the long value key with a name, registering it on first use.
+     *
+     * @param name The value ID
+     * @return The key (the same instance for the same name)
+     */
+    public static synchronized LongKey longValue(String name) {
+        return LONGS.computeIfAbsent(name, n -> register(LONG_SLOTS, new LongKey(n, LONG_SLOTS.size())));
+    }
+
+    /**
+     * Gets the position key with a name, registering it on first use.
+     *
+     * @param name The position ID
+     * @return The key (the same instance for the same name)
+     */
+    public static synchronized PosKey position(String name) {
+        return POSITIONS.computeIfAbsent(name, n -> register(POS_SLOTS, new PosKey(n, POS_SLOTS.size())));
+    }
+
+    // Lookups for the string based methods, null if the name has no key
+
+    static synchronized TimerKey findTimer(String name) {
+        return TIMERS.get(name);
+    }
+
+    static synchronized IntKey findIntValue(String name) {
+        return INTS.get(name);
+    }
+
+    static synchronized LongKey findLongValue(String name) {
+        return LONGS.get(name);
+    }
+
+    static synchronized PosKey findPosition(String name) {
+        return POSITIONS.get(name);
+    }
+
+    private static <K extends StateKey> K register(List<StateKey> slots, K key) {
+        slots.add(key);
+        return key;
+    }
+
+    // Slot tables, for growing a state's arrays when keys are added
+
+    static synchronized int getIntSlotCount() {
+        return INT_SLOTS.size();
+    }
+
+    static synchronized int getLongSlotCount() {
+        return LONG_SLOTS.size();
+    }
+
+    static synchronized int getPosSlotCount() {
+        return POS_SLOTS.size();
+    }
+
+    static synchronized StateKey getIntKey(int slot) {
+        return INT_SLOTS.get(slot);
+    }
+
+    static synchronized StateKey getLongKey(int slot) {
+        return LONG_SLOTS.get(slot);
+    }
+
+    static synchronized StateKey getPosKey(int slot) {
+        return POS_SLOTS.get(slot);
+    }
+}
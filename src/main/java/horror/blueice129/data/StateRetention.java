@@ -0,0 +1,262 @@
+package horror.blueice129.data;
+
+import horror.blueice129.HorrorMod129;
+import horror.blueice129.scheduler.TickDispatcher;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.minecraft.server.MinecraftServer;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Removes saved values nothing will read again, so the world state and player states don't only grow.
+ * Features register how long their values are kept:
+ * <ul>
+ *   <li>Owner bound world state values are kept while their owner says they're in use (e.g. while an event runs),
+ *       which cleans up what a crash in the middle of an event leaves behind.</li>
+ *   <li>Per-player values expire when the player's state hasn't been saved for a time (they haven't been online).
+ *       A player state left empty has its file deleted.</li>
+ * </ul>
+ * Values without a policy are kept. Every 10 minutes a sweep checks the registered world state values
+ * and the saved player states, a few per tick so it never stalls the server.
+ *
+ * Server thread only.
+ */
+public class StateRetention {
+    private static final int SWEEP_INTERVAL = 20 * 60 * 10; // 10 minutes
+    private static final int WORLD_KEYS_PER_TICK = 16;
+    private static final int PLAYERS_PER_TICK = 2; // each may read a player state file
+
+    private static final Map<String, Predicate<HorrorModPersistentState>> OWNED_KEYS = new LinkedHashMap<>();
+    private static final Map<String, Long> PLAYER_KEY_TTLS = new LinkedHashMap<>();
+
+    // The sweep in progress
+    private static final ArrayDeque<String> pendingKeys = new ArrayDeque<>();
+    private static final ArrayDeque<UUID> pendingPlayers = new ArrayDeque<>();
+    private static Report current = new Report();
+    private static boolean sweeping;
+    private static int ticksUntilSweep = SWEEP_INTERVAL;
+
+    private static Report total = new Report();
+
+    /**
+     * What a sweep removed.
+     */
+    public static class Report {
+        public int worldKeys;
+        public int playerKeys;
+        public int playerFiles;
+        public long bytes; // estimated NBT size of the removed values
+
+        void add(Report other) {
+            worldKeys += other.worldKeys;
+            playerKeys += other.playerKeys;
+            playerFiles += other.playerFiles;
+            bytes += other.bytes;
+        }
+
+        boolean isEmpty() {
+            return worldKeys == 0 && playerKeys == 0;
+        }
+
+        @Override
+        public String toString() {
+            return worldKeys + " world state values, " + playerKeys + " player values (" + playerFiles
+                    + " player files), about " + bytes + " bytes";
+        }
+    }
+
+    /**
+     * Adds the tick task that runs the sweeps. Call during mod initialization.
+     */
+    public static void register() {
+        TickDispatcher.everyTick("state_retention", false, StateRetention::onServerTick);
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            pendingKeys.clear();
+            pendingPlayers.clear();
+            sweeping = false;
+            ticksUntilSweep = SWEEP_INTERVAL;
+            total = new Report();
+        });
+
+        HorrorMod129.LOGGER.info("Registered StateRetention");
+    }
+
+    /**
+     * Keeps world state values only while their owner uses them. The values are removed (of any type:
+     * timer, int, long, position, position list or 2D array) when the owner check fails during a sweep.
+     *
+     * @param inUse Checks if the owner still needs the values
+     * @param names The names of the values
+     */
+    public static void bindToOwner(Predicate<HorrorModPersistentState> inUse, String... names) {
+        for (String name : names) {
+            OWNED_KEYS.put(name, inUse);
+        }
+    }
+
+    /**
+     * Removes per-player values from the states of players who haven't been online for a time.
+     *
+     * @param ttlMillis How long after the player state was last saved the values expire (real time)
+     * @param names The keys in PlayerState
+     */
+    public static void expirePlayerKeys(long ttlMillis, String... names) {
+        for (String name : names) {
+            PLAYER_KEY_TTLS.put(name, ttlMillis);
+        }
+    }
+
+    /**
+     * Runs a full sweep right away.
+     *
+     * @param server The Minecraft server instance
+     * @return What the sweep removed
+     */
+    public static Report sweepNow(MinecraftServer server) {
+        startSweep();
+        HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
+        while (!pendingKeys.isEmpty()) {
+            checkWorldKey(state, pendingKeys.poll());
+        }
+        while (!pendingPlayers.isEmpty()) {
+            checkPlayer(server, pendingPlayers.poll());
+        }
+        return finishSweep();
+    }
+
+    /**
+     * Gets what the sweeps removed since the server started.
+     */
+    public static Report getTotal() {
+        return total;
+    }
+
+    private static void onServerTick(TickDispatcher.TickContext context) {
+        if (!sweeping) {
+            if (--ticksUntilSweep <= 0) {
+                startSweep();
+            }
+            return;
+        }
+
+        MinecraftServer server = context.server;
+        HorrorModPersistentState state = context.state;
+        for (int i = 0; i < WORLD_KEYS_PER_TICK && !pendingKeys.isEmpty(); i++) {
+            checkWorldKey(state, pendingKeys.poll());
+        }
+        for (int i = 0; i < PLAYERS_PER_TICK && !pendingPlayers.isEmpty(); i++) {
+            checkPlayer(server, pendingPlayers.poll());
+        }
+        if (pendingKeys.isEmpty() && pendingPlayers.isEmpty()) {
+            finishSweep();
+        }
+    }
+
+    private static void startSweep() {
+        pendingKeys.clear();
+        pendingPlayers.clear();
+        pendingKeys.addAll(OWNED_KEYS.keySet());
+        if (!PLAYER_KEY_TTLS.isEmpty()) {
+            pendingPlayers.addAll(PlayerStates.getSavedPlayers());
+        }
+        current = new Report();
+        sweeping = true;
+    }
+
+    private static Report finishSweep() {
+        Report report = current;
+        total.add(report);
+        sweeping = false;
+        ticksUntilSweep = SWEEP_INTERVAL;
+        if (!report.isEmpty()) {
+            HorrorMod129.LOGGER.info("StateRetention: removed " + report);
+        }
+        return report;
+    }
+
+    private static void checkWorldKey(HorrorModPersistentState state, String name) {
+        Predicate<HorrorModPersistentState> inUse = OWNED_KEYS.get(name);
+        if (inUse == null || inUse.test(state)) {
+            return;
+        }
+        long bytes = removeWorldKey(state, name);
+        if (bytes > 0) {
+            current.worldKeys++;
+            current.bytes += bytes;
+        }
+    }
+
+    /**
+     * Removes a name from every kind of value.
+     *
+     * @return The estimated NBT size of what was removed, 0 if nothing was
+     */
+    private static long removeWorldKey(HorrorModPersistentState state, String name) {
+        // Each NBT entry costs a type byte and the name, plus the value
+        long entry = 3 + name.length();
+        long bytes = 0;
+        if (state.hasTimer(name)) {
+            state.removeTimer(name);
+            bytes += entry + 4;
+        }
+        if (state.hasIntValue(name)) {
+            state.removeIntValue(name);
+            bytes += entry + 4;
+        }
+        if (state.hasLongValue(name)) {
+            state.removeLongValue(name);
+            bytes += entry + 8;
+        }
+        if (state.hasPosition(name)) {
+            state.removePosition(name);
+            bytes += entry + 25;
+        }
+        if (state.getPositionListIds().contains(name)) {
+            bytes += entry + 4 + 8L * state.getPositionList(name).size();
+            state.removePositionList(name);
+        }
+        if (state.hasInt2DArray(name)) {
+            int[][] array = state.getInt2DArray(name);
+            long values = 1 + array.length;
+            for (int[] row : array) {
+                values += row.length;
+            }
+            bytes += entry + 4 + 4 * values;
+            state.removeInt2DArray(name);
+        }
+        return bytes;
+    }
+
+    private static void checkPlayer(MinecraftServer server, UUID uuid) {
+        // Players who are online (or whose state is in use this tick) are kept
+        if (PlayerStates.isLoaded(uuid) || server.getPlayerManager().getPlayer(uuid) != null) {
+            return;
+        }
+        long age = System.currentTimeMillis() - PlayerStates.getLastSaved(uuid);
+        long shortestTtl = Long.MAX_VALUE;
+        for (long ttl : PLAYER_KEY_TTLS.values()) {
+            shortestTtl = Math.min(shortestTtl, ttl);
+        }
+        if (age < shortestTtl) {
+            return; // Nothing expired yet, don't read the file
+        }
+
+        // Loaded states of offline players are saved (or deleted if empty) and dropped at the end of the tick
+        PlayerState playerState = PlayerStates.get(server, uuid);
+        boolean removed = false;
+        for (Map.Entry<String, Long> entry : PLAYER_KEY_TTLS.entrySet()) {
+            if (age >= entry.getValue() && playerState.removeKey(entry.getKey())) {
+                current.playerKeys++;
+                current.bytes += 3 + entry.getKey().length() + 8;
+                removed = true;
+            }
+        }
+        if (removed && playerState.isEmpty()) {
+            current.playerFiles++;
+        }
+    }
+}
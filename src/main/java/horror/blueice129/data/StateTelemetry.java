@@ -0,0 +1,270 @@
+package horror.blueice129.data;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import horror.blueice129.HorrorMod129;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.WorldSavePath;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures how the world state is saved and loaded, and which features keep changing it:
+ * encode and load times, the size of each NBT section, entry counts, markDirty calls per second
+ * by calling class, and how long ago the state file was last written.
+ * Shown by /horror state stats, and written as JSON to data/horror-mod-129_state_stats.json by /horror state stats dump.
+ *
+ * markDirty callers are found with a stack walk on one call in DIRTY_SAMPLE_RATE, so the counts per feature
+ * are estimates; the total is exact. Encode times may be recorded on the state saver thread.
+ */
+public class StateTelemetry {
+    private static final String DUMP_FILE = HorrorMod129.MOD_ID + "_state_stats.json";
+    private static final int DIRTY_SAMPLE_RATE = 16;
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    private static final Timing WRITE = new Timing();
+    private static final Timing LOAD = new Timing();
+
+    // Server thread only
+    private static long dirtyCalls;
+    private static final Map<String, Long> SAMPLED_DIRTY_CALLERS = new HashMap<>();
+    private static long windowStart = System.nanoTime();
+
+    private static volatile long lastSaveMillis; // 0 if not saved this session
+    private static volatile long lastFileBytes = -1;
+
+    /**
+     * Count, total, longest and last duration of an operation.
+     */
+    private static class Timing {
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+        private long lastNanos;
+
+        synchronized void add(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            lastNanos = nanos;
+        }
+
+        synchronized void reset() {
+            count = 0;
+            totalNanos = 0;
+            maxNanos = 0;
+            lastNanos = 0;
+        }
+
+        synchronized String describe() {
+            if (count == 0) {
+                return "never";
+            }
+            return String.format("%d times, last %.2f ms, avg %.2f ms, max %.2f ms",
+                    count, lastNanos / 1e6, totalNanos / 1e6 / count, maxNanos / 1e6);
+        }
+
+        synchronized JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("count", count);
+            json.addProperty("lastMs", lastNanos / 1e6);
+            json.addProperty("avgMs", count == 0 ? 0 : totalNanos / 1e6 / count);
+            json.addProperty("maxMs", maxNanos / 1e6);
+            return json;
+        }
+    }
+
+    /**
+     * Registers the server event that starts the measurements over for each world. Call during mod initialization.
+     */
+    public static void register() {
+        // Before the worlds load, so the state's load time counts
+        ServerLifecycleEvents.SERVER_STARTING.register(server -> {
+            reset();
+            LOAD.reset();
+            lastSaveMillis = 0;
+            lastFileBytes = -1;
+        });
+
+        HorrorMod129.LOGGER.info("Registered StateTelemetry");
+    }
+
+    static void recordWrite(long nanos) {
+        WRITE.add(nanos);
+    }
+
+    static void recordLoad(long nanos) {
+        LOAD.add(nanos);
+    }
+
+    /**
+     * Counts a markDirty call, attributing every DIRTY_SAMPLE_RATE-th one to the first class outside this package.
+     */
+    static void recordDirty() {
+        if (dirtyCalls++ % DIRTY_SAMPLE_RATE != 0) {
+            return;
+        }
+        String caller = STACK_WALKER.walk(frames -> frames
+                .map(StackWalker.StackFrame::getClassName)
+                .filter(name -> !name.startsWith("horror.blueice129.data.") && !name.startsWith("java."))
+                .findFirst()
+                .orElse("unknown"));
+        caller = caller.substring(caller.lastIndexOf('.') + 1);
+        SAMPLED_DIRTY_CALLERS.merge(caller, 1L, Long::sum);
+    }
+
+    /**
+     * Records that the state file was written.
+     *
+     * @param file The state file
+     */
+    static void recordSaved(File file) {
+        lastSaveMillis = System.currentTimeMillis();
+        lastFileBytes = file.length();
+    }
+
+    /**
+     * Starts a new window for the markDirty rates and clears the encode times.
+     */
+    public static void reset() {
+        dirtyCalls = 0;
+        SAMPLED_DIRTY_CALLERS.clear();
+        windowStart = System.nanoTime();
+        WRITE.reset();
+    }
+
+    /**
+     * Describes the current measurements. Encodes the state once to measure its sections.
+     *
+     * @param state The world state
+     * @return Lines to show
+     */
+    public static List<String> getReport(HorrorModPersistentState state) {
+        List<String> lines = new ArrayList<>();
+        lines.add("Encode: " + WRITE.describe());
+        lines.add("Load: " + LOAD.describe());
+        lines.add("Last save: " + describeLastSave());
+
+        StringBuilder sections = new StringBuilder("Section bytes:");
+        for (Map.Entry<String, Integer> entry : measureSections(state).entrySet()) {
+            sections.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        lines.add(sections.toString());
+
+        StringBuilder entries = new StringBuilder("Entries:");
+        for (Map.Entry<String, Integer> entry : countEntries(state).entrySet()) {
+            entries.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        lines.add(entries.toString());
+
+        double seconds = getWindowSeconds();
+        lines.add(String.format("markDirty: %d calls in %.0f s (%.2f/s)", dirtyCalls, seconds, dirtyCalls / seconds));
+        for (Map.Entry<String, Double> entry : getDirtyRates(seconds).entrySet()) {
+            lines.add(String.format("  %s: ~%.2f/s", entry.getKey(), entry.getValue()));
+        }
+        return lines;
+    }
+
+    /**
+     * Writes the current measurements as JSON into the world's data folder.
+     *
+     * @param server The Minecraft server instance
+     * @param state The world state
+     * @return The file written
+     * @throws IOException If the file can't be written
+     */
+    public static File writeDump(MinecraftServer server, HorrorModPersistentState state) throws IOException {
+        JsonObject json = new JsonObject();
+        json.addProperty("timestamp", System.currentTimeMillis());
+        json.add("encode", WRITE.toJson());
+        json.add("load", LOAD.toJson());
+        json.addProperty("lastSaveMillis", lastSaveMillis);
+        json.addProperty("lastFileBytes", lastFileBytes);
+
+        JsonObject sections = new JsonObject();
+        measureSections(state).forEach(sections::addProperty);
+        json.add("sectionBytes", sections);
+
+        JsonObject entries = new JsonObject();
+        countEntries(state).forEach(entries::addProperty);
+        json.add("entries", entries);
+
+        double seconds = getWindowSeconds();
+        JsonObject dirty = new JsonObject();
+        dirty.addProperty("calls", dirtyCalls);
+        dirty.addProperty("windowSeconds", seconds);
+        dirty.addProperty("perSecond", dirtyCalls / seconds);
+        JsonObject callers = new JsonObject();
+        getDirtyRates(seconds).forEach(callers::addProperty);
+        dirty.add("estimatedPerSecondByCaller", callers);
+        json.add("markDirty", dirty);
+
+        File file = server.getSavePath(WorldSavePath.ROOT).resolve("data").resolve(DUMP_FILE).toFile();
+        file.getParentFile().mkdirs();
+        Files.writeString(file.toPath(), GSON.toJson(json), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static String describeLastSave() {
+        if (lastSaveMillis == 0) {
+            return "not saved this session";
+        }
+        return String.format("%.1f s ago, %d bytes on disk", (System.currentTimeMillis() - lastSaveMillis) / 1000.0, lastFileBytes);
+    }
+
+    private static Map<String, Integer> measureSections(HorrorModPersistentState state) {
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        NbtCompound nbt = state.writeNbtUntimed(new NbtCompound());
+        for (String key : nbt.getKeys()) {
+            NbtElement element = nbt.get(key);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                element.write(new DataOutputStream(bytes));
+            } catch (IOException e) {
+                continue; // Writing to memory doesn't fail
+            }
+            sizes.put(key, bytes.size());
+        }
+        return sizes;
+    }
+
+    private static Map<String, Integer> countEntries(HorrorModPersistentState state) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        counts.put("timers", state.getTimerIds().size());
+        counts.put("positions", state.getPositionIds().size());
+        counts.put("intValues", state.getIntValueIds().size());
+        counts.put("longValues", state.getLongValueIds().size());
+        counts.put("positionLists", state.getPositionListIds().size());
+        counts.put("int2DArrays", state.getInt2DArrayIds().size());
+        counts.put("jobs", state.getJobs().size());
+        counts.put("notDecoded", state.getUndecodedCount());
+        return counts;
+    }
+
+    private static Map<String, Double> getDirtyRates(double seconds) {
+        Map<String, Double> rates = new LinkedHashMap<>();
+        SAMPLED_DIRTY_CALLERS.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEach(entry -> rates.put(entry.getKey(), entry.getValue() * DIRTY_SAMPLE_RATE / seconds));
+        return rates;
+    }
+
+    private static double getWindowSeconds() {
+        return Math.max(1.0, (System.nanoTime() - windowStart) / 1e9);
+    }
+}
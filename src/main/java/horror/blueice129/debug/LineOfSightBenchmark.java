@@ -0,0 +1,125 @@
+package horror.blueice129.debug;
+
+import horror.blueice129.utils.LineOfSightUtils;
+import horror.blueice129.utils.LineOfSightUtils.Precision;
+import horror.blueice129.utils.ViewFrame;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.random.Random;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures each line of sight precision tier against the full 8-corner result around a player,
+ * so call sites can pick a tier from data. Run it in a few different places (forest, cave, village).
+ */
+public class LineOfSightBenchmark {
+    // Distance bands, matching the call sites: hiding checks, house events, far structure placements
+    private static final double[] BAND_LIMITS = { 16, 48 };
+    private static final String[] BAND_NAMES = { "<16", "16-48", ">48" };
+    private static final int MAX_ATTEMPTS_PER_SAMPLE = 50;
+
+    /**
+     * Samples random positions in the player's field of view and compares every tier with EIGHT_CORNERS.
+     * Runs on the server thread, a few thousand samples take well under a second.
+     *
+     * @param player The player to check from
+     * @param samples Number of positions to test
+     * @param maxDistance The maximum distance to sample and check
+     * @return One line per tier: time per query, false visible and false hidden rates (overall and per band)
+     */
+    public static List<String> run(PlayerEntity player, int samples, double maxDistance) {
+        World world = player.getWorld();
+        ViewFrame frame = ViewFrame.get(player);
+        Random random = Random.create();
+
+        // Uniform positions in the view cone, in loaded chunks only
+        List<BlockPos> positions = new ArrayList<>(samples);
+        for (int attempt = 0; positions.size() < samples && attempt < samples * MAX_ATTEMPTS_PER_SAMPLE; attempt++) {
+            double dx = (random.nextDouble() * 2 - 1) * maxDistance;
+            double dy = (random.nextDouble() * 2 - 1) * maxDistance;
+            double dz = (random.nextDouble() * 2 - 1) * maxDistance;
+            if (dx * dx + dy * dy + dz * dz > maxDistance * maxDistance || !frame.isWithinFieldOfView(dx, dy, dz)) {
+                continue;
+            }
+            BlockPos pos = BlockPos.ofFloored(frame.eyeX + dx, frame.eyeY + dy, frame.eyeZ + dz);
+            if (world.isOutOfHeightLimit(pos) || !world.isChunkLoaded(pos.getX() >> 4, pos.getZ() >> 4)) {
+                continue;
+            }
+            positions.add(pos);
+        }
+
+        List<String> lines = new ArrayList<>();
+        int count = positions.size();
+        if (count == 0) {
+            lines.add("No positions to sample around the player");
+            return lines;
+        }
+
+        // Reference pass, also warms the chunk and occupancy caches so the timed passes compare fairly
+        boolean[] reference = new boolean[count];
+        int[] bands = new int[count];
+        int[] bandTotals = new int[BAND_NAMES.length];
+        int referenceVisible = 0;
+        for (int i = 0; i < count; i++) {
+            BlockPos pos = positions.get(i);
+            reference[i] = LineOfSightUtils.hasLineOfSight(player, pos, maxDistance, Precision.EIGHT_CORNERS);
+            if (reference[i]) {
+                referenceVisible++;
+            }
+            bands[i] = getBand(frame, pos);
+            bandTotals[bands[i]]++;
+        }
+        lines.add(String.format("%d samples within %.0f blocks, %.1f%% visible with EIGHT_CORNERS",
+                count, maxDistance, 100.0 * referenceVisible / count));
+
+        for (Precision precision : Precision.values()) {
+            boolean[] results = new boolean[count];
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                results[i] = LineOfSightUtils.hasLineOfSight(player, positions.get(i), maxDistance, precision);
+            }
+            long elapsed = System.nanoTime() - start;
+
+            int falseVisible = 0;
+            int falseHidden = 0;
+            int[] bandFalseHidden = new int[BAND_NAMES.length];
+            for (int i = 0; i < count; i++) {
+                if (results[i] && !reference[i]) {
+                    falseVisible++;
+                } else if (!results[i] && reference[i]) {
+                    falseHidden++;
+                    bandFalseHidden[bands[i]]++;
+                }
+            }
+
+            StringBuilder bandText = new StringBuilder();
+            for (int band = 0; band < BAND_NAMES.length; band++) {
+                if (band > 0) {
+                    bandText.append(", ");
+                }
+                bandText.append(String.format("%s %.1f%%", BAND_NAMES[band],
+                        bandTotals[band] == 0 ? 0.0 : 100.0 * bandFalseHidden[band] / bandTotals[band]));
+            }
+            lines.add(String.format("%s: %.2f us/query, false visible %.2f%%, false hidden %.2f%% (%s)",
+                    precision, elapsed / 1000.0 / count, 100.0 * falseVisible / count,
+                    100.0 * falseHidden / count, bandText));
+        }
+        return lines;
+    }
+
+    private static int getBand(ViewFrame frame, BlockPos pos) {
+        double dx = pos.getX() + 0.5 - frame.eyeX;
+        double dy = pos.getY() + 0.5 - frame.eyeY;
+        double dz = pos.getZ() + 0.5 - frame.eyeZ;
+        double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        for (int band = 0; band < BAND_LIMITS.length; band++) {
+            if (distance < BAND_LIMITS[band]) {
+                return band;
+            }
+        }
+        return BAND_LIMITS.length;
+    }
+}
@@ -0,0 +1,64 @@
+package horror.blueice129.debug;
+
+import horror.blueice129.data.HorrorModPersistentState;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the save size and serialize/load time of the persistent state, on the world's real data.
+ */
+public class StateEncodingBenchmark {
+
+    /**
+     * Serializes the state a number of times.
+     * Runs on the server thread; the state is only read.
+     *
+     * @param state The state to measure
+     * @param rounds Number of serializations (timings are averaged)
+     * @return Raw and compressed size, write and read time
+     * @throws IOException If writing to memory fails
+     */
+    public static List<String> run(HorrorModPersistentState state, int rounds) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(measure("Format version 2 (long arrays, flat int arrays)", state, rounds));
+        return lines;
+    }
+
+    private static String measure(String name, HorrorModPersistentState state, int rounds) throws IOException {
+        // Warm up once so the timed rounds don't include the first run's class loading
+        NbtCompound nbt = state.writeNbtUntimed(new NbtCompound());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            nbt = state.writeNbtUntimed(new NbtCompound());
+        }
+        long writeNanos = (System.nanoTime() - start) / rounds;
+
+        // Loading leaves position lists and 2D arrays encoded until used, so decode them all to time the layout
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            HorrorModPersistentState loaded = HorrorModPersistentState.createFromNbtUntimed(nbt);
+            for (String id : loaded.getPositionListIds()) {
+                loaded.getPositionList(id);
+            }
+            for (String id : loaded.getInt2DArrayIds()) {
+                loaded.getInt2DArray(id);
+            }
+        }
+        long readNanos = (System.nanoTime() - start) / rounds;
+
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        NbtIo.write(nbt, new DataOutputStream(raw));
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        NbtIo.writeCompressed(nbt, compressed);
+
+        return String.format("%s: %d bytes (%d compressed), write %.1f us, read %.1f us",
+                name, raw.size(), compressed.size(), writeNanos / 1000.0, readNanos / 1000.0);
+    }
+}
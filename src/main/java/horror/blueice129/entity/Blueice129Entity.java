@@ -3,6 +3,7 @@ package horror.blueice129.entity;
 import horror.blueice129.entity.goals.GoalProfileRegistry;
 import horror.blueice129.HorrorMod129;
 import horror.blueice129.data.HorrorModPersistentState;
+import horror.blueice129.scheduler.AgroMeterScheduler;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
 import net.minecraft.entity.attribute.DefaultAttributeContainer;
@@ -115,7 +116,7 @@ public class Blueice129Entity extends PathAwareEntity {
         int agroMeter = 0;
         if (this.getWorld().getServer() != null) {
             HorrorModPersistentState state = HorrorModPersistentState.getServerState(this.getWorld().getServer());
-            agroMeter = state.getIntValue("agroMeter", 0);
+            agroMeter = state.getIntValue(AgroMeterScheduler.AGRO_METER, 0);
         }
 
         switch (currentState) {
@@ -341,7 +342,7 @@ public class Blueice129Entity extends PathAwareEntity {
         // Set initial state based on agro meter
         if (!world.isClient && world.getServer() != null) {
             HorrorModPersistentState state = HorrorModPersistentState.getServerState(world.getServer());
-            int agroMeter = state.getIntValue("agroMeter", 0);
+            int agroMeter = state.getIntValue(AgroMeterScheduler.AGRO_METER, 0);
 
             if (agroMeter > 5) {
                 this.currentState = EntityState.SURFACE_HIDING;
@@ -3,12 +3,12 @@ package horror.blueice129.entity.goals.movement;
 import horror.blueice129.HorrorMod129;
 import horror.blueice129.entity.Blueice129Entity;
 import horror.blueice129.entity.goals.BaseBlueice129Goal;
-import horror.blueice129.utils.LineOfSightUtils;
+import horror.blueice129.utils.ViewFrame;
+import horror.blueice129.utils.VisibilityCache;
 import net.minecraft.block.BlockState;
 import net.minecraft.entity.ai.goal.Goal;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
 
 import java.util.EnumSet;
@@ -87,7 +87,7 @@ public class HideBehindStructuresGoal extends BaseBlueice129Goal {
         
         // Only perform visibility checks and pathfinding updates when shouldUpdate is true
         if (shouldUpdate) {
-            boolean isHidden = isPositionHidden(entityPos);
+            boolean isHidden = isPositionHidden(entityPos, false);
             
             // HorrorMod129.LOGGER.info(String.format(
             //     "[HideBehindStructures] EntityPos: %s | HidingSpot: %s | IsHidden: %b | IsStationary: %b | PlayerPos: %s",
@@ -111,7 +111,7 @@ public class HideBehindStructuresGoal extends BaseBlueice129Goal {
                 // Not hidden - find a hiding spot and move there
                 entity.setSneaking(false);
                 
-                if (hidingSpot == null || !isPositionHidden(hidingSpot)) {
+                if (hidingSpot == null || !isPositionHidden(hidingSpot, false)) {
                     HorrorMod129.LOGGER.info("[HideBehindStructures] Searching for new hiding spot...");
                     hidingSpot = findNearestHidingSpot();
                     if (hidingSpot != null) {
@@ -146,9 +146,11 @@ public class HideBehindStructuresGoal extends BaseBlueice129Goal {
      * Checks both blocks the entity would occupy (feet and head level).
      * 
      * @param feetPos The position where the entity's feet are (same as entity.getBlockPos())
+     * @param approximate True to accept the player's visibility field answers (for the spot search;
+     *                    the chosen spot is checked exactly on the following updates)
      * @return true if both feet and head blocks are hidden from player view
      */
-    private boolean isPositionHidden(BlockPos feetPos) {
+    private boolean isPositionHidden(BlockPos feetPos, boolean approximate) {
         if (targetPlayer == null) {
             return false;
         }
@@ -156,11 +158,11 @@ public class HideBehindStructuresGoal extends BaseBlueice129Goal {
         BlockPos headPos = feetPos.up(); // Head is one block above feet
         
         // Both positions must be hidden from player view
-        // Use hasLineOfSight which properly handles air blocks
-        boolean feetVisible = LineOfSightUtils.hasLineOfSight(
-            targetPlayer, feetPos, STALK_RADIUS * 2);
-        boolean headVisible = LineOfSightUtils.hasLineOfSight(
-            targetPlayer, headPos, STALK_RADIUS * 2);
+        // Use hasLineOfSight which properly handles air blocks (cached, the same spots are re-tested every few ticks)
+        boolean feetVisible = VisibilityCache.hasLineOfSight(
+            targetPlayer, feetPos, STALK_RADIUS * 2, approximate);
+        boolean headVisible = VisibilityCache.hasLineOfSight(
+            targetPlayer, headPos, STALK_RADIUS * 2, approximate);
         
         boolean isHidden = !feetVisible && !headVisible;
         
@@ -181,17 +183,13 @@ public class HideBehindStructuresGoal extends BaseBlueice129Goal {
             return false;
         }
         
-        // Get player's look direction
-        Vec3d playerLook = targetPlayer.getRotationVec(1.0f).normalize();
-        
-        // Get direction from player to entity
-        Vec3d toEntity = entity.getPos().subtract(targetPlayer.getPos()).normalize();
-        
-        // Calculate dot product (cosine of angle between vectors)
-        double dotProduct = playerLook.dotProduct(toEntity);
-        
-        // cos(60°) = 0.5, so if dot product > 0.5, angle is less than 60° (within 120° cone)
-        return dotProduct > 0.5;
+        // Direction from player to entity, against the player's look direction
+        // cos(60°) = 0.5, so the angle is less than 60° (within 120° cone)
+        return ViewFrame.get(targetPlayer).isWithinCone(
+                entity.getX() - targetPlayer.getX(),
+                entity.getY() - targetPlayer.getY(),
+                entity.getZ() - targetPlayer.getZ(),
+                0.5);
     }
     
     /**
@@ -247,7 +245,7 @@ public class HideBehindStructuresGoal extends BaseBlueice129Goal {
                     if (!isValidStandingPosition(world, groundPos)) {
                         continue;
                     }
-                    if (!isPositionHidden(feetPos)) {
+                    if (!isPositionHidden(feetPos, true)) {
                         continue;
                     }
                     
@@ -7,20 +7,31 @@ import net.minecraft.block.entity.FurnaceBlockEntity;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.item.ItemStack;
 import net.minecraft.item.Items;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
 import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
 import net.minecraft.util.math.random.Random;
 import horror.blueice129.HorrorMod129;
 import horror.blueice129.utils.LineOfSightUtils;
+import horror.blueice129.utils.AsyncLineOfSight;
 import horror.blueice129.utils.SurfaceFinder;
 import horror.blueice129.utils.ChunkLoader;
 import horror.blueice129.utils.BlockTypes;
 import horror.blueice129.utils.StructurePlacer;
 import horror.blueice129.utils.TorchPlacer;
-import horror.blueice129.data.HorrorModPersistentState;
+import horror.blueice129.utils.ViewFrame;
+import horror.blueice129.utils.VisibilityCache;
+import horror.blueice129.data.SiteIndex;
+import horror.blueice129.scheduler.JobExecutor;
 
 public class CavePreMiner {
 
@@ -36,20 +47,12 @@ public class CavePreMiner {
      * @return True if the position is within the wider FOV cone
      */
     private static boolean isInWideFOVCone(PlayerEntity player, BlockPos pos) {
-        // Get player's look direction
-        net.minecraft.util.math.Vec3d lookVec = player.getRotationVector();
-        
-        // Vector from player to position
-        net.minecraft.util.math.Vec3d toPos = new net.minecraft.util.math.Vec3d(
+        // cos(100°) ≈ -0.17, so we use a wider cone than normal FOV
+        return ViewFrame.get(player).isWithinCone(
             pos.getX() - player.getX(),
             pos.getY() - player.getEyeY(),
-            pos.getZ() - player.getZ()
-        ).normalize();
-        
-        // Dot product gives cosine of angle between vectors
-        // cos(100°) ≈ -0.17, so we use a wider cone than normal FOV
-        double dotProduct = lookVec.dotProduct(toPos);
-        return dotProduct > -0.2; // Very wide cone to catch edge cases
+            pos.getZ() - player.getZ(),
+            -0.2); // Very wide cone to catch edge cases
     }
 
     /**
@@ -61,35 +64,38 @@ public class CavePreMiner {
      * @return True if torch or nearby blocks are visible
      */
     private static boolean isEnhancedVisible(PlayerEntity player, BlockPos pos) {
-        // Check the torch position itself
-        if (LineOfSightUtils.isBlockRenderedOnScreen(player, pos, 16 * 10)) {
-            return true;
+        // Torch position, blocks 1-2 blocks up, then within a 4 block radius at ground level and 1 layer up
+        long[] positions = new long[3 + ENHANCED_VISIBILITY_OFFSETS.length];
+        positions[0] = pos.asLong();
+        positions[1] = pos.up(1).asLong();
+        positions[2] = pos.up(2).asLong();
+        for (int i = 0; i < ENHANCED_VISIBILITY_OFFSETS.length; i++) {
+            int[] offset = ENHANCED_VISIBILITY_OFFSETS[i];
+            positions[3 + i] = BlockPos.asLong(pos.getX() + offset[0], pos.getY() + offset[1], pos.getZ() + offset[2]);
         }
-        
-        // Check blocks 1-2 blocks up
-        for (int dy = 1; dy <= 2; dy++) {
-            BlockPos upPos = pos.up(dy);
-            if (LineOfSightUtils.isBlockRenderedOnScreen(player, upPos, 16 * 10)) {
-                return true;
-            }
-        }
-        
-        // Check within 4 block radius at ground level and 1 layer up
+
+        // One batch query, stops at the first visible position
+        return VisibilityCache.isAnyVisible(player, positions, 16 * 10);
+    }
+
+    /**
+     * Offsets checked around a torch by isEnhancedVisible: 4 block radius, ground level and 1 layer up.
+     * The torch position itself is left out (checked first).
+     */
+    private static final int[][] ENHANCED_VISIBILITY_OFFSETS = buildEnhancedVisibilityOffsets();
+
+    private static int[][] buildEnhancedVisibilityOffsets() {
+        java.util.List<int[]> offsets = new java.util.ArrayList<>();
         for (int dy = 0; dy <= 1; dy++) {
             for (int dx = -4; dx <= 4; dx++) {
                 for (int dz = -4; dz <= 4; dz++) {
                     if (dx == 0 && dz == 0 && dy == 0) continue; // Already checked
                     if (dx * dx + dz * dz > 16) continue; // Keep within 4 block radius
-                    
-                    BlockPos nearPos = pos.add(dx, dy, dz);
-                    if (LineOfSightUtils.isBlockRenderedOnScreen(player, nearPos, 16 * 10)) {
-                        return true;
-                    }
+                    offsets.add(new int[] { dx, dy, dz });
                 }
             }
         }
-        
-        return false;
+        return offsets.toArray(new int[0][]);
     }
 
     /**
@@ -134,8 +140,8 @@ public class CavePreMiner {
             // Enhanced check for torches in FOV - also checks nearby blocks
             isInLineOfSight = isEnhancedVisible(player, pos);
         } else {
-            // Simple check for torches outside FOV
-            isInLineOfSight = LineOfSightUtils.isBlockRenderedOnScreen(player, pos, 16 * 10);
+            // Simple check for torches outside FOV, the center ray is enough (the FOV test rejects most of them)
+            isInLineOfSight = LineOfSightUtils.hasLineOfSight(player, pos, 16 * 10, LineOfSightUtils.Precision.CENTER);
         }
 
         return isSolidTop && isLowLight && !isInLineOfSight && isAirBlock;
@@ -164,75 +170,120 @@ public class CavePreMiner {
      * @return CaveExplorationResult containing the list of cave air blocks and count of ores mined
      */
     public static CaveExplorationResult findCaveAirAndMineOres(World world, BlockPos startPos, PlayerEntity player) {
-        java.util.List<BlockPos> caveAirBlocks = new java.util.ArrayList<>();
-        java.util.Set<BlockPos> visited = new java.util.HashSet<>();
-        java.util.Queue<BlockPos> queue = new java.util.LinkedList<>();
+        CaveExplorer explorer = new CaveExplorer(world, startPos);
+        while (!explorer.step(player, Integer.MAX_VALUE)) {
+            // Explore everything at once
+        }
+        return new CaveExplorationResult(explorer.caveAirBlocks, explorer.oresMined);
+    }
+
+    /**
+     * The flood fill of findCaveAirAndMineOres, resumable so a pre-mining job can spread it over several ticks.
+     */
+    private static class CaveExplorer {
+        // Define directions once to avoid recreating the array in each iteration
+        private static final net.minecraft.util.math.Direction[] DIRECTIONS = net.minecraft.util.math.Direction.values();
+        // Define max distance squared for faster distance checks (no square root calculation)
+        private static final int MAX_DISTANCE_SQUARED = 50 * 50;
+
+        private final World world;
+        private final BlockPos startPos;
+        final java.util.List<BlockPos> caveAirBlocks = new java.util.ArrayList<>();
         int oresMined = 0;
+        private final java.util.Set<BlockPos> visited = new java.util.HashSet<>();
+        private final java.util.Queue<BlockPos> queue = new java.util.LinkedList<>();
 
         // Cache for solid block checks to avoid repeated world access
-        java.util.Map<BlockPos, Boolean> solidBelowCache = new java.util.HashMap<>();
+        private final java.util.Map<BlockPos, Boolean> solidBelowCache = new java.util.HashMap<>();
         // Cache for ground level (Y coordinate of solid block below)
-        java.util.Map<BlockPos, Integer> groundLevelCache = new java.util.HashMap<>();
+        private final java.util.Map<BlockPos, Integer> groundLevelCache = new java.util.HashMap<>();
 
         // Track ore blocks we've already processed to avoid mining the same vein multiple times
-        java.util.Set<BlockPos> processedOres = new java.util.HashSet<>();
+        private final java.util.Set<BlockPos> processedOres = new java.util.HashSet<>();
 
-        // Define directions once to avoid recreating the array in each iteration
-        net.minecraft.util.math.Direction[] DIRECTIONS = net.minecraft.util.math.Direction.values();
-
-        // Define max distance squared for faster distance checks (no square root calculation)
-        int maxDistanceSquared = 50 * 50;
+        CaveExplorer(World world, BlockPos startPos) {
+            this.world = world;
+            this.startPos = startPos;
+            queue.add(startPos);
+            visited.add(startPos);
+        }
 
-        queue.add(startPos);
-        visited.add(startPos);
+        /**
+         * Continues an exploration saved by writeNbt. The caches start empty.
+         */
+        CaveExplorer(World world, NbtCompound nbt) {
+            this.world = world;
+            this.startPos = BlockPos.fromLong(nbt.getLong("start"));
+            caveAirBlocks.addAll(JobExecutor.unpackPositions(nbt.getLongArray("caveAir")));
+            queue.addAll(JobExecutor.unpackPositions(nbt.getLongArray("queue")));
+            // Everything visited is either explored or still queued
+            visited.addAll(caveAirBlocks);
+            visited.addAll(queue);
+            oresMined = nbt.getInt("oresMined");
+        }
 
-        while (!queue.isEmpty()) {
-            BlockPos currentPos = queue.poll();
-            caveAirBlocks.add(currentPos);
+        void writeNbt(NbtCompound nbt) {
+            nbt.putLong("start", startPos.asLong());
+            nbt.putLongArray("caveAir", JobExecutor.packPositions(caveAirBlocks));
+            nbt.putLongArray("queue", JobExecutor.packPositions(queue));
+            nbt.putInt("oresMined", oresMined);
+        }
 
-            // Check and cache if current position has solid below (searches down 8 blocks)
-            Integer groundLevel = findAndCacheGroundLevel(world, currentPos, solidBelowCache, groundLevelCache);
-            if (groundLevel == null)
-                continue; // Skip neighbors if current has no solid below
+        /**
+         * Explores more of the cave, mining the exposed ores found along the way.
+         *
+         * @param player    The player to check line of sight against for ore mining
+         * @param maxBlocks The number of cave air blocks to explore in this step
+         * @return True when the whole cave is explored
+         */
+        boolean step(PlayerEntity player, int maxBlocks) {
+            for (int i = 0; i < maxBlocks && !queue.isEmpty(); i++) {
+                BlockPos currentPos = queue.poll();
+                caveAirBlocks.add(currentPos);
+
+                // Check and cache if current position has solid below (searches down 8 blocks)
+                Integer groundLevel = findAndCacheGroundLevel(world, currentPos, solidBelowCache, groundLevelCache);
+                if (groundLevel == null)
+                    continue; // Skip neighbors if current has no solid below
+
+                // While exploring cave air, also check adjacent blocks for exposed ores
+                for (net.minecraft.util.math.Direction direction : DIRECTIONS) {
+                    BlockPos neighborPos = currentPos.offset(direction);
 
-            // While exploring cave air, also check adjacent blocks for exposed ores
-            for (net.minecraft.util.math.Direction direction : DIRECTIONS) {
-                BlockPos neighborPos = currentPos.offset(direction);
+                    // Skip anything above the hard cutoff (cheap check - do first)
+                    if (neighborPos.getY() > 55)
+                        continue;
 
-                // Skip anything above the hard cutoff (cheap check - do first)
-                if (neighborPos.getY() > 55)
-                    continue;
+                    // Check if neighbor is within 50 blocks of start position using squared distance
+                    if (neighborPos.getSquaredDistance(startPos) > MAX_DISTANCE_SQUARED)
+                        continue;
 
-                // Check if neighbor is within 50 blocks of start position using squared distance
-                if (neighborPos.getSquaredDistance(startPos) > maxDistanceSquared)
-                    continue;
+                    // Check if already visited as cave air OR already processed as ore
+                    if (visited.contains(neighborPos) || processedOres.contains(neighborPos))
+                        continue;
 
-                // Check if already visited as cave air OR already processed as ore
-                if (visited.contains(neighborPos) || processedOres.contains(neighborPos))
-                    continue;
+                    // Get neighbor state once for efficiency (expensive operation - do last)
+                    BlockState neighborState = world.getBlockState(neighborPos);
 
-                // Get neighbor state once for efficiency (expensive operation - do last)
-                BlockState neighborState = world.getBlockState(neighborPos);
+                    // Check if neighbor is air (continue cave exploration)
+                    if (neighborState.isOf(Blocks.CAVE_AIR) || neighborState.isOf(Blocks.AIR)) {
+                        if (direction == net.minecraft.util.math.Direction.UP) {
+                            // Limit upward expansion to 4 blocks above ground
+                            if (neighborPos.getY() - groundLevel > 4)
+                                continue;
+                        }
 
-                // Check if neighbor is air (continue cave exploration)
-                if (neighborState.isOf(Blocks.CAVE_AIR) || neighborState.isOf(Blocks.AIR)) {
-                    if (direction == net.minecraft.util.math.Direction.UP) {
-                        // Limit upward expansion to 4 blocks above ground
-                        if (neighborPos.getY() - groundLevel > 4)
-                            continue;
+                        queue.add(neighborPos);
+                        visited.add(neighborPos);
+                    }
+                    // Check if neighbor is an exposed ore block
+                    else if (BlockTypes.isOreBlock(neighborState)) {
+                        oresMined += mineOreVein(world, neighborPos, player, processedOres);
                     }
-
-                    queue.add(neighborPos);
-                    visited.add(neighborPos);
-                }
-                // Check if neighbor is an exposed ore block
-                else if (BlockTypes.isOreBlock(neighborState)) {
-                    oresMined += mineOreVein(world, neighborPos, player, processedOres);
                 }
             }
+            return queue.isEmpty();
         }
-        
-        return new CaveExplorationResult(caveAirBlocks, oresMined);
     }
 
     /**
@@ -259,7 +310,7 @@ public class CavePreMiner {
 
             if (BlockTypes.isOreBlock(state)) {
                 // Mine the ore block if not in view
-                if (!LineOfSightUtils.isBlockRenderedOnScreen(player, currentOre, 16 * 10)) {
+                if (!LineOfSightUtils.hasLineOfSight(player, currentOre, 16 * 10, LineOfSightUtils.Precision.EIGHT_CORNERS)) {
                     world.breakBlock(currentOre, false);
                     mined++;                    
                     // 25% chance to break an adjacent non-ore block
@@ -271,7 +322,7 @@ public class CavePreMiner {
                             BlockState adjacentState = world.getBlockState(adjacentPos);
                             if (!BlockTypes.isOreBlock(adjacentState) && 
                                 !adjacentState.isAir() && 
-                                !LineOfSightUtils.isBlockRenderedOnScreen(player, adjacentPos, 16 * 10)) {
+                                !LineOfSightUtils.hasLineOfSight(player, adjacentPos, 16 * 10, LineOfSightUtils.Precision.EIGHT_CORNERS)) {
                                 world.breakBlock(adjacentPos, false);
                                 break; // Only break one adjacent block
                             }
@@ -350,44 +401,129 @@ public class CavePreMiner {
      * @return The number of torches placed
      */
     public static int populateTorches(World world, java.util.List<BlockPos> caveAirBlocks, PlayerEntity player) {
+        TorchPopulator populator = new TorchPopulator(world, random, caveAirBlocks);
+        while (!populator.step(player, Integer.MAX_VALUE)) {
+            // Place every torch at once
+        }
+        return populator.torchesPlaced;
+    }
+
+    /**
+     * The torch placement of populateTorches, resumable so a pre-mining job can spread it over several ticks.
+     * Light levels are cached first, then the positions are tried darkest first.
+     */
+    private static class TorchPopulator {
+        private static final int MIN_TORCH_DISTANCE = 10;
+        private static final int GRID_SIZE = MIN_TORCH_DISTANCE;
+        private static final int MIN_TORCH_DIST_SQUARED = MIN_TORCH_DISTANCE * MIN_TORCH_DISTANCE;
+
+        private final World world;
+        private final Random random;
+        private final java.util.List<BlockPos> caveAirBlocks;
+        private final java.util.Set<BlockPos> caveAirSet = new java.util.HashSet<>();
+        private final java.util.Map<Long, BlockPos> torchGrid = new java.util.HashMap<>();
+        // Cache light levels to avoid querying world multiple times for same position
+        private final java.util.Map<BlockPos, Integer> lightLevelCache = new java.util.HashMap<>();
+        private java.util.List<BlockPos> positions; // Darkest first, once every light level is cached
+        private int next; // In caveAirBlocks while caching light levels, then in positions
+        private int resumeAt; // When continuing a saved run: caveAirBlocks is already sorted, go on from here
         int torchesPlaced = 0;
-        int minTorchDistance = 10;
-        int gridSize = minTorchDistance;
-        int minTorchDistSquared = minTorchDistance * minTorchDistance;
 
-        java.util.Map<Long, BlockPos> torchGrid = new java.util.HashMap<>();
-        
-        java.util.Set<BlockPos> caveAirSet = new java.util.HashSet<>(caveAirBlocks);
+        TorchPopulator(World world, Random random, java.util.List<BlockPos> caveAirBlocks) {
+            this.world = world;
+            this.random = random;
+            this.caveAirBlocks = caveAirBlocks;
+        }
 
-        // Cache light levels to avoid querying world multiple times for same position
-        java.util.Map<BlockPos, Integer> lightLevelCache = new java.util.HashMap<>();
-        for (BlockPos pos : caveAirBlocks) {
-            lightLevelCache.put(pos, world.getLightLevel(pos));
+        /**
+         * Continues a run saved by writeNbt. The light levels are cached again, but not re-sorted.
+         */
+        TorchPopulator(World world, Random random, NbtCompound nbt) {
+            this.world = world;
+            this.random = random;
+            if (nbt.contains("darkestFirst")) {
+                this.caveAirBlocks = JobExecutor.unpackPositions(nbt.getLongArray("darkestFirst"));
+                this.resumeAt = nbt.getInt("next");
+            } else {
+                this.caveAirBlocks = JobExecutor.unpackPositions(nbt.getLongArray("caveAir"));
+            }
+            this.torchesPlaced = nbt.getInt("torchesPlaced");
+            long[] grid = nbt.getLongArray("torchGrid"); // Grid key, then torch position
+            for (int i = 0; i + 1 < grid.length; i += 2) {
+                torchGrid.put(grid[i], BlockPos.fromLong(grid[i + 1]));
+            }
         }
 
-        // Convert to list and sort by cached light level (darkest first)
-        java.util.List<BlockPos> positions = new java.util.ArrayList<>(caveAirBlocks);
-        positions.sort(Comparator.comparingInt(p -> lightLevelCache.getOrDefault(p, 15)));
+        void writeNbt(NbtCompound nbt) {
+            if (positions != null) {
+                nbt.putLongArray("darkestFirst", JobExecutor.packPositions(positions));
+                nbt.putInt("next", next);
+            } else {
+                nbt.putLongArray("caveAir", JobExecutor.packPositions(caveAirBlocks));
+            }
+            nbt.putInt("torchesPlaced", torchesPlaced);
+            long[] grid = new long[torchGrid.size() * 2];
+            int i = 0;
+            for (java.util.Map.Entry<Long, BlockPos> entry : torchGrid.entrySet()) {
+                grid[i++] = entry.getKey();
+                grid[i++] = entry.getValue().asLong();
+            }
+            nbt.putLongArray("torchGrid", grid);
+        }
 
-        boolean firstPos = true;
+        /**
+         * Caches more light levels, or tries more positions until a torch is placed.
+         *
+         * @param player       The player to check line of sight against
+         * @param maxPositions The number of positions to handle in this step
+         * @return True when every position was tried
+         */
+        boolean step(PlayerEntity player, int maxPositions) {
+            if (positions == null) {
+                for (int i = 0; i < maxPositions && next < caveAirBlocks.size(); i++, next++) {
+                    BlockPos pos = caveAirBlocks.get(next);
+                    caveAirSet.add(pos);
+                    lightLevelCache.put(pos, world.getLightLevel(pos));
+                }
+                if (next < caveAirBlocks.size()) {
+                    return false;
+                }
+                // Convert to list and sort by cached light level (darkest first)
+                positions = new java.util.ArrayList<>(caveAirBlocks);
+                if (resumeAt > 0) {
+                    next = resumeAt;
+                    return false;
+                }
+                positions.sort(Comparator.comparingInt(p -> lightLevelCache.getOrDefault(p, 15)));
+                next = 1; // Skip the first position to avoid placing where the stairs are
+                return false;
+            }
 
-        for (BlockPos pos : positions) {
-            if (firstPos) {
-                firstPos = false;
-                continue; // Skip the first position to avoid placing where the stairs are
+            for (int i = 0; i < maxPositions && next < positions.size(); i++) {
+                // A torch relights the cached positions around it, so a step ends after one
+                if (tryTorchAt(player, positions.get(next++))) {
+                    break;
+                }
             }
+            return next >= positions.size();
+        }
+
+        /**
+         * @return True if a torch was tried at the position
+         */
+        private boolean tryTorchAt(PlayerEntity player, BlockPos pos) {
             // Hard cutoff: do not place torches above Y=55 (surface)
             if (pos.getY() > 55)
-                continue;
+                return false;
             // Check if this position is still dark enough for a torch (use cached value)
             if (lightLevelCache.getOrDefault(pos, 15) > 2) {
-                continue; // Skip if the area is already lit by previously placed torches
+                return false; // Skip if the area is already lit by previously placed torches
             }
 
             // Simplified grid key calculation
-            int gridX = Math.floorDiv(pos.getX(), gridSize);
-            int gridY = Math.floorDiv(pos.getY(), gridSize);
-            int gridZ = Math.floorDiv(pos.getZ(), gridSize);
+            int gridX = Math.floorDiv(pos.getX(), GRID_SIZE);
+            int gridY = Math.floorDiv(pos.getY(), GRID_SIZE);
+            int gridZ = Math.floorDiv(pos.getZ(), GRID_SIZE);
 
             // Check nearby grid cells for existing torches
             boolean tooClose = false;
@@ -400,7 +536,7 @@ public class CavePreMiner {
                                          (((long)(gridY + dy) & 0xFFFFL) << 20) | 
                                          ((gridZ + dz) & 0xFFFFL);
                         BlockPos existing = torchGrid.get(neighborKey);
-                        if (existing != null && pos.getSquaredDistance(existing) < minTorchDistSquared) {
+                        if (existing != null && pos.getSquaredDistance(existing) < MIN_TORCH_DIST_SQUARED) {
                             tooClose = true;
                         }
                     }
@@ -410,7 +546,7 @@ public class CavePreMiner {
             if (!tooClose && isSuitableForTorch(world, pos, player, caveAirSet)) {
                 // 20% chance to skip placing this torch
                 if (random.nextInt(100) < 20) {
-                    continue;
+                    return false;
                 }
                 
                 // Randomize position within 3 block radius to break up grid patterns
@@ -482,10 +618,10 @@ public class CavePreMiner {
                         }
                     }
                 }
+                return true;
             }
+            return false;
         }
-
-        return torchesPlaced;
     }
 
     /**
@@ -495,49 +631,63 @@ public class CavePreMiner {
      * @param world         The world to place the block in
      * @param caveAirBlocks The list of cave air blocks to check against
      * @param player        The player to check line of sight against
-     * @return Number of extra blocks placed
+     * @return Number of extra blocks placed, completed on the server thread once line of sight is checked
      */
 
-    public static int placeExtraBlocks(World world, java.util.List<BlockPos> caveAirBlocks, PlayerEntity player) {
+    public static CompletableFuture<Integer> placeExtraBlocks(World world, java.util.List<BlockPos> caveAirBlocks,
+            ServerPlayerEntity player) {
         // Chance distribution for extras: furnace 20%, crafting table 40%, pillar 30%,
         // nothing 10%
-        java.util.List<BlockPos> suitablePositions = new java.util.ArrayList<>();
+        java.util.List<BlockPos> candidates = new java.util.ArrayList<>();
         for (BlockPos pos : caveAirBlocks) {
             if (pos.getY() > 55)
                 continue; // never place extras on/above surface
-            if (isBlockSuitableForExtraBlock(world, pos, player))
-                suitablePositions.add(pos);
+            if (isBlockSuitableForExtraBlock(world, pos))
+                candidates.add(pos);
         }
 
-        if (suitablePositions.isEmpty())
-            return 0;
+        if (candidates.isEmpty())
+            return CompletableFuture.completedFuture(0);
 
-        // Shuffle positions for randomness
-        java.util.Collections.shuffle(suitablePositions);
+        // Line of sight for every candidate is checked off-thread, blocks are placed when it comes back
+        long[] packed = LineOfSightUtils.packPositions(candidates);
+        return AsyncLineOfSight.hasLineOfSight(player, packed, 16 * 10, LineOfSightUtils.Precision.EIGHT_CORNERS).thenApply(visible -> { // 10 chunks
+            java.util.List<BlockPos> suitablePositions = new java.util.ArrayList<>();
+            for (int i = 0; i < candidates.size(); i++) {
+                if (!visible.get(i))
+                    suitablePositions.add(candidates.get(i));
+            }
 
-        int blocksPlaced = 0;
-        int maxBlocks = random.nextInt(3); // 0, 1, or 2 blocks
+            if (suitablePositions.isEmpty())
+                return 0;
 
-        for (int i = 0; i < maxBlocks && i < suitablePositions.size(); i++) {
-            BlockPos target = suitablePositions.get(i);
+            // Shuffle positions for randomness
+            java.util.Collections.shuffle(suitablePositions);
 
-            int roll = random.nextInt(100);
-            boolean placed = false;
-            
-            if (roll < 20) {
-                placed = placeFurnaceAt(world, target);
-            } else if (roll < 60) {
-                placed = placeCraftingTableAt(world, target);
-            } else if (roll < 90) {
-                placed = placeCobblestonePillarAt(world, target);
-            }
+            int blocksPlaced = 0;
+            int maxBlocks = random.nextInt(3); // 0, 1, or 2 blocks
+
+            for (int i = 0; i < maxBlocks && i < suitablePositions.size(); i++) {
+                BlockPos target = suitablePositions.get(i);
 
-            if (placed) {
-                blocksPlaced++;
+                int roll = random.nextInt(100);
+                boolean placed = false;
+                
+                if (roll < 20) {
+                    placed = placeFurnaceAt(world, target);
+                } else if (roll < 60) {
+                    placed = placeCraftingTableAt(world, target);
+                } else if (roll < 90) {
+                    placed = placeCobblestonePillarAt(world, target);
+                }
+
+                if (placed) {
+                    blocksPlaced++;
+                }
             }
-        }
 
-        return blocksPlaced;
+            return blocksPlaced;
+        });
     }
 
     // Helper: place a furnace at pos (on the pos itself). Returns true if placed.
@@ -593,14 +743,13 @@ public class CavePreMiner {
     }
 
     /**
-     * Checks if a block is suitable for placing extra blocks on.
+     * Checks if a block is suitable for placing extra blocks on (line of sight not included).
      * 
      * @param world  The world to check in
      * @param pos    The position to check
-     * @param player The player to check line of sight against
      * @return True if the block is suitable, false otherwise
      */
-    private static boolean isBlockSuitableForExtraBlock(World world, BlockPos pos, PlayerEntity player) {
+    private static boolean isBlockSuitableForExtraBlock(World world, BlockPos pos) {
         // Make sure the chunk is loaded before accessing blocks
         if (!ChunkLoader.loadChunksInRadius((ServerWorld) world, pos, 1)) {
             return false; // Chunk couldn't be loaded
@@ -618,10 +767,8 @@ public class CavePreMiner {
         // Check if current position is air
         boolean isAir = state.isOf(Blocks.AIR) || state.isOf(Blocks.CAVE_AIR);
 
-        // Check if not in line of sight
-        boolean isInLineOfSight = LineOfSightUtils.isBlockRenderedOnScreen(player, pos, 16 * 10); // 10 chunks
-
-        return hasSolidBelow && isAir && !isInLineOfSight;
+        // Line of sight is checked by the caller, in one batch
+        return hasSolidBelow && isAir;
     }
 
     /**
@@ -634,28 +781,61 @@ public class CavePreMiner {
      * @return A suitable BlockPos, or null if none found
      */
     public static BlockPos findStarterBlock(World world, BlockPos playerPos) {
-        int chunkRadius = 20;
-        int maxDistance = chunkRadius * 16;
-        int minY = world.getBottomY();
-        int maxY = Math.min(48, world.getTopY() - 1);
-        int playerY = playerPos.getY();
-        int idealY = Math.max(minY + 5, Math.min(maxY - 5, playerY - 10));
-        
-        int stepSize = 16;
-        int angularSteps = 8;
-        int ySearchRange = 30;
-        int yStepSize = 5;
-        
-        int[] yOffsets = new int[ySearchRange / yStepSize * 2 + 1];
-        for (int i = 0; i < yOffsets.length; i++) {
-            yOffsets[i] = (i - yOffsets.length / 2) * yStepSize;
+        StarterSearch search = new StarterSearch(world, playerPos, StarterSearch.MAX_DISTANCE);
+        while (!search.step()) {
+            // One distance ring per step
         }
-        
-        java.util.Set<BlockPos> checkedPositions = new java.util.HashSet<>();
-        
-        for (int distance = maxDistance; distance >= stepSize; distance -= stepSize) {
-            for (int i = 0; i < angularSteps; i++) {
-                double angle = (2 * Math.PI * i) / angularSteps;
+        return search.found;
+    }
+
+    /**
+     * The starter block search of findStarterBlock, one distance ring (8 directions, 13 heights) per step.
+     * The ring to search next is all there is to save.
+     */
+    private static class StarterSearch {
+        static final int MAX_DISTANCE = 20 * 16; // 20 chunks
+        private static final int STEP_SIZE = 16;
+        private static final int ANGULAR_STEPS = 8;
+        private static final int Y_SEARCH_RANGE = 30;
+        private static final int Y_STEP_SIZE = 5;
+
+        private final World world;
+        private final BlockPos playerPos;
+        private final int minY;
+        private final int maxY;
+        private final int idealY;
+        private final int[] yOffsets = new int[Y_SEARCH_RANGE / Y_STEP_SIZE * 2 + 1];
+        private final java.util.Set<BlockPos> checkedPositions = new java.util.HashSet<>();
+        int distance; // The ring searched next
+        BlockPos found;
+
+        StarterSearch(World world, BlockPos playerPos, int distance) {
+            this.world = world;
+            this.playerPos = playerPos;
+            this.distance = distance;
+            minY = world.getBottomY();
+            maxY = Math.min(48, world.getTopY() - 1);
+            idealY = Math.max(minY + 5, Math.min(maxY - 5, playerPos.getY() - 10));
+            for (int i = 0; i < yOffsets.length; i++) {
+                yOffsets[i] = (i - yOffsets.length / 2) * Y_STEP_SIZE;
+            }
+        }
+
+        /**
+         * Searches the next ring.
+         * @return True when done: found holds the starter block, or null if there is none
+         */
+        boolean step() {
+            if (distance >= STEP_SIZE) {
+                found = searchRing(distance);
+                distance -= STEP_SIZE;
+            }
+            return found != null || distance < STEP_SIZE;
+        }
+
+        private BlockPos searchRing(int distance) {
+            for (int i = 0; i < ANGULAR_STEPS; i++) {
+                double angle = (2 * Math.PI * i) / ANGULAR_STEPS;
                 int xOffset = (int) (distance * Math.cos(angle));
                 int zOffset = (int) (distance * Math.sin(angle));
                 
@@ -668,9 +848,8 @@ public class CavePreMiner {
                         continue;
                     
                     BlockPos checkPos = new BlockPos(x, y, z);
-                    if (checkedPositions.contains(checkPos))
+                    if (!checkedPositions.add(checkPos))
                         continue;
-                    checkedPositions.add(checkPos);
                     
                     if (!ChunkLoader.loadChunksInRadius((ServerWorld) world, checkPos, 1)) {
                         continue;
@@ -693,9 +872,8 @@ public class CavePreMiner {
                     }
                 }
             }
+            return null;
         }
-        
-        return null;
     }
 
     /**
@@ -804,55 +982,157 @@ public class CavePreMiner {
      * @return The length of the stairs mined
      */
     public static int mineStairs(World world, BlockPos starterPos, PlayerEntity player) {
-        int stairLength = 0;
-        BlockPos currentPos = starterPos;
-        java.util.List<BlockPos> stairBlocks = new java.util.ArrayList<>();
-        
-        // Random initial direction
-        String[] cardinals = {"N", "E", "S", "W"};
-        String currentDirection = cardinals[random.nextInt(4)];
-        
-        // Turn tracking
-        int turnsMade = 0;
-        int maxTurns = 5;
-        int blocksSinceLastTurn = 0;
-        int minBlocksBetweenTurns = 6;
-        
+        StairMiner miner = new StairMiner(world, random, starterPos);
+        while (!miner.step(player, Integer.MAX_VALUE)) {
+            // Mine the whole staircase at once
+        }
+        return miner.stairLength;
+    }
+
+    /**
+     * The staircase of mineStairs, resumable so a pre-mining job can spread it over several ticks.
+     * The path up to the surface is found first, then the stairs are carved along it.
+     */
+    private static class StairMiner {
+        private static final String[] CARDINALS = {"N", "E", "S", "W"};
+        private static final int MAX_TURNS = 5;
+        private static final int MIN_BLOCKS_BETWEEN_TURNS = 6;
+
+        private final World world;
+        private final Random random;
+        private final java.util.List<BlockPos> stairBlocks = new java.util.ArrayList<>();
         // Cache surface Y values to avoid repeated expensive calculations
-        java.util.Map<Long, Integer> surfaceYCache = new java.util.HashMap<>();
-        
-        // Helper to get cached surface Y
-        java.util.function.BiFunction<Integer, Integer, Integer> getSurfaceY = (x, z) -> {
+        private final java.util.Map<Long, Integer> surfaceYCache = new java.util.HashMap<>();
+        int stairLength = 0;
+
+        // Finding the path
+        private BlockPos currentPos;
+        private String currentDirection;
+        private int turnsMade = 0;
+        private int blocksSinceLastTurn = 0;
+        private boolean pathFound;
+        private boolean abandoned; // No surface found, nothing is carved
+
+        // Carving
+        private BlockPos entrancePos;
+        private int next;
+        private int torchDistance = 0;
+        private String stairDirection;
+
+        StairMiner(World world, Random random, BlockPos starterPos) {
+            this.world = world;
+            this.random = random;
+            this.currentPos = starterPos;
+            // Random initial direction
+            this.currentDirection = CARDINALS[random.nextInt(4)];
+            this.stairDirection = CARDINALS[random.nextInt(4)];
+        }
+
+        /**
+         * Continues stairs saved by writeNbt.
+         */
+        StairMiner(World world, Random random, NbtCompound nbt) {
+            this.world = world;
+            this.random = random;
+            stairBlocks.addAll(JobExecutor.unpackPositions(nbt.getLongArray("stairBlocks")));
+            this.stairLength = nbt.getInt("stairLength");
+            this.currentPos = BlockPos.fromLong(nbt.getLong("currentPos"));
+            this.currentDirection = nbt.getString("currentDirection");
+            this.turnsMade = nbt.getInt("turnsMade");
+            this.blocksSinceLastTurn = nbt.getInt("blocksSinceLastTurn");
+            this.pathFound = nbt.getBoolean("pathFound");
+            this.entrancePos = nbt.contains("entrancePos") ? BlockPos.fromLong(nbt.getLong("entrancePos")) : null;
+            this.next = nbt.getInt("next");
+            this.torchDistance = nbt.getInt("torchDistance");
+            this.stairDirection = nbt.getString("stairDirection");
+        }
+
+        void writeNbt(NbtCompound nbt) {
+            nbt.putLongArray("stairBlocks", JobExecutor.packPositions(stairBlocks));
+            nbt.putInt("stairLength", stairLength);
+            nbt.putLong("currentPos", currentPos.asLong());
+            nbt.putString("currentDirection", currentDirection);
+            nbt.putInt("turnsMade", turnsMade);
+            nbt.putInt("blocksSinceLastTurn", blocksSinceLastTurn);
+            nbt.putBoolean("pathFound", pathFound);
+            if (entrancePos != null) {
+                nbt.putLong("entrancePos", entrancePos.asLong());
+            }
+            nbt.putInt("next", next);
+            nbt.putInt("torchDistance", torchDistance);
+            nbt.putString("stairDirection", stairDirection);
+        }
+
+        /**
+         * Extends the path or carves more of the stairs.
+         *
+         * @param player    The player to check line of sight against
+         * @param maxBlocks The number of stair blocks to handle in this step
+         * @return True when the stairs are done
+         */
+        boolean step(PlayerEntity player, int maxBlocks) {
+            if (!pathFound) {
+                for (int i = 0; i < maxBlocks && !pathFound; i++) {
+                    pathFound = extendPath();
+                }
+                if (pathFound && !abandoned) {
+                    entrancePos = findEntrance();
+                }
+                return abandoned;
+            }
+
+            for (int i = 0; i < maxBlocks && next < stairBlocks.size(); i++) {
+                if (!carve(player, next++)) {
+                    next = stairBlocks.size(); // Reached the surface
+                }
+            }
+            if (next < stairBlocks.size()) {
+                return false;
+            }
+
+            // Add torches around entrance if we found one
+            if (entrancePos != null) {
+                placeEntranceTorches(world, entrancePos, player);
+            }
+            return true;
+        }
+
+        private int getSurfaceY(int x, int z) {
             long key = ((long)x << 32) | (z & 0xFFFFFFFFL);
-            return surfaceYCache.computeIfAbsent(key, k -> 
+            return surfaceYCache.computeIfAbsent(key, k ->
                 SurfaceFinder.findPointSurfaceY((ServerWorld) world, x, z, true, false, true)
             );
-        };
-        
-        // fill in the stairblocks list, checking surface level as we go
-        while (true) {
+        }
+
+        /**
+         * Adds the next block of the path, checking surface level as we go.
+         *
+         * @return True when the path is complete (or abandoned)
+         */
+        private boolean extendPath() {
             // if y value is getting too high, stop
             if (currentPos.getY() >= 130) {
-                break;
+                return true;
             }
             
             // Check if we've reached the surface
-            int surfaceY = getSurfaceY.apply(currentPos.getX(), currentPos.getZ());
+            int surfaceY = getSurfaceY(currentPos.getX(), currentPos.getZ());
             if (surfaceY != -1 && currentPos.getY() >= surfaceY) {
                 stairBlocks.add(currentPos);
                 stairLength++;
-                break;
+                return true;
             }
             
             if (surfaceY == -1 && currentPos.getY() >= 60) {
-                return stairLength;
+                abandoned = true;
+                return true;
             }
             
             stairBlocks.add(currentPos);
             
             // Check if we should make a turn
-            if (blocksSinceLastTurn >= minBlocksBetweenTurns && 
-                turnsMade < maxTurns && 
+            if (blocksSinceLastTurn >= MIN_BLOCKS_BETWEEN_TURNS && 
+                turnsMade < MAX_TURNS && 
                 random.nextInt(100) < 10) {
                 
                 boolean turnLeft = random.nextBoolean();
@@ -865,23 +1145,28 @@ public class CavePreMiner {
             currentPos = moveInDirection(currentPos, currentDirection);
             stairLength++;
             blocksSinceLastTurn++;
+            return false;
         }
 
-        // Find surface entrance position (last position at or above surface)
-        BlockPos entrancePos = null;
-        for (BlockPos pos : stairBlocks) {
-            int surfaceY = getSurfaceY.apply(pos.getX(), pos.getZ());
-            if (surfaceY != -1 && pos.getY() >= surfaceY) {
-                entrancePos = pos;
-                break;
+        /**
+         * Finds surface entrance position (last position at or above surface)
+         */
+        private BlockPos findEntrance() {
+            for (BlockPos pos : stairBlocks) {
+                int surfaceY = getSurfaceY(pos.getX(), pos.getZ());
+                if (surfaceY != -1 && pos.getY() >= surfaceY) {
+                    return pos;
+                }
             }
+            return null;
         }
 
-        // Set the 3 blocks above each stair block to air
-        int torchDistance = 0;
-        String stairDirection = cardinals[random.nextInt(4)];
-        
-        for (int i = 0; i < stairBlocks.size(); i++) {
+        /**
+         * Sets the 3 blocks above a stair block to air.
+         *
+         * @return False once the stairs reach the surface
+         */
+        private boolean carve(PlayerEntity player, int i) {
             BlockPos stairPos = stairBlocks.get(i);
             
             // Detect direction changes for corner fill
@@ -908,7 +1193,7 @@ public class CavePreMiner {
             }
             
             // Check if we're at or above surface (using cache)
-            int surfaceY = getSurfaceY.apply(stairPos.getX(), stairPos.getZ());
+            int surfaceY = getSurfaceY(stairPos.getX(), stairPos.getZ());
             boolean isAtOrAboveSurface = (surfaceY != -1 && stairPos.getY() >= surfaceY);
 
             // Only place cobblestone if below surface and the block is air
@@ -919,9 +1204,9 @@ public class CavePreMiner {
                 world.setBlockState(adjacent, Blocks.COBBLESTONE.getDefaultState());
             }
 
-            // break if is above surface
+            // stop if is above surface
             if (isAtOrAboveSurface) {
-                break;
+                return false;
             }
 
             for (int height = 1; height <= 3; height++) {
@@ -939,14 +1224,8 @@ public class CavePreMiner {
                 }
             }
             torchDistance++;
+            return true;
         }
-
-        // Add torches around entrance if we found one
-        if (entrancePos != null) {
-            placeEntranceTorches(world, entrancePos, player);
-        }
-
-        return stairLength;
     }
 
     /**
@@ -1008,51 +1287,196 @@ public class CavePreMiner {
 
     /**
      * Main method to pre-mine a cave near the player.
+     * The work is spread over the next ticks by JobExecutor, pauses while the player is offline and
+     * goes on after a restart.
      * 
      * @param world     The world to mine in
      * @param playerPos The player's position
      * @param player    The player entity
-     * @return True if a cave was successfully pre-mined, false otherwise
+     * @return Completes with true if a cave was successfully pre-mined, false otherwise; cancelled if the job
+     *         was cancelled or the server stopped first
      */
-    public static boolean preMineCave(World world, BlockPos playerPos, PlayerEntity player) {
-        BlockPos starterPos = findStarterBlock(world, playerPos);
-        if (starterPos == null) {
-            return false;
-        }
-        
+    public static CompletableFuture<Boolean> preMineCave(World world, BlockPos playerPos, ServerPlayerEntity player) {
+        return JobExecutor.submit("cave pre-mine", JobExecutor.Priority.NORMAL, player.getUuid(),
+                new PreMineJob(world.getRegistryKey(), playerPos, random.nextLong()));
+    }
+
+    /**
+     * Makes cave pre-mining saveable, so it goes on after a restart. Call during mod initialization.
+     */
+    public static void registerJobTypes() {
+        JobExecutor.registerType(PreMineJob.TYPE, PreMineJob::new);
+    }
+
+    /**
+     * Pre-mines a cave one piece per step: finds the starter block, explores the cave and mines its ores,
+     * places torches and extra blocks, then mines the stairs to the surface.
+     */
+    private static class PreMineJob extends JobExecutor.Job<Boolean> {
+        static final String TYPE = "cave_premine";
         // Check if too close to existing pre-mined caves
-        ServerWorld serverWorld = (ServerWorld) world;
-        HorrorModPersistentState state = HorrorModPersistentState.getServerState(serverWorld.getServer());
-        java.util.List<BlockPos> existingCaves = state.getPositionList("preminedCaveLocations");
-        
-        final int MIN_CAVE_DISTANCE_SQUARED = 100 * 100;
-        for (BlockPos existingCave : existingCaves) {
-            if (starterPos.getSquaredDistance(existingCave) < MIN_CAVE_DISTANCE_SQUARED) {
-                return false;
+        private static final int MIN_CAVE_DISTANCE = 100;
+        private static final int BLOCKS_PER_STEP = 64;
+        private static final int STAIRS_PER_STEP = 4;
+
+        private static final int FIND_STARTER = 0;
+        private static final int EXPLORE = 1;
+        private static final int TORCHES = 2;
+        private static final int STAIRS = 3;
+
+        private final RegistryKey<World> worldKey;
+        private final BlockPos playerPos;
+        private final Random random;
+        private int phase = FIND_STARTER;
+        private StarterSearch search;
+        private int searchDistance = StarterSearch.MAX_DISTANCE; // Until the search is made
+        private BlockPos starterPos;
+        private CaveExplorer explorer;
+        private TorchPopulator torches;
+        private StairMiner stairs;
+        private NbtCompound saved; // The phase's progress when loaded, until the world is there to continue it
+        private int oresMined;
+        private int torchesPlaced;
+        private CompletableFuture<Integer> extraBlocksPlaced; // Null when continued after a restart
+        private boolean success;
+
+        PreMineJob(RegistryKey<World> worldKey, BlockPos playerPos, long seed) {
+            this.worldKey = worldKey;
+            this.playerPos = playerPos;
+            this.random = Random.create(seed);
+        }
+
+        PreMineJob(NbtCompound nbt) {
+            this(RegistryKey.of(RegistryKeys.WORLD, new Identifier(nbt.getString("world"))),
+                    BlockPos.fromLong(nbt.getLong("playerPos")), nbt.getLong("seed"));
+            this.phase = nbt.getByte("phase");
+            if (phase == FIND_STARTER && nbt.contains("searchDistance")) {
+                this.searchDistance = nbt.getInt("searchDistance");
+            }
+            if (phase != FIND_STARTER) {
+                this.starterPos = BlockPos.fromLong(nbt.getLong("starterPos"));
+                this.oresMined = nbt.getInt("oresMined");
+                this.torchesPlaced = nbt.getInt("torchesPlaced");
+                this.saved = nbt.getCompound("progress");
             }
         }
-        
-        horror.blueice129.HorrorMod129.LOGGER.info("Cave Pre-Miner: Found starter block at " + starterPos);
-        
-        // Combined cave exploration and ore mining in a single pass
-        CaveExplorationResult result = findCaveAirAndMineOres(world, starterPos, player);
-        java.util.List<BlockPos> caveAirBlocks = result.caveAirBlocks;
-        int oresMined = result.oresMined;
-        
-        if (caveAirBlocks.size() < 50) {
-            return false; // Not enough cave air blocks to consider this a cave
+
+        @Override
+        protected String getType() {
+            return TYPE;
+        }
+
+        @Override
+        protected void writeNbt(NbtCompound nbt) {
+            nbt.putString("world", worldKey.getValue().toString());
+            nbt.putLong("playerPos", playerPos.asLong());
+            nbt.putLong("seed", reseed(random));
+            nbt.putByte("phase", (byte) phase);
+            if (phase == FIND_STARTER) {
+                nbt.putInt("searchDistance", search == null ? searchDistance : search.distance);
+                return;
+            }
+            nbt.putLong("starterPos", starterPos.asLong());
+            nbt.putInt("oresMined", oresMined);
+            nbt.putInt("torchesPlaced", torchesPlaced);
+            NbtCompound progress = saved;
+            if (progress == null) {
+                progress = new NbtCompound();
+                switch (phase) {
+                    case EXPLORE -> explorer.writeNbt(progress);
+                    case TORCHES -> torches.writeNbt(progress);
+                    default -> stairs.writeNbt(progress);
+                }
+            }
+            nbt.put("progress", progress);
         }
-        
-        int torchesPlaced = populateTorches(world, caveAirBlocks, player);
-        int extraBlocksPlaced = placeExtraBlocks(world, caveAirBlocks, player);
-        int stairLength = mineStairs(world, starterPos, player);
-        
-        // Store this cave location to prevent future caves from being too close
-        state.addPositionToList("preminedCaveLocations", starterPos);
-        
-        HorrorMod129.LOGGER.info("Cave Pre-Miner: Mined " + oresMined + " ores, placed " + torchesPlaced
-                + " torches, extra blocks placed: " + extraBlocksPlaced + ", stair length: " + stairLength);
-        return true;
-    }
 
+        @Override
+        protected boolean step(MinecraftServer server, ServerPlayerEntity player) {
+            ServerWorld world = server.getWorld(worldKey);
+            if (world == null) {
+                return true;
+            }
+            if (saved != null) {
+                switch (phase) {
+                    case EXPLORE -> explorer = new CaveExplorer(world, saved);
+                    case TORCHES -> torches = new TorchPopulator(world, random, saved);
+                    default -> stairs = new StairMiner(world, random, saved);
+                }
+                saved = null;
+            }
+
+            switch (phase) {
+                case FIND_STARTER -> {
+                    if (search == null) {
+                        search = new StarterSearch(world, playerPos, searchDistance);
+                    }
+                    if (!search.step()) {
+                        return false;
+                    }
+                    starterPos = search.found;
+                    search = null;
+                    if (starterPos == null || SiteIndex.anyWithin(SiteIndex.SiteType.PREMINED_CAVE, starterPos, MIN_CAVE_DISTANCE)) {
+                        return true;
+                    }
+                    HorrorMod129.LOGGER.info("Cave Pre-Miner: Found starter block at " + starterPos);
+                    // Combined cave exploration and ore mining in a single pass
+                    explorer = new CaveExplorer(world, starterPos);
+                    phase = EXPLORE;
+                    return false;
+                }
+                case EXPLORE -> {
+                    if (!explorer.step(player, BLOCKS_PER_STEP)) {
+                        return false;
+                    }
+                    if (explorer.caveAirBlocks.size() < 50) {
+                        return true; // Not enough cave air blocks to consider this a cave
+                    }
+                    // Another job may have taken a cave nearby while this one explored
+                    if (SiteIndex.anyWithin(SiteIndex.SiteType.PREMINED_CAVE, starterPos, MIN_CAVE_DISTANCE)) {
+                        return true;
+                    }
+                    // Store this cave location to prevent future caves from being too close
+                    SiteIndex.add(SiteIndex.SiteType.PREMINED_CAVE, starterPos);
+                    oresMined = explorer.oresMined;
+                    torches = new TorchPopulator(world, random, explorer.caveAirBlocks);
+                    explorer = null;
+                    phase = TORCHES;
+                    return false;
+                }
+                case TORCHES -> {
+                    if (!torches.step(player, BLOCKS_PER_STEP)) {
+                        return false;
+                    }
+                    torchesPlaced = torches.torchesPlaced;
+                    extraBlocksPlaced = placeExtraBlocks(world, torches.caveAirBlocks, player);
+                    stairs = new StairMiner(world, random, starterPos);
+                    torches = null;
+                    phase = STAIRS;
+                    return false;
+                }
+                default -> {
+                    if (!stairs.step(player, STAIRS_PER_STEP)) {
+                        return false;
+                    }
+                    success = true;
+                    String summary = "Cave Pre-Miner: Mined " + oresMined + " ores, placed " + torchesPlaced
+                            + " torches, stair length: " + stairs.stairLength;
+                    if (extraBlocksPlaced == null) {
+                        HorrorMod129.LOGGER.info(summary);
+                    } else {
+                        // Extra blocks are placed once their off-thread line of sight check is back
+                        extraBlocksPlaced.thenAccept(extraBlocks -> HorrorMod129.LOGGER.info(summary
+                                + ", extra blocks placed: " + extraBlocks));
+                    }
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        protected Boolean getResult() {
+            return success;
+        }
+    }
 }
\ No newline at end of file
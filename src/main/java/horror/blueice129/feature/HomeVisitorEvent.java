@@ -15,6 +15,10 @@ import net.minecraft.block.entity.ChestBlockEntity;
 
 import net.minecraft.util.math.random.Random;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
 public class HomeVisitorEvent {
     private static final Random random = Random.create();
 
@@ -216,6 +220,7 @@ public class HomeVisitorEvent {
         int flowersPlanted = 0;
         // flower = lilly of the valley
         var flowerBlock = net.minecraft.block.Blocks.LILY_OF_THE_VALLEY;
+        List<BlockPos> candidates = new ArrayList<>();
 
         for (BlockPos pos : BlockPos.iterate(bedPos.add(-searchRadius, -searchRadius, -searchRadius),
                 bedPos.add(searchRadius, searchRadius, searchRadius))) {
@@ -229,14 +234,21 @@ public class HomeVisitorEvent {
 
                 if (random.nextDouble() > 0.05)
                     continue; // 5% chance to plant a flower
-                if (LineOfSightUtils.isBlockRenderedOnScreen(player, pos, 50))
-                    continue; // only plant if out of line of sight
-
-                world.setBlockState(pos, flowerBlock.getDefaultState());
-                flowersPlanted++;
+                candidates.add(pos.toImmutable());
             }
 
         }
+
+        // Check all candidates in one batch, flowers don't block line of sight
+        long[] packed = LineOfSightUtils.packPositions(candidates);
+        BitSet visible = LineOfSightUtils.hasLineOfSight(player, packed, 50, null, LineOfSightUtils.Precision.EIGHT_CORNERS);
+        for (int i = 0; i < candidates.size(); i++) {
+            if (visible.get(i))
+                continue; // only plant if out of line of sight
+
+            world.setBlockState(candidates.get(i), flowerBlock.getDefaultState());
+            flowersPlanted++;
+        }
         return flowersPlanted;
     }
 
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 
 import horror.blueice129.HorrorMod129;
+import horror.blueice129.scheduler.AgroMeterScheduler;
 import horror.blueice129.utils.ChunkLoader;
 import horror.blueice129.utils.StructurePlacer;
 
@@ -84,7 +85,7 @@ public class PlayerDeathItems {
         
         // Get agro meter value for item tier selection
         horror.blueice129.data.HorrorModPersistentState state = horror.blueice129.data.HorrorModPersistentState.getServerState(server);
-        int agroMeter = state.getIntValue("agroMeter", 0);
+        int agroMeter = state.getIntValue(AgroMeterScheduler.AGRO_METER, 0);
         
         // Generate the items based on the config and agro meter
         List<ItemStack> items = generatePlayerItems(server, agroMeter);
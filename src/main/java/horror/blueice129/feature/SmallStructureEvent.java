@@ -2,28 +2,46 @@ package horror.blueice129.feature;
 
 import horror.blueice129.HorrorMod129;
 import horror.blueice129.data.HorrorModPersistentState;
+import horror.blueice129.data.SiteIndex;
+import horror.blueice129.scheduler.AgroMeterScheduler;
+import horror.blueice129.scheduler.JobExecutor;
+import net.minecraft.nbt.NbtCompound;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
 import net.minecraft.block.Blocks;
 import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.registry.tag.BlockTags;
 // import net.minecraft.block.BedBlock;
 import net.minecraft.item.Items;
 import horror.blueice129.utils.StructurePlacer;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.Heightmap;
 import net.minecraft.item.ItemStack;
 import net.minecraft.block.entity.FurnaceBlockEntity;
 // import net.minecraft.client.font.MultilineText.Line;
 import net.minecraft.block.entity.BlockEntity;
+import horror.blueice129.utils.SurfaceCandidates;
 import horror.blueice129.utils.SurfaceFinder;
 import horror.blueice129.utils.ChunkLoader;
 import horror.blueice129.utils.LineOfSightUtils;
+import horror.blueice129.utils.BlockTypes;
+import horror.blueice129.utils.AsyncLineOfSight;
 import horror.blueice129.utils.TorchPlacer;
 
 import net.minecraft.util.math.random.Random;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
 public class SmallStructureEvent {
     public static final String SMALL_STRUCTURE_TIMER_KEY = "smallStructureEventTimer";
     private static final Random RANDOM = Random.create();
+    // Minimum distances from earlier sites (see SiteIndex), so structures don't pile up in one area
+    private static final int MIN_STRUCTURE_DISTANCE = 32;
+    private static final int MIN_CAVE_DISTANCE = 16;
     // 2d list of a structure id and its weight
     public static String[][] STRUCTURE_LIST = { // not final, agro meter will change weights
             { "crafting_table", "10" },
@@ -125,7 +143,7 @@ public class SmallStructureEvent {
      * @param player The player whose agro meter is used for adjustment
      */
     private static void adjustWeightsBasedOnAgro(HorrorModPersistentState state) {
-        int agroMeter = state.getIntValue("agroMeter", 0);
+        int agroMeter = state.getIntValue(AgroMeterScheduler.AGRO_METER, 0);
 
         for (String[] structure : STRUCTURE_LIST) {
             String id = structure[0];
@@ -210,11 +228,11 @@ public class SmallStructureEvent {
         if (pos == null) {
             return false;
         }
-        if (LineOfSightUtils.hasLineOfSight(player, pos, 200)) {
+        if (LineOfSightUtils.hasLineOfSight(player, pos, 200, LineOfSightUtils.Precision.EIGHT_CORNERS)) {
             return false;
         }
         server.getOverworld().setBlockState(pos, Blocks.CRAFTING_TABLE.getDefaultState());
-        return true;
+        return recordSite(pos);
     }
 
     private static boolean furnaceEvent(MinecraftServer server, ServerPlayerEntity player) {
@@ -222,7 +240,7 @@ public class SmallStructureEvent {
         if (pos == null) {
             return false;
         }
-        if (LineOfSightUtils.hasLineOfSight(player, pos, 200)) {
+        if (LineOfSightUtils.hasLineOfSight(player, pos, 200, LineOfSightUtils.Precision.EIGHT_CORNERS)) {
             return false;
         }
         server.getOverworld().setBlockState(pos, Blocks.FURNACE.getDefaultState());
@@ -236,7 +254,7 @@ public class SmallStructureEvent {
             furnace.setStack(0, new ItemStack(Items.BEEF, itemAmount));
             furnace.setStack(1, new ItemStack(Items.COAL, coalAmount));
         }
-        return true;
+        return recordSite(pos);
     }
 
     private static boolean cobblestonePillarEvent(MinecraftServer server, ServerPlayerEntity player) {
@@ -258,10 +276,15 @@ public class SmallStructureEvent {
 
         Block[] pillarBlocks = { Blocks.COBBLESTONE, Blocks.DIRT, Blocks.OAK_PLANKS, Blocks.BIRCH_PLANKS};
         Block pillarBlock = pillarBlocks[RANDOM.nextInt(pillarBlocks.length)];
+        // Check the whole pillar in one batch; placing blocks only adds cover, so results stay valid
+        long[] pillarPositions = new long[height];
+        for (int i = 0; i < height; i++) {
+            pillarPositions[i] = BlockPos.asLong(pos.getX(), pos.getY() + i, pos.getZ());
+        }
+        BitSet visible = LineOfSightUtils.hasLineOfSight(player, pillarPositions, 200, null, LineOfSightUtils.Precision.EIGHT_CORNERS);
         for (int i = 0; i < height; i++) {
-            BlockPos pillarPos = pos.up(i);
-            if (!LineOfSightUtils.hasLineOfSight(player, pillarPos, 200)) {
-                server.getOverworld().setBlockState(pillarPos, pillarBlock.getDefaultState());
+            if (!visible.get(i)) {
+                server.getOverworld().setBlockState(pos.up(i), pillarBlock.getDefaultState());
             }
         }
         // server.getOverworld().setBlockState(pos.up(height), Blocks.TORCH.getDefaultState());
@@ -275,24 +298,17 @@ public class SmallStructureEvent {
 
 
         
-        return true;
+        return recordSite(pos);
     }
 
     private static BlockPos intrestingAreaFinder(MinecraftServer server, ServerPlayerEntity player) {
         int tries = 200;
-        // list of block types that are considered intresting
-        Block[] intrestingBlocks = { Blocks.CHEST, Blocks.TRAPPED_CHEST, Blocks.ENDER_CHEST, Blocks.TORCH,
-                Blocks.LANTERN, Blocks.HOPPER, Blocks.OBSIDIAN, Blocks.GOLD_BLOCK, Blocks.IRON_BLOCK,
-                Blocks.DIAMOND_BLOCK, Blocks.EMERALD_BLOCK, Blocks.NETHERITE_BLOCK, Blocks.LILY_OF_THE_VALLEY,
-                Blocks.HAY_BLOCK, Blocks.MOSS_BLOCK, Blocks.LAVA, Blocks.FIRE, Blocks.EMERALD_ORE, Blocks.DIAMOND_ORE, Blocks.SPAWNER
-            };
-
-        String[] intrestingPartialBlockNames = { "door", "bed", "stairs", "plank", "glass", "rail", "path"};
+        // block types that are considered intresting are in BlockTypes (INTERESTING)
         for (int i = 0; i < tries; i++) {
             BlockPos pos = StructurePlacer.findSurfaceLocation(server.getOverworld(), player.getBlockPos(), player, 80,
                     200);
 
-            if (pos != null) {
+            if (pos != null && !isTooCloseToSites(pos)) {
 
                 int searchRadius = 10;
                 int searchHeight = 3;
@@ -301,29 +317,15 @@ public class SmallStructureEvent {
                         for (int y = -1; y <= searchHeight - 1; y++) {
 
                             BlockPos checkPos = pos.add(x, y, z);
-                            Block blockAtPos = server.getOverworld().getBlockState(checkPos).getBlock();
+                            BlockState stateAtPos = server.getOverworld().getBlockState(checkPos);
                             if (checkPos.getY() <= 45) {
                                 HorrorMod129.LOGGER.info("returned cave pos: " + checkPos);
                                 return pos; // Found a deep hole/cave, return this position
                             }
-                            if (blockAtPos != Blocks.AIR || blockAtPos != Blocks.GRASS_BLOCK
-                                    || blockAtPos != Blocks.DIRT || blockAtPos != Blocks.SAND
-                                    || blockAtPos != Blocks.RED_SAND) {
-
-                                if (java.util.Arrays.asList(intrestingBlocks)
-                                        .contains(blockAtPos)) {
-                                    HorrorMod129.LOGGER.info("returned intresting block pos: " + checkPos);
-                                    return pos; // Found an intresting block, return this position
-                                } else {
-                                    String blockName = blockAtPos.getTranslationKey();
-                                    for (String partialName : intrestingPartialBlockNames) {
-                                        if (blockName.contains(partialName)) {
-                                            HorrorMod129.LOGGER.info("returned intresting partial block pos: " + checkPos);
-                                            HorrorMod129.LOGGER.info("block name: " + blockName);
-                                            return pos; // Found a block with an intresting structure attached
-                                        }
-                                    }
-                                }
+                            if (BlockTypes.isInteresting(stateAtPos)) {
+                                HorrorMod129.LOGGER.info("returned intresting block pos: " + checkPos);
+                                HorrorMod129.LOGGER.info("block name: " + stateAtPos.getBlock().getTranslationKey());
+                                return pos; // Found an intresting block, or one with an intresting structure attached
                             }
                         }
                     }
@@ -340,7 +342,7 @@ public class SmallStructureEvent {
         }
         // place torch
         TorchPlacer.placeTorch(server.getOverworld(), pos, RANDOM, player);
-        return true;
+        return recordSite(pos);
     }
 
     private static boolean torchedAreaEvent(MinecraftServer server, ServerPlayerEntity player) {
@@ -359,7 +361,7 @@ public class SmallStructureEvent {
                 }
             }
         }
-        return true;
+        return recordSite(pos);
     }
 
     private static BlockPos findAndLoadSurfaceLocation(MinecraftServer server, ServerPlayerEntity player,
@@ -369,14 +371,40 @@ public class SmallStructureEvent {
 
     private static BlockPos findAndLoadSurfaceLocation(MinecraftServer server, BlockPos origin,
             ServerPlayerEntity player, int minDistance, int maxDistance, boolean includeSnow) {
-        BlockPos pos = StructurePlacer.findSurfaceLocation(server.getOverworld(), origin, player, minDistance,
-                maxDistance, includeSnow);
-        if (pos == null || !ChunkLoader.loadChunksInRadius(server.getOverworld(), pos, 1)) {
+        BlockPos pos = null;
+        if (!includeSnow && origin.equals(player.getBlockPos())) {
+            // Found ahead of time, between ticks
+            pos = SurfaceCandidates.take(server.getOverworld(), player, minDistance, maxDistance,
+                    candidate -> !isTooCloseToSites(candidate));
+        }
+        if (pos == null) {
+            pos = StructurePlacer.findSurfaceLocation(server.getOverworld(), origin, player, minDistance,
+                    maxDistance, includeSnow);
+        }
+        if (pos == null || isTooCloseToSites(pos) || !ChunkLoader.loadChunksInRadius(server.getOverworld(), pos, 1)) {
             return null;
         }
         return pos;
     }
 
+    /**
+     * Checks the spacing rules against earlier structures and pre-mined caves.
+     */
+    private static boolean isTooCloseToSites(BlockPos pos) {
+        return SiteIndex.anyWithin(SiteIndex.SiteType.STRUCTURE, pos, MIN_STRUCTURE_DISTANCE)
+                || SiteIndex.anyWithin(SiteIndex.SiteType.PREMINED_CAVE, pos, MIN_CAVE_DISTANCE);
+    }
+
+    /**
+     * Records a placed structure in the site index.
+     *
+     * @return Always true, so events can end with it
+     */
+    private static boolean recordSite(BlockPos pos) {
+        SiteIndex.add(SiteIndex.SiteType.STRUCTURE, pos);
+        return true;
+    }
+
     private static void logStructureEvent(String structureId, ServerPlayerEntity player, boolean attempting) {
         String action = attempting ? "Attempting" : "completed";
         String statusInfo = attempting ? " at " + player.getBlockPos() : ": " + true;
@@ -386,7 +414,7 @@ public class SmallStructureEvent {
 
     private static void clearSnowIfPresent(MinecraftServer server, ServerPlayerEntity player, BlockPos pos) {
         if (server.getOverworld().getBlockState(pos).getBlock() == Blocks.SNOW) {
-            if (!LineOfSightUtils.hasLineOfSight(player, pos, 200)) {
+            if (!LineOfSightUtils.hasLineOfSight(player, pos, 200, LineOfSightUtils.Precision.EIGHT_CORNERS)) {
                 server.getOverworld().setBlockState(pos, Blocks.AIR.getDefaultState());
             }
         }
@@ -394,20 +422,30 @@ public class SmallStructureEvent {
 
     private static boolean mineTree(MinecraftServer server, ServerPlayerEntity player, BlockPos treePos) {
         BlockPos[] treeLogs = SurfaceFinder.getTreeLogPositions(server.getOverworld(), treePos);
-        for (BlockPos logPos : treeLogs) {
-            if (ChunkLoader.loadChunksInRadius(server.getOverworld(), logPos, 1)) {
-                if (!LineOfSightUtils.hasLineOfSight(player, logPos, 200)) {
-                    int chance = RANDOM.nextInt(10);
-
-                    if (chance == 0) {
-                        server.getOverworld().breakBlock(logPos, true, null);
-                    } else {
-                        server.getOverworld().setBlockState(logPos, Blocks.AIR.getDefaultState());
-                    }
-                        
-                } 
+        // Check every log in one batch before removing any; a hidden log can't be hiding a visible one
+        long[] logPositions = new long[treeLogs.length];
+        for (int i = 0; i < treeLogs.length; i++) {
+            logPositions[i] = treeLogs[i].asLong();
+        }
+        // Checked off-thread, the logs are removed when the result comes back (usually next tick)
+        AsyncLineOfSight.hasLineOfSight(player, logPositions, 200, LineOfSightUtils.Precision.EIGHT_CORNERS).thenAccept(visible -> {
+            for (int i = 0; i < treeLogs.length; i++) {
+                BlockPos logPos = treeLogs[i];
+                if (ChunkLoader.loadChunksInRadius(server.getOverworld(), logPos, 1)) {
+                    // Skip logs that were seen, or already changed since the check
+                    if (!visible.get(i) && server.getOverworld().getBlockState(logPos).isIn(BlockTags.LOGS)) {
+                        int chance = RANDOM.nextInt(10);
+
+                        if (chance == 0) {
+                            server.getOverworld().breakBlock(logPos, true, null);
+                        } else {
+                            server.getOverworld().setBlockState(logPos, Blocks.AIR.getDefaultState());
+                        }
+                            
+                    } 
+                }
             }
-        }
+        });
         return true;
     }
 
@@ -428,7 +466,7 @@ public class SmallStructureEvent {
         if (!ChunkLoader.loadChunksInRadius(server.getOverworld(), treePos, 1)) {
             return false;
         }
-        return mineTree(server, player, treePos);
+        return mineTree(server, player, treePos) && recordSite(treePos);
     }
 
     private static boolean deforestationEvent(MinecraftServer server, ServerPlayerEntity player) {
@@ -436,21 +474,104 @@ public class SmallStructureEvent {
         if (pos == null) {
             return false;
         }
-        
-        BlockPos[] treePositions = SurfaceFinder.findTreePositions(server.getOverworld(), pos, 40);
-        if (treePositions.length == 0) {
-            return false;
-        }
-        boolean removedAnyTrees = false;
-        for (BlockPos treePos : treePositions) {
-            if (RANDOM.nextInt(100) < 90) {
-                if (ChunkLoader.loadChunksInRadius(server.getOverworld(), treePos, 1)) {
-                    mineTree(server, player, treePos);
-                    removedAnyTrees = true;
+
+        // The trees are found and cut over the next ticks, the job records the site if it cuts any
+        JobExecutor.submit("deforestation", JobExecutor.Priority.LOW, player.getUuid(),
+                new DeforestationJob(pos, 40, RANDOM.nextLong()));
+        return true;
+    }
+
+    /**
+     * Makes the structure jobs saveable, so they go on after a restart. Call during mod initialization.
+     */
+    public static void registerJobTypes() {
+        JobExecutor.registerType(DeforestationJob.TYPE, DeforestationJob::new);
+        JobExecutor.registerType(ChunkDeletionJob.TYPE, ChunkDeletionJob::new);
+    }
+
+    /**
+     * Searches for trees one row of columns per step, then cuts most of them, one tree per step.
+     */
+    private static class DeforestationJob extends JobExecutor.Job<Integer> {
+        static final String TYPE = "deforestation";
+
+        private final BlockPos center;
+        private final int radius;
+        private final Random random;
+        private final List<BlockPos> treePositions;
+        private int nextRow;
+        private int nextTree;
+        private int treesCut;
+
+        DeforestationJob(BlockPos center, int radius, long seed) {
+            this.center = center;
+            this.radius = radius;
+            this.random = Random.create(seed);
+            this.treePositions = new ArrayList<>();
+        }
+
+        DeforestationJob(NbtCompound nbt) {
+            this.center = BlockPos.fromLong(nbt.getLong("center"));
+            this.radius = nbt.getInt("radius");
+            this.random = Random.create(nbt.getLong("seed"));
+            this.treePositions = JobExecutor.unpackPositions(nbt.getLongArray("trees"));
+            this.nextRow = nbt.getInt("nextRow");
+            this.nextTree = nbt.getInt("nextTree");
+            this.treesCut = nbt.getInt("treesCut");
+        }
+
+        @Override
+        protected String getType() {
+            return TYPE;
+        }
+
+        @Override
+        protected void writeNbt(NbtCompound nbt) {
+            nbt.putLong("center", center.asLong());
+            nbt.putInt("radius", radius);
+            nbt.putLong("seed", reseed(random));
+            nbt.putLongArray("trees", JobExecutor.packPositions(treePositions));
+            nbt.putInt("nextRow", nextRow);
+            nbt.putInt("nextTree", nextTree);
+            nbt.putInt("treesCut", treesCut);
+        }
+
+        @Override
+        protected boolean step(MinecraftServer server, ServerPlayerEntity player) {
+            ServerWorld world = server.getOverworld();
+            if (nextRow <= 2 * radius) {
+                int x = center.getX() - radius + nextRow++;
+                for (int z = center.getZ() - radius; z <= center.getZ() + radius; z++) {
+                    BlockPos treePos = SurfaceFinder.findTreeAt(world, x, z);
+                    if (treePos != null) {
+                        treePositions.add(treePos);
+                    }
+                }
+                return false;
+            }
+
+            if (nextTree < treePositions.size()) {
+                BlockPos treePos = treePositions.get(nextTree++);
+                if (random.nextInt(100) < 90) {
+                    if (ChunkLoader.loadChunksInRadius(world, treePos, 1)) {
+                        mineTree(server, player, treePos);
+                        treesCut++;
+                    }
                 }
             }
+            if (nextTree < treePositions.size()) {
+                return false;
+            }
+            if (treesCut > 0) {
+                recordSite(center);
+            }
+            return true;
+        }
+
+        @Override
+        protected Integer getResult() {
+            return treesCut;
         }
-        return removedAnyTrees;
     }
 
     private static boolean flowerPatchEvent(MinecraftServer server, ServerPlayerEntity player) {
@@ -475,7 +596,7 @@ public class SmallStructureEvent {
                     blockBelow.equals(Blocks.PODZOL) || blockBelow.equals(Blocks.MYCELIUM)
                     || blockBelow.equals(Blocks.DIRT) || blockBelow.equals(Blocks.COARSE_DIRT)) {
                 if (ChunkLoader.loadChunksInRadius(server.getOverworld(), flowerPos, 1)) {
-                    if (!LineOfSightUtils.hasLineOfSight(player, flowerPos, 200)) {
+                    if (!LineOfSightUtils.hasLineOfSight(player, flowerPos, 200, LineOfSightUtils.Precision.EIGHT_CORNERS)) {
                         server.getOverworld().setBlockState(flowerPos, Blocks.LILY_OF_THE_VALLEY.getDefaultState());
                     }
                     // if (!LineOfSightUtils.hasLineOfSight(player, flowerPos.up(10), 200)) {
@@ -484,7 +605,7 @@ public class SmallStructureEvent {
                 }
             }
         }
-        return true;
+        return recordSite(pos);
     }
 
     private static boolean watchtowerEvent(MinecraftServer server, ServerPlayerEntity player) {
@@ -497,7 +618,7 @@ public class SmallStructureEvent {
 
     private static boolean chunkDeletionEvent(MinecraftServer server, ServerPlayerEntity player) {
         BlockPos pos = StructurePlacer.findSurfaceLocation(server.getOverworld(), player.getBlockPos(), player, 100, 200);
-        if (pos == null || LineOfSightUtils.hasLineOfSight(player, pos, 200)) {
+        if (pos == null || isTooCloseToSites(pos) || LineOfSightUtils.hasLineOfSight(player, pos, 200)) {
             return false;
         }
 
@@ -518,12 +639,109 @@ public class SmallStructureEvent {
             return false;
         }
 
-        if (hasProtectedBlocks(server, player, startX, startZ, worldBottomY, worldTopY)) {
-            return false;
+        // Checked and emptied column by column over the next ticks, the job records the site if it empties any
+        JobExecutor.submit("chunk deletion", JobExecutor.Priority.LOW, player.getUuid(),
+                new ChunkDeletionJob(pos, startX, startZ, worldBottomY, worldTopY));
+        return true;
+    }
+
+    /**
+     * Checks every column of a chunk for protected blocks, several columns per step, and if there are none
+     * empties the chunk one column per step. The deletion can go on much later (the job waits for its player
+     * and survives restarts), so each column is checked again right before it goes: the job stops if its
+     * chunk isn't loaded or the column got a protected block, and waits while the player sees the column.
+     * A job loaded from the save scans the whole chunk again first. The site is recorded when the job ends,
+     * only if at least one column was emptied.
+     */
+    private static class ChunkDeletionJob extends JobExecutor.Job<Boolean> {
+        static final String TYPE = "chunk_deletion";
+        private static final int COLUMNS = 16 * 16;
+        private static final int COLUMNS_CHECKED_PER_STEP = 16;
+
+        private final BlockPos site;
+        private final int startX;
+        private final int startZ;
+        private final int worldBottomY;
+        private final int worldTopY;
+        private int checked;
+        private int deleted;
+
+        ChunkDeletionJob(BlockPos site, int startX, int startZ, int worldBottomY, int worldTopY) {
+            this.site = site;
+            this.startX = startX;
+            this.startZ = startZ;
+            this.worldBottomY = worldBottomY;
+            this.worldTopY = worldTopY;
+        }
+
+        ChunkDeletionJob(NbtCompound nbt) {
+            this(BlockPos.fromLong(nbt.getLong("site")), nbt.getInt("startX"), nbt.getInt("startZ"),
+                    nbt.getInt("bottomY"), nbt.getInt("topY"));
+            this.deleted = nbt.getInt("deleted"); // The scan starts over, the world may have changed meanwhile
+        }
+
+        @Override
+        protected String getType() {
+            return TYPE;
+        }
+
+        @Override
+        protected void writeNbt(NbtCompound nbt) {
+            nbt.putLong("site", site.asLong());
+            nbt.putInt("startX", startX);
+            nbt.putInt("startZ", startZ);
+            nbt.putInt("bottomY", worldBottomY);
+            nbt.putInt("topY", worldTopY);
+            nbt.putInt("deleted", deleted);
+        }
+
+        @Override
+        protected boolean step(MinecraftServer server, ServerPlayerEntity player) {
+            if (checked < COLUMNS) {
+                for (int i = 0; i < COLUMNS_CHECKED_PER_STEP && checked < COLUMNS; i++, checked++) {
+                    if (hasProtectedBlocks(server, player, startX + checked / 16, startZ + checked % 16, worldBottomY, worldTopY)) {
+                        return finish(); // Leave the rest of the chunk alone
+                    }
+                }
+                return false;
+            }
+
+            ServerWorld world = server.getOverworld();
+            int x = startX + deleted / 16;
+            int z = startZ + deleted % 16;
+            if (!ChunkLoader.loadChunksInRadius(world, new BlockPos(x, worldBottomY, z), 1)
+                    || hasProtectedBlocks(server, player, x, z, worldBottomY, worldTopY)) {
+                return finish(); // Unloaded or changed since the scan, leave the rest alone
+            }
+            BlockPos top = new BlockPos(x, world.getTopY(Heightmap.Type.WORLD_SURFACE, x, z) - 1, z);
+            if (LineOfSightUtils.hasLineOfSight(player, top, 200)) {
+                return false; // Wait until the player looks away
+            }
+
+            deleteColumnBlocks(server, x, z, worldBottomY, worldTopY);
+            deleted++;
+            if (deleted < COLUMNS) {
+                return false;
+            }
+            return finish();
         }
 
-        deleteChunkBlocks(server, startX, startZ, worldBottomY, worldTopY);
-        return true;
+        /**
+         * Records the site if any column was emptied.
+         *
+         * @return Always true, so steps can end with it
+         */
+        private boolean finish() {
+            if (deleted > 0) {
+                recordSite(site);
+            }
+            return true;
+        }
+
+        @Override
+        protected Boolean getResult() {
+            return deleted >= COLUMNS;
+        }
     }
 
     private static boolean isChunkNearSpawn(ServerPlayerEntity player, int chunkX, int chunkZ, int chunkRadius) {
@@ -537,58 +755,31 @@ public class SmallStructureEvent {
     }
 
     private static boolean hasProtectedBlocks(MinecraftServer server, ServerPlayerEntity player, 
-                                              int startX, int startZ, int worldBottomY, int worldTopY) {
-        int endX = startX + 15;
-        int endZ = startZ + 15;
+                                              int x, int z, int worldBottomY, int worldTopY) {
         BlockPos spawnPos = player.getSpawnPointPosition();
         var world = server.getOverworld();
 
-        for (int x = startX; x <= endX; x++) {
-            for (int z = startZ; z <= endZ; z++) {
-                for (int y = worldBottomY; y < worldTopY; y++) {
-                    BlockPos blockPos = new BlockPos(x, y, z);
-                    
-                    if (spawnPos != null && blockPos.equals(spawnPos)) {
-                        return true;
-                    }
-                    
-                    Block block = world.getBlockState(blockPos).getBlock();
-                    if (block instanceof net.minecraft.block.ChestBlock ||
-                        block instanceof net.minecraft.block.TrappedChestBlock ||
-                        block instanceof net.minecraft.block.BarrelBlock ||
-                        block instanceof net.minecraft.block.BedBlock ||
-                        block instanceof net.minecraft.block.EnderChestBlock ||
-                        block instanceof net.minecraft.block.StairsBlock ||
-                        block instanceof net.minecraft.block.DoorBlock ||
-                        block instanceof net.minecraft.block.GlassBlock ||
-                        block instanceof net.minecraft.block.FenceBlock ||
-                        block instanceof net.minecraft.block.PaneBlock ||
-                        block instanceof net.minecraft.block.AnvilBlock ||
-                        block instanceof net.minecraft.block.FurnaceBlock ||
-                        block instanceof net.minecraft.block.LadderBlock ||
-                        block instanceof net.minecraft.block.HopperBlock ||
-                        block instanceof net.minecraft.block.CraftingTableBlock) {
-                        return true;
-                    }
-                }
+        for (int y = worldBottomY; y < worldTopY; y++) {
+            BlockPos blockPos = new BlockPos(x, y, z);
+            
+            if (spawnPos != null && blockPos.equals(spawnPos)) {
+                return true;
+            }
+            
+            if (BlockTypes.isProtected(world.getBlockState(blockPos))) {
+                return true;
             }
         }
         return false;
     }
 
-    private static void deleteChunkBlocks(MinecraftServer server, int startX, int startZ, 
-                                          int worldBottomY, int worldTopY) {
-        int endX = startX + 15;
-        int endZ = startZ + 15;
+    private static void deleteColumnBlocks(MinecraftServer server, int x, int z, 
+                                           int worldBottomY, int worldTopY) {
         var world = server.getOverworld();
         var airState = Blocks.AIR.getDefaultState();
 
-        for (int x = startX; x <= endX; x++) {
-            for (int z = startZ; z <= endZ; z++) {
-                for (int y = worldBottomY; y < worldTopY; y++) {
-                    world.setBlockState(new BlockPos(x, y, z), airState);
-                }
-            }
+        for (int y = worldBottomY; y < worldTopY; y++) {
+            world.setBlockState(new BlockPos(x, y, z), airState);
         }
     }
 
@@ -621,7 +812,7 @@ public class SmallStructureEvent {
                     BlockPos fireOnLogPos = logPos.add(0, 1, 0);
                     clearSnowIfPresent(server, player, fireOnLogPos);
                     if (server.getOverworld().getBlockState(fireOnLogPos).isAir()) {
-                        if (!LineOfSightUtils.hasLineOfSight(player, fireOnLogPos, 200)) {
+                        if (!LineOfSightUtils.hasLineOfSight(player, fireOnLogPos, 200, LineOfSightUtils.Precision.EIGHT_CORNERS)) {
                             server.getOverworld().setBlockState(fireOnLogPos, Blocks.FIRE.getDefaultState());
                         }
                     }
@@ -632,14 +823,14 @@ public class SmallStructureEvent {
                     BlockPos firePos = logPos.add(RANDOM.nextInt(3) - 1, RANDOM.nextInt(2), RANDOM.nextInt(3) - 1);
                     clearSnowIfPresent(server, player, firePos);
                     if (server.getOverworld().getBlockState(firePos).isAir()) {
-                        if (!LineOfSightUtils.hasLineOfSight(player, firePos, 200)) {
+                        if (!LineOfSightUtils.hasLineOfSight(player, firePos, 200, LineOfSightUtils.Precision.EIGHT_CORNERS)) {
                             server.getOverworld().setBlockState(firePos, Blocks.FIRE.getDefaultState());
                         }
                     }
                 }
             }
         }
-        return true;
+        return recordSite(pos);
     }
 
 }
\ No newline at end of file
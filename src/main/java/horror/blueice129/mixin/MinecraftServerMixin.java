@@ -0,0 +1,24 @@
+package horror.blueice129.mixin;
+
+import horror.blueice129.scheduler.IdleExecutor;
+import net.minecraft.server.MinecraftServer;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+@Mixin(MinecraftServer.class)
+public abstract class MinecraftServerMixin {
+	// When the next tick is due, in Util.getMeasuringTimeMs time
+	@Shadow
+	private long timeReference;
+
+	@Inject(at = @At("RETURN"), method = "runOneTask", cancellable = true)
+	private void runIdleWork(CallbackInfoReturnable<Boolean> info) {
+		// The server had no task of its own left; it would sleep until the next tick
+		if (!info.getReturnValueZ() && IdleExecutor.runStep((MinecraftServer) (Object) this, timeReference * 1_000_000L)) {
+			info.setReturnValue(true);
+		}
+	}
+}
\ No newline at end of file
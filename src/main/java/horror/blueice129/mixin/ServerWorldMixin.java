@@ -0,0 +1,19 @@
+package horror.blueice129.mixin;
+
+import horror.blueice129.utils.BlockChangeCallback;
+import net.minecraft.block.BlockState;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ServerWorld.class)
+public class ServerWorldMixin {
+	@Inject(at = @At("HEAD"), method = "onBlockChanged")
+	private void notifyBlockChanged(BlockPos pos, BlockState oldBlock, BlockState newBlock, CallbackInfo info) {
+		// Called by World.setBlockState after every real state change
+		BlockChangeCallback.EVENT.invoker().onBlockChanged((ServerWorld) (Object) this, pos, oldBlock, newBlock);
+	}
+}
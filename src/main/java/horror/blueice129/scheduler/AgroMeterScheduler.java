@@ -2,10 +2,9 @@ package horror.blueice129.scheduler;
 
 import horror.blueice129.HorrorMod129;
 import horror.blueice129.data.HorrorModPersistentState;
+import horror.blueice129.data.StateKey;
 import horror.blueice129.utils.DayUtils;
-import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
-import net.minecraft.server.MinecraftServer;
 import net.minecraft.world.World;
 
 /**
@@ -14,13 +13,15 @@ import net.minecraft.world.World;
  * Maximum aggro meter value is capped at 10.
  */
 public class AgroMeterScheduler {
-    private static final String LAST_KNOWN_DAY_KEY = "lastKnownDay";
+    public static final StateKey.IntKey AGRO_METER = StateKey.intValue("agroMeter");
+    private static final StateKey.IntKey LAST_KNOWN_DAY_KEY = StateKey.intValue("lastKnownDay");
     
     /**
      * Registers the tick event to track day changes and update aggro meter.
      */
     public static void register() {
-        ServerTickEvents.END_SERVER_TICK.register(AgroMeterScheduler::onServerTick);
+        // Only check once per 200 ticks (10 seconds)
+        TickDispatcher.every("agro_meter", 200, false, AgroMeterScheduler::onServerTick);
         
         ServerWorldEvents.LOAD.register((server, world) -> {
             if (world.isClient())
@@ -32,12 +33,12 @@ public class AgroMeterScheduler {
                 int lastKnownDay = state.getIntValue(LAST_KNOWN_DAY_KEY, -1);
                 if (lastKnownDay == -1) {
                     long worldTime = server.getOverworld().getTimeOfDay();
-                    long worldTimeOffset = state.getLongValue("worldTimeOffset", 0L);
+                    long worldTimeOffset = state.getLongValue(OnWorldCreation.WORLD_TIME_OFFSET, 0L);
                     int currentDay = DayUtils.getCurrentActualDay(worldTime, worldTimeOffset);
                     
                     state.setIntValue(LAST_KNOWN_DAY_KEY, currentDay);
                     int initialAggro = Math.min(10, Math.max(1, (int)Math.ceil(currentDay / 3.0)));
-                    state.setIntValue("agroMeter", initialAggro);
+                    state.setIntValue(AGRO_METER, initialAggro);
                     
                     HorrorMod129.LOGGER.info("AgroMeterScheduler initialized: Day {}, Aggro {}", currentDay, initialAggro);
                 }
@@ -48,23 +49,18 @@ public class AgroMeterScheduler {
     }
     
     /**
-     * Called every server tick to check for day changes.
+     * Called every 200 ticks to check for day changes.
      */
-    private static void onServerTick(MinecraftServer server) {
-        // Only check once per 200 ticks (10 seconds)
-        if (server.getTicks() % (200) != 0) {
-            return;
-        }
-        
-        World overworld = server.getOverworld();
+    private static void onServerTick(TickDispatcher.TickContext context) {
+        World overworld = context.overworld;
         if (overworld == null) {
             return;
         }
         
-        HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
+        HorrorModPersistentState state = context.state;
         
         long worldTime = overworld.getTimeOfDay();
-        long worldTimeOffset = state.getLongValue("worldTimeOffset", 0L);
+        long worldTimeOffset = state.getLongValue(OnWorldCreation.WORLD_TIME_OFFSET, 0L);
         int currentDay = DayUtils.getCurrentActualDay(worldTime, worldTimeOffset);
         int lastKnownDay = state.getIntValue(LAST_KNOWN_DAY_KEY, 0);
         
@@ -75,7 +71,7 @@ public class AgroMeterScheduler {
             
             // Set aggro meter to current day (minimum 1, capped at 10)
             int newAggro = Math.min(10, Math.max(1, (int)Math.ceil(currentDay / 3.0)));
-            state.setIntValue("agroMeter", newAggro);
+            state.setIntValue(AGRO_METER, newAggro);
             
             HorrorMod129.LOGGER.info("Day changed from {} to {}. Aggro meter set to {}", 
                 lastKnownDay, currentDay, newAggro);
@@ -2,8 +2,8 @@ package horror.blueice129.scheduler;
 
 import horror.blueice129.HorrorMod129;
 import horror.blueice129.data.HorrorModPersistentState;
+import horror.blueice129.data.StateKey;
 import horror.blueice129.entity.Blueice129Entity;
-import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
 import net.minecraft.registry.entry.RegistryEntry;
 import net.minecraft.server.MinecraftServer;
@@ -22,7 +22,7 @@ import net.minecraft.util.math.random.Random;
  * Occurs every 10-30 minutes of playtime.
  */
 public class Blueice129SpawnScheduler {
-    private static final String TIMER_ID = "blueice129_spawn_timer";
+    private static final StateKey.TimerKey TIMER_ID = StateKey.timer("blueice129_spawn_timer");
     private static final Random RANDOM = Random.create();
 
     private static final int MIN_DELAY = 20 * 60 * 10; // 10 minutes
@@ -52,38 +52,22 @@ public class Blueice129SpawnScheduler {
     }
 
     /**
-     * Server tick handler to check and attempt entity spawning.
+     * Called by EventTimers when the spawn timer runs out, to attempt entity spawning.
      * 
      * @param server The Minecraft server instance
      */
-    private static void onServerTick(MinecraftServer server) {
-        // Skip if server is empty (pause timers)
-        if (server.getPlayerManager().getPlayerList().isEmpty()) {
-            return;
-        }
-        
+    private static void onTimerExpired(MinecraftServer server) {
         HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
-        if (!state.hasTimer(TIMER_ID)) {
-            return; // Timer not initialized yet
-        }
 
-        int timer = state.getTimer(TIMER_ID);
-        if (timer > 0) {
-            state.setTimer(TIMER_ID, timer - 1);
+        // Timer reached zero, attempt to spawn
+        boolean retry = attemptSpawn(server);
+
+        if (retry) {
+            state.setTimer(TIMER_ID, 20 * 60 * 1); // Retry in 1 minute if spawn failed
+            HorrorMod129.LOGGER.info("Blueice129 spawn attempt failed, retrying in 1 minute");
         } else {
-            // Timer reached zero, attempt to spawn
-            boolean retry = attemptSpawn(server);
-
-            if (retry) {
-                state.setTimer(TIMER_ID, 20 * 60 * 1); // Retry in 1 minute if spawn failed
-                HorrorMod129.LOGGER.info("Blueice129 spawn attempt failed, retrying in 1 minute");
-                
-            } else {
-                HorrorMod129.LOGGER.info("Blueice129 spawn attempt completed");
-                state.setTimer(TIMER_ID, getRandomDelay());
-            }
-            
-            
+            HorrorMod129.LOGGER.info("Blueice129 spawn attempt completed");
+            state.setTimer(TIMER_ID, getRandomDelay());
         }
     }
 
@@ -109,7 +93,7 @@ public class Blueice129SpawnScheduler {
 
         // Get agro meter and calculate spawn chance
         HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
-        int agroMeter = state.getIntValue("agroMeter", 0);
+        int agroMeter = state.getIntValue(AgroMeterScheduler.AGRO_METER, 0);
         double spawnChance = getSpawnChance(agroMeter);
 
         // Roll for spawn chance
@@ -259,7 +243,8 @@ public class Blueice129SpawnScheduler {
      * This should be called during mod initialization.
      */
     public static void register() {
-        ServerTickEvents.END_SERVER_TICK.register(Blueice129SpawnScheduler::onServerTick);
+        EventTimers.setHandler(TIMER_ID, TriggerPlanner.Cost.HEAVY, JobExecutor.Priority.NORMAL,
+                Blueice129SpawnScheduler::onTimerExpired);
 
         // Register server world loading event to initialize timer if needed
         ServerWorldEvents.LOAD.register((server, world) -> {
@@ -301,7 +286,7 @@ public class Blueice129SpawnScheduler {
      */
     public static String getSpawnChanceString(MinecraftServer server) {
         HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
-        int agroMeter = state.getIntValue("agroMeter", 0);
+        int agroMeter = state.getIntValue(AgroMeterScheduler.AGRO_METER, 0);
         double spawnChance = getSpawnChance(agroMeter);
         return String.format("%d%% (agro: %d)", (int) (spawnChance * 100), agroMeter);
     }
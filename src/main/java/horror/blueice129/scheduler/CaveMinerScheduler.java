@@ -2,8 +2,8 @@ package horror.blueice129.scheduler;
 
 import horror.blueice129.HorrorMod129;
 import horror.blueice129.data.HorrorModPersistentState;
+import horror.blueice129.data.StateKey;
 import horror.blueice129.feature.CavePreMiner;
-import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
@@ -11,6 +11,8 @@ import net.minecraft.world.World;
 
 import net.minecraft.util.math.random.Random;
 
+import java.util.concurrent.CancellationException;
+
 /**
  * This class schedules the cave miner event
  * it occurs every 20-60 minutes
@@ -22,14 +24,16 @@ public class CaveMinerScheduler {
     private static int MAX_DELAY = 72000; // 60 minutes
     private static int MIN_DELAY = 20000; // 20 minutes
 
-    private static final String TIMER_ID = "caveMinerTimer";
+    private static final StateKey.TimerKey TIMER_ID = StateKey.timer("caveMinerTimer");
 
     /**
      * Registers the tick event to handle the cave miner scheduling.
      * This should be called during mod initialization.
      */
     public static void register() {
-        ServerTickEvents.END_SERVER_TICK.register(CaveMinerScheduler::onServerTick);
+        EventTimers.setHandler(TIMER_ID, TriggerPlanner.Cost.HEAVY, JobExecutor.Priority.LOW,
+                CaveMinerScheduler::onTimerExpired);
+        CavePreMiner.registerJobTypes();
         
         // Register server world loading event to initialize timer if needed
         ServerWorldEvents.LOAD.register((server, world) -> {
@@ -49,42 +53,35 @@ public class CaveMinerScheduler {
     }
 
     /**
-     * Called every server tick.
-     * Updates timers and triggers the cave miner event when the timer reaches zero.
+     * Called by EventTimers when the timer runs out (timers only count down while players are online).
+     * Triggers the cave miner event. The next delay is set right away, so the timer keeps running while the
+     * pre-mining job waits for its player or continues after a restart; a failed attempt shortens it to a retry.
      * 
      * @param server The Minecraft server instance
      */
-    private static void onServerTick(MinecraftServer server) {
-        // Skip if the server is empty
-        if (server.getPlayerManager().getPlayerList().isEmpty()) {
-            return;
-        }
-
+    private static void onTimerExpired(MinecraftServer server) {
         // Select a random player from the server
         ServerPlayerEntity player = server.getPlayerManager().getPlayerList()
                 .get(random.nextInt(server.getPlayerManager().getPlayerList().size()));
-            
-            // Get our persistent state
-            HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
-
-            // Get current timer value and decrement (only happens if players are online)
-            int currentTimer = state.decrementTimer(TIMER_ID, 1);
-
-            // If the timer has reached zero
-            if (currentTimer <= 0) {
-                // Trigger the cave miner event
-                while (!CavePreMiner.preMineCave(player.getWorld(), player.getBlockPos(), player)) {
-                    // If unsuccessful, set a short retry delay
-                    int retryDelay = 1200; // 1 minute
-                    state.setTimer(TIMER_ID, retryDelay);
-                    HorrorMod129.LOGGER.info("CavePreMiner attempt failed, retrying in 1 minute.");
-                    return;
-                }
-                HorrorMod129.LOGGER.info("CavePreMiner event executed successfully.");
+        HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
 
-                // Reset the timer with a new random delay
-                state.setTimer(TIMER_ID, getRandomDelay());
+        // Trigger the cave miner event
+        CavePreMiner.preMineCave(player.getWorld(), player.getBlockPos(), player).whenComplete((success, error) -> {
+            if (error instanceof CancellationException) {
+                return; // Cancelled by command; the next delay stays
+            }
+            if (!Boolean.TRUE.equals(success)) {
+                // If unsuccessful, set a short retry delay
+                int retryDelay = 1200; // 1 minute
+                state.setTimer(TIMER_ID, retryDelay);
+                HorrorMod129.LOGGER.info("CavePreMiner attempt failed, retrying in 1 minute.");
+                return;
             }
+            HorrorMod129.LOGGER.info("CavePreMiner event executed successfully.");
+        });
+
+        // Reset the timer with a new random delay
+        state.setTimer(TIMER_ID, getRandomDelay());
     }
 
     /**
@@ -0,0 +1,73 @@
+package horror.blueice129.scheduler;
+
+import horror.blueice129.HorrorMod129;
+import horror.blueice129.data.HorrorModPersistentState;
+import horror.blueice129.data.StateKey;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.minecraft.server.MinecraftServer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Drives the schedulers' timers. Each tick with players online advances the persistent state's timing wheel,
+ * and each timer that runs out calls the handler its scheduler registered, unless TriggerPlanner holds
+ * the event back, in which case the timer is set again to the start it planned. Ticks where nothing runs out
+ * cost one empty wheel slot and don't touch the saved data.
+ * Timers pause while the server is empty, like the per-tick countdowns they replace.
+ */
+public class EventTimers {
+    private static final Map<StateKey.TimerKey, Consumer<MinecraftServer>> HANDLERS = new HashMap<>();
+
+    /**
+     * Adds the tick task that advances the timers. Call during mod initialization, before the schedulers.
+     */
+    public static void register() {
+        // Timers pause while the server is empty
+        TickDispatcher.everyTick("timers", true, EventTimers::onServerTick);
+        // Save the current remaining times on shutdown even if nothing else changed
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> HorrorModPersistentState.getServerState(server).markDirty());
+
+        HorrorMod129.LOGGER.info("Registered EventTimers");
+    }
+
+    /**
+     * Sets what happens when a timer runs out, for a light event of normal priority.
+     *
+     * @param timer The timer
+     * @param handler Called on the server thread when the timer runs out
+     */
+    public static void setHandler(StateKey.TimerKey timer, Consumer<MinecraftServer> handler) {
+        setHandler(timer, TriggerPlanner.Cost.LIGHT, JobExecutor.Priority.NORMAL, handler);
+    }
+
+    /**
+     * Sets what happens when a timer runs out. The handler usually starts the event and sets the timer again.
+     *
+     * @param timer The timer
+     * @param cost How expensive the event is to start, see TriggerPlanner
+     * @param priority Which events wait first when the server is busy
+     * @param handler Called on the server thread when the timer runs out and the event may start
+     */
+    public static void setHandler(StateKey.TimerKey timer, TriggerPlanner.Cost cost, JobExecutor.Priority priority,
+            Consumer<MinecraftServer> handler) {
+        HANDLERS.put(timer, handler);
+        TriggerPlanner.classify(timer, cost, priority);
+    }
+
+    private static void onServerTick(TickDispatcher.TickContext context) {
+        context.state.tickTimers(timer -> {
+            Consumer<MinecraftServer> handler = HANDLERS.get(timer);
+            if (handler == null) {
+                return;
+            }
+            int delay = TriggerPlanner.plan(context.server, timer, context.tick);
+            if (delay > 0) {
+                context.state.setTimer(timer, delay);
+                return;
+            }
+            handler.accept(context.server);
+        });
+    }
+}
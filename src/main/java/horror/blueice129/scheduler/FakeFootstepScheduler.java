@@ -2,8 +2,9 @@ package horror.blueice129.scheduler;
 
 import horror.blueice129.HorrorMod129;
 import horror.blueice129.data.HorrorModPersistentState;
+import horror.blueice129.data.SessionCheckpoints;
+import horror.blueice129.data.StateKey;
 import horror.blueice129.sounds.FakeFootsteps;
-import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
@@ -13,7 +14,7 @@ import java.util.Random;
 
 public class FakeFootstepScheduler {
     private static final Random random = new Random();
-    private static final String TIMER_ID = "fakeFootstepTimer";
+    private static final StateKey.TimerKey TIMER_ID = StateKey.timer("fakeFootstepTimer");
     private static final int MIN_DELAY = 20 * 60 * 20; // 20 minutes in ticks
     private static final int MAX_DELAY = 20 * 60 * 45; // 45 minutes in ticks
     private static final int MIN_AGRO = 7;
@@ -24,7 +25,10 @@ public class FakeFootstepScheduler {
      * This should be called during mod initialization.
      */
     public static void register() {
-        ServerTickEvents.END_SERVER_TICK.register(FakeFootstepScheduler::onServerTick);
+        TickDispatcher.everyTick("fake_footsteps", false, FakeFootstepScheduler::onServerTick);
+        EventTimers.setHandler(TIMER_ID, FakeFootstepScheduler::onTimerExpired);
+        SessionCheckpoints.add(FakeFootsteps::restore, FakeFootsteps::checkpoint);
+        FakeFootsteps.registerRetention();
 
         // Initialize timer when world loads
         ServerWorldEvents.LOAD.register((server, world) -> {
@@ -43,40 +47,39 @@ public class FakeFootstepScheduler {
         HorrorMod129.LOGGER.info("Registered FakeFootstepScheduler");
     }
 
-    private static void onServerTick(MinecraftServer server) {
-        HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
+    private static void onServerTick(TickDispatcher.TickContext context) {
+        HorrorModPersistentState state = context.state;
 
-        if (state.getIntValue("agroMeter", 0) < MIN_AGRO) {
+        if (state.getIntValue(AgroMeterScheduler.AGRO_METER, 0) < MIN_AGRO) {
             return; // Don't run footstep logic if agro level is too low
         }
 
         // Handle active footstep playback
-        int playbackActive = state.getIntValue("fakeFootstepActive", 0);
-        if (playbackActive == 1) {
-            int playbackTimer = state.getIntValue("fakeFootstepPlaybackTimer", 0);
-            if (playbackTimer > 0) {
-                state.setIntValue("fakeFootstepPlaybackTimer", playbackTimer - 1);
-            } else {
-                FakeFootsteps.tickFootstepPlayback(server);
-            }
-            return; // Don't process main timer while playback is active
+        int playbackActive = state.getIntValue(FakeFootsteps.KEY_ACTIVE, 0);
+        if (playbackActive == 1 && FakeFootsteps.countDownPlaybackTimer()) {
+            FakeFootsteps.tickFootstepPlayback(context.server);
         }
+    }
 
-        // Handle main trigger timer
-        int currentTimer = state.getTimer(TIMER_ID);
-        if (currentTimer > 0) {
-            currentTimer = state.decrementTimer(TIMER_ID, 1);
+    /**
+     * Called by EventTimers when the main trigger timer runs out.
+     */
+    private static void onTimerExpired(MinecraftServer server) {
+        HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
+        if (state.getIntValue(AgroMeterScheduler.AGRO_METER, 0) < MIN_AGRO
+                || state.getIntValue(FakeFootsteps.KEY_ACTIVE, 0) == 1) {
+            // Not allowed to start yet: wait a full delay again, so it doesn't start right when it becomes allowed
+            state.setTimer(TIMER_ID, getRandomDelay());
+            return;
+        }
 
-            if (currentTimer == 0) {
-                // Timer expired, try to trigger footsteps
-                boolean triggered = tryTriggerFootsteps(server);
+        // Timer expired, try to trigger footsteps
+        boolean triggered = tryTriggerFootsteps(server);
 
-                if (triggered) {
-                    state.setTimer(TIMER_ID, getRandomDelay());
-                } else {
-                    state.setTimer(TIMER_ID, 20 * 60 * 3); // Retry in 5 minutes if conditions not met
-                }
-            }
+        if (triggered) {
+            state.setTimer(TIMER_ID, getRandomDelay());
+        } else {
+            state.setTimer(TIMER_ID, 20 * 60 * 3); // Retry in 5 minutes if conditions not met
         }
     }
 
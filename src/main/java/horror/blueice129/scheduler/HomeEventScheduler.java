@@ -2,9 +2,13 @@ package horror.blueice129.scheduler;
 
 import horror.blueice129.HorrorMod129;
 import horror.blueice129.data.HorrorModPersistentState;
+import horror.blueice129.data.PlayerState;
+import horror.blueice129.data.PlayerStates;
+import horror.blueice129.data.StateKey;
+import horror.blueice129.data.StateRetention;
 import horror.blueice129.feature.HomeVisitorEvent;
 import horror.blueice129.utils.ChunkLoadedUtils;
-import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.minecraft.server.MinecraftServer;
@@ -18,13 +22,15 @@ public class HomeEventScheduler {
     private static final Random random = Random.create();
     private static final int MIN_START_DAY = 2;
     private static final int MAX_START_DAY = 3;
-    private static final String TIMER_ID = "homeEventTimer";
+    private static final StateKey.TimerKey TIMER_ID = StateKey.timer("homeEventTimer");
+    private static final StateKey.IntKey EVENT_READY_ID = StateKey.intValue("homeEventReady");
+    private static final StateKey.IntKey SERVER_WAS_EMPTY_ID = StateKey.intValue("serverWasEmpty");
+    // Per-player keys, in PlayerStates (older versions kept them in the world state as <key><uuid>)
     private static final String LOGOUT_TIME_ID = "playerLogoutTime";
-    private static final String EVENT_READY_ID = "homeEventReady";
-    private static final String SERVER_WAS_EMPTY_ID = "serverWasEmpty";
-    private static final String HOME_CHUNK_UNLOAD_TIME = "homeChunkUnloadTime_";
-    private static final String HOME_CHUNK_WAS_LOADED = "homeChunkWasLoaded_";
-    private static final String HOME_TRIGGER_COUNTDOWN = "homeTriggerCountdown_";
+    private static final String HOME_CHUNK_UNLOAD_TIME = "homeChunkUnloadTime";
+    private static final String HOME_CHUNK_WAS_LOADED = "homeChunkWasLoaded";
+    private static final String HOME_TRIGGER_COUNTDOWN = "homeTriggerCountdown";
+    private static final long PLAYER_DATA_TTL = 90L * 24 * 60 * 60 * 1000; // dropped after 90 days offline
     private static final int MIN_ABSENCE_TIME = 600; // 10 minutes in seconds
     private static final int MIN_HOME_UNLOAD_TIME = 600; // 10 minutes in seconds
     private static final int TRIGGER_DELAY_TICKS = 20 * 3; // 3 seconds in ticks
@@ -35,7 +41,12 @@ public class HomeEventScheduler {
      * This should be called during mod initialization.
      */
     public static void register() {
-        ServerTickEvents.END_SERVER_TICK.register(HomeEventScheduler::onServerTick);
+        TickDispatcher.everyTick("home_countdown", true, HomeEventScheduler::tickCountdowns);
+        TickDispatcher.every("home_chunks", CHECK_INTERVAL_TICKS, true, HomeEventScheduler::checkHomeChunks);
+        EventTimers.setHandler(TIMER_ID, HomeEventScheduler::onTimerExpired);
+        // The logout time stays: players back after a long time are who the home event is for
+        StateRetention.expirePlayerKeys(PLAYER_DATA_TTL,
+                HOME_CHUNK_UNLOAD_TIME, HOME_CHUNK_WAS_LOADED, HOME_TRIGGER_COUNTDOWN);
 
         // Register server world loading event to initialize timer if needed
         ServerWorldEvents.LOAD.register((server, world) -> {
@@ -52,6 +63,14 @@ public class HomeEventScheduler {
             }
         });
         
+        // Move per-player values saved by older versions out of the world state
+        ServerLifecycleEvents.SERVER_STARTED.register(server -> {
+            PlayerStates.migrateFromWorldState(server, LOGOUT_TIME_ID, LOGOUT_TIME_ID);
+            PlayerStates.migrateFromWorldState(server, HOME_CHUNK_UNLOAD_TIME + "_", HOME_CHUNK_UNLOAD_TIME);
+            PlayerStates.migrateFromWorldState(server, HOME_CHUNK_WAS_LOADED + "_", HOME_CHUNK_WAS_LOADED);
+            PlayerStates.migrateFromWorldState(server, HOME_TRIGGER_COUNTDOWN + "_", HOME_TRIGGER_COUNTDOWN);
+        });
+
         // Track player logout time
         ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
             ServerPlayerEntity player = handler.getPlayer();
@@ -59,7 +78,7 @@ public class HomeEventScheduler {
             long currentTime = System.currentTimeMillis() / 1000L;
             // Store as integer to track logout time (in seconds since epoch)
             // if mod is still being played in 2038, fix this
-            state.setIntValue(LOGOUT_TIME_ID + player.getUuidAsString(), (int)currentTime);
+            PlayerStates.get(player).setIntValue(LOGOUT_TIME_ID, (int)currentTime);
             HorrorMod129.LOGGER.info("Player " + player.getName().getString() + " disconnected, time recorded: " + currentTime);
             
             // Check if this was the last player - if so, mark server as empty
@@ -73,8 +92,8 @@ public class HomeEventScheduler {
         ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
             ServerPlayerEntity player = handler.getPlayer();
             HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
+            PlayerState playerState = PlayerStates.get(player);
             long currentTime = System.currentTimeMillis() / 1000L;
-            String playerKey = LOGOUT_TIME_ID + player.getUuidAsString();
             
             // Check if timer has reached zero (event is ready)
             boolean eventReady = state.getIntValue(EVENT_READY_ID, 0) == 1;
@@ -83,7 +102,7 @@ public class HomeEventScheduler {
             boolean serverWasEmpty = state.getIntValue(SERVER_WAS_EMPTY_ID, 0) == 1;
             
             // Get the logout time as int (safe until ~2038)
-            int logoutTime = state.getIntValue(playerKey, 0);
+            int logoutTime = playerState.getIntValue(LOGOUT_TIME_ID, 0);
             if (logoutTime > 0) {
                 long timeDifference = currentTime - logoutTime;
                 
@@ -110,7 +129,7 @@ public class HomeEventScheduler {
                 }
             } else {
                 // First time player connection, record current time
-                state.setIntValue(playerKey, (int)currentTime);
+                playerState.setIntValue(LOGOUT_TIME_ID, (int)currentTime);
                 state.setIntValue(SERVER_WAS_EMPTY_ID, 0); // Server not empty anymore
                 HorrorMod129.LOGGER.info("First login recorded for player: " + player.getName().getString());
             }
@@ -119,34 +138,18 @@ public class HomeEventScheduler {
         HorrorMod129.LOGGER.info("Registered HomeEventScheduler");
     }
 
-    private static void onServerTick(MinecraftServer server) {
-        // Skip if server is empty (pause timers)
-        if (server.getPlayerManager().getPlayerList().isEmpty()) {
-            return;
-        }
-        
-        // Get the persistent state
-        HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
-        int currentTimer = state.getTimer(TIMER_ID);
-        
-        // Only decrement if timer is greater than 0
-        if (currentTimer > 0) {
-            currentTimer = state.decrementTimer(TIMER_ID, 1); // Decrement
-            
-            if (currentTimer == 0) {
-                // Mark that the event is ready to trigger on next login after absence
-                state.setIntValue(EVENT_READY_ID, 1);
-                HorrorMod129.LOGGER.info("HomeEventScheduler timer reached zero, event is now ready for next extended log off or away period.");
-            }
-        }
+    /**
+     * Handles the countdown timers of all players with pending home events. Runs every tick while players are online.
+     */
+    private static void tickCountdowns(TickDispatcher.TickContext context) {
+        MinecraftServer server = context.server;
+        HorrorModPersistentState state = context.state;
 
-        // Handle countdown timers for all players with pending home events
-        for (ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
-            String playerUuid = player.getUuidAsString();
-            String countdownKey = HOME_TRIGGER_COUNTDOWN + playerUuid;
+        for (ServerPlayerEntity player : context.players) {
+            PlayerState playerState = PlayerStates.get(player);
             
-            if (state.hasTimer(countdownKey)) {
-                int countdown = state.decrementTimer(countdownKey, 1);
+            if (playerState.hasTimer(HOME_TRIGGER_COUNTDOWN)) {
+                int countdown = playerState.decrementTimer(HOME_TRIGGER_COUNTDOWN, 1);
                 
                 if (countdown <= 0) {
                     // Trigger the home event
@@ -157,74 +160,84 @@ public class HomeEventScheduler {
                         triggerHomeEvent(server, player, bedPos);
                         
                         // Clean up per-player tracking state
-                        state.removeTimer(countdownKey);
-                        state.removeLongValue(HOME_CHUNK_UNLOAD_TIME + playerUuid);
-                        state.removeIntValue(HOME_CHUNK_WAS_LOADED + playerUuid);
+                        playerState.removeTimer(HOME_TRIGGER_COUNTDOWN);
+                        playerState.removeLongValue(HOME_CHUNK_UNLOAD_TIME);
+                        playerState.removeIntValue(HOME_CHUNK_WAS_LOADED);
                         state.setIntValue(EVENT_READY_ID, 0); // Reset ready flag
                     } else {
                         // No spawn point, just clean up
-                        state.removeTimer(countdownKey);
-                        state.removeLongValue(HOME_CHUNK_UNLOAD_TIME + playerUuid);
-                        state.removeIntValue(HOME_CHUNK_WAS_LOADED + playerUuid);
+                        playerState.removeTimer(HOME_TRIGGER_COUNTDOWN);
+                        playerState.removeLongValue(HOME_CHUNK_UNLOAD_TIME);
+                        playerState.removeIntValue(HOME_CHUNK_WAS_LOADED);
                     }
                 }
             }
         }
+    }
 
-        // Periodic check for home chunk load/unload state
-        if (server.getTicks() % CHECK_INTERVAL_TICKS == 0) {
-            boolean eventReady = state.getIntValue(EVENT_READY_ID, 0) == 1;
-            
-            for (ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
-                if (player.getSpawnPointPosition() != null) {
-                    BlockPos bedPos = player.getSpawnPointPosition();
-                    String playerUuid = player.getUuidAsString();
-                    String unloadTimeKey = HOME_CHUNK_UNLOAD_TIME + playerUuid;
-                    String wasLoadedKey = HOME_CHUNK_WAS_LOADED + playerUuid;
-                    String countdownKey = HOME_TRIGGER_COUNTDOWN + playerUuid;
-                    
-                    boolean isChunkLoaded = ChunkLoadedUtils.isChunkLoadedAt(server.getWorld(World.OVERWORLD), bedPos);
-                    boolean wasLoaded = state.getIntValue(wasLoadedKey, 1) == 1; // Default to loaded
+    /**
+     * Periodic check for home chunk load/unload state. Runs every CHECK_INTERVAL_TICKS while players are online.
+     */
+    private static void checkHomeChunks(TickDispatcher.TickContext context) {
+        HorrorModPersistentState state = context.state;
+        boolean eventReady = state.getIntValue(EVENT_READY_ID, 0) == 1;
+        
+        for (ServerPlayerEntity player : context.players) {
+            if (player.getSpawnPointPosition() != null) {
+                BlockPos bedPos = player.getSpawnPointPosition();
+                PlayerState playerState = PlayerStates.get(player);
+                
+                boolean isChunkLoaded = ChunkLoadedUtils.isChunkLoadedAt(context.overworld, bedPos);
+                boolean wasLoaded = playerState.getIntValue(HOME_CHUNK_WAS_LOADED, 1) == 1; // Default to loaded
+                
+                if (!isChunkLoaded && wasLoaded) {
+                    // Chunk just became unloaded, record timestamp
+                    long currentTime = System.currentTimeMillis() / 1000L;
+                    playerState.setLongValue(HOME_CHUNK_UNLOAD_TIME, currentTime);
+                    playerState.setIntValue(HOME_CHUNK_WAS_LOADED, 0);
+                    HorrorMod129.LOGGER.info("Player " + player.getName().getString() + "'s home chunk unloaded at " + currentTime);
+                } else if (isChunkLoaded && !wasLoaded) {
+                    // Chunk just became loaded again
+                    long unloadTime = playerState.getLongValue(HOME_CHUNK_UNLOAD_TIME, 0L);
                     
-                    if (!isChunkLoaded && wasLoaded) {
-                        // Chunk just became unloaded, record timestamp
+                    if (unloadTime > 0) {
                         long currentTime = System.currentTimeMillis() / 1000L;
-                        state.setLongValue(unloadTimeKey, currentTime);
-                        state.setIntValue(wasLoadedKey, 0);
-                        HorrorMod129.LOGGER.info("Player " + player.getName().getString() + "'s home chunk unloaded at " + currentTime);
-                    } else if (isChunkLoaded && !wasLoaded) {
-                        // Chunk just became loaded again
-                        long unloadTime = state.getLongValue(unloadTimeKey, 0L);
+                        long unloadDuration = currentTime - unloadTime;
                         
-                        if (unloadTime > 0) {
-                            long currentTime = System.currentTimeMillis() / 1000L;
-                            long unloadDuration = currentTime - unloadTime;
-                            
-                            // Check if chunk was unloaded long enough AND event is ready
-                            if (unloadDuration >= MIN_HOME_UNLOAD_TIME && eventReady) {
-                                // Start the 3-second countdown
-                                if (!state.hasTimer(countdownKey)) {
-                                    state.setTimer(countdownKey, TRIGGER_DELAY_TICKS);
-                                    HorrorMod129.LOGGER.info("Player " + player.getName().getString() + 
-                                        "'s home chunk reloaded after " + unloadDuration + " seconds. Starting 3 second countdown.");
-                                }
-                            } else {
+                        // Check if chunk was unloaded long enough AND event is ready
+                        if (unloadDuration >= MIN_HOME_UNLOAD_TIME && eventReady) {
+                            // Start the 3-second countdown
+                            if (!playerState.hasTimer(HOME_TRIGGER_COUNTDOWN)) {
+                                playerState.setTimer(HOME_TRIGGER_COUNTDOWN, TRIGGER_DELAY_TICKS);
                                 HorrorMod129.LOGGER.info("Player " + player.getName().getString() + 
-                                    "'s home chunk reloaded, but conditions not met (duration: " + unloadDuration + 
-                                    "s, eventReady: " + eventReady + ")");
+                                    "'s home chunk reloaded after " + unloadDuration + " seconds. Starting 3 second countdown.");
                             }
-                            
-                            // Reset the unload time regardless
-                            state.removeLongValue(unloadTimeKey);
+                        } else {
+                            HorrorMod129.LOGGER.info("Player " + player.getName().getString() + 
+                                "'s home chunk reloaded, but conditions not met (duration: " + unloadDuration + 
+                                "s, eventReady: " + eventReady + ")");
                         }
                         
-                        state.setIntValue(wasLoadedKey, 1);
+                        // Reset the unload time regardless
+                        playerState.removeLongValue(HOME_CHUNK_UNLOAD_TIME);
                     }
+                    
+                    playerState.setIntValue(HOME_CHUNK_WAS_LOADED, 1);
                 }
             }
         }
     }
     
+    /**
+     * Called by EventTimers when the main timer runs out.
+     */
+    private static void onTimerExpired(MinecraftServer server) {
+        HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
+        // Mark that the event is ready to trigger on next login after absence
+        state.setIntValue(EVENT_READY_ID, 1);
+        HorrorMod129.LOGGER.info("HomeEventScheduler timer reached zero, event is now ready for next extended log off or away period.");
+    }
+
     /**
      * Triggers a home event for the player who just reconnected after being away.
      * 
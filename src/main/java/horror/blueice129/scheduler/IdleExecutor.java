@@ -0,0 +1,135 @@
+package horror.blueice129.scheduler;
+
+import horror.blueice129.HorrorMod129;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.Util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs work that has to be on the server thread but isn't needed right away (world reads that prepare
+ * candidate locations, index upkeep) in the time the server would otherwise sleep between ticks.
+ * MinecraftServerMixin offers it each moment the server has no task of its own to run before the next tick;
+ * one step of the oldest job runs if the next tick isn't due yet, so packets and chunk tasks still go first.
+ * Work stops once the next tick is due (less a small margin, since a step can't be interrupted), so it adds
+ * nothing to tick time. When the server has no time to spare, the jobs wait.
+ *
+ * Jobs are JobExecutor jobs; they get no owner and aren't saved.
+ *
+ * Server thread only.
+ */
+public class IdleExecutor {
+    private static final long MARGIN_NANOS = 500_000; // Leave this much of the idle time unused
+    private static final ArrayDeque<Entry<?>> QUEUE = new ArrayDeque<>();
+
+    // Since the server started
+    private static long steps;
+    private static long busyNanos;
+
+    private static final class Entry<T> {
+        final String name;
+        final JobExecutor.Job<T> job;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Entry(String name, JobExecutor.Job<T> job) {
+            this.name = name;
+            this.job = job;
+        }
+    }
+
+    /**
+     * Registers the events that reset the counters and drop the queue. Call during mod initialization.
+     */
+    public static void register() {
+        ServerLifecycleEvents.SERVER_STARTED.register(server -> {
+            steps = 0;
+            busyNanos = 0;
+        });
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
+            for (Entry<?> entry : QUEUE) {
+                entry.result.cancel(false);
+            }
+            QUEUE.clear();
+        });
+
+        HorrorMod129.LOGGER.info("Registered IdleExecutor");
+    }
+
+    /**
+     * Queues a job to run in idle time. Jobs run one at a time, in the order they were submitted.
+     *
+     * @param name Shown in /horror jobs
+     * @param job The job; its steps get no owner
+     * @return Completes on the server thread with the job's result; cancel it to cancel the job
+     */
+    public static <T> CompletableFuture<T> submit(String name, JobExecutor.Job<T> job) {
+        Entry<T> entry = new Entry<>(name, job);
+        QUEUE.add(entry);
+        return entry.result;
+    }
+
+    /**
+     * Runs one step of idle work if there's time for it. Called by MinecraftServerMixin while the server
+     * waits for the next tick and has nothing else to do.
+     *
+     * @param server The Minecraft server instance
+     * @param nextTickNanos When the next tick is due, in Util.getMeasuringTimeNano time
+     * @return True if a step ran, so the server checks for more work instead of sleeping
+     */
+    public static boolean runStep(MinecraftServer server, long nextTickNanos) {
+        if (!TickDispatcher.isBetweenTicks()) {
+            return false;
+        }
+        while (!QUEUE.isEmpty() && QUEUE.peek().result.isDone()) {
+            QUEUE.poll(); // Cancelled by the caller
+        }
+        if (QUEUE.isEmpty()) {
+            return false;
+        }
+        long start = Util.getMeasuringTimeNano();
+        if (start >= nextTickNanos - MARGIN_NANOS) {
+            return false;
+        }
+
+        if (runStep(server, QUEUE.peek())) {
+            QUEUE.poll();
+        }
+        steps++;
+        busyNanos += Util.getMeasuringTimeNano() - start;
+        return true;
+    }
+
+    /**
+     * Describes the queued idle jobs and the idle time used.
+     *
+     * @return Lines to show
+     */
+    public static List<String> getReport() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%d idle jobs queued, %d steps run in %.2f ms of idle time", QUEUE.size(), steps, busyNanos / 1e6));
+        for (Entry<?> entry : QUEUE) {
+            lines.add(entry.name);
+        }
+        return lines;
+    }
+
+    /**
+     * @return True if the job is done
+     */
+    private static <T> boolean runStep(MinecraftServer server, Entry<T> entry) {
+        try {
+            if (!entry.job.step(server, null)) {
+                return false;
+            }
+            entry.result.complete(entry.job.getResult());
+        } catch (RuntimeException e) {
+            HorrorMod129.LOGGER.error("Idle job " + entry.name + " failed", e);
+            entry.result.completeExceptionally(e);
+        }
+        return true;
+    }
+}
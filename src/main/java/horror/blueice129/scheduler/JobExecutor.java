@@ -0,0 +1,465 @@
+package horror.blueice129.scheduler;
+
+import horror.blueice129.HorrorMod129;
+import horror.blueice129.config.ConfigManager;
+import horror.blueice129.data.HorrorModPersistentState;
+import horror.blueice129.data.SessionCheckpoints;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.random.Random;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Runs long world edits (cave pre-mining, chunk deletion, ...) a few steps at a time, so they're spread over
+ * several ticks instead of stalling one. Each tick, steps of the queued jobs run until jobBudgetMillis
+ * (see ModConfig) is spent; at least one step runs per tick.
+ * Priorities are strict: a job only gets steps while no job of a higher priority is queued. Jobs of the
+ * same priority take turns, one step each, starting with the one submitted first, so a long job doesn't
+ * hold up the others of its priority.
+ *
+ * A job can belong to a player. Cancelling the future returned by submit cancels the job.
+ *
+ * Jobs with a type (see registerType) survive restarts: their parameters, progress and random seed are
+ * written to the persistent state with the session checkpoints (see SessionCheckpoints) and loaded again
+ * when the server starts. Such a job waits while its owner is offline and goes on when they're back.
+ * Jobs without a type are cancelled when their owner leaves or the server stops.
+ *
+ * Server thread only.
+ */
+public class JobExecutor {
+    private static final PriorityQueue<Entry<?>> QUEUE = new PriorityQueue<>(
+            Comparator.comparingInt((Entry<?> entry) -> entry.priority.ordinal()).thenComparingLong(entry -> entry.sequence));
+    private static long nextSequence;
+    // Saved jobs of players who are offline, in the order they were submitted
+    private static final Map<UUID, List<Entry<?>>> PARKED = new LinkedHashMap<>();
+    private static final Map<String, Function<NbtCompound, Job<?>>> TYPES = new HashMap<>();
+    private static boolean restored; // Checkpoints are only written between restore and stop
+    private static boolean changed;
+
+    public enum Priority {
+        HIGH,
+        NORMAL,
+        LOW
+    }
+
+    /**
+     * A resumable operation. Keep each step short (well under a millisecond); the state between steps
+     * lives in the job's fields.
+     *
+     * @param <T> The result
+     */
+    public abstract static class Job<T> {
+        /**
+         * Does the next piece of work.
+         *
+         * @param server The Minecraft server instance
+         * @param owner The online owner of the job, or null if it has none
+         * @return True when the job is finished
+         */
+        protected abstract boolean step(MinecraftServer server, ServerPlayerEntity owner);
+
+        /**
+         * Gets the result once step returned true.
+         */
+        protected abstract T getResult();
+
+        /**
+         * Called when the job is cancelled before it finished, to undo or log what it started.
+         */
+        protected void onCancelled(MinecraftServer server) {
+        }
+
+        /**
+         * Gets the type the job is saved as, see registerType. Jobs without a type are not saved.
+         */
+        protected String getType() {
+            return null;
+        }
+
+        /**
+         * Writes what the type's loader needs to go on with the job: its parameters, how far it got
+         * and its random seed. Only called between steps.
+         *
+         * @param nbt The compound to write to
+         */
+        protected void writeNbt(NbtCompound nbt) {
+        }
+
+        /**
+         * Reseeds a random with a seed drawn from it, so a job loaded with the returned seed draws
+         * the same values from here on as this one.
+         *
+         * @param random The job's random
+         * @return The seed to save
+         */
+        protected static long reseed(Random random) {
+            long seed = random.nextLong();
+            random.setSeed(seed);
+            return seed;
+        }
+    }
+
+    private static final class Entry<T> {
+        final String name;
+        final Priority priority;
+        final UUID owner;
+        final Job<T> job;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        long sequence = nextSequence++; // Turn among the jobs of the same priority
+        int steps;
+        long nanos;
+
+        Entry(String name, Priority priority, UUID owner, Job<T> job) {
+            this.name = name;
+            this.priority = priority;
+            this.owner = owner;
+            this.job = job;
+        }
+    }
+
+    /**
+     * Adds the tick task that runs the jobs, their checkpoint, and the events that pause, resume and
+     * cancel them. Call during mod initialization.
+     */
+    public static void register() {
+        TickDispatcher.everyTick("jobs", false, context -> runJobs(context.server));
+        SessionCheckpoints.add(JobExecutor::restore, JobExecutor::checkpoint);
+        ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> unpark(handler.getPlayer().getUuid()));
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> onOwnerLeft(server, handler.getPlayer().getUuid()));
+        ServerLifecycleEvents.SERVER_STOPPING.register(JobExecutor::stop);
+
+        HorrorMod129.LOGGER.info("Registered JobExecutor");
+    }
+
+    /**
+     * Makes a kind of job saveable. Call during mod initialization, before the server starts.
+     *
+     * @param type The name the jobs are saved under, returned by their getType
+     * @param loader Makes a job from what its writeNbt wrote
+     */
+    public static void registerType(String type, Function<NbtCompound, Job<?>> loader) {
+        TYPES.put(type, loader);
+    }
+
+    /**
+     * Queues a job. Its first step runs at the end of the current tick at the earliest.
+     *
+     * @param name Shown in logs and /horror jobs
+     * @param priority Which jobs run first when the budget is tight
+     * @param owner The player the job is for, or null; while they're offline a saveable job waits, others are cancelled
+     * @param job The job
+     * @return Completes on the server thread with the job's result; cancel it to cancel the job
+     */
+    public static <T> CompletableFuture<T> submit(String name, Priority priority, UUID owner, Job<T> job) {
+        Entry<T> entry = new Entry<>(name, priority, owner, job);
+        QUEUE.add(entry);
+        changed = true;
+        return entry.result;
+    }
+
+    /**
+     * Cancels the jobs of a player, including the ones waiting for them to come back.
+     *
+     * @param server The Minecraft server instance
+     * @param owner The player's UUID
+     * @return The number of jobs cancelled
+     */
+    public static int cancelOwnedBy(MinecraftServer server, UUID owner) {
+        List<Entry<?>> entries = PARKED.getOrDefault(owner, new ArrayList<>());
+        PARKED.remove(owner);
+        for (Entry<?> entry : new ArrayList<>(QUEUE)) {
+            if (owner.equals(entry.owner)) {
+                QUEUE.remove(entry);
+                entries.add(entry);
+            }
+        }
+        for (Entry<?> entry : entries) {
+            cancel(server, entry, "cancelled");
+        }
+        return entries.size();
+    }
+
+    /**
+     * Cancels every job, including the ones waiting for their players.
+     *
+     * @param server The Minecraft server instance
+     * @param reason Why, for the log
+     * @return The number of jobs cancelled
+     */
+    public static int cancelAll(MinecraftServer server, String reason) {
+        List<Entry<?>> entries = takeAll();
+        for (Entry<?> entry : entries) {
+            cancel(server, entry, reason);
+        }
+        return entries.size();
+    }
+
+    /**
+     * Packs positions compactly, for a job's writeNbt.
+     *
+     * @param positions The positions
+     * @return The positions as BlockPos.asLong values, in the same order
+     */
+    public static long[] packPositions(Collection<BlockPos> positions) {
+        long[] packed = new long[positions.size()];
+        int i = 0;
+        for (BlockPos pos : positions) {
+            packed[i++] = pos.asLong();
+        }
+        return packed;
+    }
+
+    /**
+     * Unpacks positions written by packPositions.
+     *
+     * @param packed The packed positions
+     * @return A new list of the positions
+     */
+    public static List<BlockPos> unpackPositions(long[] packed) {
+        List<BlockPos> positions = new ArrayList<>(packed.length);
+        for (long value : packed) {
+            positions.add(BlockPos.fromLong(value));
+        }
+        return positions;
+    }
+
+    /**
+     * Describes the queued jobs in the order they run.
+     *
+     * @return Lines to show
+     */
+    public static List<String> getReport() {
+        List<Entry<?>> entries = new ArrayList<>(QUEUE);
+        entries.sort(QUEUE.comparator());
+        List<Entry<?>> parked = new ArrayList<>();
+        PARKED.values().forEach(parked::addAll);
+
+        List<String> lines = new ArrayList<>();
+        lines.add(entries.size() + " jobs queued, " + parked.size() + " waiting for their players, budget "
+                + getBudgetMillis() + " ms per tick");
+        for (Entry<?> entry : entries) {
+            lines.add(describe(entry));
+        }
+        for (Entry<?> entry : parked) {
+            lines.add(describe(entry) + ", owner offline");
+        }
+        return lines;
+    }
+
+    private static String describe(Entry<?> entry) {
+        return String.format("%s (%s): %d steps, %.2f ms this session", entry.name, entry.priority, entry.steps, entry.nanos / 1e6);
+    }
+
+    private static void runJobs(MinecraftServer server) {
+        if (QUEUE.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + getBudgetMillis() * 1_000_000L;
+        boolean ranStep = false;
+
+        while (!QUEUE.isEmpty() && (!ranStep || System.nanoTime() < deadline)) {
+            Entry<?> entry = QUEUE.peek();
+            if (entry.result.isDone()) {
+                QUEUE.poll();
+                cancel(server, entry, "cancelled");
+                continue;
+            }
+            ServerPlayerEntity owner = null;
+            if (entry.owner != null) {
+                owner = server.getPlayerManager().getPlayer(entry.owner);
+                if (owner == null) {
+                    QUEUE.poll();
+                    parkOrCancel(server, entry);
+                    continue;
+                }
+            }
+            ranStep = true;
+            changed = true;
+            QUEUE.poll();
+            if (!runStep(server, entry, owner)) {
+                entry.sequence = nextSequence++; // Behind the other jobs of its priority
+                QUEUE.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Runs one step of a job, completing its future when it finishes or fails.
+     *
+     * @return True if the job is done
+     */
+    private static <T> boolean runStep(MinecraftServer server, Entry<T> entry, ServerPlayerEntity owner) {
+        long stepStart = System.nanoTime();
+        try {
+            boolean finished = entry.job.step(server, owner);
+            if (finished) {
+                entry.result.complete(entry.job.getResult());
+            }
+            return finished;
+        } catch (RuntimeException e) {
+            HorrorMod129.LOGGER.error("Job " + entry.name + " failed after " + entry.steps + " steps", e);
+            entry.result.completeExceptionally(e);
+            return true;
+        } finally {
+            entry.steps++;
+            entry.nanos += System.nanoTime() - stepStart;
+        }
+    }
+
+    private static void onOwnerLeft(MinecraftServer server, UUID owner) {
+        for (Entry<?> entry : new ArrayList<>(QUEUE)) {
+            if (owner.equals(entry.owner)) {
+                QUEUE.remove(entry);
+                parkOrCancel(server, entry);
+            }
+        }
+    }
+
+    /**
+     * Sets a job whose owner is offline aside until they're back if it's saveable, cancels it otherwise.
+     */
+    private static void parkOrCancel(MinecraftServer server, Entry<?> entry) {
+        if (entry.job.getType() == null) {
+            cancel(server, entry, "owner left");
+            return;
+        }
+        PARKED.computeIfAbsent(entry.owner, uuid -> new ArrayList<>()).add(entry);
+    }
+
+    private static void unpark(UUID owner) {
+        List<Entry<?>> entries = PARKED.remove(owner);
+        if (entries != null) {
+            QUEUE.addAll(entries);
+        }
+    }
+
+    /**
+     * Removes every job from the queue and the parked ones.
+     *
+     * @return The queued jobs in the order they run, then the parked ones
+     */
+    private static List<Entry<?>> takeAll() {
+        List<Entry<?>> entries = new ArrayList<>(QUEUE);
+        entries.sort(QUEUE.comparator());
+        PARKED.values().forEach(entries::addAll);
+        QUEUE.clear();
+        PARKED.clear();
+        changed = true;
+        return entries;
+    }
+
+    /**
+     * Loads the saved jobs. Jobs of players go waiting for them, since nobody is online yet.
+     */
+    private static void restore(HorrorModPersistentState state) {
+        QUEUE.clear();
+        PARKED.clear();
+        NbtList saved = state.getJobs();
+        for (int i = 0; i < saved.size(); i++) {
+            NbtCompound nbt = saved.getCompound(i);
+            Function<NbtCompound, Job<?>> loader = TYPES.get(nbt.getString("type"));
+            if (loader == null) {
+                HorrorMod129.LOGGER.warn("Dropping saved job of unknown type " + nbt.getString("type"));
+                continue;
+            }
+            Job<?> job;
+            try {
+                job = loader.apply(nbt.getCompound("data"));
+            } catch (RuntimeException e) {
+                HorrorMod129.LOGGER.error("Could not load saved job " + nbt.getString("name"), e);
+                continue;
+            }
+            Priority priority = Priority.values()[Math.min(nbt.getByte("priority"), Priority.values().length - 1)];
+            UUID owner = nbt.containsUuid("owner") ? nbt.getUuid("owner") : null;
+            Entry<?> entry = new Entry<>(nbt.getString("name"), priority, owner, job);
+            if (owner == null) {
+                QUEUE.add(entry);
+            } else {
+                PARKED.computeIfAbsent(owner, uuid -> new ArrayList<>()).add(entry);
+            }
+        }
+        if (!saved.isEmpty()) {
+            HorrorMod129.LOGGER.info("Loaded " + (QUEUE.size() + PARKED.values().stream().mapToInt(List::size).sum())
+                    + " saved jobs");
+        }
+        restored = true;
+        changed = false;
+    }
+
+    /**
+     * Writes the saveable jobs into the persistent state, if any ran or changed since the last checkpoint.
+     */
+    private static void checkpoint(HorrorModPersistentState state) {
+        if (!restored || !changed) {
+            return;
+        }
+        changed = false;
+        List<Entry<?>> entries = new ArrayList<>(QUEUE);
+        entries.sort(QUEUE.comparator());
+        PARKED.values().forEach(entries::addAll);
+
+        NbtList saved = new NbtList();
+        for (Entry<?> entry : entries) {
+            String type = entry.job.getType();
+            if (type == null || entry.result.isDone()) {
+                continue;
+            }
+            NbtCompound data = new NbtCompound();
+            entry.job.writeNbt(data);
+            NbtCompound nbt = new NbtCompound();
+            nbt.putString("type", type);
+            nbt.putString("name", entry.name);
+            nbt.putByte("priority", (byte) entry.priority.ordinal());
+            if (entry.owner != null) {
+                nbt.putUuid("owner", entry.owner);
+            }
+            nbt.put("data", data);
+            saved.add(nbt);
+        }
+        if (!saved.isEmpty() || !state.getJobs().isEmpty()) {
+            state.setJobs(saved);
+        }
+    }
+
+    /**
+     * Saves the saveable jobs one last time and drops everything; those continue after a restart,
+     * the others are cancelled. The futures of saved jobs are left pending, since the job isn't over:
+     * callers must not take the stop for a failure (and, say, schedule another attempt).
+     */
+    private static void stop(MinecraftServer server) {
+        checkpoint(HorrorModPersistentState.getServerState(server));
+        restored = false; // The world save that follows keeps what was just written
+        for (Entry<?> entry : takeAll()) {
+            if (entry.job.getType() == null) {
+                cancel(server, entry, "server stopping");
+            }
+        }
+    }
+
+    private static void cancel(MinecraftServer server, Entry<?> entry, String reason) {
+        entry.result.cancel(false); // Already done if the caller cancelled the future
+        entry.job.onCancelled(server);
+        HorrorMod129.LOGGER.info("Job " + entry.name + " stopped after " + entry.steps + " steps: " + reason);
+    }
+
+    private static int getBudgetMillis() {
+        return Math.max(1, ConfigManager.getConfig().jobBudgetMillis);
+    }
+}
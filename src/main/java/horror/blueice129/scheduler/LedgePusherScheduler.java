@@ -2,7 +2,7 @@ package horror.blueice129.scheduler;
 
 import horror.blueice129.feature.LedgePusher;
 import horror.blueice129.data.HorrorModPersistentState;
-import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import horror.blueice129.data.StateKey;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.math.random.Random;
@@ -14,22 +14,21 @@ public class LedgePusherScheduler {
     // check every tick if the player is on a ledge
     private static final Random random = Random.create();
 
-    private final static String cooldownTimerKey = "ledgePusherCooldown";
+    private final static StateKey.TimerKey cooldownTimerKey = StateKey.timer("ledgePusherCooldown");
     private static int MIN_DELAY = 20 * 60 * 25;
     private static int ticksSinceLastPush;
     private static LedgePusher ledgePusher;
-    private static HorrorModPersistentState state;
     private static final int PUSH_CHANCE = 20 * 40; // chance is 1 in PUSH_CHANCE every tick, so for 1 minute on an edge,
                                                     // you can be expected to be pushed once
 
     public static void register() {
-        ServerTickEvents.END_SERVER_TICK.register(LedgePusherScheduler::onServerTick);
+        TickDispatcher.everyTick("ledge_pusher", true, LedgePusherScheduler::onServerTick);
         ServerWorldEvents.LOAD.register((server, world) -> {
             if (world.isClient())
                 return;
             if (world.getRegistryKey() == net.minecraft.world.World.OVERWORLD) {
                 // Initialize any necessary state here
-                state = HorrorModPersistentState.getServerState(server);
+                HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
                 if (!state.hasTimer(cooldownTimerKey)) {
                     state.setTimer(cooldownTimerKey, MIN_DELAY);
                 }
@@ -46,15 +45,11 @@ public class LedgePusherScheduler {
         // HorrorMod129.LOGGER.info("LedgePusherScheduler cooldown set to " + state.getTimer(cooldownTimerKey) + " ticks via debug command");
     }
     
-    private static void onServerTick(MinecraftServer server) {
-        // Skip processing if server is empty
-        if (server.getPlayerManager().getPlayerList().isEmpty()) {
-            return;
-        }
-        
+    private static void onServerTick(TickDispatcher.TickContext context) {
+        HorrorModPersistentState state = context.state;
+
         // Select a random player from the server
-        PlayerEntity player = server.getPlayerManager().getPlayerList()
-                .get(random.nextInt(server.getPlayerManager().getPlayerList().size()));
+        PlayerEntity player = context.players.get(random.nextInt(context.players.size()));
         
         // Create a new LedgePusher instance for this tick's player
         ledgePusher = new LedgePusher(player, 10);
@@ -68,11 +63,10 @@ public class LedgePusherScheduler {
             }
         }
 
+        // The cooldown counts down through EventTimers (only while players are online)
         int cooldown = state.getTimer(cooldownTimerKey);
         if (cooldown > 0) {
-            // Only decrement timer if players are online (already checked above)
-            state.setTimer(cooldownTimerKey, cooldown - 1);
-            // HorrorMod129.LOGGER.info("LedgePusherScheduler, cooldown is: " + state.getTimer(cooldownTimerKey));
+            // HorrorMod129.LOGGER.info("LedgePusherScheduler, cooldown is: " + cooldown);
             return;
         }
         // server.getPlayerManager().getPlayerList().forEach(p -> 
@@ -97,7 +91,7 @@ public class LedgePusherScheduler {
      * @return
      */
     private static int minDelayModifier(HorrorModPersistentState state) {
-        int agroMeter = state.getIntValue("agroMeter", 0);
+        int agroMeter = state.getIntValue(AgroMeterScheduler.AGRO_METER, 0);
         int minsPerAgro = 3;
         MIN_DELAY = Math.max(20 * 60 * 10, MIN_DELAY - ((20 * 60 * minsPerAgro) * agroMeter)); // min 10 minutes, max 25 minutes
         return MIN_DELAY;
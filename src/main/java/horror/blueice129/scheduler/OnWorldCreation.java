@@ -3,6 +3,7 @@ package horror.blueice129.scheduler;
 import horror.blueice129.HorrorMod129;
 import net.minecraft.util.math.random.Random;
 import horror.blueice129.data.HorrorModPersistentState;
+import horror.blueice129.data.StateKey;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.world.World;
@@ -12,7 +13,8 @@ import net.minecraft.world.World;
  * Uses persistent state to track whether the world has been initialized.
  */
 public class OnWorldCreation {
-    private static final String WORLD_INITIALIZED_KEY = "worldInitialized";
+    public static final StateKey.LongKey WORLD_TIME_OFFSET = StateKey.longValue("worldTimeOffset");
+    private static final StateKey.IntKey WORLD_INITIALIZED_KEY = StateKey.intValue("worldInitialized");
 
     /**
      * Registers the world load event to detect world creation.
@@ -76,7 +78,7 @@ public class OnWorldCreation {
         // adjust world time
         server.getOverworld().setTimeOfDay(server.getOverworld().getTimeOfDay() + ticksToAdjust);
         HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
-        state.setLongValue("worldTimeOffset", ticksToAdjust);
+        state.setLongValue(WORLD_TIME_OFFSET, ticksToAdjust);
         HorrorMod129.LOGGER.info("Modified world date by " + ticksToAdjust + " ticks to align with target date.");
     }
 }
@@ -2,8 +2,8 @@ package horror.blueice129.scheduler;
 
 import horror.blueice129.HorrorMod129;
 import horror.blueice129.data.HorrorModPersistentState;
+import horror.blueice129.data.StateKey;
 import horror.blueice129.feature.PlayerDeathItems;
-import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.world.World;
@@ -16,7 +16,7 @@ import net.minecraft.util.math.random.Random;
  * Occurs every 30-120 minutes of playtime.
  */
 public class PlayerDeathItemsScheduler {
-    private static final String TIMER_ID = "player_death_items_timer";
+    private static final StateKey.TimerKey TIMER_ID = StateKey.timer("player_death_items_timer");
     private static final Random RANDOM = Random.create();
 
     private static final int MIN_DELAY = 20 * 60 * 20; // 20 minutes
@@ -31,49 +31,27 @@ public class PlayerDeathItemsScheduler {
     }
 
     /**
-     * Server tick handler to check and trigger the player death items event.
+     * Called by EventTimers when the timer runs out, to trigger the player death items event.
      * @param server The Minecraft server instance
      */
-    private static void onServerTick(MinecraftServer server) {
-        // Skip if server is empty (pause timers)
-        if (server.getPlayerManager().getPlayerList().isEmpty()) {
-            return;
-        }
-        
-        // Only run in the overworld
+    private static void onTimerExpired(MinecraftServer server) {
         HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
-        if (!state.hasTimer(TIMER_ID)) {
-            return; // Timer not initialized yet
-        }
 
-        int timer = state.getTimer(TIMER_ID);
-        if (timer > 0) {
-            state.setTimer(TIMER_ID, timer - 1);
+        // Select a random player to center the death items around
+        net.minecraft.server.network.ServerPlayerEntity player = server.getPlayerManager().getPlayerList()
+                .get(RANDOM.nextInt(server.getPlayerManager().getPlayerList().size()));
+
+        // Time to trigger the player death items event
+        boolean eventTriggered = PlayerDeathItems.triggerEvent(server, player);
+        if (eventTriggered) {
+            HorrorMod129.LOGGER.info("PlayerDeathItems event triggered successfully around player {}.", 
+                                    player.getName().getString());
+            // Reset the timer with a new random delay
+            state.setTimer(TIMER_ID, getRandomDelay());
         } else {
-            // Check if there are any players online
-            if (server.getPlayerManager().getPlayerList().isEmpty()) {
-                // No players online, try again in 1 minutes
-                state.setTimer(TIMER_ID, 1200); // 1 minutes in ticks
-                HorrorMod129.LOGGER.info("No players online for PlayerDeathItems event, retrying in 1 minutes.");
-                return;
-            }
-            
-            // Select a random player to center the death items around
-            net.minecraft.server.network.ServerPlayerEntity player = server.getPlayerManager().getPlayerList()
-                    .get(RANDOM.nextInt(server.getPlayerManager().getPlayerList().size()));
-            
-            // Time to trigger the player death items event
-            boolean eventTriggered = PlayerDeathItems.triggerEvent(server, player);
-            if (eventTriggered) {
-                HorrorMod129.LOGGER.info("PlayerDeathItems event triggered successfully around player {}.", 
-                                        player.getName().getString());
-                // Reset the timer with a new random delay
-                state.setTimer(TIMER_ID, getRandomDelay());
-            } else {
-                // If event could not be triggered, retry in 1 minutes
-                state.setTimer(TIMER_ID, 1200); // 1 minutes in ticks
-                HorrorMod129.LOGGER.info("PlayerDeathItems event failed, retrying in 1 minutes.");
-            }
+            // If event could not be triggered, retry in 1 minutes
+            state.setTimer(TIMER_ID, 1200); // 1 minutes in ticks
+            HorrorMod129.LOGGER.info("PlayerDeathItems event failed, retrying in 1 minutes.");
         }
     }
 
@@ -82,7 +60,8 @@ public class PlayerDeathItemsScheduler {
      * This should be called during mod initialization.
      */
     public static void register() {
-        ServerTickEvents.END_SERVER_TICK.register(PlayerDeathItemsScheduler::onServerTick);
+        EventTimers.setHandler(TIMER_ID, TriggerPlanner.Cost.HEAVY, JobExecutor.Priority.NORMAL,
+                PlayerDeathItemsScheduler::onTimerExpired);
 
         // Register server world loading event to initialize timer if needed
         ServerWorldEvents.LOAD.register((server, world) -> {
@@ -3,10 +3,10 @@ package horror.blueice129.scheduler;
 import horror.blueice129.HorrorMod129;
 import horror.blueice129.config.ConfigManager;
 import horror.blueice129.data.HorrorModPersistentState;
+import horror.blueice129.data.StateKey;
 import horror.blueice129.network.ModNetworking;
 import horror.blueice129.network.SettingsTriggerPayload;
 import horror.blueice129.utils.EntityUtils;
-import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
@@ -27,8 +27,8 @@ import net.minecraft.util.math.random.Random;
 public class SettingsScheduler {
     private static final Random random = Random.create();
     private static final int minProximityToEntity = 15;
-    private static final String TIMER_ID = "settingsTimer";
-    private static final String ENTITY_COOLDOWN_ID = "entityProximityCooldown";
+    private static final StateKey.TimerKey TIMER_ID = StateKey.timer("settingsTimer");
+    private static final StateKey.TimerKey ENTITY_COOLDOWN_ID = StateKey.timer("entityProximityCooldown");
 
     /**
      * Registers the tick event to handle the settings scheduler.
@@ -37,7 +37,7 @@ public class SettingsScheduler {
     public static void register() {
         if (!ConfigManager.getConfig().enableSettingsModifications) return;
         
-        ServerTickEvents.END_SERVER_TICK.register(SettingsScheduler::onServerTick);
+        EventTimers.setHandler(TIMER_ID, SettingsScheduler::onTimerExpired);
 
         // Register server world loading event to initialize timer if needed
         ServerWorldEvents.LOAD.register((server, world) -> {
@@ -47,7 +47,7 @@ public class SettingsScheduler {
                 
                 // Initialize timer on first run
                 if (!state.hasTimer(TIMER_ID)) {
-                    int agroMeter = state.getIntValue("agroMeter", 0);
+                    int agroMeter = state.getIntValue(AgroMeterScheduler.AGRO_METER, 0);
                     state.setTimer(TIMER_ID, Math.max(1, 20 * 60 * 60 - (agroMeter * 2 * 60 * 20))); // 1 hour - (agro*2 minutes)
                     HorrorMod129.LOGGER.info("SettingsScheduler initialized with timer: " + state.getTimer(TIMER_ID) + " ticks");
                 }
@@ -58,27 +58,16 @@ public class SettingsScheduler {
     }
 
     /**
-     * Called every server tick.
-     * Updates timers and sends setting trigger packets to random clients when timers expire.
+     * Called by EventTimers when the main timer runs out.
+     * Sends a setting trigger packet to a random client.
      * 
      * @param server The Minecraft server instance
      */
-    private static void onServerTick(MinecraftServer server) {
-        // Skip if server is empty (pause timers)
-        if (server.getPlayerManager().getPlayerList().isEmpty()) {
-            return;
-        }
-
+    private static void onTimerExpired(MinecraftServer server) {
         HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
 
-        int mainTimer = state.decrementTimer(TIMER_ID, 1);
-        if (mainTimer > 0) {
-            return;
-        }
-
-        // Check entity cooldown
+        // Check entity cooldown (counts down on its own, like the main timer)
         if (state.getTimer(ENTITY_COOLDOWN_ID) > 0) {
-            state.decrementTimer(ENTITY_COOLDOWN_ID, 1);
             // Reset main timer to avoid repeated checks during cooldown
             state.setTimer(TIMER_ID, getRandomDelayWithAgro(state, 20 * 60 * 30, 20 * 60 * 60));
             return;
@@ -140,7 +129,7 @@ public class SettingsScheduler {
      * @return A random number of ticks to wait, adjusted for agro level
      */
     private static int getRandomDelayWithAgro(HorrorModPersistentState state, int baseMinDelay, int baseMaxDelay) {
-        int agroMeter = state.getIntValue("agroMeter", 0);
+        int agroMeter = state.getIntValue(AgroMeterScheduler.AGRO_METER, 0);
         // Reduce delays by agro*2 minutes (agro*2 * 60 seconds * 20 ticks)
         int agroReduction = agroMeter * 2 * 60 * 20;
 
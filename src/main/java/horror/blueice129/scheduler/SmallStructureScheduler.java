@@ -2,8 +2,8 @@ package horror.blueice129.scheduler;
 
 import horror.blueice129.HorrorMod129;
 import horror.blueice129.data.HorrorModPersistentState;
+import horror.blueice129.data.StateKey;
 import horror.blueice129.feature.SmallStructureEvent;
-import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.world.World;
@@ -16,14 +16,16 @@ public class SmallStructureScheduler {
     private static final Random random = Random.create();
     private static final int MAX_DELAY = 18000; // 15 minutes
     private static final int MIN_DELAY = 6000; // 5 minutes
-    private static final String TIMER_ID = "smallStructureTimer";
+    private static final StateKey.TimerKey TIMER_ID = StateKey.timer("smallStructureTimer");
 
     /**
      * Registers the tick event to handle the small structure scheduling.
      * This should be called during mod initialization.
      */
     public static void register() {
-        ServerTickEvents.END_SERVER_TICK.register(SmallStructureScheduler::onServerTick);
+        EventTimers.setHandler(TIMER_ID, TriggerPlanner.Cost.HEAVY, JobExecutor.Priority.LOW,
+                SmallStructureScheduler::onTimerExpired);
+        SmallStructureEvent.registerJobTypes();
 
         // Register server world loading event to initialize timer if needed
         ServerWorldEvents.LOAD.register((server, world) -> {
@@ -46,7 +48,7 @@ public class SmallStructureScheduler {
 
     private static int getRandomDelay(HorrorModPersistentState state) {
         // get agro meter from persistent state
-        int agroMeter = state.getIntValue("agroMeter", 0);
+        int agroMeter = state.getIntValue(AgroMeterScheduler.AGRO_METER, 0);
         // The delay is reduced based on the square of the agro meter value
         int agroReduction = (-agroMeter * agroMeter) * 70; 
         int delay = random.nextBetween(MIN_DELAY, MAX_DELAY + 1) + agroReduction;
@@ -54,32 +56,21 @@ public class SmallStructureScheduler {
         return Math.max(delay, 20*60); // Minimum 1 minute delay to prevent too rapid triggering
     }
 
-    private static void onServerTick(MinecraftServer server) {
-        // Skip if server is empty (pause timers)
-        if (server.getPlayerManager().getPlayerList().isEmpty()) {
-            return;
-        }
-        
-        // Only run on the overworld
+    /**
+     * Called by EventTimers when the timer runs out, to trigger the small structure event.
+     */
+    private static void onTimerExpired(MinecraftServer server) {
         HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
-        if (!state.hasTimer(TIMER_ID)) {
-            return; // Timer not initialized yet
-        }
 
-        int timer = state.getTimer(TIMER_ID);
-        if (timer > 0) {
-            state.setTimer(TIMER_ID, timer - 1);
+        // Time to trigger the small structure event
+        boolean eventTriggered = SmallStructureEvent.triggerEvent(server);
+        if (eventTriggered) {
+            HorrorMod129.LOGGER.info("SmallStructureEvent triggered successfully.");
+            // Reset the timer with a new random delay
+            state.setTimer(TIMER_ID, getRandomDelay(state));
         } else {
-            // Time to trigger the small structure event
-            boolean eventTriggered = SmallStructureEvent.triggerEvent(server);
-            if (eventTriggered) {
-                HorrorMod129.LOGGER.info("SmallStructureEvent triggered successfully.");
-                // Reset the timer with a new random delay
-                state.setTimer(TIMER_ID, getRandomDelay(state));
-            } else {
-                // If event could not be triggered, retry in 1 minute
-                state.setTimer(TIMER_ID, 1200); // 1 minute in ticks
-            }
+            // If event could not be triggered, retry in 1 minute
+            state.setTimer(TIMER_ID, 1200); // 1 minute in ticks
         }
     }
 
@@ -2,9 +2,10 @@ package horror.blueice129.scheduler;
 
 import horror.blueice129.HorrorMod129;
 import horror.blueice129.data.HorrorModPersistentState;
+import horror.blueice129.data.SessionCheckpoints;
+import horror.blueice129.data.StateKey;
 import horror.blueice129.sounds.FakeFootsteps;
 import horror.blueice129.sounds.StalkingFootsteps;
-import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
@@ -15,13 +16,16 @@ import java.util.Random;
 public class StalkingFootstepScheduler {
 
     private static final Random random = new Random();
-    private static final String TIMER_ID = "stalkingFootstepTimer";
+    private static final StateKey.TimerKey TIMER_ID = StateKey.timer("stalkingFootstepTimer");
     private static final int MIN_DELAY = 20 * 60 * 25; // 25 minutes in ticks
     private static final int MAX_DELAY = 20 * 60 * 50; // 50 minutes in ticks
     private static final int MIN_AGRO = 4;
 
     public static void register() {
-        ServerTickEvents.END_SERVER_TICK.register(StalkingFootstepScheduler::onServerTick);
+        TickDispatcher.everyTick("stalking_footsteps", false, StalkingFootstepScheduler::onServerTick);
+        EventTimers.setHandler(TIMER_ID, StalkingFootstepScheduler::onTimerExpired);
+        SessionCheckpoints.add(StalkingFootsteps::restore, StalkingFootsteps::checkpoint);
+        StalkingFootsteps.registerRetention();
 
         ServerWorldEvents.LOAD.register((server, world) -> {
             if (world.getRegistryKey() == World.OVERWORLD) {
@@ -37,30 +41,32 @@ public class StalkingFootstepScheduler {
         HorrorMod129.LOGGER.info("Registered StalkingFootstepScheduler");
     }
 
-    private static void onServerTick(MinecraftServer server) {
-
-        HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
-        if (state.getIntValue("agroMeter", 0) < MIN_AGRO) {
+    private static void onServerTick(TickDispatcher.TickContext context) {
+        MinecraftServer server = context.server;
+        if (context.state.getIntValue(AgroMeterScheduler.AGRO_METER, 0) < MIN_AGRO) {
             return; // Don't run stalking logic if agro level is too low
         }
 
         // While a stalking event is active, drive its tick logic every tick
         if (StalkingFootsteps.isActive(server)) {
             StalkingFootsteps.tickStalking(server);
-            return;
         }
+    }
 
-        // Main trigger timer
-        // HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
-        int currentTimer = state.getTimer(TIMER_ID);
-        if (currentTimer <= 0) return;
-
-        currentTimer = state.decrementTimer(TIMER_ID, 1);
-        if (currentTimer == 0) {
-            boolean triggered = tryTriggerStalking(server);
-            // Reset timer: full delay on success, short retry on failure
-            state.setTimer(TIMER_ID, triggered ? getRandomDelay() : 20 * 60 * 3);
+    /**
+     * Called by EventTimers when the main trigger timer runs out.
+     */
+    private static void onTimerExpired(MinecraftServer server) {
+        HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
+        if (state.getIntValue(AgroMeterScheduler.AGRO_METER, 0) < MIN_AGRO || StalkingFootsteps.isActive(server)) {
+            // Not allowed to start yet: wait a full delay again, so it doesn't start right when it becomes allowed
+            state.setTimer(TIMER_ID, getRandomDelay());
+            return;
         }
+
+        boolean triggered = tryTriggerStalking(server);
+        // Reset timer: full delay on success, short retry on failure
+        state.setTimer(TIMER_ID, triggered ? getRandomDelay() : 20 * 60 * 3);
     }
 
     private static boolean tryTriggerStalking(MinecraftServer server) {
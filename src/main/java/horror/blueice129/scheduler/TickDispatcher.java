@@ -0,0 +1,211 @@
+package horror.blueice129.scheduler;
+
+import horror.blueice129.HorrorMod129;
+import horror.blueice129.data.HorrorModPersistentState;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * The mod's one end-of-tick listener. Features add their per-tick work as tasks that run every so many ticks;
+ * the tasks wait in a queue ordered by the tick they're due at, so a tick only runs the ones that are due,
+ * and the persistent state, player list and overworld are looked up once per tick for all of them.
+ * Tasks due on the same tick run in the order they were added.
+ *
+ * Each task's run time is measured, see /horror ticks.
+ *
+ * It also tracks whether the server is between ticks (after the end of one, before the start of the next),
+ * for work that must stay out of the tick (see IdleExecutor); that is its only start-of-tick listener.
+ *
+ * Server thread only.
+ */
+public class TickDispatcher {
+    private static final List<Task> TASKS = new ArrayList<>();
+    private static final PriorityQueue<Task> QUEUE = new PriorityQueue<>(
+            Comparator.comparingLong((Task task) -> task.nextTick).thenComparingInt(task -> task.order));
+    private static boolean started;
+    private static boolean betweenTicks;
+    private static int lastTick;
+    private static long statsStart = System.nanoTime();
+
+    /**
+     * What the tasks share within a tick.
+     */
+    public static final class TickContext {
+        public final MinecraftServer server;
+        public final HorrorModPersistentState state;
+        public final List<ServerPlayerEntity> players;
+        public final ServerWorld overworld;
+        public final int tick;
+
+        private TickContext(MinecraftServer server, int tick) {
+            this.server = server;
+            this.state = HorrorModPersistentState.getServerState(server);
+            this.players = server.getPlayerManager().getPlayerList();
+            this.overworld = server.getOverworld();
+            this.tick = tick;
+        }
+    }
+
+    private static final class Task {
+        final String name;
+        final int interval;
+        final boolean needsPlayers;
+        final Consumer<TickContext> action;
+        final int order;
+        long nextTick;
+
+        long runs;
+        long totalNanos;
+        long maxNanos;
+
+        Task(String name, int interval, boolean needsPlayers, Consumer<TickContext> action, int order) {
+            this.name = name;
+            this.interval = interval;
+            this.needsPlayers = needsPlayers;
+            this.action = action;
+            this.order = order;
+        }
+    }
+
+    /**
+     * Registers the tick event that runs the tasks. Call during mod initialization, before anything adds tasks.
+     */
+    public static void register() {
+        ServerTickEvents.START_SERVER_TICK.register(server -> betweenTicks = false);
+        ServerTickEvents.END_SERVER_TICK.register(TickDispatcher::onServerTick);
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> betweenTicks = false);
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            QUEUE.clear();
+            started = false;
+        });
+
+        HorrorMod129.LOGGER.info("Registered TickDispatcher");
+    }
+
+    /**
+     * Adds work that runs at the end of every tick.
+     *
+     * @param name Shown in the timing report
+     * @param needsPlayers Skip the work while the server is empty
+     * @param action The work
+     */
+    public static void everyTick(String name, boolean needsPlayers, Consumer<TickContext> action) {
+        every(name, 1, needsPlayers, action);
+    }
+
+    /**
+     * Adds work that runs at the end of every interval-th tick (on ticks that are a multiple of the interval).
+     *
+     * @param name Shown in the timing report
+     * @param interval Ticks between runs
+     * @param needsPlayers Skip the work while the server is empty
+     * @param action The work
+     */
+    public static void every(String name, int interval, boolean needsPlayers, Consumer<TickContext> action) {
+        Task task = new Task(name, Math.max(1, interval), needsPlayers, action, TASKS.size());
+        TASKS.add(task);
+        if (started) {
+            schedule(task, lastTick + 1);
+        }
+    }
+
+    /**
+     * Tells if the server is between ticks: the last tick ended and the next one hasn't started.
+     *
+     * @return False during a tick, before the first one and once the server is stopping
+     */
+    public static boolean isBetweenTicks() {
+        return betweenTicks;
+    }
+
+    /**
+     * Describes the time each task took since the server started or the last reset, most expensive first.
+     *
+     * @return Lines to show
+     */
+    public static List<String> getReport() {
+        double seconds = Math.max(1.0, (System.nanoTime() - statsStart) / 1e9);
+        long totalNanos = 0;
+        for (Task task : TASKS) {
+            totalNanos += task.totalNanos;
+        }
+
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%d tasks, %.2f ms per second over %.0f s", TASKS.size(), totalNanos / 1e6 / seconds, seconds));
+        List<Task> sorted = new ArrayList<>(TASKS);
+        sorted.sort(Comparator.comparingLong((Task task) -> task.totalNanos).reversed());
+        for (Task task : sorted) {
+            lines.add(String.format("%s (every %d): %d runs, avg %.3f ms, max %.3f ms, %.1f%%",
+                    task.name, task.interval, task.runs,
+                    task.runs == 0 ? 0 : task.totalNanos / 1e6 / task.runs,
+                    task.maxNanos / 1e6,
+                    totalNanos == 0 ? 0 : 100.0 * task.totalNanos / totalNanos));
+        }
+        return lines;
+    }
+
+    /**
+     * Clears the task timings.
+     */
+    public static void resetStats() {
+        for (Task task : TASKS) {
+            task.runs = 0;
+            task.totalNanos = 0;
+            task.maxNanos = 0;
+        }
+        statsStart = System.nanoTime();
+    }
+
+    private static void onServerTick(MinecraftServer server) {
+        betweenTicks = true; // Tasks run inside this listener, idle work only runs after it
+        int tick = server.getTicks();
+        lastTick = tick;
+        if (!started) {
+            for (Task task : TASKS) {
+                schedule(task, tick);
+            }
+            started = true;
+            resetStats();
+        }
+
+        Task next = QUEUE.peek();
+        if (next == null || next.nextTick > tick) {
+            return;
+        }
+
+        TickContext context = new TickContext(server, tick);
+        while ((next = QUEUE.peek()) != null && next.nextTick <= tick) {
+            QUEUE.poll();
+            // Requeue first, so a task that throws still runs next time
+            next.nextTick = tick + next.interval;
+            QUEUE.add(next);
+            if (next.needsPlayers && context.players.isEmpty()) {
+                continue;
+            }
+
+            long start = System.nanoTime();
+            next.action.accept(context);
+            long nanos = System.nanoTime() - start;
+            next.runs++;
+            next.totalNanos += nanos;
+            next.maxNanos = Math.max(next.maxNanos, nanos);
+        }
+    }
+
+    /**
+     * Queues a task for the first tick from the given one that is a multiple of its interval.
+     */
+    private static void schedule(Task task, int fromTick) {
+        task.nextTick = (fromTick + task.interval - 1) / task.interval * (long) task.interval;
+        QUEUE.add(task);
+    }
+}
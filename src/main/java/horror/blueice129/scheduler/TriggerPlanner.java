@@ -0,0 +1,162 @@
+package horror.blueice129.scheduler;
+
+import horror.blueice129.HorrorMod129;
+import horror.blueice129.config.ConfigManager;
+import horror.blueice129.data.StateKey;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.random.Random;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides when an event whose timer ran out may start, so events that come due together (after the server
+ * was empty for a while, or after timers were set by command) don't all run in the same tick.
+ * Each timer has a cost class and a priority, given when its handler is set (see EventTimers.setHandler):
+ * <ul>
+ *   <li>Heavy events (searches for spawn or structure locations, world edits) start at least
+ *       heavyEventSpacingSeconds apart (see ModConfig). A heavy event that comes too soon gets a later start,
+ *       after the other reserved ones, plus a random jitter.</li>
+ *   <li>While the average tick time is above lowPriorityMsptLimit, low priority events wait, and normal
+ *       priority ones wait while it's above 50 ms. High priority events are never held back for load.</li>
+ * </ul>
+ * A held back event's timer is set again to the ticks until its start, so the wait is saved like any timer.
+ *
+ * Server thread only.
+ */
+public class TriggerPlanner {
+    private static final float TICK_MILLIS = 50;
+    private static final int LOAD_DELAY_TICKS = 20 * 10; // Plus up to as much again as jitter
+    private static final Random random = Random.create();
+
+    private static final Map<StateKey.TimerKey, EventClass> CLASSES = new HashMap<>();
+    // Heavy events given a later start, and the server tick they may start at
+    private static final Map<StateKey.TimerKey, Long> RESERVED = new HashMap<>();
+    private static long lastHeavyStart = Long.MIN_VALUE / 2;
+    private static long latestReservation = Long.MIN_VALUE / 2;
+
+    // Since the server started
+    private static int started;
+    private static int heldForSpacing;
+    private static int heldForLoad;
+
+    /**
+     * How expensive an event is to start.
+     */
+    public enum Cost {
+        LIGHT,
+        HEAVY
+    }
+
+    private static final class EventClass {
+        final Cost cost;
+        final JobExecutor.Priority priority;
+
+        EventClass(Cost cost, JobExecutor.Priority priority) {
+            this.cost = cost;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * Registers the server event that forgets the plan of the last session. Call during mod initialization.
+     */
+    public static void register() {
+        ServerLifecycleEvents.SERVER_STARTED.register(server -> {
+            RESERVED.clear();
+            lastHeavyStart = Long.MIN_VALUE / 2;
+            latestReservation = Long.MIN_VALUE / 2;
+            started = 0;
+            heldForSpacing = 0;
+            heldForLoad = 0;
+        });
+
+        HorrorMod129.LOGGER.info("Registered TriggerPlanner");
+    }
+
+    /**
+     * Sets the cost class and priority of a timer's event. Timers without one are light and of normal priority.
+     *
+     * @param timer The timer
+     * @param cost How expensive the event is to start
+     * @param priority Which events wait first when the server is busy
+     */
+    static void classify(StateKey.TimerKey timer, Cost cost, JobExecutor.Priority priority) {
+        CLASSES.put(timer, new EventClass(cost, priority));
+    }
+
+    /**
+     * Decides if the event of a timer that ran out may start now.
+     *
+     * @param server The Minecraft server instance
+     * @param timer The timer that ran out
+     * @param tick The current server tick
+     * @return 0 to start the event now, otherwise the ticks to wait
+     */
+    static int plan(MinecraftServer server, StateKey.TimerKey timer, long tick) {
+        EventClass eventClass = CLASSES.getOrDefault(timer, new EventClass(Cost.LIGHT, JobExecutor.Priority.NORMAL));
+
+        float limit = switch (eventClass.priority) {
+            case HIGH -> Float.MAX_VALUE;
+            case NORMAL -> TICK_MILLIS;
+            case LOW -> Math.min(TICK_MILLIS, ConfigManager.getConfig().lowPriorityMsptLimit);
+        };
+        if (server.getTickTime() > limit) {
+            RESERVED.remove(timer); // Planned again when it comes back
+            heldForLoad++;
+            return LOAD_DELAY_TICKS + random.nextInt(LOAD_DELAY_TICKS + 1);
+        }
+
+        if (eventClass.cost == Cost.HEAVY) {
+            Long reserved = RESERVED.remove(timer);
+            long spacing = getSpacingTicks();
+            if (reserved != null && tick < reserved) {
+                // Its timer was set shorter meanwhile (by command); it keeps its place
+                RESERVED.put(timer, reserved);
+                heldForSpacing++;
+                return (int) (reserved - tick);
+            }
+            if (reserved == null) {
+                long earliest = Math.max(lastHeavyStart, latestReservation) + spacing;
+                if (tick < earliest) {
+                    long start = earliest + random.nextInt((int) (spacing / 2) + 1);
+                    RESERVED.put(timer, start);
+                    latestReservation = Math.max(latestReservation, start);
+                    heldForSpacing++;
+                    return (int) (start - tick);
+                }
+            }
+            lastHeavyStart = tick;
+        }
+        started++;
+        return 0;
+    }
+
+    /**
+     * Describes the plan and what it held back since the server started.
+     *
+     * @param server The Minecraft server instance
+     * @return Lines to show
+     */
+    public static List<String> getReport(MinecraftServer server) {
+        long tick = server.getTicks();
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("Average tick %.1f ms, low priority events wait above %d ms", server.getTickTime(),
+                ConfigManager.getConfig().lowPriorityMsptLimit));
+        lines.add(String.format("%d events started, %d held back for spacing, %d for load", started, heldForSpacing, heldForLoad));
+        lines.add(tick - lastHeavyStart > Integer.MAX_VALUE ? "No heavy event started yet"
+                : String.format("Last heavy event started %.1f s ago, spacing %d s", (tick - lastHeavyStart) / 20.0,
+                        getSpacingTicks() / 20));
+        for (Map.Entry<StateKey.TimerKey, Long> entry : RESERVED.entrySet()) {
+            lines.add(String.format("%s starts in %.1f s", entry.getKey().getName(), Math.max(0, entry.getValue() - tick) / 20.0));
+        }
+        return lines;
+    }
+
+    private static long getSpacingTicks() {
+        return Math.max(0, ConfigManager.getConfig().heavyEventSpacingSeconds) * 20L;
+    }
+}
@@ -2,6 +2,8 @@ package horror.blueice129.sounds;
 
 import horror.blueice129.HorrorMod129;
 import horror.blueice129.data.HorrorModPersistentState;
+import horror.blueice129.data.StateKey;
+import horror.blueice129.data.StateRetention;
 import horror.blueice129.utils.ChunkLoader;
 import horror.blueice129.utils.FootstepPathUtils;
 import net.minecraft.block.BlockState;
@@ -28,6 +30,16 @@ public class FakeFootsteps {
     private static final int MIN_TARGET_DISTANCE = 20;
     private static final int MAX_TARGET_DISTANCE = 30;
 
+    // State keys, the active flag is shared with FakeFootstepScheduler
+    public static final StateKey.IntKey KEY_ACTIVE = StateKey.intValue("fakeFootstepActive");
+    private static final StateKey.IntKey KEY_PLAYBACK_TIMER = StateKey.intValue("fakeFootstepPlaybackTimer");
+    private static final StateKey.IntKey KEY_STEP = StateKey.intValue("fakeFootstepCurrentStep");
+
+    // Playback progress, kept here and checkpointed into the keys above by SessionCheckpoints
+    private static int currentStep;
+    private static int playbackTimer;
+    private static boolean progressChanged;
+
     public static class SoundPath {
         public List<BlockPos> blockPosList;
         public int length;
@@ -154,13 +166,28 @@ public class FakeFootsteps {
 
         // Store path in persistent state
         state.setPositionList("fakeFootstepPath", path.blockPosList);
-        state.setIntValue("fakeFootstepCurrentStep", 0);
-        state.setIntValue("fakeFootstepPlaybackTimer", STEP_TICKS);
-        state.setIntValue("fakeFootstepActive", 1);
+        currentStep = 0;
+        playbackTimer = STEP_TICKS;
+        progressChanged = true;
+        checkpoint(state);
+        state.setIntValue(KEY_ACTIVE, 1);
 
         HorrorMod129.LOGGER.info("Started footstep path playback with " + path.length + " steps");
     }
 
+    /**
+     * Counts the playback timer down by one tick. Called by the scheduler every tick while playback is active.
+     * @return True if the timer is at 0 and the next step is due
+     */
+    public static boolean countDownPlaybackTimer() {
+        if (playbackTimer > 0) {
+            playbackTimer--;
+            progressChanged = true;
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Advances footstep playback by one step.
      * Called by scheduler when playback timer reaches 0.
@@ -170,19 +197,17 @@ public class FakeFootsteps {
         HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
 
         // Check if playback is active
-        int active = state.getIntValue("fakeFootstepActive", 0);
+        int active = state.getIntValue(KEY_ACTIVE, 0);
         if (active == 0) {
             return false;
         }
 
         // Get path and current step
         List<BlockPos> path = state.getPositionList("fakeFootstepPath");
-        int currentStep = state.getIntValue("fakeFootstepCurrentStep", 0);
 
         if (path == null || currentStep >= path.size()) {
             // Playback complete, clear state
-            state.setIntValue("fakeFootstepActive", 0);
-            state.removePositionList("fakeFootstepPath");
+            stopPlayback(state);
             HorrorMod129.LOGGER.info("Footstep playback complete");
             return false;
         }
@@ -193,8 +218,7 @@ public class FakeFootsteps {
             BlockPos stepPos = path.get(currentStep);
 
             if (FootstepPathUtils.isNearAnyPlayer(server, stepPos, 3.0)) {
-                state.setIntValue("fakeFootstepActive", 0);
-                state.removePositionList("fakeFootstepPath");
+                stopPlayback(state);
                 HorrorMod129.LOGGER.info("Footstep playback stopped: within 3 blocks of a player");
                 return false;
             }
@@ -204,10 +228,54 @@ public class FakeFootsteps {
         }
 
         // Advance to next step
-        state.setIntValue("fakeFootstepCurrentStep", currentStep + 1);
-        state.setIntValue("fakeFootstepPlaybackTimer", STEP_TICKS);
+        currentStep++;
+        playbackTimer = STEP_TICKS;
+        progressChanged = true;
 
         return true;
     }
 
+    /**
+     * Ends playback and removes its saved values.
+     */
+    private static void stopPlayback(HorrorModPersistentState state) {
+        state.setIntValue(KEY_ACTIVE, 0);
+        state.removePositionList("fakeFootstepPath");
+        state.removeIntValue(KEY_STEP);
+        state.removeIntValue(KEY_PLAYBACK_TIMER);
+        currentStep = 0;
+        playbackTimer = 0;
+        progressChanged = false;
+    }
+
+    /**
+     * Lets StateRetention remove playback values left behind while no playback is running (e.g. after a crash).
+     */
+    public static void registerRetention() {
+        StateRetention.bindToOwner(state -> state.getIntValue(KEY_ACTIVE, 0) == 1,
+                "fakeFootstepPath", KEY_STEP.getName(), KEY_PLAYBACK_TIMER.getName());
+    }
+
+    /**
+     * Loads the playback progress saved by the last checkpoint. Called by SessionCheckpoints when the server starts.
+     */
+    public static void restore(HorrorModPersistentState state) {
+        currentStep = state.getIntValue(KEY_STEP, 0);
+        playbackTimer = state.getIntValue(KEY_PLAYBACK_TIMER, 0);
+        progressChanged = false;
+    }
+
+    /**
+     * Writes the playback progress into the persistent state if it changed since the last checkpoint.
+     * Called by SessionCheckpoints every few seconds and on shutdown.
+     */
+    public static void checkpoint(HorrorModPersistentState state) {
+        if (!progressChanged) {
+            return;
+        }
+        state.setIntValue(KEY_STEP, currentStep);
+        state.setIntValue(KEY_PLAYBACK_TIMER, playbackTimer);
+        progressChanged = false;
+    }
+
 }
@@ -2,9 +2,11 @@ package horror.blueice129.sounds;
 
 import horror.blueice129.HorrorMod129;
 import horror.blueice129.data.HorrorModPersistentState;
+import horror.blueice129.data.StateKey;
+import horror.blueice129.data.StateRetention;
 import horror.blueice129.utils.ChunkLoader;
 import horror.blueice129.utils.FootstepPathUtils;
-import horror.blueice129.utils.LineOfSightUtils;
+import horror.blueice129.utils.ObserverIndex;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
@@ -25,14 +27,23 @@ public class StalkingFootsteps {
     private static final double LOS_CHECK_DISTANCE = 64.0;
 
     // --- State key constants ---
-    private static final String KEY_ACTIVE       = "stalkingActive";       // 0=idle 1=walking 2=paused
-    private static final String KEY_PATH         = "stalkingPath";
-    private static final String KEY_STEP         = "stalkingCurrentStep";
-    private static final String KEY_STEP_TIMER   = "stalkingStepTimer";
-    private static final String KEY_ELAPSED      = "stalkingElapsedTicks";
-    private static final String KEY_TOTAL_STEPS  = "stalkingTotalSteps";
-    private static final String KEY_LAST_POS     = "stalkingLastPos";
-    private static final String KEY_PAUSED_POS   = "stalkingPausedPlayerPos";
+    private static final StateKey.IntKey KEY_ACTIVE      = StateKey.intValue("stalkingActive");      // 0=idle 1=walking 2=paused
+    private static final String KEY_PATH             = "stalkingPath";
+    private static final StateKey.IntKey KEY_STEP        = StateKey.intValue("stalkingCurrentStep");
+    private static final StateKey.IntKey KEY_STEP_TIMER  = StateKey.intValue("stalkingStepTimer");
+    private static final StateKey.IntKey KEY_ELAPSED     = StateKey.intValue("stalkingElapsedTicks");
+    private static final StateKey.IntKey KEY_TOTAL_STEPS = StateKey.intValue("stalkingTotalSteps");
+    private static final StateKey.PosKey KEY_LAST_POS    = StateKey.position("stalkingLastPos");
+    private static final StateKey.PosKey KEY_PAUSED_POS  = StateKey.position("stalkingPausedPlayerPos");
+
+    // Progress that changes every few ticks lives here and is checkpointed into the keys above
+    // by SessionCheckpoints; starting, pausing, new segments and clearing still write through right away
+    private static int step;
+    private static int stepTimer;
+    private static int elapsed;
+    private static int totalSteps;
+    private static BlockPos lastPos;
+    private static boolean progressChanged;
 
     public static boolean isActive(MinecraftServer server) {
         return HorrorModPersistentState.getServerState(server).getIntValue(KEY_ACTIVE, 0) != 0;
@@ -63,11 +74,13 @@ public class StalkingFootsteps {
 
         HorrorModPersistentState state = HorrorModPersistentState.getServerState(server);
         state.setPositionList(KEY_PATH, path);
-        state.setIntValue(KEY_STEP, 0);
-        state.setIntValue(KEY_STEP_TIMER, CHECK_INTERVAL);
-        state.setIntValue(KEY_ELAPSED, 0);
-        state.setIntValue(KEY_TOTAL_STEPS, 0);
-        state.setPosition(KEY_LAST_POS, path.get(0));
+        step = 0;
+        stepTimer = CHECK_INTERVAL;
+        elapsed = 0;
+        totalSteps = 0;
+        lastPos = path.get(0);
+        progressChanged = true;
+        checkpoint(state);
         state.setIntValue(KEY_ACTIVE, 1);
 
         HorrorMod129.LOGGER.info("StalkingFootsteps: started with " + path.size() + " initial steps");
@@ -83,8 +96,8 @@ public class StalkingFootsteps {
         if (active == 0) return;
 
         // Global timeout
-        int elapsed = state.getIntValue(KEY_ELAPSED, 0) + 1;
-        state.setIntValue(KEY_ELAPSED, elapsed);
+        elapsed++;
+        progressChanged = true;
         if (elapsed >= MAX_TIME_ON_PATH) {
             clearState(state);
             HorrorMod129.LOGGER.info("StalkingFootsteps: event timed out");
@@ -92,10 +105,9 @@ public class StalkingFootsteps {
         }
 
         // Deactivate if no player is within 64 blocks of the last footstep position
-        BlockPos lastFootstep = state.getPosition(KEY_LAST_POS);
-        if (lastFootstep != null) {
-            ServerPlayerEntity closest = getClosestPlayer(server, lastFootstep);
-            if (closest == null || closest.getBlockPos().getSquaredDistance(lastFootstep) > 64 * 64) {
+        if (lastPos != null) {
+            ServerPlayerEntity closest = getClosestPlayer(server, lastPos);
+            if (closest == null || closest.getBlockPos().getSquaredDistance(lastPos) > 64 * 64) {
                 clearState(state);
                 HorrorMod129.LOGGER.info("StalkingFootsteps: deactivated — no player within 64 blocks of last footstep");
                 return;
@@ -114,15 +126,13 @@ public class StalkingFootsteps {
     // -------------------------------------------------------------------------
 
     private static void tickWalking(MinecraftServer server, HorrorModPersistentState state) {
-        int stepTimer = state.getIntValue(KEY_STEP_TIMER, 0);
         if (stepTimer > 0) {
-            state.setIntValue(KEY_STEP_TIMER, stepTimer - 1);
+            stepTimer--;
             return;
         }
 
         List<BlockPos> path = state.getPositionList(KEY_PATH);
-        int stepIndex = state.getIntValue(KEY_STEP, 0);
-        BlockPos lastPos = state.getPosition(KEY_LAST_POS);
+        int stepIndex = step;
 
         // Current segment exhausted — try to generate the next one
         if (stepIndex >= path.size()) {
@@ -147,7 +157,6 @@ public class StalkingFootsteps {
         }
 
         // Abort: cumulative step limit reached
-        int totalSteps = state.getIntValue(KEY_TOTAL_STEPS, 0);
         if (totalSteps >= MAX_PATH_LENGTH) {
             clearState(state);
             HorrorMod129.LOGGER.info("StalkingFootsteps: aborted — max path length reached");
@@ -171,10 +180,11 @@ public class StalkingFootsteps {
         float pitchVariation = overworld.getRandom().nextFloat();
         FakeFootsteps.playFootstepAt(overworld, stepPos, pitchVariation);
 
-        state.setPosition(KEY_LAST_POS, stepPos);
-        state.setIntValue(KEY_STEP, stepIndex + 1);
-        state.setIntValue(KEY_TOTAL_STEPS, totalSteps + 1);
-        state.setIntValue(KEY_STEP_TIMER, CHECK_INTERVAL);
+        lastPos = stepPos;
+        step = stepIndex + 1;
+        totalSteps++;
+        stepTimer = CHECK_INTERVAL;
+        progressChanged = true;
     }
 
     // -------------------------------------------------------------------------
@@ -185,7 +195,6 @@ public class StalkingFootsteps {
         ServerWorld overworld = server.getOverworld();
         if (overworld == null) return;
 
-        BlockPos lastPos = state.getPosition(KEY_LAST_POS);
         if (lastPos == null) {
             clearState(state);
             return;
@@ -210,7 +219,8 @@ public class StalkingFootsteps {
         }
 
         state.setIntValue(KEY_ACTIVE, 1);
-        state.setIntValue(KEY_STEP_TIMER, CHECK_INTERVAL);
+        stepTimer = CHECK_INTERVAL;
+        checkpoint(state);
         state.removePosition(KEY_PAUSED_POS);
         HorrorMod129.LOGGER.info("StalkingFootsteps: resumed");
     }
@@ -238,7 +248,9 @@ public class StalkingFootsteps {
         }
 
         state.setPositionList(KEY_PATH, newPath);
-        state.setIntValue(KEY_STEP, 0);
+        step = 0;
+        progressChanged = true;
+        checkpoint(state);
         HorrorMod129.LOGGER.info("StalkingFootsteps: new segment with " + newPath.size() + " steps");
         return true;
     }
@@ -246,7 +258,7 @@ public class StalkingFootsteps {
     /** Transitions to paused state and records the player's current position. */
     private static void pauseStalker(MinecraftServer server, HorrorModPersistentState state) {
         state.setIntValue(KEY_ACTIVE, 2);
-        BlockPos lastPos = state.getPosition(KEY_LAST_POS);
+        checkpoint(state);
         ServerPlayerEntity closest = getClosestPlayer(server, lastPos);
         if (closest != null) {
             state.setPosition(KEY_PAUSED_POS, closest.getBlockPos());
@@ -258,14 +270,8 @@ public class StalkingFootsteps {
      * head level of {@code pos}. Used to pause the stalker if anyone can see it.
      */
     private static boolean isVisibleToAnyPlayer(MinecraftServer server, BlockPos pos) {
-        for (ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
-            if (LineOfSightUtils.hasLineOfSight(player, pos, LOS_CHECK_DISTANCE)
-                    || LineOfSightUtils.hasLineOfSight(player, pos.up(), LOS_CHECK_DISTANCE)
-                    || LineOfSightUtils.hasLineOfSight(player, pos.up(2), LOS_CHECK_DISTANCE)) {
-                return true;
-            }
-        }
-        return false;
+        long[] body = { pos.asLong(), pos.up().asLong(), pos.up(2).asLong() };
+        return ObserverIndex.findObserver(server.getOverworld(), body, LOS_CHECK_DISTANCE) != null;
     }
 
     /** Returns the player currently closest to {@code pos}, or null if no players online. */
@@ -291,8 +297,53 @@ public class StalkingFootsteps {
         clearState(HorrorModPersistentState.getServerState(server));
     }
 
+    /**
+     * Lets StateRetention remove event values left behind while no stalking event is running (e.g. after a crash).
+     */
+    public static void registerRetention() {
+        StateRetention.bindToOwner(state -> state.getIntValue(KEY_ACTIVE, 0) != 0,
+                KEY_PATH, KEY_STEP.getName(), KEY_STEP_TIMER.getName(), KEY_ELAPSED.getName(),
+                KEY_TOTAL_STEPS.getName(), KEY_LAST_POS.getName(), KEY_PAUSED_POS.getName());
+    }
+
+    /**
+     * Loads the walking progress saved by the last checkpoint. Called by SessionCheckpoints when the server starts.
+     */
+    public static void restore(HorrorModPersistentState state) {
+        step = state.getIntValue(KEY_STEP, 0);
+        stepTimer = state.getIntValue(KEY_STEP_TIMER, 0);
+        elapsed = state.getIntValue(KEY_ELAPSED, 0);
+        totalSteps = state.getIntValue(KEY_TOTAL_STEPS, 0);
+        lastPos = state.getPosition(KEY_LAST_POS);
+        progressChanged = false;
+    }
+
+    /**
+     * Writes the walking progress into the persistent state if it changed since the last checkpoint.
+     * Called by SessionCheckpoints every few seconds and on shutdown.
+     */
+    public static void checkpoint(HorrorModPersistentState state) {
+        if (!progressChanged) {
+            return;
+        }
+        state.setIntValue(KEY_STEP, step);
+        state.setIntValue(KEY_STEP_TIMER, stepTimer);
+        state.setIntValue(KEY_ELAPSED, elapsed);
+        state.setIntValue(KEY_TOTAL_STEPS, totalSteps);
+        if (lastPos != null) {
+            state.setPosition(KEY_LAST_POS, lastPos);
+        }
+        progressChanged = false;
+    }
+
     /** Clears all stalking state, returning the event to idle. */
     static void clearState(HorrorModPersistentState state) {
+        step = 0;
+        stepTimer = 0;
+        elapsed = 0;
+        totalSteps = 0;
+        lastPos = null;
+        progressChanged = false;
         state.setIntValue(KEY_ACTIVE, 0);
         state.removePositionList(KEY_PATH);
         state.removeIntValue(KEY_STEP);
@@ -0,0 +1,148 @@
+package horror.blueice129.utils;
+
+import horror.blueice129.HorrorMod129;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+
+import java.util.BitSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs batch line of sight checks on worker threads against a BlockSnapshot, so heavy events
+ * (cave premining, tree removal) don't stall the server tick.
+ *
+ * The eye, view direction and the blocks between the eye and the targets are captured on the server
+ * thread when the query is submitted; the returned future completes back on the server thread,
+ * usually a tick later. Callers should re-check the blocks they act on, they may have changed since.
+ */
+public class AsyncLineOfSight {
+    // Above this many sections the copy costs more than the check, so it runs right away instead
+    private static final int MAX_SNAPSHOT_SECTIONS = 1024;
+    private static final int WORKER_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+    private static ExecutorService workers;
+
+    private static long submitted;
+    private static long ranOnServerThread;
+    private static long sectionsCopied;
+
+    /**
+     * Registers the worker shutdown. Call during mod initialization.
+     */
+    public static void register() {
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> shutdown());
+
+        HorrorMod129.LOGGER.info("Registered AsyncLineOfSight with " + WORKER_COUNT + " workers");
+    }
+
+    /**
+     * Off-thread version of LineOfSightUtils.hasLineOfSight(player, targets, maxDistance, null, precision).
+     * Server thread only.
+     *
+     * @param player The player to check from
+     * @param targets Packed positions (BlockPos.asLong) to check
+     * @param maxDistance The maximum distance to check
+     * @param precision Which points of each block to cast rays to
+     * @return Future completed on the server thread with the bits of the visible targets.
+     *         If the check fails every target is reported visible, so nothing happens in view.
+     */
+    public static CompletableFuture<BitSet> hasLineOfSight(ServerPlayerEntity player, long[] targets, double maxDistance,
+                                                        LineOfSightUtils.Precision precision) {
+        ServerWorld world = player.getServerWorld();
+        MinecraftServer server = world.getServer();
+        ViewFrame frame = ViewFrame.get(player);
+        double eyeX = frame.eyeX;
+        double eyeY = frame.eyeY;
+        double eyeZ = frame.eyeZ;
+        long[] captured = targets.clone();
+
+        // Box around the eye and every target in range, that's all the rays can pass through
+        int minX = MathHelper.floor(eyeX);
+        int minY = MathHelper.floor(eyeY);
+        int minZ = MathHelper.floor(eyeZ);
+        int maxX = minX;
+        int maxY = minY;
+        int maxZ = minZ;
+        double maxDistanceSq = maxDistance * maxDistance;
+        for (long target : captured) {
+            int x = BlockPos.unpackLongX(target);
+            int y = BlockPos.unpackLongY(target);
+            int z = BlockPos.unpackLongZ(target);
+            double dx = x + 0.5 - eyeX;
+            double dy = y + 0.5 - eyeY;
+            double dz = z + 0.5 - eyeZ;
+            if (dx * dx + dy * dy + dz * dz > maxDistanceSq) {
+                continue;
+            }
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+        }
+
+        if (BlockSnapshot.countSections(world, minX, minY, minZ, maxX, maxY, maxZ) > MAX_SNAPSHOT_SECTIONS) {
+            ranOnServerThread++;
+            return CompletableFuture.completedFuture(
+                    LineOfSightUtils.hasLineOfSight(player, captured, maxDistance, null, precision));
+        }
+
+        BlockSnapshot snapshot = BlockSnapshot.capture(world, minX, minY, minZ, maxX, maxY, maxZ);
+        submitted++;
+        sectionsCopied += snapshot.getSectionCount();
+
+        return CompletableFuture.supplyAsync(() -> LineOfSightUtils.hasLineOfSight(VoxelRaycaster.cursor(snapshot),
+                        frame, captured, maxDistance, null, precision), getWorkers())
+                .exceptionally(e -> {
+                    HorrorMod129.LOGGER.error("Async line of sight check failed", e);
+                    BitSet all = new BitSet(captured.length);
+                    all.set(0, captured.length);
+                    return all;
+                })
+                .thenApplyAsync(visible -> visible, server);
+    }
+
+    private static synchronized ExecutorService getWorkers() {
+        if (workers == null) {
+            AtomicInteger count = new AtomicInteger();
+            workers = Executors.newFixedThreadPool(WORKER_COUNT, task -> {
+                Thread thread = new Thread(task, "HorrorMod129 LOS worker " + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return workers;
+    }
+
+    private static synchronized void shutdown() {
+        if (workers != null) {
+            workers.shutdownNow();
+            workers = null;
+        }
+    }
+
+    /**
+     * Gets a readable summary of the async counters, for debug commands.
+     */
+    public static String getStatsString() {
+        return String.format("Async line of sight: %d submitted (%d sections copied), %d ran on the server thread",
+                submitted, sectionsCopied, ranOnServerThread);
+    }
+
+    /**
+     * Resets the async counters.
+     */
+    public static void resetStats() {
+        submitted = 0;
+        ranOnServerThread = 0;
+        sectionsCopied = 0;
+    }
+}
@@ -0,0 +1,29 @@
+package horror.blueice129.utils;
+
+import net.fabricmc.fabric.api.event.Event;
+import net.fabricmc.fabric.api.event.EventFactory;
+import net.minecraft.block.BlockState;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * Fired on the server whenever a block state in a world actually changes,
+ * no matter who changed it (players, our own events, explosions, pistons, ...).
+ * Invoked from ServerWorldMixin, so keep listeners cheap.
+ */
+public interface BlockChangeCallback {
+    Event<BlockChangeCallback> EVENT = EventFactory.createArrayBacked(BlockChangeCallback.class,
+            listeners -> (world, pos, oldState, newState) -> {
+                for (BlockChangeCallback listener : listeners) {
+                    listener.onBlockChanged(world, pos, oldState, newState);
+                }
+            });
+
+    /**
+     * @param world The world the change happened in
+     * @param pos The changed position (may be mutable, copy it before storing)
+     * @param oldState The state before the change
+     * @param newState The state after the change
+     */
+    void onBlockChanged(ServerWorld world, BlockPos pos, BlockState oldState, BlockState newState);
+}
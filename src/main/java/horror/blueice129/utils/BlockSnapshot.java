@@ -0,0 +1,87 @@
+package horror.blueice129.utils;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.minecraft.world.chunk.WorldChunk;
+
+/**
+ * Immutable copy of the block states in a box of chunk sections, readable from any thread.
+ * Each non-empty section's block palette is copied, which is much cheaper than copying block by block.
+ * Empty sections, unloaded chunks and cells outside the world read as air.
+ *
+ * Capture on the server thread, then hand it to VoxelRaycaster.cursor(BlockSnapshot) off-thread.
+ */
+public final class BlockSnapshot {
+    private final Long2ObjectOpenHashMap<PalettedContainer<BlockState>> sections;
+    private final int bottomY;
+    private final int topY;
+
+    private BlockSnapshot(Long2ObjectOpenHashMap<PalettedContainer<BlockState>> sections, int bottomY, int topY) {
+        this.sections = sections;
+        this.bottomY = bottomY;
+        this.topY = topY;
+    }
+
+    /**
+     * Counts the sections a capture of the box would look at, to decide if it's worth it.
+     */
+    public static long countSections(ServerWorld world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        int minSectionY = Math.max(minY >> 4, world.getBottomSectionCoord());
+        int maxSectionY = Math.min(maxY >> 4, world.getTopSectionCoord() - 1);
+        if (maxSectionY < minSectionY) {
+            return 0;
+        }
+        return (long) ((maxX >> 4) - (minX >> 4) + 1) * ((maxZ >> 4) - (minZ >> 4) + 1) * (maxSectionY - minSectionY + 1);
+    }
+
+    /**
+     * Copies every loaded, non-empty section touching the box. Server thread only.
+     * Chunks that aren't loaded are not loaded for this, they read as air.
+     *
+     * @param world The world to copy from
+     * @return The snapshot
+     */
+    public static BlockSnapshot capture(ServerWorld world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        Long2ObjectOpenHashMap<PalettedContainer<BlockState>> sections = new Long2ObjectOpenHashMap<>();
+        int minSectionY = Math.max(minY >> 4, world.getBottomSectionCoord());
+        int maxSectionY = Math.min(maxY >> 4, world.getTopSectionCoord() - 1);
+
+        for (int cx = minX >> 4; cx <= maxX >> 4; cx++) {
+            for (int cz = minZ >> 4; cz <= maxZ >> 4; cz++) {
+                WorldChunk chunk = world.getChunkManager().getWorldChunk(cx, cz);
+                if (chunk == null) {
+                    continue;
+                }
+                for (int sy = minSectionY; sy <= maxSectionY; sy++) {
+                    ChunkSection section = chunk.getSection(chunk.sectionCoordToIndex(sy));
+                    if (!section.isEmpty()) {
+                        sections.put(ChunkSectionPos.asLong(cx, sy, cz), section.getBlockStateContainer().copy());
+                    }
+                }
+            }
+        }
+        return new BlockSnapshot(sections, world.getBottomY(), world.getTopY());
+    }
+
+    /**
+     * Gets a block state, or null for air, empty sections, unloaded chunks and cells outside the world.
+     */
+    public BlockState getBlockState(int x, int y, int z) {
+        if (y < bottomY || y >= topY) {
+            return null;
+        }
+        PalettedContainer<BlockState> section = sections.get(ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4));
+        return section == null ? null : section.get(x & 15, y & 15, z & 15);
+    }
+
+    /**
+     * Gets the number of sections copied.
+     */
+    public int getSectionCount() {
+        return sections.size();
+    }
+}
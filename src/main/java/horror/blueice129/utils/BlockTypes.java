@@ -1,90 +1,236 @@
 package horror.blueice129.utils;
 
+import horror.blueice129.HorrorMod129;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.block.FlowerBlock;
 import net.minecraft.block.LeavesBlock;
+import net.minecraft.registry.tag.BlockTags;
 
+import java.util.Set;
+
+/**
+ * Block categories used across the mod, looked up in a table indexed by BlockState raw id.
+ * The table is built when the server starts and again when tags reload (logs and leaves come from tags),
+ * so every check is one array lookup with no string work.
+ */
 public class BlockTypes {
+    public static final int LEAF = 1;
+    public static final int ORE = 1 << 1;
+    public static final int LOG = 1 << 2;
+    public static final int FOLIAGE = 1 << 3;
+    public static final int WATER = 1 << 4;
+    public static final int OPAQUE_FOR_LOS = 1 << 5; // Stops line of sight (before the shape check)
+    public static final int INTERESTING = 1 << 6; // Signs of players nearby, for structure placement
+    public static final int PROTECTED = 1 << 7; // Player-made blocks that chunk events must not destroy
+
+    private static final Set<Block> ORE_BLOCKS = Set.of(
+            Blocks.COAL_ORE, Blocks.IRON_ORE, Blocks.GOLD_ORE, Blocks.DIAMOND_ORE, Blocks.EMERALD_ORE,
+            Blocks.REDSTONE_ORE, Blocks.LAPIS_ORE, Blocks.COPPER_ORE,
+            Blocks.DEEPSLATE_COAL_ORE, Blocks.DEEPSLATE_IRON_ORE, Blocks.DEEPSLATE_GOLD_ORE,
+            Blocks.DEEPSLATE_DIAMOND_ORE, Blocks.DEEPSLATE_EMERALD_ORE, Blocks.DEEPSLATE_REDSTONE_ORE,
+            Blocks.DEEPSLATE_LAPIS_ORE, Blocks.DEEPSLATE_COPPER_ORE,
+            Blocks.RAW_COPPER_BLOCK, Blocks.RAW_GOLD_BLOCK, Blocks.RAW_IRON_BLOCK);
+
+    private static final Set<Block> FOLIAGE_BLOCKS = Set.of(
+            Blocks.GRASS, Blocks.TALL_GRASS, Blocks.VINE, Blocks.DEAD_BUSH, Blocks.FERN, Blocks.LARGE_FERN,
+            Blocks.SUGAR_CANE);
+
+    // waterlogged blocks
+    private static final Set<Block> WATER_BLOCKS = Set.of(
+            Blocks.WATER, Blocks.BUBBLE_COLUMN, Blocks.KELP_PLANT, Blocks.KELP, Blocks.SEAGRASS,
+            Blocks.TALL_SEAGRASS, Blocks.SEA_PICKLE);
+
+    private static final Set<Block> INTERESTING_BLOCKS = Set.of(
+            Blocks.CHEST, Blocks.TRAPPED_CHEST, Blocks.ENDER_CHEST, Blocks.TORCH, Blocks.LANTERN, Blocks.HOPPER,
+            Blocks.OBSIDIAN, Blocks.GOLD_BLOCK, Blocks.IRON_BLOCK, Blocks.DIAMOND_BLOCK, Blocks.EMERALD_BLOCK,
+            Blocks.NETHERITE_BLOCK, Blocks.LILY_OF_THE_VALLEY, Blocks.HAY_BLOCK, Blocks.MOSS_BLOCK, Blocks.LAVA,
+            Blocks.FIRE, Blocks.EMERALD_ORE, Blocks.DIAMOND_ORE, Blocks.SPAWNER);
+    // Blocks with a structure attached, matched against the translation key once when the table is built
+    private static final String[] INTERESTING_PARTIAL_NAMES = { "door", "bed", "stairs", "plank", "glass", "rail", "path" };
+
+    private static volatile byte[] table;
+
     /**
-     * Checks if a block state is an ore block.
-     * 
+     * Rebuilds the table when the server starts and after data pack (tag) reloads.
+     * Call during mod initialization.
+     */
+    public static void register() {
+        ServerLifecycleEvents.SERVER_STARTED.register(server -> rebuild());
+        ServerLifecycleEvents.END_DATA_PACK_RELOAD.register((server, resourceManager, success) -> {
+            if (success) {
+                rebuild();
+            }
+        });
+    }
+
+    /**
+     * Rebuilds the table from the current tags, and the line of sight tables that depend on it.
+     */
+    public static void rebuild() {
+        int size = Block.STATE_IDS.size();
+        byte[] newTable = new byte[size];
+        for (BlockState state : Block.STATE_IDS) {
+            int id = Block.getRawIdFromState(state);
+            if (id >= 0 && id < size) {
+                newTable[id] = (byte) classify(state);
+            }
+        }
+        table = newTable;
+
+        VoxelRaycaster.rebuildTables();
+        OccupancyPyramid.clear();
+        HorrorMod129.LOGGER.info("Built block type table for " + size + " block states");
+    }
+
+    /**
+     * Gets all category flags of a block state.
+     *
+     * @param state The block state
+     * @return The flags (LEAF, ORE, ...) that apply
+     */
+    public static int getFlags(BlockState state) {
+        byte[] flags = table;
+        int id = Block.getRawIdFromState(state);
+        if (flags == null || id < 0 || id >= flags.length) {
+            return classify(state); // Before the server started
+        }
+        return flags[id] & 0xFF;
+    }
+
+    /**
+     * Checks if a block state is in any of the given categories.
+     *
      * @param state The block state to check
-     * @return True if the block is an ore, false otherwise
+     * @param mask The categories, e.g. LEAF | LOG
+     * @return True if the state is in at least one of them
      */
-    public static boolean isOreBlock(BlockState state) {
-        return state.isOf(Blocks.COAL_ORE) ||
-                state.isOf(Blocks.IRON_ORE) ||
-                state.isOf(Blocks.GOLD_ORE) ||
-                state.isOf(Blocks.DIAMOND_ORE) ||
-                state.isOf(Blocks.EMERALD_ORE) ||
-                state.isOf(Blocks.REDSTONE_ORE) ||
-                state.isOf(Blocks.LAPIS_ORE) ||
-                state.isOf(Blocks.COPPER_ORE) ||
-                state.isOf(Blocks.DEEPSLATE_COAL_ORE) ||
-                state.isOf(Blocks.DEEPSLATE_IRON_ORE) ||
-                state.isOf(Blocks.DEEPSLATE_GOLD_ORE) ||
-                state.isOf(Blocks.DEEPSLATE_DIAMOND_ORE) ||
-                state.isOf(Blocks.DEEPSLATE_EMERALD_ORE) ||
-                state.isOf(Blocks.DEEPSLATE_REDSTONE_ORE) ||
-                state.isOf(Blocks.DEEPSLATE_LAPIS_ORE) ||
-                state.isOf(Blocks.DEEPSLATE_COPPER_ORE) ||
-                state.isOf(Blocks.RAW_COPPER_BLOCK) ||
-                state.isOf(Blocks.RAW_GOLD_BLOCK) ||
-                state.isOf(Blocks.RAW_IRON_BLOCK);
+    public static boolean is(BlockState state, int mask) {
+        return (getFlags(state) & mask) != 0;
     }
 
-    public static boolean isFoliage(Block block, boolean includeSnow) {
-        if (block == Blocks.GRASS
-                || block == Blocks.TALL_GRASS
-                || (includeSnow && block == Blocks.SNOW)
-                || block == Blocks.VINE
-                || block == Blocks.DEAD_BUSH
-                || block == Blocks.FERN
-                || block == Blocks.LARGE_FERN
-                || block == Blocks.SUGAR_CANE) {
-            return true;
+    private static int classify(BlockState state) {
+        Block block = state.getBlock();
+        int flags = 0;
+        if (state.isIn(BlockTags.LEAVES) || block instanceof LeavesBlock) {
+            flags |= LEAF;
         }
-        // leaves
-        if (block instanceof LeavesBlock) {
-            return true;
+        if (ORE_BLOCKS.contains(block)) {
+            flags |= ORE;
         }
-        // flowers
-        if (block instanceof FlowerBlock) {
-            return true;
+        if (state.isIn(BlockTags.OVERWORLD_NATURAL_LOGS)) {
+            flags |= LOG;
+        }
+        if (FOLIAGE_BLOCKS.contains(block) || block instanceof LeavesBlock || block instanceof FlowerBlock) {
+            flags |= FOLIAGE;
         }
+        if (WATER_BLOCKS.contains(block) || block instanceof net.minecraft.block.FluidBlock) {
+            flags |= WATER;
+        }
+        if (state.isOpaque()) {
+            flags |= OPAQUE_FOR_LOS;
+        }
+        if (isInterestingBlock(block)) {
+            flags |= INTERESTING;
+        }
+        if (isProtectedBlock(block)) {
+            flags |= PROTECTED;
+        }
+        return flags;
+    }
 
+    private static boolean isInterestingBlock(Block block) {
+        if (INTERESTING_BLOCKS.contains(block)) {
+            return true;
+        }
+        String blockName = block.getTranslationKey();
+        for (String partialName : INTERESTING_PARTIAL_NAMES) {
+            if (blockName.contains(partialName)) {
+                return true;
+            }
+        }
         return false;
     }
 
+    private static boolean isProtectedBlock(Block block) {
+        return block instanceof net.minecraft.block.ChestBlock ||
+                block instanceof net.minecraft.block.TrappedChestBlock ||
+                block instanceof net.minecraft.block.BarrelBlock ||
+                block instanceof net.minecraft.block.BedBlock ||
+                block instanceof net.minecraft.block.EnderChestBlock ||
+                block instanceof net.minecraft.block.StairsBlock ||
+                block instanceof net.minecraft.block.DoorBlock ||
+                block instanceof net.minecraft.block.GlassBlock ||
+                block instanceof net.minecraft.block.FenceBlock ||
+                block instanceof net.minecraft.block.PaneBlock ||
+                block instanceof net.minecraft.block.AnvilBlock ||
+                block instanceof net.minecraft.block.FurnaceBlock ||
+                block instanceof net.minecraft.block.LadderBlock ||
+                block instanceof net.minecraft.block.HopperBlock ||
+                block instanceof net.minecraft.block.CraftingTableBlock;
+    }
+
+    /**
+     * Checks if a block state is an ore block.
+     *
+     * @param state The block state to check
+     * @return True if the block is an ore, false otherwise
+     */
+    public static boolean isOreBlock(BlockState state) {
+        return is(state, ORE);
+    }
+
+    public static boolean isFoliage(Block block, boolean includeSnow) {
+        return is(block.getDefaultState(), FOLIAGE) || (includeSnow && block == Blocks.SNOW);
+    }
+
     /**
      * returns true if the block is water
-     * 
+     *
      * @param block The block to check
      * @return boolean indicating if the block is water
      */
     public static boolean isWater(Block block) {
-        if (block == Blocks.WATER) {
-            return true;
-        }
-        if (block == Blocks.BUBBLE_COLUMN) {
-            return true;
-        }
-        if (block instanceof net.minecraft.block.FluidBlock) {
-            return true;
-        }
-
-        // waterlogged blocks
-        if (block == Blocks.KELP_PLANT || block == Blocks.KELP || block == Blocks.SEAGRASS
-                || block == Blocks.TALL_SEAGRASS || block == Blocks.SEA_PICKLE) {
-            return true;
-        }
-        return false;
+        return is(block.getDefaultState(), WATER);
     }
 
+    /**
+     * Checks if a block is a natural overworld log (all wood types, including mangrove and cherry).
+     *
+     * @param block The block to check
+     * @return True if the block is a log, false otherwise
+     */
     public static boolean isLogBlock(Block block) {
-        return block == Blocks.OAK_LOG || block == Blocks.SPRUCE_LOG || block == Blocks.BIRCH_LOG
-                || block == Blocks.JUNGLE_LOG || block == Blocks.ACACIA_LOG || block == Blocks.DARK_OAK_LOG;
+        return is(block.getDefaultState(), LOG);
+    }
+
+    /**
+     * Checks if a block state is leaves, for line of sight.
+     */
+    public static boolean isLeaf(BlockState state) {
+        return is(state, LEAF);
+    }
+
+    /**
+     * Checks if a block state stops line of sight (if the ray touches its shape).
+     */
+    public static boolean isOpaqueForLineOfSight(BlockState state) {
+        return is(state, OPAQUE_FOR_LOS);
+    }
+
+    /**
+     * Checks if a block state hints at player activity (chests, torches, doors, rails, ...).
+     */
+    public static boolean isInteresting(BlockState state) {
+        return is(state, INTERESTING);
+    }
+
+    /**
+     * Checks if a block state is player-made and must not be destroyed by chunk events.
+     */
+    public static boolean isProtected(BlockState state) {
+        return is(state, PROTECTED);
     }
 }
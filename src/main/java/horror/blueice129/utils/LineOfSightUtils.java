@@ -1,57 +1,52 @@
 package horror.blueice129.utils;
 
-import net.minecraft.block.BlockState;
 import net.minecraft.entity.player.PlayerEntity;
-import net.minecraft.util.hit.BlockHitResult;
-import net.minecraft.util.hit.HitResult;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3d;
-import net.minecraft.world.RaycastContext;
-import net.minecraft.world.World;
-import net.minecraft.util.math.MathHelper;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.function.LongPredicate;
 
 /**
  * Utility class for line of sight calculations.
  */
 public class LineOfSightUtils {
-    
-    private static final int MAX_TRANSPARENT_ITERATIONS = 20; // Safety limit for raycast continuation
-    private static final int MAX_LEAVES_BEFORE_OPAQUE = 3; // Leaves become opaque after 3 blocks
+
+    // Batch targets are sorted as (direction key << BATCH_INDEX_BITS) | index
+    private static final int BATCH_INDEX_BITS = 24;
+    private static final long BATCH_INDEX_MASK = (1L << BATCH_INDEX_BITS) - 1;
+
+    // Corner samples are inset by this much so each ray ends inside the target block
+    private static final double CORNER_INSET = 0.001;
+    // Corners with an even number of max coordinates, one diagonal on each face (bit 0 = x, bit 1 = z, bit 2 = y)
+    private static final int[] FOUR_CORNERS = { 0, 3, 5, 6 };
+    // Opposite corners sampled first in ADAPTIVE mode, then the rest
+    private static final int[] ADAPTIVE_FIRST_CORNERS = { 0, 7 };
+    private static final int[] ADAPTIVE_REST_CORNERS = { 1, 2, 3, 4, 5, 6 };
 
     /**
-     * Check if a block should stop the raycast (is opaque/blocks view).
-     * Treats air, transparent blocks (glass, leaves), and non-collision blocks as see-through.
-     * Special handling: leaves block view after passing through more than MAX_LEAVES_BEFORE_OPAQUE.
-     * 
-     * @param world The world
-     * @param pos The block position
-     * @param leafCount Current count of leaves passed through
-     * @return true if this block blocks line of sight
+     * How many rays a line of sight check casts per target. A target counts as visible if any ray reaches it,
+     * so fewer rays are cheaper but can call a partly covered block hidden.
+     * Measure the trade-off on a real world with /horror tool visibility benchmark.
      */
-    private static boolean blocksLineOfSight(World world, BlockPos pos, int leafCount) {
-        BlockState state = world.getBlockState(pos);
-        
-        // Air never blocks
-        if (state.isAir()) {
-            return false;
-        }
-        
-        // Non-collision blocks (tall grass, flowers, etc.) never block - treat like air
-        if (state.getCollisionShape(world, pos).isEmpty()) {
-            return false;
-        }
-        
-        // Check if it's a leaf block - block if we've hit too many
-        String blockId = state.getBlock().toString();
-        boolean isLeaf = blockId.contains("leaves") || blockId.contains("leaf");
-        if (isLeaf && leafCount >= MAX_LEAVES_BEFORE_OPAQUE) {
-            return true; // Too many leaves, now opaque
-        }
-        
-        // Block only if it's opaque (not transparent like glass)
-        return state.isOpaque();
+    public enum Precision {
+        /** One ray to the block center. Cheapest; can also call a block visible through a hole none of its corners see */
+        CENTER,
+        /** Four corners, one diagonal on each face */
+        FOUR_CORNERS,
+        /** All eight corners, the reference result */
+        EIGHT_CORNERS,
+        /**
+         * Two opposite corners first. If both are stopped by the same block (or neighbouring blocks)
+         * the target is behind one occluder and is hidden; otherwise the other six corners are checked too.
+         * It can call a target hidden while another corner is visible, so world edits stay on EIGHT_CORNERS
+         * until its false-hidden rate has been measured (/horror tool visibility benchmark).
+         */
+        ADAPTIVE
     }
-
+    
     /**
      * Checks if a direction is within the player's field of view.
      * Takes into account the rectangular screen shape and aspect ratio.
@@ -59,38 +54,10 @@ public class LineOfSightUtils {
      * @param player    The player
      * @param direction The direction vector to check
      * @return true if the direction is within the player's field of view
+     * @see ViewFrame#isWithinFieldOfView(double, double, double)
      */
     public static boolean isWithinFieldOfView(PlayerEntity player, Vec3d direction) {
-        float pitch = player.getPitch() * ((float) Math.PI / 180F);
-        float yaw = player.getYaw() * ((float) Math.PI / 180F);
-
-       
-        float x = -MathHelper.sin(yaw) * MathHelper.cos(pitch);
-        float y = -MathHelper.sin(pitch);
-        float z = MathHelper.cos(yaw) * MathHelper.cos(pitch);
-        Vec3d viewVector = new Vec3d(x, y, z).normalize();
-
-        direction = direction.normalize();
-
-        double hFovDegrees = 150.0; // 150 degrees horizontal
-        double vFovDegrees = 130.0; // 130 degrees vertical
-
-        // Convert to radians and calculate half-angles
-        double hFovRad = hFovDegrees * (Math.PI / 180.0);
-        double vFovRad = vFovDegrees * (Math.PI / 180.0);
-        double hFovHalf = hFovRad / 2.0; 
-        double vFovHalf = vFovRad / 2.0; 
-
-        Vec3d rightVector = new Vec3d(MathHelper.cos(yaw), 0, MathHelper.sin(yaw)).normalize();
-        Vec3d upVector = viewVector.crossProduct(rightVector).normalize();
-
-        
-        double viewDot = viewVector.dotProduct(direction); 
-        double rightDot = rightVector.dotProduct(direction); 
-        double upDot = upVector.dotProduct(direction);
-        double horizontalAngle = Math.atan2(rightDot, viewDot);
-        double verticalAngle = Math.atan2(upDot, viewDot);
-        return Math.abs(horizontalAngle) <= hFovHalf && Math.abs(verticalAngle) <= vFovHalf;
+        return ViewFrame.get(player).isWithinFieldOfView(direction.x, direction.y, direction.z);
     }
 
     /**
@@ -118,10 +85,11 @@ public class LineOfSightUtils {
      * can "see" a position (useful for checking if an entity would be visible).
      * 
      * Checks all 8 corners of the block with early stopping when any corner is visible.
-     * Treats transparent blocks (glass, leaves, grass) as see-through by continuing raycast.
+     * Treats transparent blocks (glass, leaves, grass) as see-through.
      * Leaves become opaque after passing through 3+ leaf blocks (realistic foliage density).
      * 
      * Optimizations: FOV check on center first, then corner checks with early return.
+     * Each corner ray is walked block by block by VoxelRaycaster, no world raycasts or allocations.
      * 
      * For AIR blocks: Returns true if nothing blocks the view to that position
      * For SOLID blocks: Returns true if the block itself is visible
@@ -132,128 +100,223 @@ public class LineOfSightUtils {
      * @return true if the position has clear line of sight from player
      */
     public static boolean hasLineOfSight(PlayerEntity player, BlockPos targetPos, double maxDistance) {
-        World world = player.getWorld();
-        Vec3d eyePos = player.getEyePos();
-        Vec3d targetCenter = new Vec3d(targetPos.getX() + 0.5, targetPos.getY() + 0.5, targetPos.getZ() + 0.5);
+        return hasLineOfSight(player, targetPos, maxDistance, Precision.EIGHT_CORNERS);
+    }
+
+    /**
+     * Same as hasLineOfSight(PlayerEntity, BlockPos, double) with a chosen number of rays.
+     *
+     * @param player The player to check from
+     * @param targetPos The position to check
+     * @param maxDistance The maximum distance to check
+     * @param precision Which points of the block to cast rays to
+     * @return true if the position has clear line of sight from player
+     */
+    public static boolean hasLineOfSight(PlayerEntity player, BlockPos targetPos, double maxDistance,
+                                         Precision precision) {
+        ViewFrame frame = ViewFrame.get(player);
+        double eyeX = frame.eyeX;
+        double eyeY = frame.eyeY;
+        double eyeZ = frame.eyeZ;
+        double dx = targetPos.getX() + 0.5 - eyeX;
+        double dy = targetPos.getY() + 0.5 - eyeY;
+        double dz = targetPos.getZ() + 0.5 - eyeZ;
         
         // Early distance check (cheap)
-        double distance = eyePos.distanceTo(targetCenter);
-        if (distance > maxDistance) {
+        if (dx * dx + dy * dy + dz * dz > maxDistance * maxDistance) {
             return false;
         }
         
         // Early FOV check on center (cheap, filters out ~75% of blocks behind player)
-        Vec3d directionToCenter = targetCenter.subtract(eyePos).normalize();
-        if (!isWithinFieldOfView(player, directionToCenter)) {
+        if (!frame.isWithinFieldOfView(dx, dy, dz)) {
             return false;
         }
         
-        // Check if target is air/passable (cache this check)
-        boolean isTargetPassable = world.isAir(targetPos) || !world.getBlockState(targetPos).isSolidBlock(world, targetPos);
-        
-        // Pre-calculate corner positions with epsilon offset (small value inward for precision)
-        double epsilon = 0.001;
-        Vec3d[] corners = {
-            // Bottom corners (with epsilon offset inward)
-            new Vec3d(targetPos.getX() + epsilon, targetPos.getY() + epsilon, targetPos.getZ() + epsilon),         // 0,0,0
-            new Vec3d(targetPos.getX() + 1 - epsilon, targetPos.getY() + epsilon, targetPos.getZ() + epsilon),     // 1,0,0
-            new Vec3d(targetPos.getX() + epsilon, targetPos.getY() + epsilon, targetPos.getZ() + 1 - epsilon),     // 0,0,1
-            new Vec3d(targetPos.getX() + 1 - epsilon, targetPos.getY() + epsilon, targetPos.getZ() + 1 - epsilon), // 1,0,1
-            // Top corners (with epsilon offset inward)
-            new Vec3d(targetPos.getX() + epsilon, targetPos.getY() + 1 - epsilon, targetPos.getZ() + epsilon),         // 0,1,0
-            new Vec3d(targetPos.getX() + 1 - epsilon, targetPos.getY() + 1 - epsilon, targetPos.getZ() + epsilon),     // 1,1,0
-            new Vec3d(targetPos.getX() + epsilon, targetPos.getY() + 1 - epsilon, targetPos.getZ() + 1 - epsilon),     // 0,1,1
-            new Vec3d(targetPos.getX() + 1 - epsilon, targetPos.getY() + 1 - epsilon, targetPos.getZ() + 1 - epsilon)  // 1,1,1
-        };
-        
-        // Check each corner - early stop if ANY corner is visible
-        for (Vec3d corner : corners) {
-            if (hasLineOfSightToPoint(player, world, eyePos, corner, targetPos, isTargetPassable)) {
-                return true; // EARLY RETURN - at least one corner is visible
-            }
-        }
-        
-        // None of the corners were visible
-        return false;
+        VoxelRaycaster.Cursor cursor = VoxelRaycaster.cursor(player.getWorld());
+        return isVisible(cursor, eyeX, eyeY, eyeZ, targetPos.getX(), targetPos.getY(), targetPos.getZ(), precision);
     }
-    
+
     /**
-     * Helper method to check line of sight to a specific point, continuing through transparent blocks.
-     * Handles transparent blocks (glass, leaves, grass) by continuing the raycast.
-     * Tracks leaf count - leaves become opaque after 3 blocks.
+     * Batch version of hasLineOfSight for many targets against one player.
+     * The player's view frame is fetched once, and targets are walked sorted by
+     * direction so neighbouring rays reuse the cells the previous rays already read.
      * 
-     * Uses COLLIDER shape type so non-collision blocks (tall grass, flowers) are automatically skipped.
+     * @param player The player to check from
+     * @param targets Packed positions (BlockPos.asLong) to check
+     * @param maxDistance The maximum distance to check
+     * @param stopWhenVisible Called with each position found visible, return true to stop checking
+     *                        the rest (e.g. {@code pos -> true} for "is anything visible"). May be null.
+     * @return Bits set at the indices of the targets found visible. Targets skipped by an early stop are unset.
+     */
+    public static BitSet hasLineOfSight(PlayerEntity player, long[] targets, double maxDistance,
+                                        LongPredicate stopWhenVisible) {
+        return hasLineOfSight(player, targets, maxDistance, stopWhenVisible, Precision.EIGHT_CORNERS);
+    }
+
+    /**
+     * Same as hasLineOfSight(PlayerEntity, long[], double, LongPredicate) with a chosen number of rays per target.
+     *
+     * @param precision Which points of each block to cast rays to
+     * @see #hasLineOfSight(PlayerEntity, long[], double, LongPredicate)
+     */
+    public static BitSet hasLineOfSight(PlayerEntity player, long[] targets, double maxDistance,
+                                        LongPredicate stopWhenVisible, Precision precision) {
+        return hasLineOfSight(VoxelRaycaster.cursor(player.getWorld()), ViewFrame.get(player), targets, maxDistance,
+                stopWhenVisible, precision);
+    }
+
+    /**
+     * Batch line of sight from a captured view frame, so it can run without the player
+     * (e.g. off-thread against a BlockSnapshot cursor).
      * 
-     * @param player The player
-     * @param world The world
-     * @param start Starting position (player eye)
-     * @param end Target point (corner)
-     * @param targetPos The target block position we're checking
-     * @param isTargetPassable Whether the target block is air/passable
-     * @return true if there's line of sight to the point
+     * @param cursor The cursor to walk rays with
+     * @param frame The view frame captured on the server thread
+     * @see #hasLineOfSight(PlayerEntity, long[], double, LongPredicate, Precision)
      */
-    private static boolean hasLineOfSightToPoint(PlayerEntity player, World world, Vec3d start, Vec3d end, 
-                                                   BlockPos targetPos, boolean isTargetPassable) {
-        Vec3d currentStart = start;
-        int leafCount = 0;
-        double targetDistance = start.distanceTo(end);
-        
-        // Iteratively raycast, continuing through transparent blocks
-        for (int iteration = 0; iteration < MAX_TRANSPARENT_ITERATIONS; iteration++) {
-            // Raycast from current position to target point
-            // Use COLLIDER shape type - this automatically skips non-collision blocks like tall grass!
-            BlockHitResult hitResult = world.raycast(new RaycastContext(
-                currentStart,
-                end,
-                RaycastContext.ShapeType.COLLIDER,  // CHANGED: Use COLLIDER instead of OUTLINE
-                RaycastContext.FluidHandling.NONE,
-                player
-            ));
-            
-            // If we hit the target block itself, it's visible
-            if (hitResult.getType() == HitResult.Type.BLOCK && hitResult.getBlockPos().equals(targetPos)) {
-                return true;
-            }
-            
-            // If we didn't hit anything (MISS), clear line of sight
-            if (hitResult.getType() == HitResult.Type.MISS) {
-                return true;
-            }
-            
-            // Check what we hit
-            BlockPos hitPos = hitResult.getBlockPos();
-            
-            // Update leaf count if we hit a leaf
-            BlockState hitState = world.getBlockState(hitPos);
-            String blockId = hitState.getBlock().toString();
-            if (blockId.contains("leaves") || blockId.contains("leaf")) {
-                leafCount++;
+    static BitSet hasLineOfSight(VoxelRaycaster.Cursor cursor, ViewFrame frame, long[] targets, double maxDistance,
+                                 LongPredicate stopWhenVisible, Precision precision) {
+        if (targets.length > BATCH_INDEX_MASK) {
+            throw new IllegalArgumentException("Too many line of sight targets in one batch: " + targets.length);
+        }
+
+        BitSet visible = new BitSet(targets.length);
+        double eyeX = frame.eyeX;
+        double eyeY = frame.eyeY;
+        double eyeZ = frame.eyeZ;
+        double maxDistanceSq = maxDistance * maxDistance;
+
+        // Distance and FOV filter, then sort the survivors by direction (index kept in the low bits)
+        long[] order = new long[targets.length];
+        int count = 0;
+        for (int i = 0; i < targets.length; i++) {
+            double dx = BlockPos.unpackLongX(targets[i]) + 0.5 - eyeX;
+            double dy = BlockPos.unpackLongY(targets[i]) + 0.5 - eyeY;
+            double dz = BlockPos.unpackLongZ(targets[i]) + 0.5 - eyeZ;
+            double distanceSq = dx * dx + dy * dy + dz * dz;
+            if (distanceSq > maxDistanceSq || !frame.isWithinFieldOfView(dx, dy, dz)) {
+                continue;
             }
-            
-            // Check if this block blocks line of sight
-            if (blocksLineOfSight(world, hitPos, leafCount)) {
-                // Hit an opaque block before reaching target
-                // For passable targets, check if we went past the target
-                if (isTargetPassable) {
-                    double distToHit = start.distanceTo(hitResult.getPos());
-                    return distToHit >= targetDistance; // Went past target = nothing blocked it
+            order[count++] = (getDirectionKey(dx, dy, dz, Math.sqrt(distanceSq)) << BATCH_INDEX_BITS) | i;
+        }
+        Arrays.sort(order, 0, count);
+
+        for (int k = 0; k < count; k++) {
+            int i = (int) (order[k] & BATCH_INDEX_MASK);
+            long target = targets[i];
+            if (isVisible(cursor, eyeX, eyeY, eyeZ,
+                    BlockPos.unpackLongX(target), BlockPos.unpackLongY(target), BlockPos.unpackLongZ(target), precision)) {
+                visible.set(i);
+                if (stopWhenVisible != null && stopWhenVisible.test(target)) {
+                    break;
                 }
-                return false; // Solid block blocked view
             }
-            
-            // Hit a transparent block - continue from slightly past the hit point
-            Vec3d hitPoint = hitResult.getPos();
-            Vec3d direction = end.subtract(hitPoint).normalize();
-            currentStart = hitPoint.add(direction.multiply(0.01)); // Small offset to avoid re-hitting same block
-            
-            // Safety check: if we've passed the target distance, we have line of sight
-            double currentDistance = start.distanceTo(currentStart);
-            if (currentDistance >= targetDistance) {
+        }
+        return visible;
+    }
+
+    /**
+     * Packs block positions for the batch hasLineOfSight.
+     * 
+     * @param positions The positions to pack
+     * @return The positions as BlockPos.asLong values, in the same order
+     */
+    public static long[] packPositions(Collection<BlockPos> positions) {
+        long[] packed = new long[positions.size()];
+        int i = 0;
+        for (BlockPos pos : positions) {
+            packed[i++] = pos.asLong();
+        }
+        return packed;
+    }
+
+    /**
+     * Sort key grouping similar directions: cube map face, then a 256x256 grid on that face, then distance.
+     */
+    private static long getDirectionKey(double dx, double dy, double dz, double distance) {
+        double ax = Math.abs(dx);
+        double ay = Math.abs(dy);
+        double az = Math.abs(dz);
+        int face;
+        double u;
+        double v;
+        if (ax >= ay && ax >= az) {
+            face = dx >= 0 ? 0 : 1;
+            u = dy / Math.max(ax, 1e-9);
+            v = dz / Math.max(ax, 1e-9);
+        } else if (ay >= az) {
+            face = dy >= 0 ? 2 : 3;
+            u = dx / ay;
+            v = dz / ay;
+        } else {
+            face = dz >= 0 ? 4 : 5;
+            u = dx / az;
+            v = dy / az;
+        }
+        long uBin = Math.min(255, (long) ((u + 1.0) * 128.0));
+        long vBin = Math.min(255, (long) ((v + 1.0) * 128.0));
+        long distanceBin = Math.min(4095, (long) distance);
+        return ((long) face << 28) | (uBin << 20) | (vBin << 12) | distanceBin;
+    }
+
+    /**
+     * Casts the rays of a precision tier to a block, stopping at the first one that reaches it.
+     */
+    private static boolean isVisible(VoxelRaycaster.Cursor cursor, double eyeX, double eyeY, double eyeZ,
+                                     int x, int y, int z, Precision precision) {
+        switch (precision) {
+            case CENTER:
+                return cursor.isPathClear(eyeX, eyeY, eyeZ, x + 0.5, y + 0.5, z + 0.5);
+            case FOUR_CORNERS:
+                return isAnyCornerVisible(cursor, eyeX, eyeY, eyeZ, x, y, z, FOUR_CORNERS);
+            case ADAPTIVE:
+                if (isCornerVisible(cursor, eyeX, eyeY, eyeZ, x, y, z, ADAPTIVE_FIRST_CORNERS[0])) {
+                    return true;
+                }
+                long firstBlocker = cursor.getLastBlocker();
+                if (isCornerVisible(cursor, eyeX, eyeY, eyeZ, x, y, z, ADAPTIVE_FIRST_CORNERS[1])) {
+                    return true;
+                }
+                if (isNeighbour(firstBlocker, cursor.getLastBlocker())) {
+                    return false; // Both sides stopped by the same occluder
+                }
+                return isAnyCornerVisible(cursor, eyeX, eyeY, eyeZ, x, y, z, ADAPTIVE_REST_CORNERS);
+            default:
+                for (int corner = 0; corner < 8; corner++) {
+                    if (isCornerVisible(cursor, eyeX, eyeY, eyeZ, x, y, z, corner)) {
+                        return true; // EARLY RETURN - at least one corner is visible
+                    }
+                }
+                return false;
+        }
+    }
+
+    private static boolean isAnyCornerVisible(VoxelRaycaster.Cursor cursor, double eyeX, double eyeY, double eyeZ,
+                                              int x, int y, int z, int[] corners) {
+        for (int corner : corners) {
+            if (isCornerVisible(cursor, eyeX, eyeY, eyeZ, x, y, z, corner)) {
                 return true;
             }
         }
-        
-        // Exceeded iteration limit (safety) - assume blocked
         return false;
     }
-}
\ No newline at end of file
+
+    /**
+     * Casts one ray to a corner of a block (bit 0 = max x, bit 1 = max z, bit 2 = max y), inset by CORNER_INSET.
+     */
+    private static boolean isCornerVisible(VoxelRaycaster.Cursor cursor, double eyeX, double eyeY, double eyeZ,
+                                           int x, int y, int z, int corner) {
+        double cornerX = (corner & 1) == 0 ? x + CORNER_INSET : x + 1 - CORNER_INSET;
+        double cornerY = (corner & 4) == 0 ? y + CORNER_INSET : y + 1 - CORNER_INSET;
+        double cornerZ = (corner & 2) == 0 ? z + CORNER_INSET : z + 1 - CORNER_INSET;
+        return cursor.isPathClear(eyeX, eyeY, eyeZ, cornerX, cornerY, cornerZ);
+    }
+
+    /**
+     * Checks if two packed cells are the same or touch (including diagonally).
+     */
+    private static boolean isNeighbour(long a, long b) {
+        return Math.abs(BlockPos.unpackLongX(a) - BlockPos.unpackLongX(b)) <= 1
+                && Math.abs(BlockPos.unpackLongY(a) - BlockPos.unpackLongY(b)) <= 1
+                && Math.abs(BlockPos.unpackLongZ(a) - BlockPos.unpackLongZ(b)) <= 1;
+    }
+}
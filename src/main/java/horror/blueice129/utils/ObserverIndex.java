@@ -0,0 +1,204 @@
+package horror.blueice129.utils;
+
+import horror.blueice129.HorrorMod129;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * "Can any player see this?" queries, for things that must not happen in front of anyone.
+ * Players of each world are bucketed by 4x4 chunk cells once per tick, so a query only looks at the players
+ * in the few cells within range of the target (at most 16 for a 64 block range),
+ * and drops them by distance and view cone before casting a ray.
+ * A query costs about the same with 1 or 40 players online, as long as few of them are nearby.
+ *
+ * Server thread only.
+ */
+public class ObserverIndex {
+    // Players can move a little between the bucketing and a later query in the same tick
+    private static final int BUCKET_MARGIN = 8;
+    // Buckets are 64x64 block cells (4x4 chunks), about the range of most queries
+    private static final int BUCKET_SHIFT = 6;
+
+    private static final Map<ServerWorld, Buckets> WORLDS = new HashMap<>();
+
+    private static long queries;
+    private static long playersConsidered;
+    private static long playersRaycast;
+
+    /**
+     * Players of one world by bucket cell, rebuilt on the first query of each tick.
+     */
+    private static class Buckets {
+        final Long2ObjectOpenHashMap<List<ServerPlayerEntity>> byCell = new Long2ObjectOpenHashMap<>();
+        long tick = Long.MIN_VALUE;
+
+        void rebuild(ServerWorld world) {
+            byCell.clear();
+            for (ServerPlayerEntity player : world.getPlayers()) {
+                long key = ChunkPos.toLong(player.getBlockX() >> BUCKET_SHIFT, player.getBlockZ() >> BUCKET_SHIFT);
+                List<ServerPlayerEntity> players = byCell.get(key);
+                if (players == null) {
+                    players = new ArrayList<>(1);
+                    byCell.put(key, players);
+                }
+                players.add(player);
+            }
+            tick = world.getTime();
+        }
+    }
+
+    /**
+     * Drops the buckets of unloaded worlds. Call during mod initialization.
+     */
+    public static void register() {
+        ServerWorldEvents.UNLOAD.register((server, world) -> WORLDS.remove(world));
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> WORLDS.clear());
+
+        HorrorMod129.LOGGER.info("Registered ObserverIndex");
+    }
+
+    /**
+     * Finds a player that has line of sight to a position.
+     *
+     * @param world The world the position is in (players in other worlds never see it)
+     * @param target The position to check
+     * @param maxDistance The maximum distance to check
+     * @return The first player found that sees the position, or null if nobody does
+     */
+    public static ServerPlayerEntity findObserver(ServerWorld world, BlockPos target, double maxDistance) {
+        return findObserver(world, new long[] { target.asLong() }, maxDistance);
+    }
+
+    /**
+     * Finds a player that has line of sight to any of a few nearby positions (e.g. the blocks an entity fills).
+     * Uses VisibilityCache, so repeated queries from the same spot are cheap.
+     *
+     * @param world The world the positions are in (players in other worlds never see them)
+     * @param targets Packed positions (BlockPos.asLong) to check
+     * @param maxDistance The maximum distance to check
+     * @return The first player found that sees one of the positions, or null if nobody does
+     */
+    public static ServerPlayerEntity findObserver(ServerWorld world, long[] targets, double maxDistance) {
+        if (targets.length == 0) {
+            return null;
+        }
+        queries++;
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for (long target : targets) {
+            int x = BlockPos.unpackLongX(target);
+            int y = BlockPos.unpackLongY(target);
+            int z = BlockPos.unpackLongZ(target);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+        }
+
+        int reach = MathHelper.ceil(maxDistance) + BUCKET_MARGIN;
+        int minCellX = (minX - reach) >> BUCKET_SHIFT;
+        int maxCellX = (maxX + reach) >> BUCKET_SHIFT;
+        int minCellZ = (minZ - reach) >> BUCKET_SHIFT;
+        int maxCellZ = (maxZ + reach) >> BUCKET_SHIFT;
+        long cellCount = (long) (maxCellX - minCellX + 1) * (maxCellZ - minCellZ + 1);
+
+        // Few players: walking the list is cheaper than looking up every cell in range
+        List<ServerPlayerEntity> players = world.getPlayers();
+        if (players.size() <= cellCount) {
+            for (ServerPlayerEntity player : players) {
+                if (canSee(player, targets, minX, minY, minZ, maxX, maxY, maxZ, maxDistance)) {
+                    return player;
+                }
+            }
+            return null;
+        }
+
+        Buckets buckets = WORLDS.computeIfAbsent(world, w -> new Buckets());
+        if (buckets.tick != world.getTime()) {
+            buckets.rebuild(world);
+        }
+        for (int cx = minCellX; cx <= maxCellX; cx++) {
+            for (int cz = minCellZ; cz <= maxCellZ; cz++) {
+                List<ServerPlayerEntity> bucket = buckets.byCell.get(ChunkPos.toLong(cx, cz));
+                if (bucket == null) {
+                    continue;
+                }
+                for (ServerPlayerEntity player : bucket) {
+                    if (canSee(player, targets, minX, minY, minZ, maxX, maxY, maxZ, maxDistance)) {
+                        return player;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if a player sees any of the targets: distance to their bounds, then view cone, then rays.
+     */
+    private static boolean canSee(ServerPlayerEntity player, long[] targets, int minX, int minY, int minZ,
+                                  int maxX, int maxY, int maxZ, double maxDistance) {
+        playersConsidered++;
+        if (player.isRemoved()) {
+            return false;
+        }
+
+        // Distance from the eye to the targets' bounding box
+        double eyeX = player.getX();
+        double eyeY = player.getEyeY();
+        double eyeZ = player.getZ();
+        double dx = Math.max(0, Math.max(minX - eyeX, eyeX - (maxX + 1)));
+        double dy = Math.max(0, Math.max(minY - eyeY, eyeY - (maxY + 1)));
+        double dz = Math.max(0, Math.max(minZ - eyeZ, eyeZ - (maxZ + 1)));
+        if (dx * dx + dy * dy + dz * dz > maxDistance * maxDistance) {
+            return false;
+        }
+
+        ViewFrame frame = ViewFrame.get(player);
+        boolean anyInView = false;
+        for (long target : targets) {
+            if (frame.isWithinFieldOfView(BlockPos.unpackLongX(target) + 0.5 - eyeX,
+                    BlockPos.unpackLongY(target) + 0.5 - eyeY, BlockPos.unpackLongZ(target) + 0.5 - eyeZ)) {
+                anyInView = true;
+                break;
+            }
+        }
+        if (!anyInView) {
+            return false;
+        }
+
+        playersRaycast++;
+        return VisibilityCache.isAnyVisible(player, targets, maxDistance);
+    }
+
+    /**
+     * Gets a readable summary of the observer query counters, for debug commands.
+     */
+    public static String getStatsString() {
+        return String.format("Observer queries: %d, %d players considered, %d needed a raycast",
+                queries, playersConsidered, playersRaycast);
+    }
+
+    /**
+     * Resets the observer query counters.
+     */
+    public static void resetStats() {
+        queries = 0;
+        playersConsidered = 0;
+        playersRaycast = 0;
+    }
+}
@@ -0,0 +1,235 @@
+package horror.blueice129.utils;
+
+import horror.blueice129.HorrorMod129;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerChunkEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.minecraft.block.BlockState;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per chunk section summary of line of sight occupancy at 16, 8, 4 and 2 block resolution.
+ * Each region is EMPTY (nothing that ever blocks a ray), FULL (only full opaque cubes) or MIXED.
+ * VoxelRaycaster uses it to jump across empty regions in one step instead of block by block,
+ * which is most of a long ray through sky or open caves.
+ *
+ * Sections are summarized on first use and dropped when a block in them changes its line of sight
+ * behaviour or their chunk unloads, so they are rebuilt lazily on the next ray through them.
+ *
+ * Server thread only.
+ */
+public class OccupancyPyramid {
+    public static final byte EMPTY = 0;
+    public static final byte FULL = 1;
+    public static final byte MIXED = 2;
+
+    private static final Map<World, Long2ObjectOpenHashMap<Section>> WORLDS = new HashMap<>();
+
+    private static long sectionsBuilt;
+    private static long sectionsInvalidated;
+    private static long jumps;
+
+    /**
+     * Occupancy of one 16x16x16 section at each level.
+     * Levels are indexed (x * n + y) * n + z with n regions per axis.
+     */
+    public static final class Section {
+        private final byte[] level2 = new byte[512];
+        private final byte[] level4 = new byte[64];
+        private final byte[] level8 = new byte[8];
+        private byte level16;
+
+        /**
+         * Gets the size of the largest EMPTY region containing a cell.
+         *
+         * @param lx Local x (0..15)
+         * @param ly Local y (0..15)
+         * @param lz Local z (0..15)
+         * @return 16, 8, 4 or 2, or 0 if even the 2x2x2 region isn't empty
+         */
+        public int getEmptySize(int lx, int ly, int lz) {
+            if (level16 == EMPTY) {
+                return 16;
+            }
+            if (level8[((lx >> 3) * 2 + (ly >> 3)) * 2 + (lz >> 3)] == EMPTY) {
+                return 8;
+            }
+            if (level4[((lx >> 2) * 4 + (ly >> 2)) * 4 + (lz >> 2)] == EMPTY) {
+                return 4;
+            }
+            if (level2[((lx >> 1) * 8 + (ly >> 1)) * 8 + (lz >> 1)] == EMPTY) {
+                return 2;
+            }
+            return 0;
+        }
+
+        /**
+         * Checks if a cell lies in a 2x2x2 region of full opaque cubes.
+         */
+        public boolean isFull(int lx, int ly, int lz) {
+            return level2[((lx >> 1) * 8 + (ly >> 1)) * 8 + (lz >> 1)] == FULL;
+        }
+    }
+
+    // Shared summary for sections with nothing but air
+    private static final Section EMPTY_SECTION = new Section();
+
+    /**
+     * Registers the invalidation listeners. Call during mod initialization.
+     */
+    public static void register() {
+        BlockChangeCallback.EVENT.register(OccupancyPyramid::onBlockChanged);
+        ServerChunkEvents.CHUNK_UNLOAD.register(OccupancyPyramid::onChunkUnload);
+        ServerWorldEvents.UNLOAD.register((server, world) -> WORLDS.remove(world));
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> WORLDS.clear());
+
+        HorrorMod129.LOGGER.info("Registered OccupancyPyramid");
+    }
+
+    /**
+     * Gets the summary of a section, building it if needed.
+     *
+     * @param world The world
+     * @param chunk The loaded chunk containing the section
+     * @param sectionY Section y coordinate (block y >> 4), must be inside the world
+     * @return The section summary
+     */
+    public static Section getSection(World world, WorldChunk chunk, int sectionY) {
+        Long2ObjectOpenHashMap<Section> sections = WORLDS.computeIfAbsent(world, w -> new Long2ObjectOpenHashMap<>());
+        long key = ChunkSectionPos.asLong(chunk.getPos().x, sectionY, chunk.getPos().z);
+        Section section = sections.get(key);
+        if (section == null) {
+            section = build(chunk.getSection(chunk.sectionCoordToIndex(sectionY)));
+            sections.put(key, section);
+            sectionsBuilt++;
+        }
+        return section;
+    }
+
+    private static Section build(ChunkSection chunkSection) {
+        if (chunkSection.isEmpty()) {
+            return EMPTY_SECTION;
+        }
+
+        Section section = new Section();
+        boolean[] seen2 = new boolean[512];
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    byte type = classify(chunkSection.getBlockState(x, y, z));
+                    int index = ((x >> 1) * 8 + (y >> 1)) * 8 + (z >> 1);
+                    if (!seen2[index]) {
+                        seen2[index] = true;
+                        section.level2[index] = type;
+                    } else if (section.level2[index] != type) {
+                        section.level2[index] = MIXED;
+                    }
+                }
+            }
+        }
+        merge(section.level2, 8, section.level4);
+        merge(section.level4, 4, section.level8);
+        byte[] top = new byte[1];
+        merge(section.level8, 2, top);
+        section.level16 = top[0];
+        return section;
+    }
+
+    /**
+     * Combines each 2x2x2 group of a finer level into one region of the next level.
+     */
+    private static void merge(byte[] fine, int fineSize, byte[] coarse) {
+        int coarseSize = fineSize / 2;
+        for (int x = 0; x < coarseSize; x++) {
+            for (int y = 0; y < coarseSize; y++) {
+                for (int z = 0; z < coarseSize; z++) {
+                    byte type = fine[((x * 2) * fineSize + y * 2) * fineSize + z * 2];
+                    for (int i = 1; i < 8 && type != MIXED; i++) {
+                        int fx = x * 2 + (i & 1);
+                        int fy = y * 2 + ((i >> 1) & 1);
+                        int fz = z * 2 + ((i >> 2) & 1);
+                        if (fine[(fx * fineSize + fy) * fineSize + fz] != type) {
+                            type = MIXED;
+                        }
+                    }
+                    coarse[(x * coarseSize + y) * coarseSize + z] = type;
+                }
+            }
+        }
+    }
+
+    /**
+     * Classifies a block state: EMPTY if it never blocks, FULL if it always blocks, MIXED otherwise.
+     */
+    private static byte classify(BlockState state) {
+        byte flags = VoxelRaycaster.getFlags(state);
+        if (flags == 0) {
+            return EMPTY;
+        }
+        return flags == VoxelRaycaster.FLAG_OPAQUE ? FULL : MIXED;
+    }
+
+    /**
+     * Drops every summary, after the block classification changed (tag reload).
+     */
+    static void clear() {
+        WORLDS.clear();
+    }
+
+    /**
+     * Counts a jump across an empty region, for the debug stats.
+     */
+    static void countJump() {
+        jumps++;
+    }
+
+    private static void onBlockChanged(ServerWorld world, BlockPos pos, BlockState oldState, BlockState newState) {
+        if (classify(oldState) == classify(newState)) {
+            return;
+        }
+        Long2ObjectOpenHashMap<Section> sections = WORLDS.get(world);
+        if (sections != null && sections.remove(ChunkSectionPos.toLong(pos)) != null) {
+            sectionsInvalidated++;
+        }
+    }
+
+    private static void onChunkUnload(ServerWorld world, WorldChunk chunk) {
+        Long2ObjectOpenHashMap<Section> sections = WORLDS.get(world);
+        if (sections == null || sections.isEmpty()) {
+            return;
+        }
+        for (int sectionY = chunk.getBottomSectionCoord(); sectionY < chunk.getTopSectionCoord(); sectionY++) {
+            sections.remove(ChunkSectionPos.asLong(chunk.getPos().x, sectionY, chunk.getPos().z));
+        }
+    }
+
+    /**
+     * Gets a readable summary of the pyramid counters, for debug commands.
+     */
+    public static String getStatsString() {
+        int cached = 0;
+        for (Long2ObjectOpenHashMap<Section> sections : WORLDS.values()) {
+            cached += sections.size();
+        }
+        return String.format("Occupancy pyramid: %d sections built, %d invalidated, %d cached, %d empty region jumps",
+                sectionsBuilt, sectionsInvalidated, cached, jumps);
+    }
+
+    /**
+     * Resets the pyramid counters (summaries are kept).
+     */
+    public static void resetStats() {
+        sectionsBuilt = 0;
+        sectionsInvalidated = 0;
+        jumps = 0;
+    }
+}
@@ -58,10 +58,10 @@ public class PathVisibilityScorer {
             BlockPos airPos2 = groundPos.up(2);
 
             // Check if either air block is visible (entity occupies 2 blocks height)
-            boolean air1Visible = LineOfSightUtils.isBlockRenderedOnScreen(
-                    player, airPos1, maxDistance);
-            boolean air2Visible = LineOfSightUtils.isBlockRenderedOnScreen(
-                    player, airPos2, maxDistance);
+            boolean air1Visible = LineOfSightUtils.hasLineOfSight(
+                    player, airPos1, maxDistance, LineOfSightUtils.Precision.FOUR_CORNERS);
+            boolean air2Visible = LineOfSightUtils.hasLineOfSight(
+                    player, airPos2, maxDistance, LineOfSightUtils.Precision.FOUR_CORNERS);
 
             if (air1Visible || air2Visible) {
                 visibleBlockCount++;
@@ -91,10 +91,10 @@ public class PathVisibilityScorer {
         BlockPos airPos1 = actualGround.up(1);
         BlockPos airPos2 = actualGround.up(2);
 
-        boolean air1Visible = LineOfSightUtils.isBlockRenderedOnScreen(
-                player, airPos1, maxDistance);
-        boolean air2Visible = LineOfSightUtils.isBlockRenderedOnScreen(
-                player, airPos2, maxDistance);
+        boolean air1Visible = LineOfSightUtils.hasLineOfSight(
+                player, airPos1, maxDistance, LineOfSightUtils.Precision.FOUR_CORNERS);
+        boolean air2Visible = LineOfSightUtils.hasLineOfSight(
+                player, airPos2, maxDistance, LineOfSightUtils.Precision.FOUR_CORNERS);
 
         return air1Visible || air2Visible;
     }
@@ -0,0 +1,164 @@
+package horror.blueice129.utils;
+
+import horror.blueice129.HorrorMod129;
+import horror.blueice129.scheduler.IdleExecutor;
+import horror.blueice129.scheduler.JobExecutor;
+import horror.blueice129.scheduler.TickDispatcher;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.random.Random;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Surface locations around each player in the overworld, sampled ahead of time in idle time (see IdleExecutor),
+ * so structure events can take one instead of sampling up to 100 columns inside the tick.
+ * Candidates are found like StructurePlacer.findSurfaceLocation does (foliage ignored, water avoided,
+ * snow not counted as surface) in chunks that are already loaded, and are checked again when taken,
+ * since the player moves and the world changes.
+ *
+ * Server thread only.
+ */
+public class SurfaceCandidates {
+    private static final int MIN_DISTANCE = 20;
+    private static final int MAX_DISTANCE = 100;
+    private static final int TARGET = 24; // Candidates kept per player
+    private static final int ATTEMPTS_PER_REFILL = 64;
+    private static final int REFILL_INTERVAL = 100; // Ticks
+    private static final Random random = Random.create();
+
+    private static final Map<UUID, List<BlockPos>> CANDIDATES = new HashMap<>();
+    private static final Set<UUID> REFILLING = new HashSet<>();
+
+    /**
+     * Adds the tick task that queues refills and the events that drop candidates. Call during mod initialization.
+     */
+    public static void register() {
+        TickDispatcher.every("surface_candidates", REFILL_INTERVAL, true, context -> {
+            for (ServerPlayerEntity player : context.players) {
+                if (player.getWorld() != context.overworld) {
+                    continue;
+                }
+                UUID uuid = player.getUuid();
+                List<BlockPos> candidates = CANDIDATES.computeIfAbsent(uuid, key -> new ArrayList<>());
+                // Drop the ones the player walked away from
+                candidates.removeIf(pos -> getHorizontalDistance(player.getBlockPos(), pos) > MAX_DISTANCE);
+                if (candidates.size() < TARGET && REFILLING.add(uuid)) {
+                    IdleExecutor.submit("surface candidates", new Refill(uuid))
+                            .whenComplete((result, error) -> REFILLING.remove(uuid));
+                }
+            }
+        });
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> CANDIDATES.remove(handler.getPlayer().getUuid()));
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            CANDIDATES.clear();
+            REFILLING.clear();
+        });
+
+        HorrorMod129.LOGGER.info("Registered SurfaceCandidates");
+    }
+
+    /**
+     * Takes a prepared surface location near a player, checked the way StructurePlacer.findSurfaceLocation
+     * checks its samples.
+     *
+     * @param world The overworld
+     * @param player The player to search around
+     * @param minDistance The minimum horizontal distance from the player
+     * @param maxDistance The maximum horizontal distance from the player
+     * @param accept Any other checks the caller needs (spacing to other sites and the like)
+     * @return The location (the block above the surface), or null if no candidate fits; search the usual way then
+     */
+    public static BlockPos take(ServerWorld world, ServerPlayerEntity player, int minDistance, int maxDistance,
+            Predicate<BlockPos> accept) {
+        List<BlockPos> candidates = CANDIDATES.get(player.getUuid());
+        if (candidates == null || player.getWorld() != world) {
+            return null;
+        }
+        BlockPos center = player.getBlockPos();
+        Iterator<BlockPos> iterator = candidates.iterator();
+        while (iterator.hasNext()) {
+            BlockPos pos = iterator.next();
+            double distance = getHorizontalDistance(center, pos);
+            // Samples are rounded to whole blocks
+            if (distance < minDistance - 1 || distance > maxDistance + 1) {
+                continue;
+            }
+            if (!ChunkLoader.loadChunksInRadius(world, pos, 1)
+                    || SurfaceFinder.findPointSurfaceY(world, pos.getX(), pos.getZ(), true, true, false) + 1 != pos.getY()) {
+                iterator.remove(); // Unloaded, or the surface changed
+                continue;
+            }
+            if (!accept.test(pos) || LineOfSightUtils.isBlockRenderedOnScreen(player, pos, 50)) {
+                continue;
+            }
+            iterator.remove();
+            return pos;
+        }
+        return null;
+    }
+
+    private static double getHorizontalDistance(BlockPos a, BlockPos b) {
+        int dx = a.getX() - b.getX();
+        int dz = a.getZ() - b.getZ();
+        return Math.sqrt(dx * dx + dz * dz);
+    }
+
+    /**
+     * Samples one column per step around the player until they have enough candidates.
+     */
+    private static class Refill extends JobExecutor.Job<Void> {
+        private final UUID uuid;
+        private int attempts;
+
+        Refill(UUID uuid) {
+            this.uuid = uuid;
+        }
+
+        @Override
+        protected boolean step(MinecraftServer server, ServerPlayerEntity owner) {
+            ServerPlayerEntity player = server.getPlayerManager().getPlayer(uuid);
+            ServerWorld world = server.getOverworld();
+            List<BlockPos> candidates = CANDIDATES.get(uuid);
+            if (player == null || player.getWorld() != world || candidates == null
+                    || candidates.size() >= TARGET || attempts++ >= ATTEMPTS_PER_REFILL) {
+                return true;
+            }
+
+            // Same sampling as StructurePlacer.findSurfaceLocation
+            BlockPos center = player.getBlockPos();
+            int radius = MIN_DISTANCE + random.nextInt(MAX_DISTANCE - MIN_DISTANCE + 1);
+            double angle = random.nextDouble() * Math.PI * 2.0;
+            int x = center.getX() + (int) Math.round(Math.cos(angle) * radius);
+            int z = center.getZ() + (int) Math.round(Math.sin(angle) * radius);
+
+            // Only read chunks that are already loaded
+            BlockPos checkPos = new BlockPos(x, world.getBottomY() + (world.getTopY() - world.getBottomY()) / 2, z);
+            if (!ChunkLoader.loadChunksInRadius(world, checkPos, 1)) {
+                return false;
+            }
+            int y = SurfaceFinder.findPointSurfaceY(world, x, z, true, true, false);
+            if (y != -1) {
+                candidates.add(new BlockPos(x, y + 1, z));
+            }
+            return candidates.size() >= TARGET;
+        }
+
+        @Override
+        protected Void getResult() {
+            return null;
+        }
+    }
+}
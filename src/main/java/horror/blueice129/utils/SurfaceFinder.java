@@ -99,61 +99,77 @@ public class SurfaceFinder {
 
         for (int x = startX; x <= endX; x++) {
             for (int z = startZ; z <= endZ; z++) {
-                // Make sure chunks are loaded before accessing blocks
-                BlockPos chunkPos = new BlockPos(x, world.getBottomY() + (world.getTopY() - world.getBottomY()) / 2, z);
-                if (!ChunkLoader.loadChunksInRadius(world, chunkPos, 1)) {
-                    continue; // Skip if chunk couldn't be loaded
+                BlockPos treePos = findTreeAt(world, x, z);
+                if (treePos != null) {
+                    treePositions.add(treePos);
                 }
+            }
+        }
 
-                // Include snow when finding the surface to work properly in snowy biomes
-                int topBlockY = findPointSurfaceY(world, x, z, false, true, true);
-                if (topBlockY == -1) {
-                    continue; // No suitable surface found
-                }
+        return treePositions.toArray(new BlockPos[0]);
+    }
 
-                BlockPos topBlock = new BlockPos(x, topBlockY, z);
-                BlockState topBlockState = world.getBlockState(topBlock);
-                
-                // Handle snow on top of leaves or directly check below snow for leaves
-                if (topBlockState.getBlock() == Blocks.SNOW) {
-                    // Check the block below snow
-                    BlockState belowSnow = world.getBlockState(topBlock.down(1));
-                    if (!(belowSnow.getBlock() instanceof LeavesBlock)) {
-                        continue; // If the block below snow isn't leaves, skip
-                    }
-                    topBlock = topBlock.down(1); // Use the block below snow as top block
-                    topBlockY--; // Adjust Y coordinate
-                }
-                
-                // Check if the top block is leaves or we've already confirmed leaves below snow
-                if (world.getBlockState(topBlock).getBlock() instanceof LeavesBlock) {
-                    int trunkHeight = 0;
-                    for (int y = 0; y <= 30; y++) {
-                        BlockPos checkPos = new BlockPos(x, topBlockY - y, z);
-                        BlockState blockState = world.getBlockState(checkPos);
-                        if (blockState.getBlock() instanceof LeavesBlock) {
-                            trunkHeight = 0; // reset trunk height if we hit leaves
-                        } else if (BlockTypes.isLogBlock(blockState.getBlock())) {
-                            trunkHeight++;
-                            continue;
-                        } else if (blockState.isAir()) {
-                            trunkHeight = 0; // reset trunk height if we hit air
-                            continue;
-                        } else if (blockState.getBlock() == Blocks.SNOW) {
-                            // Don't reset trunk height for snow, just continue
-                            continue; // allow snow on top of a tree
-                        } else {
-                            break; // hit a non-log, non-leaf, non-air, non-snow block
-                        }
-                    }
-                    if (trunkHeight >= 3) {
-                        treePositions.add(new BlockPos(x, topBlockY - trunkHeight + 1, z));
-                    }
+    /**
+     * Checks one column for a tree, the way findTreePositions does, for searches spread over several ticks.
+     *
+     * @param world The world to search in
+     * @param x The column's x coordinate
+     * @param z The column's z coordinate
+     * @return The lowest log of the tree's trunk, or null if the column has no tree (or its chunk couldn't be loaded)
+     */
+    public static BlockPos findTreeAt(ServerWorld world, int x, int z) {
+        // Make sure chunks are loaded before accessing blocks
+        BlockPos chunkPos = new BlockPos(x, world.getBottomY() + (world.getTopY() - world.getBottomY()) / 2, z);
+        if (!ChunkLoader.loadChunksInRadius(world, chunkPos, 1)) {
+            return null; // Skip if chunk couldn't be loaded
+        }
+
+        // Include snow when finding the surface to work properly in snowy biomes
+        int topBlockY = findPointSurfaceY(world, x, z, false, true, true);
+        if (topBlockY == -1) {
+            return null; // No suitable surface found
+        }
+
+        BlockPos topBlock = new BlockPos(x, topBlockY, z);
+        BlockState topBlockState = world.getBlockState(topBlock);
+        
+        // Handle snow on top of leaves or directly check below snow for leaves
+        if (topBlockState.getBlock() == Blocks.SNOW) {
+            // Check the block below snow
+            BlockState belowSnow = world.getBlockState(topBlock.down(1));
+            if (!(belowSnow.getBlock() instanceof LeavesBlock)) {
+                return null; // If the block below snow isn't leaves, skip
+            }
+            topBlock = topBlock.down(1); // Use the block below snow as top block
+            topBlockY--; // Adjust Y coordinate
+        }
+        
+        // Check if the top block is leaves or we've already confirmed leaves below snow
+        if (world.getBlockState(topBlock).getBlock() instanceof LeavesBlock) {
+            int trunkHeight = 0;
+            for (int y = 0; y <= 30; y++) {
+                BlockPos checkPos = new BlockPos(x, topBlockY - y, z);
+                BlockState blockState = world.getBlockState(checkPos);
+                if (blockState.getBlock() instanceof LeavesBlock) {
+                    trunkHeight = 0; // reset trunk height if we hit leaves
+                } else if (BlockTypes.isLogBlock(blockState.getBlock())) {
+                    trunkHeight++;
+                    continue;
+                } else if (blockState.isAir()) {
+                    trunkHeight = 0; // reset trunk height if we hit air
+                    continue;
+                } else if (blockState.getBlock() == Blocks.SNOW) {
+                    // Don't reset trunk height for snow, just continue
+                    continue; // allow snow on top of a tree
+                } else {
+                    break; // hit a non-log, non-leaf, non-air, non-snow block
                 }
             }
+            if (trunkHeight >= 3) {
+                return new BlockPos(x, topBlockY - trunkHeight + 1, z);
+            }
         }
-
-        return treePositions.toArray(new BlockPos[0]);
+        return null;
     }
 
     public static BlockPos[] getTreeLogPositions(ServerWorld world, BlockPos pos) {
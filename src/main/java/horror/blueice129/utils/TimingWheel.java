@@ -0,0 +1,236 @@
+package horror.blueice129.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: fires values when a tick clock reaches their deadline.
+ * Four levels of 64 slots cover 2^24 ticks (about 9.7 days) ahead; later deadlines wait in an overflow list
+ * until they come into range. Scheduling, cancelling and firing are O(1), and a tick with nothing due
+ * only looks at one empty slot (plus one more per level every 64, 4096 and 262144 ticks, when entries move down a level).
+ *
+ * Not thread safe.
+ *
+ * @param <T> The value fired at the deadline
+ */
+public final class TimingWheel<T> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    // Buckets past the wheel slots
+    private static final int OVERFLOW = LEVELS * SLOTS;
+    private static final int DUE = OVERFLOW + 1;
+    private static final int NONE = -1;
+    private static final int FIRING = -2;
+
+    // Head of each bucket's doubly linked list
+    private final Entry<?>[] heads = new Entry<?>[DUE + 1];
+    private final List<Entry<T>> firing = new ArrayList<>();
+    private long now;
+    private int size;
+
+    /**
+     * A scheduled value. Keep it to reschedule or cancel the value without searching for it.
+     */
+    public static final class Entry<T> {
+        private final T value;
+        private long deadline;
+        private int bucket = NONE;
+        private Entry<T> prev;
+        private Entry<T> next;
+
+        private Entry(T value) {
+            this.value = value;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * Gets the tick the value fires (or fired) at.
+         */
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * Checks if the value is waiting to fire.
+         */
+        public boolean isScheduled() {
+            return bucket >= 0;
+        }
+    }
+
+    /**
+     * @param startTime The current tick
+     */
+    public TimingWheel(long startTime) {
+        this.now = startTime;
+    }
+
+    /**
+     * Gets the current tick.
+     */
+    public long getTime() {
+        return now;
+    }
+
+    /**
+     * Gets the number of values waiting to fire.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedules a value.
+     *
+     * @param value The value to fire
+     * @param deadline The tick to fire at; values at or before the current tick fire on the next advance
+     * @return The entry, for rescheduling or cancelling
+     */
+    public Entry<T> schedule(T value, long deadline) {
+        Entry<T> entry = new Entry<>(value);
+        reschedule(entry, deadline);
+        return entry;
+    }
+
+    /**
+     * Moves an entry to a new deadline, scheduling it again if it already fired or was cancelled.
+     *
+     * @param entry An entry of this wheel
+     * @param deadline The tick to fire at
+     */
+    public void reschedule(Entry<T> entry, long deadline) {
+        cancel(entry);
+        entry.deadline = deadline;
+        link(entry, getBucket(deadline));
+        size++;
+    }
+
+    /**
+     * Cancels an entry. Does nothing if it isn't scheduled.
+     *
+     * @param entry An entry of this wheel
+     */
+    public void cancel(Entry<T> entry) {
+        if (entry.bucket == FIRING) {
+            // Fired later in this advance, skip it
+            entry.bucket = NONE;
+            size--;
+        } else if (entry.bucket >= 0) {
+            unlink(entry);
+            size--;
+        }
+    }
+
+    /**
+     * Advances the clock one tick and fires the values that are due.
+     * The callback may schedule, reschedule or cancel entries.
+     *
+     * @param onDue Called with each value whose deadline is reached
+     */
+    public void advance(Consumer<T> onDue) {
+        now++;
+
+        // Move entries down from each level whose slot starts at this tick, highest first
+        if ((now & ((1L << (LEVELS * SLOT_BITS)) - 1)) == 0) {
+            cascade(OVERFLOW);
+        }
+        for (int level = LEVELS - 1; level > 0; level--) {
+            int shift = level * SLOT_BITS;
+            if ((now & ((1L << shift) - 1)) == 0) {
+                cascade(level * SLOTS + (int) ((now >>> shift) & SLOT_MASK));
+            }
+        }
+
+        int slot = (int) (now & SLOT_MASK);
+        if (heads[slot] == null && heads[DUE] == null) {
+            return;
+        }
+        collect(DUE);
+        collect(slot);
+        for (int i = 0; i < firing.size(); i++) {
+            Entry<T> entry = firing.get(i);
+            if (entry.bucket == FIRING) {
+                entry.bucket = NONE;
+                size--;
+                onDue.accept(entry.value);
+            }
+        }
+        firing.clear();
+    }
+
+    /**
+     * Finds the bucket for a deadline: the lowest level where it shares the higher digits with the clock.
+     */
+    private int getBucket(long deadline) {
+        if (deadline <= now) {
+            return DUE;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = level * SLOT_BITS;
+            if ((deadline >>> (shift + SLOT_BITS)) == (now >>> (shift + SLOT_BITS))) {
+                return level * SLOTS + (int) ((deadline >>> shift) & SLOT_MASK);
+            }
+        }
+        return OVERFLOW;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void cascade(int bucket) {
+        Entry<T> entry = (Entry<T>) heads[bucket];
+        heads[bucket] = null;
+        while (entry != null) {
+            Entry<T> next = entry.next;
+            entry.prev = null;
+            entry.next = null;
+            link(entry, getBucket(entry.deadline));
+            entry = next;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void collect(int bucket) {
+        Entry<T> entry = (Entry<T>) heads[bucket];
+        heads[bucket] = null;
+        while (entry != null) {
+            Entry<T> next = entry.next;
+            entry.prev = null;
+            entry.next = null;
+            entry.bucket = FIRING;
+            firing.add(entry);
+            entry = next;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void link(Entry<T> entry, int bucket) {
+        Entry<T> head = (Entry<T>) heads[bucket];
+        entry.bucket = bucket;
+        entry.prev = null;
+        entry.next = head;
+        if (head != null) {
+            head.prev = entry;
+        }
+        heads[bucket] = entry;
+    }
+
+    private void unlink(Entry<T> entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            heads[entry.bucket] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+        entry.bucket = NONE;
+    }
+}
@@ -11,7 +11,7 @@ import net.minecraft.entity.player.PlayerEntity;
 public class TorchPlacer {
 
     public static boolean placeTorch(World world, BlockPos pos, Random random, PlayerEntity player){
-        if (player != null && LineOfSightUtils.hasLineOfSight(player, pos, 200)) {
+        if (player != null && LineOfSightUtils.hasLineOfSight(player, pos, 200, LineOfSightUtils.Precision.EIGHT_CORNERS)) {
             return false;
         }
         Direction[] directions = {Direction.NORTH, Direction.SOUTH, Direction.EAST, Direction.WEST, Direction.DOWN};
@@ -0,0 +1,137 @@
+package horror.blueice129.utils;
+
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.World;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable snapshot of where a player is looking: eye position, forward/right/up basis
+ * and the tangents of the field of view half-angles.
+ * One frame is built per player per tick (or when they move or turn within the tick),
+ * so field of view tests are a few multiply-adds with no trig and no allocation.
+ *
+ * Server thread only for get(); a frame itself can be passed to any thread.
+ */
+public final class ViewFrame {
+    public static final double H_FOV_DEGREES = 150.0; // 150 degrees horizontal
+    public static final double V_FOV_DEGREES = 130.0; // 130 degrees vertical
+
+    // tan of the half-angles, both below 90 degrees so the cone is in front of the eye
+    private static final double H_FOV_TAN = Math.tan(Math.toRadians(H_FOV_DEGREES / 2.0));
+    private static final double V_FOV_TAN = Math.tan(Math.toRadians(V_FOV_DEGREES / 2.0));
+
+    private static final Map<UUID, ViewFrame> FRAMES = new HashMap<>();
+
+    public final double eyeX, eyeY, eyeZ;
+    public final double forwardX, forwardY, forwardZ;
+    public final double rightX, rightY, rightZ;
+    public final double upX, upY, upZ;
+
+    // What the frame was built from, to tell if it's still current
+    private final World world;
+    private final long tick;
+    private final float yaw, pitch;
+
+    private ViewFrame(PlayerEntity player) {
+        this.world = player.getWorld();
+        this.tick = world.getTime();
+        this.yaw = player.getYaw();
+        this.pitch = player.getPitch();
+        this.eyeX = player.getX();
+        this.eyeY = player.getEyeY();
+        this.eyeZ = player.getZ();
+
+        float pitchRad = pitch * ((float) Math.PI / 180F);
+        float yawRad = yaw * ((float) Math.PI / 180F);
+        float cosPitch = MathHelper.cos(pitchRad);
+        float sinYaw = MathHelper.sin(yawRad);
+        float cosYaw = MathHelper.cos(yawRad);
+
+        // forward is unit length already; right is horizontal and perpendicular to it
+        this.forwardX = -sinYaw * cosPitch;
+        this.forwardY = -MathHelper.sin(pitchRad);
+        this.forwardZ = cosYaw * cosPitch;
+        this.rightX = cosYaw;
+        this.rightY = 0;
+        this.rightZ = sinYaw;
+        // up = forward x right
+        double ux = forwardY * rightZ - forwardZ * rightY;
+        double uy = forwardZ * rightX - forwardX * rightZ;
+        double uz = forwardX * rightY - forwardY * rightX;
+        double length = Math.sqrt(ux * ux + uy * uy + uz * uz);
+        this.upX = ux / length;
+        this.upY = uy / length;
+        this.upZ = uz / length;
+    }
+
+    /**
+     * Drops frames of players that leave and on server stop. Call during mod initialization.
+     */
+    public static void register() {
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> FRAMES.remove(handler.player.getUuid()));
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> FRAMES.clear());
+    }
+
+    /**
+     * Gets the player's current view frame, building it on the first call this tick.
+     *
+     * @param player The player
+     * @return The frame for the player's current eye position and rotation
+     */
+    public static ViewFrame get(PlayerEntity player) {
+        ViewFrame frame = FRAMES.get(player.getUuid());
+        if (frame == null || !frame.isCurrent(player)) {
+            frame = new ViewFrame(player);
+            FRAMES.put(player.getUuid(), frame);
+        }
+        return frame;
+    }
+
+    private boolean isCurrent(PlayerEntity player) {
+        return world == player.getWorld() && tick == world.getTime()
+                && yaw == player.getYaw() && pitch == player.getPitch()
+                && eyeX == player.getX() && eyeY == player.getEyeY() && eyeZ == player.getZ();
+    }
+
+    /**
+     * Checks if a direction from the eye is within the field of view (150x130 degrees,
+     * the rectangular screen shape rather than a circle).
+     * The direction does not need to be normalized.
+     */
+    public boolean isWithinFieldOfView(double dx, double dy, double dz) {
+        double viewDot = forwardX * dx + forwardY * dy + forwardZ * dz;
+        if (viewDot < 0) {
+            return false;
+        }
+        double rightDot = rightX * dx + rightY * dy + rightZ * dz;
+        double upDot = upX * dx + upY * dy + upZ * dz;
+        // |angle| <= half FOV  <=>  |side| <= tan(half FOV) * forward, for angles under 90 degrees
+        return Math.abs(rightDot) <= H_FOV_TAN * viewDot && Math.abs(upDot) <= V_FOV_TAN * viewDot;
+    }
+
+    /**
+     * Checks if a direction is within a circular cone around the forward vector.
+     * The direction does not need to be normalized, and no square root is taken.
+     *
+     * @param dx Direction x
+     * @param dy Direction y
+     * @param dz Direction z
+     * @param cosHalfAngle Cosine of the cone's half-angle, negative for cones wider than 180 degrees
+     * @return True if the angle between forward and the direction is under the half-angle
+     */
+    public boolean isWithinCone(double dx, double dy, double dz, double cosHalfAngle) {
+        double dot = forwardX * dx + forwardY * dy + forwardZ * dz;
+        double limitSq = cosHalfAngle * cosHalfAngle * (dx * dx + dy * dy + dz * dz);
+        // dot > cos * |d|, compared squared on the side where both are known positive
+        if (cosHalfAngle >= 0) {
+            return dot > 0 && dot * dot > limitSq;
+        }
+        return dot >= 0 || dot * dot < limitSq;
+    }
+}
@@ -0,0 +1,317 @@
+package horror.blueice129.utils;
+
+import horror.blueice129.HorrorMod129;
+import it.unimi.dsi.fastutil.longs.Long2BooleanOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.block.BlockState;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.World;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Memoizes LineOfSightUtils.hasLineOfSight results per player and block position.
+ * Callers that only rank candidates (the hiding-spot search) may let the player's VisibilityField
+ * answer first; its answers are approximate, so everyone else gets the raycast result.
+ * The same positions get tested many times within a tick and across nearby ticks
+ * (stalker footsteps, hiding spots, torch neighbourhoods), so this saves most raycasts.
+ *
+ * A player's entries are dropped when:
+ * - their eye moves more than MOVE_THRESHOLD blocks or they turn more than ROTATION_THRESHOLD degrees
+ * - they change world, or the entries are older than MAX_AGE_TICKS
+ * Single entries are dropped when a block changes inside the corridor between the eye and the target.
+ *
+ * Server thread only.
+ */
+public class VisibilityCache {
+    private static final double MOVE_THRESHOLD = 0.25; // blocks of eye movement
+    private static final float ROTATION_THRESHOLD = 2.0f; // degrees of yaw or pitch
+    private static final int MAX_AGE_TICKS = 20; // safety net for anything not covered above
+    private static final double HALF_DIAGONAL = Math.sqrt(3) / 2; // centre to corner of a block
+
+    private static final Map<UUID, PlayerCache> CACHES = new HashMap<>();
+
+    private static long hits;
+    private static long misses;
+    private static long movementResets;
+    private static long blockInvalidations;
+
+    /**
+     * Cached results for one player, valid for a single eye position and rotation.
+     */
+    private static class PlayerCache {
+        final Long2BooleanOpenHashMap results = new Long2BooleanOpenHashMap();
+        World world;
+        double eyeX, eyeY, eyeZ;
+        float yaw, pitch;
+        long createdTick;
+        // Bounds of eye + cached targets, so block changes far away are rejected quickly
+        int minX, minY, minZ, maxX, maxY, maxZ;
+
+        void reset(PlayerEntity player, long tick) {
+            results.clear();
+            world = player.getWorld();
+            eyeX = player.getX();
+            eyeY = player.getEyeY();
+            eyeZ = player.getZ();
+            yaw = player.getYaw();
+            pitch = player.getPitch();
+            createdTick = tick;
+            minX = maxX = MathHelper.floor(eyeX);
+            minY = maxY = MathHelper.floor(eyeY);
+            minZ = maxZ = MathHelper.floor(eyeZ);
+        }
+
+        boolean isStale(PlayerEntity player, long tick) {
+            if (world != player.getWorld() || tick - createdTick > MAX_AGE_TICKS || tick < createdTick) {
+                return true;
+            }
+            double dx = player.getX() - eyeX;
+            double dy = player.getEyeY() - eyeY;
+            double dz = player.getZ() - eyeZ;
+            if (dx * dx + dy * dy + dz * dz > MOVE_THRESHOLD * MOVE_THRESHOLD) {
+                return true;
+            }
+            return Math.abs(MathHelper.wrapDegrees(player.getYaw() - yaw)) > ROTATION_THRESHOLD
+                    || Math.abs(player.getPitch() - pitch) > ROTATION_THRESHOLD;
+        }
+
+        void put(BlockPos pos, boolean visible) {
+            results.put(pos.asLong(), visible);
+            minX = Math.min(minX, pos.getX());
+            minY = Math.min(minY, pos.getY());
+            minZ = Math.min(minZ, pos.getZ());
+            maxX = Math.max(maxX, pos.getX());
+            maxY = Math.max(maxY, pos.getY());
+            maxZ = Math.max(maxZ, pos.getZ());
+        }
+
+        /**
+         * Drops every entry whose eye-to-target corridor contains the changed block.
+         * @return number of entries dropped
+         */
+        int invalidate(BlockPos changed) {
+            int x = changed.getX();
+            int y = changed.getY();
+            int z = changed.getZ();
+            if (results.isEmpty() || x < minX - 1 || x > maxX + 1 || y < minY - 1 || y > maxY + 1
+                    || z < minZ - 1 || z > maxZ + 1) {
+                return 0;
+            }
+
+            int dropped = 0;
+            LongIterator it = results.keySet().iterator();
+            while (it.hasNext()) {
+                long key = it.nextLong();
+                if (isInCorridor(key, x + 0.5, y + 0.5, z + 0.5)) {
+                    it.remove();
+                    dropped++;
+                }
+            }
+            return dropped;
+        }
+
+        /**
+         * Checks if a block centre lies within the cone of rays from the eye to the target's corners,
+         * padded by the changed block's own half diagonal.
+         */
+        private boolean isInCorridor(long target, double px, double py, double pz) {
+            double bx = BlockPos.unpackLongX(target) + 0.5 - eyeX;
+            double by = BlockPos.unpackLongY(target) + 0.5 - eyeY;
+            double bz = BlockPos.unpackLongZ(target) + 0.5 - eyeZ;
+            double ax = px - eyeX;
+            double ay = py - eyeY;
+            double az = pz - eyeZ;
+
+            double lengthSq = bx * bx + by * by + bz * bz;
+            double t = lengthSq > 0 ? MathHelper.clamp((ax * bx + ay * by + az * bz) / lengthSq, 0.0, 1.0) : 0.0;
+            double cx = ax - bx * t;
+            double cy = ay - by * t;
+            double cz = az - bz * t;
+
+            // The corner rays fan out from the eye, so the corridor widens towards the target
+            double radius = HALF_DIAGONAL * (1.0 + t);
+            return cx * cx + cy * cy + cz * cz <= radius * radius;
+        }
+    }
+
+    /**
+     * Registers cleanup listeners. Call during mod initialization.
+     */
+    public static void register() {
+        BlockChangeCallback.EVENT.register(VisibilityCache::onBlockChanged);
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) ->
+                CACHES.remove(handler.getPlayer().getUuid()));
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> CACHES.clear());
+
+        HorrorMod129.LOGGER.info("Registered VisibilityCache");
+    }
+
+    /**
+     * Cached version of LineOfSightUtils.hasLineOfSight.
+     * The distance limit is always checked fresh, only the raycast result is cached.
+     *
+     * @param player The player to check from
+     * @param targetPos The position to check
+     * @param maxDistance The maximum distance to check
+     * @return true if the position has clear line of sight from player
+     */
+    public static boolean hasLineOfSight(PlayerEntity player, BlockPos targetPos, double maxDistance) {
+        return hasLineOfSight(player, targetPos, maxDistance, false);
+    }
+
+    /**
+     * Same as hasLineOfSight(PlayerEntity, BlockPos, double), optionally answered by the player's
+     * VisibilityField where it can.
+     *
+     * @param player The player to check from
+     * @param targetPos The position to check
+     * @param maxDistance The maximum distance to check
+     * @param approximate True to accept the field's answer, which is for an eye up to a few blocks off
+     * @return true if the position has (approximately) clear line of sight from player
+     */
+    public static boolean hasLineOfSight(PlayerEntity player, BlockPos targetPos, double maxDistance,
+                                         boolean approximate) {
+        double dx = targetPos.getX() + 0.5 - player.getX();
+        double dy = targetPos.getY() + 0.5 - player.getEyeY();
+        double dz = targetPos.getZ() + 0.5 - player.getZ();
+        if (dx * dx + dy * dy + dz * dz > maxDistance * maxDistance) {
+            return false;
+        }
+
+        // The player's visibility field answers without raycasting once it's built that far
+        if (approximate) {
+            int fieldResult = VisibilityField.query(player, targetPos, maxDistance);
+            if (fieldResult != VisibilityField.UNKNOWN) {
+                return fieldResult == VisibilityField.VISIBLE;
+            }
+        }
+
+        PlayerCache cache = getCache(player);
+        long key = targetPos.asLong();
+        if (cache.results.containsKey(key)) {
+            hits++;
+            return cache.results.get(key);
+        }
+
+        misses++;
+        boolean visible = LineOfSightUtils.hasLineOfSight(player, targetPos, maxDistance);
+        cache.put(targetPos, visible);
+        return visible;
+    }
+
+    /**
+     * Cached batch check: is any of the positions visible to the player?
+     * Cached entries are answered first, the rest go through one LineOfSightUtils batch query
+     * that stops at the first visible position.
+     *
+     * @param player The player to check from
+     * @param targets Packed positions (BlockPos.asLong) to check, checked in any order
+     * @param maxDistance The maximum distance to check
+     * @return true if at least one position has clear line of sight from player
+     */
+    public static boolean isAnyVisible(PlayerEntity player, long[] targets, double maxDistance) {
+        PlayerCache cache = getCache(player);
+        double maxDistanceSq = maxDistance * maxDistance;
+        long[] uncached = new long[targets.length];
+        int count = 0;
+        for (long target : targets) {
+            double dx = BlockPos.unpackLongX(target) + 0.5 - player.getX();
+            double dy = BlockPos.unpackLongY(target) + 0.5 - player.getEyeY();
+            double dz = BlockPos.unpackLongZ(target) + 0.5 - player.getZ();
+            if (dx * dx + dy * dy + dz * dz > maxDistanceSq) {
+                continue;
+            }
+            if (cache.results.containsKey(target)) {
+                hits++;
+                if (cache.results.get(target)) {
+                    return true;
+                }
+            } else {
+                uncached[count++] = target;
+            }
+        }
+        if (count == 0) {
+            return false;
+        }
+
+        long[] batch = Arrays.copyOf(uncached, count);
+        BitSet visible = LineOfSightUtils.hasLineOfSight(player, batch, maxDistance, pos -> true);
+        int first = visible.nextSetBit(0);
+        if (first >= 0) {
+            // The batch stopped early, only the visible position is known
+            misses++;
+            cache.put(BlockPos.fromLong(batch[first]), true);
+            return true;
+        }
+        misses += count;
+        for (long target : batch) {
+            cache.put(BlockPos.fromLong(target), false);
+        }
+        return false;
+    }
+
+    /**
+     * Gets the player's cache, resetting it if the player moved, turned or it got too old.
+     */
+    private static PlayerCache getCache(PlayerEntity player) {
+        long tick = player.getWorld().getTime();
+        PlayerCache cache = CACHES.get(player.getUuid());
+        if (cache == null) {
+            cache = new PlayerCache();
+            cache.reset(player, tick);
+            CACHES.put(player.getUuid(), cache);
+        } else if (cache.isStale(player, tick)) {
+            if (!cache.results.isEmpty()) {
+                movementResets++;
+            }
+            cache.reset(player, tick);
+        }
+        return cache;
+    }
+
+    private static void onBlockChanged(ServerWorld world, BlockPos pos, BlockState oldState, BlockState newState) {
+        if (CACHES.isEmpty()) {
+            return;
+        }
+        for (PlayerCache cache : CACHES.values()) {
+            if (cache.world == world) {
+                blockInvalidations += cache.invalidate(pos);
+            }
+        }
+    }
+
+    /**
+     * Gets a readable summary of the cache counters, for debug commands.
+     */
+    public static String getStatsString() {
+        long lookups = hits + misses;
+        double hitRate = lookups > 0 ? hits * 100.0 / lookups : 0.0;
+        int entries = 0;
+        for (PlayerCache cache : CACHES.values()) {
+            entries += cache.results.size();
+        }
+        return String.format("Visibility cache: %d hits, %d misses (%.1f%% hit rate, %d raycasts saved), "
+                        + "%d movement resets, %d block invalidations, %d players, %d entries",
+                hits, misses, hitRate, hits, movementResets, blockInvalidations, CACHES.size(), entries);
+    }
+
+    /**
+     * Resets the hit/miss counters (cached entries are kept).
+     */
+    public static void resetStats() {
+        hits = 0;
+        misses = 0;
+        movementResets = 0;
+        blockInvalidations = 0;
+    }
+}
@@ -0,0 +1,447 @@
+package horror.blueice129.utils;
+
+import horror.blueice129.HorrorMod129;
+import horror.blueice129.scheduler.TickDispatcher;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.block.BlockState;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Per-player map of "everything this player can currently see" within RADIUS blocks.
+ *
+ * The field is shadowcast outwards from the eye one shell (ring) at a time: every cell takes the light
+ * arriving through the previous shell along the ray back to the eye, then passes on what its own block
+ * lets through. Opaque blocks pass nothing, leaves and partial blocks pass some, so a few leaves still
+ * let light through and a thick canopy doesn't (same rules as VoxelRaycaster).
+ *
+ * Visibility doesn't depend on where the player looks, so the field only restarts when the eye moves more
+ * than RESTART_DISTANCE from where it was built; the FOV check is done per query. Answers are therefore
+ * for an eye up to that far off, which is fine for ranking candidates but not for exact checks.
+ * A block change only rewinds the rings at and beyond it.
+ *
+ * Building is spread over ticks: all fields share one budget of CELLS_PER_TICK cells a tick, taking turns,
+ * and at most MAX_FIELDS fields exist (about 2.9 MB each), so the cost doesn't grow with the player count.
+ * Queries for rings not built yet, for players without a field, or for cells near a shadow edge, return
+ * UNKNOWN so the caller falls back to raycasting.
+ *
+ * Server thread only.
+ */
+public class VisibilityField {
+    public static final int UNKNOWN = -1;
+    public static final int HIDDEN = 0;
+    public static final int VISIBLE = 1;
+
+    public static final int RADIUS = 64;
+    private static final int MARGIN = 2; // extra rings so cells at RADIUS have something to sample
+    private static final int SIZE_RADIUS = RADIUS + MARGIN;
+    private static final int SIZE = SIZE_RADIUS * 2 + 1;
+
+    private static final int CELLS_PER_TICK = 50_000; // shared by all fields, roughly 25 ticks for a full field
+    private static final int MAX_FIELDS = 4;
+    private static final int ACTIVE_TICKS = 100; // keep building fields queried this recently
+    private static final double RESTART_DISTANCE = 2.0; // blocks of eye movement
+
+    // Light is stored as 0..255. The propagation blurs shadow edges a little, so only cells clearly lit or
+    // clearly dark are answered, anything in between (edges, behind a slab or a few leaves) is UNKNOWN
+    private static final int FULL_LIGHT = 255;
+    private static final int VISIBLE_THRESHOLD = 160; // at or above: visible
+    private static final int HIDDEN_THRESHOLD = 30; // below: hidden
+    // Light let through per block type: behind 1 leaf stays visible, behind 5 is hidden, the counts around
+    // MAX_LEAVES_BEFORE_OPAQUE are left to the raycast, like anything behind a slab or stair
+    private static final int LEAF_TRANSMISSION = 166;
+    private static final int PARTIAL_TRANSMISSION = 128;
+
+    // In the order the fields take turns at the budget
+    private static final Map<UUID, Field> FIELDS = new LinkedHashMap<>();
+
+    private static long answered;
+    private static long unknown;
+    private static long uncertain;
+    private static long restarts;
+    private static long rewinds;
+    private static long refused;
+
+    /**
+     * Shadowcast field around one player's eye block.
+     */
+    private static class Field {
+        final byte[] light = new byte[SIZE * SIZE * SIZE]; // light leaving each cell
+        final long[] visible = new long[(SIZE * SIZE * SIZE + 63) >> 6]; // light reaching the cell >= VISIBLE_THRESHOLD
+        final long[] hidden = new long[(SIZE * SIZE * SIZE + 63) >> 6]; // light reaching the cell < HIDDEN_THRESHOLD
+        World world;
+        double builtX, builtY, builtZ; // eye position the field was built from
+        int eyeX, eyeY, eyeZ;
+        double fracX, fracY, fracZ;
+        int builtRing = -1; // rings 0..builtRing are done, -1 before the first build
+        long lastQueryTick;
+
+        void restart(PlayerEntity player) {
+            world = player.getWorld();
+            builtX = player.getX();
+            builtY = player.getEyeY();
+            builtZ = player.getZ();
+            eyeX = MathHelper.floor(player.getX());
+            eyeY = MathHelper.floor(player.getEyeY());
+            eyeZ = MathHelper.floor(player.getZ());
+            fracX = player.getX() - eyeX;
+            fracY = player.getEyeY() - eyeY;
+            fracZ = player.getZ() - eyeZ;
+            Arrays.fill(light, (byte) 0);
+            Arrays.fill(visible, 0L);
+            Arrays.fill(hidden, 0L);
+            light[index(0, 0, 0)] = (byte) FULL_LIGHT;
+            setBit(visible, index(0, 0, 0), true);
+            builtRing = 0;
+        }
+
+        boolean isEyeMoved(PlayerEntity player) {
+            if (world != player.getWorld()) {
+                return true;
+            }
+            double dx = player.getX() - builtX;
+            double dy = player.getEyeY() - builtY;
+            double dz = player.getZ() - builtZ;
+            return dx * dx + dy * dy + dz * dz > RESTART_DISTANCE * RESTART_DISTANCE;
+        }
+
+        /**
+         * Builds whole rings until the cell budget runs out (always at least one ring).
+         * @return the budget left, 0 or less if it ran out
+         */
+        int build(int budget) {
+            VoxelRaycaster.Cursor cursor = VoxelRaycaster.cursor(world);
+            while (builtRing < SIZE_RADIUS && budget > 0) {
+                budget -= buildRing(builtRing + 1, cursor);
+                builtRing++;
+            }
+            return budget;
+        }
+
+        /**
+         * Computes every cell of the shell max(|i|,|j|,|k|) == d inside the sphere.
+         * @return number of cells computed
+         */
+        private int buildRing(int d, VoxelRaycaster.Cursor cursor) {
+            int limitSq = SIZE_RADIUS * SIZE_RADIUS;
+            int cells = 0;
+            for (int i = -d; i <= d; i++) {
+                for (int j = -d; j <= d; j++) {
+                    // Inside the shell's x/y faces every k is on the shell, otherwise only the two z faces
+                    int kStep = Math.abs(i) == d || Math.abs(j) == d ? 1 : 2 * d;
+                    for (int k = -d; k <= d; k += kStep) {
+                        if (i * i + j * j + k * k > limitSq) {
+                            continue;
+                        }
+                        computeCell(i, j, k, d, cursor);
+                        cells++;
+                    }
+                }
+            }
+            return cells;
+        }
+
+        private void computeCell(int i, int j, int k, int d, VoxelRaycaster.Cursor cursor) {
+            int incoming = d == 1 ? FULL_LIGHT : sampleIncoming(i, j, k, d);
+            int index = index(i, j, k);
+            setBit(visible, index, incoming >= VISIBLE_THRESHOLD);
+            setBit(hidden, index, incoming < HIDDEN_THRESHOLD);
+
+            int outgoing = 0;
+            if (incoming > 0) {
+                BlockState state = cursor.readState(eyeX + i, eyeY + j, eyeZ + k);
+                outgoing = state == null ? incoming : incoming * getTransmission(state) / FULL_LIGHT;
+            }
+            light[index] = (byte) outgoing;
+        }
+
+        /**
+         * Follows the ray from the eye to the cell centre back one layer along its dominant axis,
+         * and bilinearly samples the light leaving the previous ring there.
+         */
+        private int sampleIncoming(int i, int j, int k, int d) {
+            double cx = i + 0.5 - fracX;
+            double cy = j + 0.5 - fracY;
+            double cz = k + 0.5 - fracZ;
+
+            // Dominant axis: one on the shell face, ties go to the longest ray component
+            int axis = -1;
+            double best = -1;
+            if (Math.abs(i) == d && Math.abs(cx) > best) {
+                axis = 0;
+                best = Math.abs(cx);
+            }
+            if (Math.abs(j) == d && Math.abs(cy) > best) {
+                axis = 1;
+                best = Math.abs(cy);
+            }
+            if (Math.abs(k) == d && Math.abs(cz) > best) {
+                axis = 2;
+            }
+
+            int layer;
+            double t;
+            double pu;
+            double pv;
+            if (axis == 0) {
+                layer = i - Integer.signum(i);
+                t = (layer + 0.5 - fracX) / cx;
+                pu = cy * t + fracY - 0.5;
+                pv = cz * t + fracZ - 0.5;
+            } else if (axis == 1) {
+                layer = j - Integer.signum(j);
+                t = (layer + 0.5 - fracY) / cy;
+                pu = cx * t + fracX - 0.5;
+                pv = cz * t + fracZ - 0.5;
+            } else {
+                layer = k - Integer.signum(k);
+                t = (layer + 0.5 - fracZ) / cz;
+                pu = cx * t + fracX - 0.5;
+                pv = cy * t + fracY - 0.5;
+            }
+
+            // Sample only the previous ring, which is complete
+            int limit = d - 1;
+            int u0 = MathHelper.floor(pu);
+            int v0 = MathHelper.floor(pv);
+            double wu = pu - u0;
+            double wv = pv - v0;
+            int u1 = MathHelper.clamp(u0 + 1, -limit, limit);
+            int v1 = MathHelper.clamp(v0 + 1, -limit, limit);
+            u0 = MathHelper.clamp(u0, -limit, limit);
+            v0 = MathHelper.clamp(v0, -limit, limit);
+
+            double top = getLight(axis, layer, u0, v0) * (1 - wu) + getLight(axis, layer, u1, v0) * wu;
+            double bottom = getLight(axis, layer, u0, v1) * (1 - wu) + getLight(axis, layer, u1, v1) * wu;
+            return (int) Math.round(top * (1 - wv) + bottom * wv);
+        }
+
+        private int getLight(int axis, int layer, int u, int v) {
+            int index = axis == 0 ? index(layer, u, v) : (axis == 1 ? index(u, layer, v) : index(u, v, layer));
+            return light[index] & 0xFF;
+        }
+
+        private static boolean getBit(long[] bits, int index) {
+            return (bits[index >> 6] & (1L << index)) != 0;
+        }
+
+        private static void setBit(long[] bits, int index, boolean value) {
+            if (value) {
+                bits[index >> 6] |= 1L << index;
+            } else {
+                bits[index >> 6] &= ~(1L << index);
+            }
+        }
+    }
+
+    /**
+     * Registers the build tick and cleanup listeners. Call during mod initialization.
+     */
+    public static void register() {
+        TickDispatcher.everyTick("visibility_fields", false, context -> onServerTick(context.server));
+        BlockChangeCallback.EVENT.register(VisibilityField::onBlockChanged);
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) ->
+                FIELDS.remove(handler.getPlayer().getUuid()));
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> FIELDS.clear());
+
+        HorrorMod129.LOGGER.info("Registered VisibilityField");
+    }
+
+    /**
+     * Looks a position up in the player's field. The answer may be for an eye up to RESTART_DISTANCE off.
+     * The first query for a player starts building their field, so early queries return UNKNOWN.
+     * While MAX_FIELDS other players are being queried, the player gets no field and every query is UNKNOWN.
+     *
+     * @param player The player to check from
+     * @param targetPos The position to check
+     * @param maxDistance The maximum distance to check
+     * @return VISIBLE, HIDDEN, or UNKNOWN if the field can't answer (not built that far, out of range, shadow edge)
+     */
+    public static int query(PlayerEntity player, BlockPos targetPos, double maxDistance) {
+        return query(player, targetPos.getX(), targetPos.getY(), targetPos.getZ(), maxDistance);
+    }
+
+    /**
+     * Same as query(PlayerEntity, BlockPos, double) without needing a BlockPos.
+     */
+    public static int query(PlayerEntity player, int x, int y, int z, double maxDistance) {
+        Field field = FIELDS.get(player.getUuid());
+        if (field == null) {
+            field = createField(player);
+            if (field == null) {
+                refused++;
+                return UNKNOWN;
+            }
+        }
+        field.lastQueryTick = player.getWorld().getTime();
+
+        if (field.builtRing < 0 || field.isEyeMoved(player)) {
+            unknown++;
+            return UNKNOWN; // The tick restarts it
+        }
+
+        int i = x - field.eyeX;
+        int j = y - field.eyeY;
+        int k = z - field.eyeZ;
+        int ring = Math.max(Math.abs(i), Math.max(Math.abs(j), Math.abs(k)));
+        if (ring > field.builtRing || i * i + j * j + k * k > RADIUS * RADIUS) {
+            unknown++;
+            return UNKNOWN;
+        }
+
+        double dx = x + 0.5 - player.getX();
+        double dy = y + 0.5 - player.getEyeY();
+        double dz = z + 0.5 - player.getZ();
+        if (dx * dx + dy * dy + dz * dz > maxDistance * maxDistance
+                || !ViewFrame.get(player).isWithinFieldOfView(dx, dy, dz)) {
+            answered++;
+            return HIDDEN;
+        }
+        int index = index(i, j, k);
+        if (Field.getBit(field.visible, index)) {
+            answered++;
+            return VISIBLE;
+        }
+        if (Field.getBit(field.hidden, index)) {
+            answered++;
+            return HIDDEN;
+        }
+        uncertain++;
+        return UNKNOWN;
+    }
+
+    /**
+     * Gives the player a field, taking over the one queried longest ago if MAX_FIELDS exist and it's idle.
+     * @return the field, or null if all fields are in use
+     */
+    private static Field createField(PlayerEntity player) {
+        Field field = null;
+        if (FIELDS.size() >= MAX_FIELDS) {
+            UUID oldest = null;
+            for (Map.Entry<UUID, Field> entry : FIELDS.entrySet()) {
+                if (oldest == null || entry.getValue().lastQueryTick < FIELDS.get(oldest).lastQueryTick) {
+                    oldest = entry.getKey();
+                }
+            }
+            if (player.getWorld().getTime() - FIELDS.get(oldest).lastQueryTick <= ACTIVE_TICKS) {
+                return null;
+            }
+            field = FIELDS.remove(oldest);
+            field.builtRing = -1; // The tick restarts it
+        }
+        if (field == null) {
+            field = new Field();
+        }
+        FIELDS.put(player.getUuid(), field);
+        return field;
+    }
+
+    private static void onServerTick(MinecraftServer server) {
+        if (FIELDS.isEmpty()) {
+            return;
+        }
+        FIELDS.keySet().removeIf(uuid -> server.getPlayerManager().getPlayer(uuid) == null);
+
+        // One budget for all fields; the ones built this tick go to the back of the line
+        int budget = CELLS_PER_TICK;
+        List<UUID> built = new ArrayList<>();
+        for (Map.Entry<UUID, Field> entry : FIELDS.entrySet()) {
+            if (budget <= 0) {
+                break;
+            }
+            ServerPlayerEntity player = server.getPlayerManager().getPlayer(entry.getKey());
+            Field field = entry.getValue();
+            if (player.getWorld().getTime() - field.lastQueryTick > ACTIVE_TICKS) {
+                continue; // Nobody is asking, don't spend time on it
+            }
+            if (field.builtRing < 0 || field.isEyeMoved(player)) {
+                field.restart(player);
+                restarts++;
+            }
+            if (field.builtRing < SIZE_RADIUS) {
+                budget = field.build(budget);
+                built.add(entry.getKey());
+            }
+        }
+        for (UUID uuid : built) {
+            FIELDS.put(uuid, FIELDS.remove(uuid));
+        }
+    }
+
+    private static void onBlockChanged(ServerWorld world, BlockPos pos, BlockState oldState, BlockState newState) {
+        if (FIELDS.isEmpty() || VoxelRaycaster.getFlags(oldState) == VoxelRaycaster.getFlags(newState)) {
+            return; // Same line of sight behaviour, nothing to redo
+        }
+        for (Field field : FIELDS.values()) {
+            if (field.world != world || field.builtRing < 0) {
+                continue;
+            }
+            int ring = Math.max(Math.abs(pos.getX() - field.eyeX),
+                    Math.max(Math.abs(pos.getY() - field.eyeY), Math.abs(pos.getZ() - field.eyeZ)));
+            if (ring <= field.builtRing) {
+                // Only light leaving this ring and beyond changes
+                field.builtRing = Math.max(0, ring - 1);
+                rewinds++;
+            }
+        }
+    }
+
+    private static int index(int i, int j, int k) {
+        return ((i + SIZE_RADIUS) * SIZE + (j + SIZE_RADIUS)) * SIZE + (k + SIZE_RADIUS);
+    }
+
+    /**
+     * Gets a readable summary of the field counters, for debug commands.
+     */
+    public static String getStatsString() {
+        int complete = 0;
+        for (Field field : FIELDS.values()) {
+            if (field.builtRing >= SIZE_RADIUS) {
+                complete++;
+            }
+        }
+        long queries = answered + unknown + uncertain;
+        double answerRate = queries > 0 ? answered * 100.0 / queries : 0.0;
+        return String.format("Visibility field: %d answered, %d not built, %d uncertain (%.1f%% answered), "
+                        + "%d restarts, %d rewinds, %d refused, %d/%d fields complete (max %d)",
+                answered, unknown, uncertain, answerRate, restarts, rewinds, refused, complete, FIELDS.size(), MAX_FIELDS);
+    }
+
+    /**
+     * Resets the field counters (fields are kept).
+     */
+    public static void resetStats() {
+        answered = 0;
+        unknown = 0;
+        uncertain = 0;
+        restarts = 0;
+        rewinds = 0;
+        refused = 0;
+    }
+
+    private static int getTransmission(BlockState state) {
+        byte flags = VoxelRaycaster.getFlags(state);
+        if (flags == 0) {
+            return FULL_LIGHT;
+        }
+        boolean partial = (flags & (VoxelRaycaster.FLAG_PARTIAL | VoxelRaycaster.FLAG_DYNAMIC)) != 0;
+        if ((flags & VoxelRaycaster.FLAG_OPAQUE) != 0) {
+            return partial ? PARTIAL_TRANSMISSION : 0;
+        }
+        // Leaves (see-through blocks have no flags)
+        return LEAF_TRANSMISSION;
+    }
+}
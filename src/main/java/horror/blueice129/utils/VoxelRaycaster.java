@@ -0,0 +1,526 @@
+package horror.blueice129.utils;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.shape.VoxelShape;
+import net.minecraft.world.BlockView;
+import net.minecraft.world.EmptyBlockView;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Integer voxel walker (Amanatides-Woo DDA) used for line of sight checks.
+ * Steps through every block cell the ray passes, in order, and decides per cell
+ * using a table of per-BlockState opacity flags built once.
+ *
+ * Rules match LineOfSightUtils:
+ * - Air and non-collision blocks (grass, flowers, water) never block
+ * - Opaque blocks block, see-through blocks (glass, ice) don't
+ * - Leaves block once MAX_LEAVES_BEFORE_OPAQUE leaf blocks have been passed
+ * - Non-full-cube blocks (slabs, stairs) only count if the ray touches their collision boxes
+ *
+ * Empty stretches are crossed in one step using the OccupancyPyramid of each section.
+ * Nothing is allocated per call, except for the rare blocks whose collision shape depends on the world.
+ * Rays from the same eye should share a Cursor, which remembers the cells it has already read.
+ */
+public final class VoxelRaycaster {
+
+    static final int MAX_LEAVES_BEFORE_OPAQUE = 3; // Leaves become opaque on the 3rd leaf block
+
+    // Per-state flags. A state with no flags never blocks the ray.
+    static final byte FLAG_OPAQUE = 1;  // Blocks the ray once hit
+    static final byte FLAG_LEAF = 2;    // Counts towards MAX_LEAVES_BEFORE_OPAQUE once hit
+    static final byte FLAG_PARTIAL = 4; // Only hit if the ray touches one of its collision boxes
+    static final byte FLAG_DYNAMIC = 8; // Collision shape depends on the world, ask it per hit
+
+    private static volatile byte[] stateFlags;
+    private static volatile double[][] stateBoxes;
+
+    private static final ThreadLocal<Cursor> CURSORS = ThreadLocal.withInitial(Cursor::new);
+
+    private VoxelRaycaster() {
+    }
+
+    /**
+     * Walks the ray from start to end and checks if the block containing the end point is reached
+     * without passing a block that stops line of sight. The start block is tested too, the end block is not.
+     *
+     * @param world The world
+     * @param sx Start x (usually the player's eye)
+     * @param sy Start y
+     * @param sz Start z
+     * @param ex End x (a point inside the target block)
+     * @param ey End y
+     * @param ez End z
+     * @return true if nothing blocks the ray before it enters the end block
+     */
+    public static boolean isPathClear(World world, double sx, double sy, double sz, double ex, double ey, double ez) {
+        return cursor(world).isPathClear(sx, sy, sz, ex, ey, ez);
+    }
+
+    /**
+     * Gets this thread's cursor, reset for the given world.
+     * Use one cursor for a group of rays from the same eye (corners of a block, a batch of targets),
+     * so cells they share are only looked up once. Only valid until the world changes.
+     *
+     * @param world The world the rays are in
+     * @return The reset cursor
+     */
+    public static Cursor cursor(World world) {
+        Cursor cursor = CURSORS.get();
+        cursor.reset(world, null);
+        return cursor;
+    }
+
+    /**
+     * Gets this thread's cursor, reset to read from a snapshot instead of a world.
+     * Safe off the server thread. Blocks whose collision shape depends on the world
+     * use their shape at the origin of an empty world.
+     *
+     * @param snapshot The captured blocks the rays are in
+     * @return The reset cursor
+     */
+    public static Cursor cursor(BlockSnapshot snapshot) {
+        Cursor cursor = CURSORS.get();
+        cursor.reset(null, snapshot);
+        return cursor;
+    }
+
+    /**
+     * Walks rays through one world or snapshot. Keeps the last chunk and a small memo of cell flags
+     * so rays that share their first cells (same eye, similar direction) don't read them twice.
+     */
+    public static final class Cursor {
+        private static final int MEMO_SIZE = 1024; // must be a power of 2
+
+        private final long[] memoKeys = new long[MEMO_SIZE];
+        private final int[] memoGenerations = new int[MEMO_SIZE];
+        private final byte[] memoFlags = new byte[MEMO_SIZE];
+        private final BlockState[] memoStates = new BlockState[MEMO_SIZE];
+        private int generation;
+
+        private World world;
+        private BlockSnapshot snapshot;
+        private WorldChunk chunk;
+        private int chunkX;
+        private int chunkZ;
+
+        // Occupancy summary of the last section visited, server worlds only
+        private boolean usePyramid;
+        private OccupancyPyramid.Section pyramid;
+        private long pyramidKey;
+
+        // Cell that stopped the last blocked ray
+        private long lastBlocker;
+
+        private Cursor() {
+        }
+
+        private void reset(World world, BlockSnapshot snapshot) {
+            this.world = world;
+            this.snapshot = snapshot;
+            this.chunk = null;
+            this.usePyramid = world instanceof ServerWorld;
+            this.pyramid = null;
+            // Bumping the generation invalidates the whole memo without clearing it
+            if (++generation == 0) {
+                Arrays.fill(memoGenerations, 0);
+                Arrays.fill(memoStates, null);
+                generation = 1;
+            }
+        }
+
+        /**
+         * Same as VoxelRaycaster.isPathClear, using this cursor's world and memo.
+         */
+        public boolean isPathClear(double sx, double sy, double sz, double ex, double ey, double ez) {
+            int x = MathHelper.floor(sx);
+            int y = MathHelper.floor(sy);
+            int z = MathHelper.floor(sz);
+            int targetX = MathHelper.floor(ex);
+            int targetY = MathHelper.floor(ey);
+            int targetZ = MathHelper.floor(ez);
+
+            double dx = ex - sx;
+            double dy = ey - sy;
+            double dz = ez - sz;
+
+            int stepX = dx > 0 ? 1 : (dx < 0 ? -1 : 0);
+            int stepY = dy > 0 ? 1 : (dy < 0 ? -1 : 0);
+            int stepZ = dz > 0 ? 1 : (dz < 0 ? -1 : 0);
+
+            // Ray parameter t runs from 0 (start) to 1 (end)
+            double tDeltaX = stepX != 0 ? Math.abs(1.0 / dx) : Double.MAX_VALUE;
+            double tDeltaY = stepY != 0 ? Math.abs(1.0 / dy) : Double.MAX_VALUE;
+            double tDeltaZ = stepZ != 0 ? Math.abs(1.0 / dz) : Double.MAX_VALUE;
+            double tMaxX = stepX > 0 ? (x + 1 - sx) * tDeltaX : (stepX < 0 ? (sx - x) * tDeltaX : Double.MAX_VALUE);
+            double tMaxY = stepY > 0 ? (y + 1 - sy) * tDeltaY : (stepY < 0 ? (sy - y) * tDeltaY : Double.MAX_VALUE);
+            double tMaxZ = stepZ > 0 ? (z + 1 - sz) * tDeltaZ : (stepZ < 0 ? (sz - z) * tDeltaZ : Double.MAX_VALUE);
+
+            // Each step moves one cell along one axis, so this is exactly the number of cells before the target
+            int remainingSteps = Math.abs(targetX - x) + Math.abs(targetY - y) + Math.abs(targetZ - z);
+            int leafCount = 0;
+
+            while (remainingSteps-- > 0 && (x != targetX || y != targetY || z != targetZ)) {
+                OccupancyPyramid.Section region = getPyramid(x, y, z);
+                if (region != null) {
+                    int emptySize = region.getEmptySize(x & 15, y & 15, z & 15);
+                    if (emptySize > 0) {
+                        // Jump across the whole empty region in one step
+                        int minX = x & -emptySize;
+                        int minY = y & -emptySize;
+                        int minZ = z & -emptySize;
+                        if (targetX >= minX && targetX < minX + emptySize && targetY >= minY
+                                && targetY < minY + emptySize && targetZ >= minZ && targetZ < minZ + emptySize) {
+                            return true; // Nothing between here and the target
+                        }
+
+                        // Cells left in the region along each axis, and when the ray leaves it
+                        int exitX = stepX > 0 ? minX + emptySize - x : (stepX < 0 ? x - minX + 1 : 0);
+                        int exitY = stepY > 0 ? minY + emptySize - y : (stepY < 0 ? y - minY + 1 : 0);
+                        int exitZ = stepZ > 0 ? minZ + emptySize - z : (stepZ < 0 ? z - minZ + 1 : 0);
+                        double tExitX = exitX > 0 ? tMaxX + (exitX - 1) * tDeltaX : Double.MAX_VALUE;
+                        double tExitY = exitY > 0 ? tMaxY + (exitY - 1) * tDeltaY : Double.MAX_VALUE;
+                        double tExitZ = exitZ > 0 ? tMaxZ + (exitZ - 1) * tDeltaZ : Double.MAX_VALUE;
+                        double tExit = Math.min(tExitX, Math.min(tExitY, tExitZ));
+
+                        int movedX = getJumpSteps(tExit, tExitX, tMaxX, tDeltaX, exitX);
+                        int movedY = getJumpSteps(tExit, tExitY, tMaxY, tDeltaY, exitY);
+                        int movedZ = getJumpSteps(tExit, tExitZ, tMaxZ, tDeltaZ, exitZ);
+                        x += movedX * stepX;
+                        y += movedY * stepY;
+                        z += movedZ * stepZ;
+                        tMaxX += movedX * tDeltaX;
+                        tMaxY += movedY * tDeltaY;
+                        tMaxZ += movedZ * tDeltaZ;
+                        remainingSteps = Math.abs(targetX - x) + Math.abs(targetY - y) + Math.abs(targetZ - z);
+                        OccupancyPyramid.countJump();
+                        continue;
+                    }
+                    if (region.isFull(x & 15, y & 15, z & 15)) {
+                        lastBlocker = BlockPos.asLong(x, y, z);
+                        return false; // Full opaque cube, no need to read it
+                    }
+                }
+
+                int slot = lookup(x, y, z);
+                byte flags = memoFlags[slot];
+
+                if (flags != 0 && isHit(world != null ? world : EmptyBlockView.INSTANCE, memoStates[slot], flags,
+                        x, y, z, sx, sy, sz, dx, dy, dz)) {
+                    if ((flags & FLAG_LEAF) != 0 && ++leafCount >= MAX_LEAVES_BEFORE_OPAQUE) {
+                        lastBlocker = memoKeys[slot];
+                        return false; // Too many leaves, now opaque
+                    }
+                    if ((flags & FLAG_OPAQUE) != 0) {
+                        lastBlocker = memoKeys[slot];
+                        return false;
+                    }
+                }
+
+                // Advance to the next cell along whichever boundary the ray crosses first
+                if (tMaxX < tMaxY) {
+                    if (tMaxX < tMaxZ) {
+                        x += stepX;
+                        tMaxX += tDeltaX;
+                    } else {
+                        z += stepZ;
+                        tMaxZ += tDeltaZ;
+                    }
+                } else if (tMaxY < tMaxZ) {
+                    y += stepY;
+                    tMaxY += tDeltaY;
+                } else {
+                    z += stepZ;
+                    tMaxZ += tDeltaZ;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Gets the cell that stopped the last ray isPathClear returned false for.
+         *
+         * @return The cell as BlockPos.asLong
+         */
+        public long getLastBlocker() {
+            return lastBlocker;
+        }
+
+        /**
+         * Number of cells to move along one axis when jumping out of an empty region at tExit.
+         * The exit axis moves all the way out, other axes move past the boundaries crossed before tExit
+         * but stay inside the region, so rounding can only make the jump shorter, never skip a cell.
+         */
+        private static int getJumpSteps(double tExit, double tExitAxis, double tMax, double tDelta, int exitSteps) {
+            if (exitSteps == 0) {
+                return 0;
+            }
+            if (tExitAxis == tExit) {
+                return exitSteps;
+            }
+            if (tMax >= tExit) {
+                return 0;
+            }
+            return Math.min(exitSteps - 1, (int) Math.ceil((tExit - tMax) / tDelta));
+        }
+
+        /**
+         * Gets the occupancy summary of the section containing a cell, or null if there is none to use.
+         */
+        private OccupancyPyramid.Section getPyramid(int x, int y, int z) {
+            if (!usePyramid || world.isOutOfHeightLimit(y)) {
+                return null;
+            }
+            long key = ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4);
+            if (pyramid == null || key != pyramidKey) {
+                pyramid = OccupancyPyramid.getSection(world, getChunk(x >> 4, z >> 4), y >> 4);
+                pyramidKey = key;
+            }
+            return pyramid;
+        }
+
+        /**
+         * Finds the memo slot for a cell, reading the world on a miss.
+         * @return The slot, with memoFlags and memoStates filled in
+         */
+        private int lookup(int x, int y, int z) {
+            long key = BlockPos.asLong(x, y, z);
+            int slot = (int) HashCommon.mix(key) & (MEMO_SIZE - 1);
+            if (memoGenerations[slot] == generation && memoKeys[slot] == key) {
+                return slot;
+            }
+
+            BlockState state = readState(x, y, z);
+            memoKeys[slot] = key;
+            memoGenerations[slot] = generation;
+            memoStates[slot] = state;
+            memoFlags[slot] = state == null ? 0 : getFlags(state);
+            return slot;
+        }
+
+        /**
+         * Reads a block state straight from the chunk section, or null for air and out of world cells.
+         * Skips the memo, for callers that visit every cell once (VisibilityField).
+         */
+        BlockState readState(int x, int y, int z) {
+            if (snapshot != null) {
+                return snapshot.getBlockState(x, y, z);
+            }
+            if (world.isOutOfHeightLimit(y)) {
+                return null;
+            }
+            WorldChunk chunk = getChunk(x >> 4, z >> 4);
+            ChunkSection section = chunk.getSection(chunk.getSectionIndex(y));
+            if (section.isEmpty()) {
+                return null;
+            }
+            return section.getBlockState(x & 15, y & 15, z & 15);
+        }
+
+        private WorldChunk getChunk(int cx, int cz) {
+            if (chunk == null || cx != chunkX || cz != chunkZ) {
+                chunk = world.getChunk(cx, cz);
+                chunkX = cx;
+                chunkZ = cz;
+            }
+            return chunk;
+        }
+    }
+
+    /**
+     * Gets the line of sight flags for a block state.
+     */
+    static byte getFlags(BlockState state) {
+        byte[] flagsTable = getStateFlags();
+        int id = Block.getRawIdFromState(state);
+        return id >= 0 && id < flagsTable.length ? flagsTable[id] : computeFlags(state);
+    }
+
+    /**
+     * Checks if the ray actually touches the block in the given cell.
+     * Full cubes are always touched once the ray is inside the cell.
+     */
+    private static boolean isHit(BlockView world, BlockState state, byte flags,
+                                 int x, int y, int z, double sx, double sy, double sz,
+                                 double dx, double dy, double dz) {
+        double[] boxes = null;
+        if ((flags & FLAG_DYNAMIC) != 0) {
+            VoxelShape shape = state.getCollisionShape(world, new BlockPos(x, y, z));
+            if (shape.isEmpty()) {
+                return false;
+            }
+            if (Block.isShapeFullCube(shape)) {
+                return true;
+            }
+            boxes = toBoxArray(shape);
+        } else if ((flags & FLAG_PARTIAL) == 0) {
+            return true;
+        } else {
+            int id = Block.getRawIdFromState(state);
+            double[][] boxesTable = stateBoxes;
+            boxes = id >= 0 && id < boxesTable.length ? boxesTable[id] : null;
+        }
+        if (boxes == null) {
+            boxes = toBoxArray(state.getCollisionShape(EmptyBlockView.INSTANCE, BlockPos.ORIGIN));
+        }
+
+        for (int i = 0; i < boxes.length; i += 6) {
+            if (segmentIntersectsBox(sx - x, sy - y, sz - z, dx, dy, dz,
+                    boxes[i], boxes[i + 1], boxes[i + 2], boxes[i + 3], boxes[i + 4], boxes[i + 5])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Slab test of the segment start + t * delta (t in 0..1) against an axis aligned box.
+     */
+    private static boolean segmentIntersectsBox(double sx, double sy, double sz, double dx, double dy, double dz,
+                                                double minX, double minY, double minZ,
+                                                double maxX, double maxY, double maxZ) {
+        double tEnter = 0.0;
+        double tExit = 1.0;
+
+        if (dx != 0) {
+            double t1 = (minX - sx) / dx;
+            double t2 = (maxX - sx) / dx;
+            tEnter = Math.max(tEnter, Math.min(t1, t2));
+            tExit = Math.min(tExit, Math.max(t1, t2));
+        } else if (sx < minX || sx > maxX) {
+            return false;
+        }
+
+        if (dy != 0) {
+            double t1 = (minY - sy) / dy;
+            double t2 = (maxY - sy) / dy;
+            tEnter = Math.max(tEnter, Math.min(t1, t2));
+            tExit = Math.min(tExit, Math.max(t1, t2));
+        } else if (sy < minY || sy > maxY) {
+            return false;
+        }
+
+        if (dz != 0) {
+            double t1 = (minZ - sz) / dz;
+            double t2 = (maxZ - sz) / dz;
+            tEnter = Math.max(tEnter, Math.min(t1, t2));
+            tExit = Math.min(tExit, Math.max(t1, t2));
+        } else if (sz < minZ || sz > maxZ) {
+            return false;
+        }
+
+        return tEnter <= tExit;
+    }
+
+    /**
+     * Gets the per-state flag table, building it on first use.
+     */
+    private static byte[] getStateFlags() {
+        byte[] flags = stateFlags;
+        if (flags == null) {
+            synchronized (VoxelRaycaster.class) {
+                flags = stateFlags;
+                if (flags == null) {
+                    buildTables();
+                    flags = stateFlags;
+                }
+            }
+        }
+        return flags;
+    }
+
+    /**
+     * Rebuilds the per-state tables, after BlockTypes changed (tag reload).
+     */
+    static void rebuildTables() {
+        synchronized (VoxelRaycaster.class) {
+            buildTables();
+        }
+    }
+
+    private static void buildTables() {
+        int size = Block.STATE_IDS.size();
+        byte[] flags = new byte[size];
+        double[][] boxes = new double[size][];
+
+        for (BlockState state : Block.STATE_IDS) {
+            int id = Block.getRawIdFromState(state);
+            if (id < 0 || id >= size) {
+                continue;
+            }
+            flags[id] = computeFlags(state);
+            if ((flags[id] & FLAG_PARTIAL) != 0) {
+                boxes[id] = toBoxArray(state.getCollisionShape(EmptyBlockView.INSTANCE, BlockPos.ORIGIN));
+            }
+        }
+
+        stateBoxes = boxes;
+        stateFlags = flags;
+    }
+
+    /**
+     * Classifies a block state for line of sight.
+     *
+     * @param state The block state
+     * @return The flags for this state, 0 if it never blocks
+     */
+    static byte computeFlags(BlockState state) {
+        if (state.isAir()) {
+            return 0;
+        }
+
+        boolean isLeaf = BlockTypes.isLeaf(state);
+        boolean isOpaque = BlockTypes.isOpaqueForLineOfSight(state);
+        if (!isLeaf && !isOpaque) {
+            return 0; // See-through whether the ray touches it or not
+        }
+
+        byte flags = 0;
+        if (isOpaque) {
+            flags |= FLAG_OPAQUE;
+        }
+        if (isLeaf) {
+            flags |= FLAG_LEAF;
+        }
+
+        if (state.getBlock().hasDynamicBounds()) {
+            return (byte) (flags | FLAG_DYNAMIC);
+        }
+
+        VoxelShape shape = state.getCollisionShape(EmptyBlockView.INSTANCE, BlockPos.ORIGIN);
+        if (shape.isEmpty()) {
+            return 0; // Non-collision blocks (tall grass, flowers, etc.) never block
+        }
+        if (!Block.isShapeFullCube(shape)) {
+            flags |= FLAG_PARTIAL;
+        }
+        return flags;
+    }
+
+    private static double[] toBoxArray(VoxelShape shape) {
+        List<Box> boxList = shape.getBoundingBoxes();
+        double[] boxes = new double[boxList.size() * 6];
+        for (int i = 0; i < boxList.size(); i++) {
+            Box box = boxList.get(i);
+            boxes[i * 6] = box.minX;
+            boxes[i * 6 + 1] = box.minY;
+            boxes[i * 6 + 2] = box.minZ;
+            boxes[i * 6 + 3] = box.maxX;
+            boxes[i * 6 + 4] = box.maxY;
+            boxes[i * 6 + 5] = box.maxZ;
+        }
+        return boxes;
+    }
+}